@@ -0,0 +1,94 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the upsert update of one DOUBLE chunk, from the boxed time series the ingestor receives.
+ * <ul>
+ *     <li>{@code boxedLists}: the former path, boxed lists then {@code Updates.pushEach}, encoded by the driver codecs</li>
+ *     <li>{@code primitiveBuilder}: {@link PrimitiveChunkBuilder} writing raw BSON</li>
+ * </ul>
+ * Run with {@code ./gradlew :pulse-app:jmh}; the gc profiler reports {@code gc.alloc.rate.norm} (bytes per op).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ChunkBuilderBenchmark {
+
+    private static final long BASE_TS = 1_700_000_000_000L;
+
+    @Param({"1", "64", "1024"})
+    private int points;
+
+    private Map<Long, Object> timeSeries;
+    private Map<Long, String> batchIdsByTs;
+
+    @Setup
+    public void setup() {
+        timeSeries = new LinkedHashMap<>();
+        batchIdsByTs = new LinkedHashMap<>();
+        for (int i = 0; i < points; i++) {
+            long ts = BASE_TS + i * 1000L;
+            timeSeries.put(ts, 20.0 + Math.sin(i / 10.0));
+            batchIdsByTs.put(ts, null);
+        }
+    }
+
+    @Benchmark
+    public void boxedLists(Blackhole bh) {
+        List<Long> ts = new ArrayList<>();
+        List<Object> v = new ArrayList<>();
+        List<String> batchIds = new ArrayList<>();
+        for (Map.Entry<Long, Object> entry : timeSeries.entrySet()) {
+            if (entry.getValue() instanceof Double) {
+                ts.add(entry.getKey());
+                v.add(entry.getValue());
+                batchIds.add(batchIdsByTs.get(entry.getKey()));
+            }
+        }
+        Bson update = Updates.combine(
+                Updates.setOnInsert(PulseChunk.PATH, "plant.line1.temperature"),
+                Updates.setOnInsert(PulseChunk.TS_START, BASE_TS),
+                Updates.setOnInsert(PulseChunk.TS_END, BASE_TS + 1024_000L),
+                Updates.setOnInsert(PulseChunk.DATA_TYPE, PulseDataType.DOUBLE.name()),
+                Updates.pushEach(PulseChunk.TS, ts),
+                Updates.pushEach(PulseChunk.V, v),
+                Updates.pushEach(PulseChunk.BATCH_IDS, batchIds)
+        );
+        BsonDocument document = update.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        bh.consume(new RawBsonDocument(document, new BsonDocumentCodec()));
+    }
+
+    @Benchmark
+    public void primitiveBuilder(Blackhole bh) {
+        var chunk = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "chunk", "plant.line1.temperature", BASE_TS, BASE_TS + 1024_000L);
+        for (Map.Entry<Long, Object> entry : timeSeries.entrySet()) {
+            chunk.appendDouble(entry.getKey(), (Double) entry.getValue(), batchIdsByTs.get(entry.getKey()));
+        }
+        bh.consume(chunk.toUpdate());
+    }
+
+    @Benchmark
+    public void primitiveBuilderGorilla(Blackhole bh) {
+        var chunk = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "chunk", "plant.line1.temperature", BASE_TS, BASE_TS + 1024_000L);
+        for (Map.Entry<Long, Object> entry : timeSeries.entrySet()) {
+            chunk.appendDouble(entry.getKey(), (Double) entry.getValue(), batchIdsByTs.get(entry.getKey()));
+        }
+        bh.consume(chunk.toBlockUpdate());
+    }
+}
@@ -0,0 +1,97 @@
+package com.id.pulse.modules.measures.service;
+
+import com.id.pulse.model.PulseDataMatrix;
+import com.id.pulse.modules.measures.logic.ScriptEvaluatorConsole;
+import com.id.pulse.modules.parser.PulseDataMatrixParser;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates one JS measure script, as the transformer does for every JS measure on every cycle.
+ * <ul>
+ *     <li>{@code freshContext}: the former path, a new context per evaluation and the script text parsed by eval</li>
+ *     <li>{@code pooledContext}: {@link MeasureJsEvaluator}, cached source and pooled contexts</li>
+ *     <li>{@code typedSeries}: the same script over {@code _series}, primitive arrays instead of boxed lists</li>
+ * </ul>
+ * Run with {@code ./gradlew :pulse-app:jmh}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MeasureJsEvaluatorBenchmark {
+
+    private static final String SCRIPT = """
+            let pts = _parser.toValues("sensor");
+            let sum = 0;
+            for (let i = 0; i < pts.length; i++) {
+                sum += pts[i];
+            }
+            pts.length > 0 ? sum / pts.length + _current : _current;
+            """;
+
+    private static final String SERIES_SCRIPT = """
+            let pts = _series.numbers("sensor", 0.0);
+            let sum = 0;
+            for (let i = 0; i < pts.length; i++) {
+                sum += pts[i];
+            }
+            pts.length > 0 ? sum / pts.length + _current : _current;
+            """;
+
+    private Engine engine;
+    private MeasureJsEvaluator evaluator;
+    private PulseDataMatrixParser parser;
+
+    @Setup
+    public void setup() {
+        engine = Engine.create();
+        evaluator = new MeasureJsEvaluator();
+        var builder = PulseDataMatrix.builder();
+        for (int i = 0; i < 60; i++) {
+            builder.add("group", "sensor", 1_000L + i * 1_000L, 20.0 + i);
+        }
+        parser = PulseDataMatrixParser.from(builder.build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        evaluator.close();
+        engine.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void freshContext(Blackhole bh) {
+        try (Context context = Context.newBuilder(MeasureJsEvaluator.JS)
+                .engine(engine)
+                .allowHostAccess(HostAccess.ALL)
+                .allowHostClassLookup(className -> className.startsWith("com.id.pulse.") || className.startsWith("java.util."))
+                .build()) {
+            Value bindings = context.getBindings(MeasureJsEvaluator.JS);
+            bindings.putMember("_current", 1.0);
+            bindings.putMember("_t_eval", 61_000L);
+            bindings.putMember("_parser", parser);
+            bindings.putMember("console", new ScriptEvaluatorConsole("bench"));
+            bh.consume(context.eval(MeasureJsEvaluator.JS, SCRIPT).as(Object.class));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void pooledContext(Blackhole bh) {
+        bh.consume(evaluator.evaluate(61_000L, SCRIPT, parser, 1.0, "bench").getResult());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void typedSeries(Blackhole bh) {
+        bh.consume(evaluator.evaluate(61_000L, SERIES_SCRIPT, PulseSeriesBindings.from(parser), 1.0, "bench").getResult());
+    }
+}
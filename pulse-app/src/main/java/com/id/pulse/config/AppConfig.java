@@ -1,9 +1,13 @@
 package com.id.pulse.config;
 
+import com.id.pulse.modules.poller.model.enums.PollOverrunPolicy;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @Getter
 public class AppConfig {
@@ -17,9 +21,126 @@ public class AppConfig {
     @Value("${pulse.ingestor.chunk-size:1024}")
     private int ingestorChunkSize;
 
+    @Value("${pulse.ingestor.default-chunk-encoding:ARRAY}")
+    private PulseChunkEncoding ingestorDefaultChunkEncoding;
+
+    // Blocks a Gorilla chunk collects before being compacted into one, 0 to compact only when the chunk closes
+    @Value("${pulse.ingestor.gorilla-compact-blocks:16}")
+    private int ingestorGorillaCompactBlocks;
+
+    // Threads compacting Gorilla chunks, off the write path
+    @Value("${pulse.ingestor.gorilla-compact-threads:4}")
+    private int ingestorGorillaCompactThreads;
+
+    // Time without writes after which the open Gorilla chunk of a series is compacted and no longer tracked
+    @Value("${pulse.ingestor.gorilla-compact-idle-ms:300000}")
+    private long ingestorGorillaCompactIdleMs;
+
+    @Value("${pulse.ingestor.write-behind.enabled:true}")
+    private boolean ingestorWriteBehindEnabled;
+
+    @Value("${pulse.ingestor.write-behind.max-buffered-points:1000000}")
+    private int ingestorWriteBehindMaxBufferedPoints;
+
+    @Value("${pulse.ingestor.write-behind.flush-points:512}")
+    private int ingestorWriteBehindFlushPoints;
+
+    @Value("${pulse.ingestor.write-behind.max-age-ms:2000}")
+    private long ingestorWriteBehindMaxAgeMs;
+
+    @Value("${pulse.ingestor.write-behind.offer-timeout-ms:1000}")
+    private long ingestorWriteBehindOfferTimeoutMs;
+
+    // Flushes of a chunk before its points are dropped, the failed ones being retried after max-age-ms
+    @Value("${pulse.ingestor.write-behind.max-flush-attempts:5}")
+    private int ingestorWriteBehindMaxFlushAttempts;
+
+    @Value("${pulse.ingestor.metadata-cache.ttl-ms:3600000}")
+    private long ingestorMetadataCacheTtlMs;
+
+    @Value("${pulse.ingestor.metadata-cache.max-size:200000}")
+    private int ingestorMetadataCacheMaxSize;
+
     @Value("${pulse.extractor.read-threads:16}")
     private int extractorReadThreads;
 
+    @Value("${pulse.extractor.max-cursors:32}")
+    private int extractorMaxCursors;
+
+    // Cursors one request may hold at once, so that concurrent exports leave cursors to the other requests
+    @Value("${pulse.extractor.max-cursors-per-request:8}")
+    private int extractorMaxCursorsPerRequest;
+
+    @Value("${pulse.extractor.paths-per-query:64}")
+    private int extractorPathsPerQuery;
+
+    @Value("${pulse.extractor.stream-batch-size:16}")
+    private int extractorStreamBatchSize;
+
+    @Value("${pulse.extractor.stream-timeout-ms:3600000}")
+    private long extractorStreamTimeoutMs;
+
+    @Value("${pulse.extractor.cache.enabled:true}")
+    private boolean extractorCacheEnabled;
+
+    @Value("${pulse.extractor.cache.max-bytes:67108864}")
+    private long extractorCacheMaxBytes;
+
+    @Value("${pulse.extractor.cache.off-heap:false}")
+    private boolean extractorCacheOffHeap;
+
+    @Value("${pulse.extractor.cache.ttl-ms:300000}")
+    private long extractorCacheTtlMs;
+
+    @Value("${pulse.hot-tier.enabled:false}")
+    private boolean hotTierEnabled;
+
+    @Value("${pulse.hot-tier.dir:/var/local/iris3/pulse-hot-tier}")
+    private String hotTierDir;
+
+    @Value("${pulse.hot-tier.retention-ms:86400000}")
+    private long hotTierRetentionMs;
+
+    @Value("${pulse.hot-tier.window-ms:3600000}")
+    private long hotTierWindowMs;
+
+    @Value("${pulse.hot-tier.segment-bytes:67108864}")
+    private int hotTierSegmentBytes;
+
+    @Value("${pulse.poller.overrun-policy:SKIP}")
+    private PollOverrunPolicy pollerOverrunPolicy;
+
+    @Value("${pulse.poller.max-catch-up:3}")
+    private int pollerMaxCatchUp;
+
+    // Live queries only, -1 to use the group poll interval, 0 for no timeout
+    @Value("${pulse.poller.connector-timeout-ms:-1}")
+    private long pollerConnectorTimeoutMs;
+
+    // Workers of the measure transformer pool, 0 for the available processors
+    @Value("${pulse.transformer.parallelism:0}")
+    private int transformerParallelism;
+
+    // Per measure, 0 to use the run interval; late measures keep their last value
+    @Value("${pulse.transformer.measure-timeout-ms:0}")
+    private long transformerMeasureTimeoutMs;
+
+    // Delay between a configuration change and the snapshot rebuild, the changes made meanwhile share the rebuild
+    @Value("${pulse.config.snapshot-debounce-ms:250}")
+    private long configSnapshotDebounceMs;
+
+    @Value("${pulse.aggregation.allowed-lateness-ms:5000}")
+    private long aggregationAllowedLatenessMs;
+
+    @Value("${pulse.aggregation.replay-idle-ms:60000}")
+    private long aggregationReplayIdleMs;
+
+    @Value("${pulse.rollups.enabled:true}")
+    private boolean rollupsEnabled;
+
+    @Value("${pulse.rollups.tiers-ms:60000,900000,3600000}")
+    private List<Long> rollupsTiersMs;
+
     @Value("${px3.auth.base-url:http://localhost:10181}")
     private String px3AuthBaseUrl;
 
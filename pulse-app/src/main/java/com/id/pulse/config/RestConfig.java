@@ -2,14 +2,32 @@ package com.id.pulse.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
-public class RestConfig {
+public class RestConfig implements WebMvcConfigurer {
+
+    private final AppConfig appConfig;
+
+    public RestConfig(AppConfig appConfig) {
+        this.appConfig = appConfig;
+    }
 
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
 
-}
\ No newline at end of file
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // Streamed responses (e.g. extract-stream) run on virtual threads and may last much longer than a plain request
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("pulse-stream-");
+        executor.setVirtualThreads(true);
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(appConfig.getExtractorStreamTimeoutMs());
+    }
+
+}
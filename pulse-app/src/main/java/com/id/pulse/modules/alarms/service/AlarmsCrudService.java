@@ -4,6 +4,8 @@ import com.id.pulse.modules.alarms.PulseAlarm;
 import com.id.pulse.modules.alarms.model.PulseAlarmEntity;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
 import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.config.service.ConfigVersionService;
 import com.id.pulse.modules.measures.logic.AlarmJsCodeGenerator;
 import com.id.pulse.modules.measures.model.PulseMeasure;
 import com.id.pulse.modules.measures.model.PulseUpStream;
@@ -32,10 +34,12 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
     private final ChannelsCrudService channelsCrudService;
     private final MeasuresCrudService measuresCrudService;
     private final MongoTemplate mongoTemplate;
+    private final ConfigVersionService configVersionService;
 
     public AlarmsCrudService(AlarmJsCodeGenerator alarmJsCodeGenerator, ChannelsCrudService channelsCrudService,
                              MeasuresCrudService measuresCrudService,
-                             MongoTemplate mongoTemplate) {
+                             MongoTemplate mongoTemplate,
+                             ConfigVersionService configVersionService) {
         super(mongoTemplate,
                 new PxDefaultMapper<>(PulseAlarm.class, PulseAlarmEntity.class),
                 PxDefaultCrudServiceMongo.DEFAULT_COLLECTION_NAME);
@@ -43,6 +47,7 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
         this.channelsCrudService = channelsCrudService;
         this.measuresCrudService = measuresCrudService;
         this.mongoTemplate = mongoTemplate;
+        this.configVersionService = configVersionService;
     }
 
     @Override
@@ -56,6 +61,7 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
         var alarm = super.save(model);
         measuresCrudService.save(createTargetMeasure(null, alarm));
         syncAssetLinks(alarm, null);
+        notifyChanged(alarm, null);
         return alarm;
     }
 
@@ -70,6 +76,7 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
                 .getId();
         measuresCrudService.update(targetMeasureId, createTargetMeasure(targetMeasureId, alarm));
         syncAssetLinks(alarm, previousState);
+        notifyChanged(alarm, previousState);
         return alarm;
     }
 
@@ -83,6 +90,7 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
         measuresCrudService.delete(targetMeasureId);
         super.delete(id);
         removeAssetLinks(alarm);
+        notifyChanged(alarm, null);
     }
 
     /**
@@ -264,4 +272,10 @@ public class AlarmsCrudService extends PxDefaultCrudServiceMongo<PulseAlarm, Pul
         }
     }
 
+    private void notifyChanged(PulseAlarm current, PulseAlarm previous) {
+        // Old and new path: a rename invalidates both
+        configVersionService.notifyChanged(PulseConfigChangedEvent.forPaths(Arrays.asList(
+                current == null ? null : current.getPath(),
+                previous == null ? null : previous.getPath())));
+    }
 }
@@ -1,6 +1,7 @@
 package com.id.pulse.modules.channel.model;
 
 import com.id.pulse.modules.channel.model.enums.PulseAggregationType;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,6 +32,8 @@ public class PulseChannelGroupEntity {
     public static final String PERSIST = "persist";
     public static final String PERSISTED_LIFE_TIME = "persistedLifeTime";
 
+    public static final String CHUNK_ENCODING = "chunkEncoding";
+
     @Id
     @Field("_id")
     private String id;
@@ -47,4 +50,6 @@ public class PulseChannelGroupEntity {
 
     private Boolean persistEnabled;
     private String persistedLifeTime;
+
+    private PulseChunkEncoding chunkEncoding;
 }
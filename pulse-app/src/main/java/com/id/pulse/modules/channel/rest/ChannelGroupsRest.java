@@ -4,6 +4,10 @@ import com.id.pulse.model.PulseRoles;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
 import com.id.pulse.modules.channel.model.PulseChannelGroupEntity;
 import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
+import com.id.pulse.modules.datapoints.service.DpAccumulatorsManager;
+import com.id.pulse.modules.poller.model.GroupPollStats;
+import com.id.pulse.modules.poller.service.ChannelPoller;
+import com.id.pulse.modules.poller.service.GroupPollScheduler;
 import com.id.px3.crud.IPxAccessControlBase;
 import com.id.px3.crud.IPxCrudServiceBase;
 import com.id.px3.crud.IPxCrudValidator;
@@ -18,6 +22,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("pulse-channel-groups")
@@ -26,12 +31,23 @@ public class ChannelGroupsRest extends PxRestCrudBase<PulseChannelGroup, String>
     private final ChannelGroupsCrudService channelGroupsCrudService;
     private final JwtService jwtService;
     private final Validator validator;
+    private final DpAccumulatorsManager dpAccumulatorsManager;
+    private final GroupPollScheduler groupPollScheduler;
+    private final ChannelPoller channelPoller;
 
-    public ChannelGroupsRest(ChannelGroupsCrudService channelGroupsCrudService, JwtService jwtService, Validator validator) {
+    public ChannelGroupsRest(ChannelGroupsCrudService channelGroupsCrudService,
+                             JwtService jwtService,
+                             Validator validator,
+                             DpAccumulatorsManager dpAccumulatorsManager,
+                             GroupPollScheduler groupPollScheduler,
+                             ChannelPoller channelPoller) {
         super();
         this.channelGroupsCrudService = channelGroupsCrudService;
         this.jwtService = jwtService;
         this.validator = validator;
+        this.dpAccumulatorsManager = dpAccumulatorsManager;
+        this.groupPollScheduler = groupPollScheduler;
+        this.channelPoller = channelPoller;
     }
 
     @Override
@@ -59,4 +75,36 @@ public class ChannelGroupsRest extends PxRestCrudBase<PulseChannelGroup, String>
     public List<PulseChannelGroup> findByConnector(@PathVariable("connectorCode") String connectorCode) {
         return channelGroupsCrudService.findByConnectorCode(connectorCode);
     }
+
+    /**
+     * Points dropped since startup because their aggregation window was already closed, by group code.
+     */
+    @GetMapping("late-points")
+    public Map<String, Long> latePoints() {
+        return dpAccumulatorsManager.getLateDroppedPoints();
+    }
+
+    /**
+     * Jitter, duration and overruns of the live polls, by running group.
+     */
+    @GetMapping("poll-stats")
+    public List<GroupPollStats> pollStats() {
+        return groupPollScheduler.getStats();
+    }
+
+    /**
+     * Live connector queries that timed out since startup, by connector code.
+     */
+    @GetMapping("connector-timeouts")
+    public Map<String, Long> connectorTimeouts() {
+        return channelPoller.getConnectorTimeouts();
+    }
+
+    /**
+     * Live connector queries skipped since startup because the previous one had not answered yet, by connector code.
+     */
+    @GetMapping("connector-skips")
+    public Map<String, Long> connectorSkips() {
+        return channelPoller.getConnectorSkips();
+    }
 }
@@ -2,6 +2,8 @@ package com.id.pulse.modules.channel.service;
 
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
 import com.id.pulse.modules.channel.model.PulseChannelGroupEntity;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.config.service.ConfigVersionService;
 import com.id.px3.crud.logic.PxDefaultCrudServiceMongo;
 import com.id.px3.crud.logic.PxDefaultMapper;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +12,7 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,12 +25,14 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 public class ChannelGroupsCrudService extends PxDefaultCrudServiceMongo<PulseChannelGroup, PulseChannelGroupEntity, String> {
 
     private final MongoTemplate mongoTemplate;
+    private final ConfigVersionService configVersionService;
 
-    public ChannelGroupsCrudService(MongoTemplate mongoTemplate) {
+    public ChannelGroupsCrudService(MongoTemplate mongoTemplate, ConfigVersionService configVersionService) {
         super(mongoTemplate,
                 new PxDefaultMapper<>(PulseChannelGroup.class, PulseChannelGroupEntity.class),
                 PxDefaultCrudServiceMongo.DEFAULT_COLLECTION_NAME);
         this.mongoTemplate = mongoTemplate;
+        this.configVersionService = configVersionService;
     }
 
     @Override
@@ -35,6 +40,28 @@ public class ChannelGroupsCrudService extends PxDefaultCrudServiceMongo<PulseCha
         return List.of();
     }
 
+    @Override
+    public PulseChannelGroup save(PulseChannelGroup model) {
+        var group = super.save(model);
+        notifyChanged(group, null);
+        return group;
+    }
+
+    @Override
+    public PulseChannelGroup update(String id, PulseChannelGroup model) {
+        var previousState = findById(id);
+        var group = super.update(id, model);
+        notifyChanged(group, previousState);
+        return group;
+    }
+
+    @Override
+    public void delete(String id) {
+        var group = findById(id);
+        super.delete(id);
+        notifyChanged(group, null);
+    }
+
     public Optional<PulseChannelGroup> findByCode(String code) {
         var entity = mongoTemplate.findOne(query(where(PulseChannelGroupEntity.CODE).is(code)), getEntityClass(), getCollectionName());
         return Optional.ofNullable(entity == null ? null : getMapper().toModel(entity));
@@ -55,4 +82,10 @@ public class ChannelGroupsCrudService extends PxDefaultCrudServiceMongo<PulseCha
                 .map(mapper::toModel)
                 .toList();
     }
+
+    private void notifyChanged(PulseChannelGroup current, PulseChannelGroup previous) {
+        configVersionService.notifyChanged(PulseConfigChangedEvent.forGroups(Arrays.asList(
+                current == null ? null : current.getCode(),
+                previous == null ? null : previous.getCode())));
+    }
 }
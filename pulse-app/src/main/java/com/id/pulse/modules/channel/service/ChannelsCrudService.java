@@ -3,12 +3,15 @@ package com.id.pulse.modules.channel.service;
 import com.id.pulse.modules.channel.model.PulseChannel;
 import com.id.pulse.modules.channel.model.PulseChannelEntity;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.config.service.ConfigVersionService;
 import com.id.px3.crud.logic.PxDefaultCrudServiceMongo;
 import com.id.px3.crud.logic.PxDefaultMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,12 +24,14 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 public class ChannelsCrudService extends PxDefaultCrudServiceMongo<PulseChannel, PulseChannelEntity, String> {
 
     private final MongoTemplate mongoTemplate;
+    private final ConfigVersionService configVersionService;
 
-    public ChannelsCrudService(MongoTemplate mongoTemplate) {
+    public ChannelsCrudService(MongoTemplate mongoTemplate, ConfigVersionService configVersionService) {
         super(mongoTemplate,
                 new PxDefaultMapper<>(PulseChannel.class, PulseChannelEntity.class),
                 PxDefaultCrudServiceMongo.DEFAULT_COLLECTION_NAME);
         this.mongoTemplate = mongoTemplate;
+        this.configVersionService = configVersionService;
     }
 
     @Override
@@ -34,6 +39,28 @@ public class ChannelsCrudService extends PxDefaultCrudServiceMongo<PulseChannel,
         return List.of();
     }
 
+    @Override
+    public PulseChannel save(PulseChannel model) {
+        var channel = super.save(model);
+        notifyChanged(channel, null);
+        return channel;
+    }
+
+    @Override
+    public PulseChannel update(String id, PulseChannel model) {
+        var previousState = findById(id);
+        var channel = super.update(id, model);
+        notifyChanged(channel, previousState);
+        return channel;
+    }
+
+    @Override
+    public void delete(String id) {
+        var channel = findById(id);
+        super.delete(id);
+        notifyChanged(channel, null);
+    }
+
 
     public List<PulseChannel> findByChannelGroupCode(String code) {
         return mongoTemplate.find(query(where(PulseChannelEntity.CHANNEL_GROUP_CODE).is(code)), getEntityClass(), getCollectionName()).stream()
@@ -51,4 +78,11 @@ public class ChannelsCrudService extends PxDefaultCrudServiceMongo<PulseChannel,
         return findByPaths(List.of(path)).stream()
                 .findFirst();
     }
+
+    private void notifyChanged(PulseChannel current, PulseChannel previous) {
+        // Old and new path: a rename invalidates both
+        configVersionService.notifyChanged(PulseConfigChangedEvent.forPaths(Arrays.asList(
+                current == null ? null : current.getPath(),
+                previous == null ? null : previous.getPath())));
+    }
 }
@@ -0,0 +1,43 @@
+package com.id.pulse.modules.config.model;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Published (in-process) when channels, channel groups, measures or alarms change.
+ * <p>
+ * {@code full} is set when the exact change is unknown, e.g. when another node bumped the configuration version:
+ * listeners must then drop everything they cached.
+ *
+ * @param paths      channel, measure or alarm paths that changed (old and new path on rename)
+ * @param groupCodes channel group codes that changed
+ * @param full       whether everything must be considered changed
+ */
+public record PulseConfigChangedEvent(Set<String> paths, Set<String> groupCodes, boolean full) {
+
+    public static PulseConfigChangedEvent forPaths(Collection<String> paths) {
+        return new PulseConfigChangedEvent(clean(paths), Set.of(), false);
+    }
+
+    public static PulseConfigChangedEvent forGroups(Collection<String> groupCodes) {
+        return new PulseConfigChangedEvent(Set.of(), clean(groupCodes), false);
+    }
+
+    public static PulseConfigChangedEvent all() {
+        return new PulseConfigChangedEvent(Set.of(), Set.of(), true);
+    }
+
+    public boolean affectsPath(String path) {
+        return full || paths.contains(path);
+    }
+
+    public boolean affectsGroup(String groupCode) {
+        return full || groupCodes.contains(groupCode);
+    }
+
+    private static Set<String> clean(Collection<String> values) {
+        return values.stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+}
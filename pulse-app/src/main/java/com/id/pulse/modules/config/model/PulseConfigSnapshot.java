@@ -0,0 +1,84 @@
+package com.id.pulse.modules.config.model;
+
+import com.id.pulse.modules.alarms.PulseAlarm;
+import com.id.pulse.modules.channel.model.PulseChannel;
+import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.measures.model.PulseMeasure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the configuration (channel groups, channels, measures and alarms) at a given version.
+ * <p>
+ * The maps are unmodifiable, the models they hold are shared between readers: they must be treated as read-only.
+ * Entries without a key (code, path or id) are left out; on duplicate keys the first entry wins.
+ *
+ * @param version             local snapshot version, grows on every rebuild
+ * @param groupsByCode        channel groups by code
+ * @param channelsByPath      channels by path
+ * @param channelsByGroupCode channels by group code, in load order
+ * @param measuresByPath      measures by path
+ * @param alarmsById          alarms by id
+ */
+public record PulseConfigSnapshot(long version,
+                                  Map<String, PulseChannelGroup> groupsByCode,
+                                  Map<String, PulseChannel> channelsByPath,
+                                  Map<String, List<PulseChannel>> channelsByGroupCode,
+                                  Map<String, PulseMeasure> measuresByPath,
+                                  Map<String, PulseAlarm> alarmsById) {
+
+    public static PulseConfigSnapshot of(long version,
+                                         Collection<PulseChannelGroup> groups,
+                                         Collection<PulseChannel> channels,
+                                         Collection<PulseMeasure> measures,
+                                         Collection<PulseAlarm> alarms) {
+        var channelsByGroupCode = channels.stream()
+                .filter(ch -> ch.getPath() != null && ch.getChannelGroupCode() != null)
+                .collect(Collectors.groupingBy(PulseChannel::getChannelGroupCode, LinkedHashMap::new, Collectors.toList()));
+        channelsByGroupCode.replaceAll((code, list) -> List.copyOf(list));
+
+        return new PulseConfigSnapshot(
+                version,
+                index(groups, PulseChannelGroup::getCode),
+                index(channels, PulseChannel::getPath),
+                Collections.unmodifiableMap(channelsByGroupCode),
+                index(measures, PulseMeasure::getPath),
+                index(alarms, PulseAlarm::getId));
+    }
+
+    public static PulseConfigSnapshot empty() {
+        return of(0, List.of(), List.of(), List.of(), List.of());
+    }
+
+    public Optional<PulseChannelGroup> findGroup(String code) {
+        return Optional.ofNullable(groupsByCode.get(code));
+    }
+
+    public Optional<PulseChannel> findChannel(String path) {
+        return Optional.ofNullable(channelsByPath.get(path));
+    }
+
+    public Optional<PulseMeasure> findMeasure(String path) {
+        return Optional.ofNullable(measuresByPath.get(path));
+    }
+
+    /**
+     * Channels of a group, empty when the group has none.
+     */
+    public List<PulseChannel> channelsOfGroup(String groupCode) {
+        return channelsByGroupCode.getOrDefault(groupCode, List.of());
+    }
+
+    private static <T> Map<String, T> index(Collection<T> items, Function<T, String> key) {
+        return Collections.unmodifiableMap(items.stream()
+                .filter(item -> key.apply(item) != null)
+                .collect(Collectors.toMap(key, Function.identity(), (a, b) -> a, LinkedHashMap::new)));
+    }
+}
@@ -0,0 +1,157 @@
+package com.id.pulse.modules.config.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.alarms.service.AlarmsCrudService;
+import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
+import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.config.model.PulseConfigSnapshot;
+import com.id.pulse.modules.measures.service.MeasuresCrudService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link PulseConfigSnapshot}, read by the hot paths (polling, measure transformation) instead of
+ * querying Mongo on every cycle.
+ * <p>
+ * The snapshot is loaded once and rebuilt after {@link PulseConfigChangedEvent}s, which the CRUD services publish
+ * on local writes and {@link ConfigVersionService} on changes made by other nodes. Rebuilds run in the background,
+ * {@code snapshot-debounce-ms} after the first change: the changes of a bulk edit share one rebuild, and readers keep
+ * the previous snapshot meanwhile. The new snapshot is swapped in atomically: readers see either the old or the new
+ * configuration, never a mix. When a rebuild fails the previous snapshot is kept and the rebuild is rescheduled.
+ */
+@Service
+@Slf4j
+public class ConfigSnapshotService {
+
+    private final ChannelGroupsCrudService channelGroupsCrudService;
+    private final ChannelsCrudService channelsCrudService;
+    private final MeasuresCrudService measuresCrudService;
+    private final AlarmsCrudService alarmsCrudService;
+    private final AppConfig appConfig;
+
+    private final AtomicReference<PulseConfigSnapshot> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService reloader;
+    private volatile boolean stale;
+    // System.nanoTime() when the load of the current snapshot started, set after the snapshot is swapped in
+    private volatile long loadStartNanos = Long.MIN_VALUE;
+
+    public ConfigSnapshotService(ChannelGroupsCrudService channelGroupsCrudService,
+                                 ChannelsCrudService channelsCrudService,
+                                 MeasuresCrudService measuresCrudService,
+                                 AlarmsCrudService alarmsCrudService,
+                                 AppConfig appConfig) {
+        this.channelGroupsCrudService = channelGroupsCrudService;
+        this.channelsCrudService = channelsCrudService;
+        this.measuresCrudService = measuresCrudService;
+        this.alarmsCrudService = alarmsCrudService;
+        this.appConfig = appConfig;
+        this.reloader = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("config-snapshot-reload").factory());
+    }
+
+    /**
+     * Current snapshot, loaded on first use. After a change, the previous snapshot until the rebuild is done.
+     */
+    public PulseConfigSnapshot get() {
+        var snapshot = current.get();
+        return snapshot != null ? snapshot : refresh();
+    }
+
+    /**
+     * {@link System#nanoTime()} when the load of the current snapshot started: writes completed before are in it.
+     * Read it before {@link #get()}, it may then lag behind the snapshot but never run ahead of it.
+     */
+    public long getLoadStartNanos() {
+        return loadStartNanos;
+    }
+
+    /**
+     * Reloads the whole configuration and swaps it in.
+     */
+    public synchronized PulseConfigSnapshot refresh() {
+        // Marked first: a change landing while loading leaves the flag set and triggers another rebuild
+        stale = false;
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        try {
+            var snapshot = PulseConfigSnapshot.of(
+                    versions.incrementAndGet(),
+                    channelGroupsCrudService.findAll(),
+                    channelsCrudService.findAll(),
+                    measuresCrudService.findAll(),
+                    alarmsCrudService.findAll());
+            current.set(snapshot);
+            loadStartNanos = startNanos;
+            log.debug("Configuration snapshot {} loaded in {} ms: {} groups, {} channels, {} measures, {} alarms",
+                    snapshot.version(), System.currentTimeMillis() - start, snapshot.groupsByCode().size(),
+                    snapshot.channelsByPath().size(), snapshot.measuresByPath().size(), snapshot.alarmsById().size());
+            return snapshot;
+        } catch (RuntimeException ex) {
+            stale = true;
+            throw ex;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            var snapshot = refresh();
+            log.info("Configuration snapshot loaded: {} groups, {} channels, {} measures",
+                    snapshot.groupsByCode().size(), snapshot.channelsByPath().size(), snapshot.measuresByPath().size());
+        } catch (Exception ex) {
+            log.warn("Configuration snapshot warm-up failed, it will be loaded on first use", ex);
+        }
+    }
+
+    @EventListener
+    public void onConfigChanged(PulseConfigChangedEvent event) {
+        stale = true;
+        scheduleReload();
+    }
+
+    @PreDestroy
+    public void close() {
+        reloader.shutdownNow();
+    }
+
+    // At most one rebuild pending: the changes arriving until it runs are picked up by it
+    private void scheduleReload() {
+        if (!reloadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            reloader.schedule(this::reload, appConfig.getConfigSnapshotDebounceMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            reloadScheduled.set(false);
+        }
+    }
+
+    private void reload() {
+        // Cleared first: a change landing while loading schedules another rebuild
+        reloadScheduled.set(false);
+        if (!stale) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception ex) {
+            log.warn("Failed to rebuild the configuration snapshot, keeping version {}",
+                    current.get() != null ? current.get().version() : null, ex);
+            scheduleReload();
+        }
+    }
+}
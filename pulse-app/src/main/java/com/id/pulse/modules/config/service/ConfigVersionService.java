@@ -0,0 +1,96 @@
+package com.id.pulse.modules.config.service;
+
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps configuration caches consistent across nodes.
+ * <p>
+ * Every local change bumps a version stamp stored in Mongo and publishes a {@link PulseConfigChangedEvent}.
+ * The stamp is polled: when it moved because of another node, a full invalidation event is published locally.
+ */
+@Service
+@Slf4j
+public class ConfigVersionService {
+
+    static final String COLLECTION_NAME = "PulseConfigVersion";
+    static final String DOC_ID = "pulse-config";
+    static final String VERSION = "version";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong knownVersion = new AtomicLong(-1);
+
+    public ConfigVersionService(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public long getKnownVersion() {
+        return knownVersion.get();
+    }
+
+    /**
+     * Records a local configuration change: bumps the shared version and notifies the local listeners.
+     */
+    public void notifyChanged(PulseConfigChangedEvent event) {
+        long previous = -1;
+        boolean remoteChanges = false;
+        try {
+            long version = bumpVersion();
+            previous = knownVersion.getAndAccumulate(version, Math::max);
+            remoteChanges = previous >= 0 && version > previous + 1;
+        } catch (Exception ex) {
+            log.warn("Failed to bump configuration version", ex);
+        }
+
+        eventPublisher.publishEvent(event);
+        if (remoteChanges) {
+            // Other nodes changed the configuration since the last poll
+            log.debug("Configuration version jumped from {}, invalidating all", previous);
+            eventPublisher.publishEvent(PulseConfigChangedEvent.all());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${pulse.config.version-poll-ms:5000}")
+    public void pollVersion() {
+        long version;
+        try {
+            version = readVersion();
+        } catch (Exception ex) {
+            log.warn("Failed to read configuration version", ex);
+            return;
+        }
+        // Versions only grow: a stale read racing with a local bump must not look like a change
+        long previous = knownVersion.getAndAccumulate(version, Math::max);
+        if (previous >= 0 && version > previous) {
+            log.info("Configuration changed on another node (version {} -> {}), invalidating caches", previous, version);
+            eventPublisher.publishEvent(PulseConfigChangedEvent.all());
+        }
+    }
+
+    private long bumpVersion() {
+        Document doc = mongoTemplate.getCollection(COLLECTION_NAME).findOneAndUpdate(
+                Filters.eq("_id", DOC_ID),
+                Updates.inc(VERSION, 1L),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return doc == null ? 0 : doc.get(VERSION, Number.class).longValue();
+    }
+
+    private long readVersion() {
+        Document doc = mongoTemplate.getCollection(COLLECTION_NAME).find(Filters.eq("_id", DOC_ID)).first();
+        return doc == null ? 0 : doc.get(VERSION, Number.class).longValue();
+    }
+}
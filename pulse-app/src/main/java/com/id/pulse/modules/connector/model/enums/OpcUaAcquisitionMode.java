@@ -0,0 +1,19 @@
+package com.id.pulse.modules.connector.model.enums;
+
+/**
+ * How an OPC UA connector acquires channel values (connector param {@code acquisitionMode}).
+ */
+public enum OpcUaAcquisitionMode {
+    /**
+     * One Read request per channel, on every poll.
+     */
+    POLL_SINGLE,
+    /**
+     * Read requests of up to {@code readBatchSize} nodes, on every poll.
+     */
+    POLL_BATCH,
+    /**
+     * Monitored items push value changes into a local buffer, polls read the buffer without network calls.
+     */
+    SUBSCRIPTION
+}
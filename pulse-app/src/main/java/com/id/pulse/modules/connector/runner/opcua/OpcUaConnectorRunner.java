@@ -4,41 +4,71 @@ import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.channel.model.PulseChannel;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
 import com.id.pulse.modules.connector.model.PulseConnector;
+import com.id.pulse.modules.connector.model.enums.OpcUaAcquisitionMode;
 import com.id.pulse.modules.connector.model.enums.PulseConnectorStatus;
 import com.id.pulse.modules.connector.runner.IPulseConnectorRunner;
 import com.id.px3.utils.SafeConvert;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
 import org.eclipse.milo.opcua.sdk.client.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaSubscription;
 import org.eclipse.milo.opcua.stack.core.NodeIds;
 import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.UaException;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePathResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePathTarget;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePathElement;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 @Component
 @Scope(BeanDefinition.SCOPE_PROTOTYPE)
 @Slf4j
 public class OpcUaConnectorRunner implements IPulseConnectorRunner {
 
+    // Browse path segment qualified with its namespace index, e.g. "2:Temperature"
+    private static final Pattern QUALIFIED_SEGMENT = Pattern.compile("^(\\d+):(.+)$");
+
     private final ConcurrentHashMap<String, NodeId> nodeIdMap = new ConcurrentHashMap<>();
+    // Source paths the server did not know, with the time they are looked up again: not browsed on every poll
+    private final ConcurrentHashMap<String, Long> unresolvedUntil = new ConcurrentHashMap<>();
+    // SUBSCRIPTION mode: latest value pushed by the server for each monitored node
+    private final ConcurrentHashMap<NodeId, DataValue> latestValues = new ConcurrentHashMap<>();
+    private final Set<NodeId> monitoredNodeIds = ConcurrentHashMap.newKeySet();
+    private final Object subscriptionLock = new Object();
+    private volatile OpcUaSubscription subscription;
+    private volatile OpcUaClient subscriptionClient;
+    private volatile OpcUaAcquisitionMode acquisitionMode = OpcUaAcquisitionMode.POLL_SINGLE;
+    private volatile int readBatchSize;
+    private volatile double publishingIntervalMs;
+    private volatile double samplingIntervalMs;
     private volatile boolean running = false;
     private OpcUaClient opcUaClient;
     private volatile Thread monitorThread;
     private volatile String endpointUrl;
     private volatile long reconnectSeconds;
+    private volatile long unresolvedRetrySeconds;
     private volatile String batchId;
 
     @Override
@@ -48,9 +78,15 @@ public class OpcUaConnectorRunner implements IPulseConnectorRunner {
                 .map(Object::toString)
                 .orElse("");
         this.reconnectSeconds = SafeConvert.toLong(connector.getParams().getOrDefault("reconnectSeconds", 5)).orElse(5L);
+        this.unresolvedRetrySeconds = SafeConvert.toLong(connector.getParams().getOrDefault("unresolvedRetrySeconds", 60)).orElse(60L);
+        unresolvedUntil.clear();
+        this.acquisitionMode = resolveAcquisitionMode(connector.getParams().get("acquisitionMode"));
+        this.readBatchSize = Math.max(1, SafeConvert.toInteger(connector.getParams().getOrDefault("readBatchSize", 500)).orElse(500));
+        this.publishingIntervalMs = SafeConvert.toDouble(connector.getParams().getOrDefault("publishingIntervalMs", 1000)).orElse(1000.0);
+        this.samplingIntervalMs = SafeConvert.toDouble(connector.getParams().getOrDefault("samplingIntervalMs", publishingIntervalMs)).orElse(publishingIntervalMs);
 
         running = true;
-        log.debug("Connecting to OPC UA server at {} (retry every {}s)", endpointUrl, reconnectSeconds);
+        log.debug("Connecting to OPC UA server at {} (retry every {}s, {} acquisition)", endpointUrl, reconnectSeconds, acquisitionMode);
         while (running) {
             try {
                 opcUaClient = OpcUaClient.create(endpointUrl);
@@ -89,6 +125,7 @@ public class OpcUaConnectorRunner implements IPulseConnectorRunner {
                 }
             }
             if (opcUaClient != null) {
+                deleteSubscription();
                 opcUaClient.disconnect();
                 log.info("Disconnected from OPC UA server");
             } else {
@@ -180,61 +217,185 @@ public class OpcUaConnectorRunner implements IPulseConnectorRunner {
 
             var dataPoints = new ArrayList<PulseDataPoint>();
 
-            if (opcUaClient == null) {
+            OpcUaClient client = opcUaClient;
+            if (client == null) {
                 log.warn("OPC UA client is not connected. Query will return no data.");
                 return dataPoints;
             }
 
-            channelsMap.forEach((group, channels) -> {
-                // Find NodeId for channels
-                channels.forEach(channel -> {
-                            var nodeId = nodeIdMap.computeIfAbsent("%s:%s".formatted(group.getCode(), channel.getSourcePath()), k ->
-                                    browseAndFindNode(opcUaClient, NodeIds.RootFolder, channel.getSourcePath())
-                            );
-                            if (nodeId != null) {
-                                // Read values
-                                try {
-                                    var opcValue = opcUaClient.readValue(0, TimestampsToReturn.Server, nodeId);
-
-                                    // Try to convert the read value into the expected type
-                                    var optValue = switch (channel.getDataType()) {
-                                        case DOUBLE -> SafeConvert.toDouble(opcValue.getValue().getValue());
-                                        case LONG -> SafeConvert.toLong(opcValue.getValue().getValue());
-                                        case BOOLEAN -> SafeConvert.toBoolean(opcValue.getValue().getValue());
-                                        case STRING -> SafeConvert.toString(opcValue.getValue().getValue());
-                                    };
-
-                                    // If conversion is successful, add to the results
-                                    optValue.ifPresentOrElse(convValue -> {
-                                                dataPoints.add(PulseDataPoint.builder()
-                                                        .groupCode(group.getCode())
-                                                        .path(channel.getPath())
-                                                        .val(convValue)
-                                                        .tms(getOpcTs(opcValue))
-                                                        .type(channel.getDataType())
-                                                        .batchId(batchId)
-                                                        .build());
-                                            },
-                                            () -> log.warn("Failed to convert value for channel '%s'".formatted(channel.getPath()))
-                                    );
-
-                                } catch (UaException e) {
-                                    log.error("Error reading value for channel '%s' in group '%s'".formatted(channel.getPath(), group.getCode()), e);
-                                    if (isConnectionClosed(e)) {
-                                        log.warn("Detected OPC UA connection closed during read. Marking client as disconnected to trigger reconnect.");
-                                        safeDisconnect();
-                                        opcUaClient = null;
-                                    }
+            // Find NodeId for channels, resolving the unknown ones in bulk
+            var reads = resolveReads(client, channelsMap);
+            if (reads.isEmpty()) {
+                return dataPoints;
+            }
+
+            try {
+                switch (acquisitionMode) {
+                    case POLL_SINGLE -> {
+                        for (ChannelRead read : reads) {
+                            try {
+                                addDataPoint(dataPoints, read, client.readValue(0, TimestampsToReturn.Server, read.nodeId()));
+                            } catch (UaException e) {
+                                if (isConnectionClosed(e)) {
+                                    throw e;
                                 }
+                                log.error("Error reading value for channel '%s' in group '%s'".formatted(read.channel().getPath(), read.group().getCode()), e);
+                            }
+                        }
+                    }
+                    case POLL_BATCH -> {
+                        for (int from = 0; from < reads.size(); from += readBatchSize) {
+                            var batch = reads.subList(from, Math.min(reads.size(), from + readBatchSize));
+                            var values = client.readValues(0, TimestampsToReturn.Server,
+                                    batch.stream().map(ChannelRead::nodeId).toList());
+                            for (int i = 0; i < batch.size(); i++) {
+                                addDataPoint(dataPoints, batch.get(i), values.get(i));
+                            }
+                        }
+                    }
+                    case SUBSCRIPTION -> {
+                        ensureMonitored(client, reads);
+                        for (ChannelRead read : reads) {
+                            var value = latestValues.get(read.nodeId());
+                            if (value != null) {
+                                addDataPoint(dataPoints, read, value);
                             }
                         }
-                );
-            });
+                    }
+                }
+            } catch (UaException e) {
+                log.error("Error reading values from OPC UA server at {}", endpointUrl, e);
+                if (isConnectionClosed(e)) {
+                    log.warn("Detected OPC UA connection closed during read. Marking client as disconnected to trigger reconnect.");
+                    safeDisconnect();
+                    opcUaClient = null;
+                }
+            }
 
             return dataPoints;
         });
     }
 
+    private record ChannelRead(PulseChannelGroup group, PulseChannel channel, NodeId nodeId) {
+    }
+
+    private List<ChannelRead> resolveReads(OpcUaClient client, Map<PulseChannelGroup, List<PulseChannel>> channelsMap) {
+        long now = System.currentTimeMillis();
+        var unresolved = new LinkedHashSet<String>();
+        channelsMap.forEach((group, channels) -> channels.forEach(channel -> {
+            if (channel.getSourcePath() != null
+                && !nodeIdMap.containsKey(nodeKey(group, channel))
+                && unresolvedUntil.getOrDefault(channel.getSourcePath(), Long.MIN_VALUE) <= now) {
+                unresolved.add(channel.getSourcePath());
+            }
+        }));
+        var notFound = new HashSet<String>();
+        var resolved = unresolved.isEmpty() ? Map.<String, NodeId>of() : resolveNodeIds(client, unresolved, notFound);
+        unresolved.forEach(unresolvedUntil::remove);
+        notFound.forEach(sourcePath -> unresolvedUntil.put(sourcePath, now + unresolvedRetrySeconds * 1000L));
+
+        var reads = new ArrayList<ChannelRead>();
+        channelsMap.forEach((group, channels) -> channels.forEach(channel -> {
+            var nodeId = nodeIdMap.get(nodeKey(group, channel));
+            if (nodeId == null && channel.getSourcePath() != null) {
+                nodeId = resolved.get(channel.getSourcePath());
+                if (nodeId != null) {
+                    nodeIdMap.put(nodeKey(group, channel), nodeId);
+                }
+            }
+            if (nodeId != null) {
+                reads.add(new ChannelRead(group, channel, nodeId));
+            }
+        }));
+        return reads;
+    }
+
+    private static String nodeKey(PulseChannelGroup group, PulseChannel channel) {
+        return "%s:%s".formatted(group.getCode(), channel.getSourcePath());
+    }
+
+    private void addDataPoint(List<PulseDataPoint> dataPoints, ChannelRead read, DataValue opcValue) {
+        var channel = read.channel();
+        Object raw = opcValue.getValue() != null ? opcValue.getValue().getValue() : null;
+
+        // Try to convert the read value into the expected type
+        var optValue = switch (channel.getDataType()) {
+            case DOUBLE -> SafeConvert.toDouble(raw);
+            case LONG -> SafeConvert.toLong(raw);
+            case BOOLEAN -> SafeConvert.toBoolean(raw);
+            case STRING -> SafeConvert.toString(raw);
+        };
+
+        // If conversion is successful, add to the results
+        optValue.ifPresentOrElse(convValue -> {
+                    dataPoints.add(PulseDataPoint.builder()
+                            .groupCode(read.group().getCode())
+                            .path(channel.getPath())
+                            .val(convValue)
+                            .tms(getOpcTs(opcValue))
+                            .type(channel.getDataType())
+                            .batchId(batchId)
+                            .build());
+                },
+                () -> log.warn("Failed to convert value for channel '%s'".formatted(channel.getPath()))
+        );
+    }
+
+    /**
+     * Creates the subscription on first use (again after a reconnect) and adds a monitored item for every node not
+     * monitored yet. Network calls only happen when the set of monitored nodes grows.
+     */
+    private void ensureMonitored(OpcUaClient client, List<ChannelRead> reads) throws UaException {
+        synchronized (subscriptionLock) {
+            if (subscription == null || subscriptionClient != client) {
+                // Values of a previous session would be served as current
+                monitoredNodeIds.clear();
+                latestValues.clear();
+                var created = new OpcUaSubscription(client);
+                created.setPublishingInterval(publishingIntervalMs);
+                created.create();
+                subscription = created;
+                subscriptionClient = client;
+                log.info("Created OPC UA subscription on {} (publishing every {} ms)", endpointUrl, publishingIntervalMs);
+            }
+
+            var added = new ArrayList<NodeId>();
+            for (ChannelRead read : reads) {
+                NodeId nodeId = read.nodeId();
+                if (monitoredNodeIds.contains(nodeId) || added.contains(nodeId)) {
+                    continue;
+                }
+                var item = OpcUaMonitoredItem.newDataItem(nodeId);
+                item.setSamplingInterval(samplingIntervalMs);
+                item.setDataValueListener((monitoredItem, value) -> latestValues.put(nodeId, value));
+                subscription.addMonitoredItem(item);
+                added.add(nodeId);
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            subscription.synchronizeMonitoredItems();
+            monitoredNodeIds.addAll(added);
+            log.debug("Monitoring {} more nodes on {} ({} in total)", added.size(), endpointUrl, monitoredNodeIds.size());
+        }
+    }
+
+    private void deleteSubscription() {
+        synchronized (subscriptionLock) {
+            if (subscription != null) {
+                try {
+                    subscription.delete();
+                } catch (Exception e) {
+                    log.debug("Ignoring exception during subscription delete: {}", e.getMessage());
+                }
+            }
+            subscription = null;
+            subscriptionClient = null;
+            monitoredNodeIds.clear();
+            latestValues.clear();
+        }
+    }
+
     @Override
     public String getBatchId() {
         return batchId;
@@ -256,57 +417,142 @@ public class OpcUaConnectorRunner implements IPulseConnectorRunner {
         return opcTs;
     }
 
-    private NodeId browseAndFindNode(OpcUaClient client, NodeId browseRoot, String sourcePath) {
-        if (sourcePath == null || sourcePath.isEmpty()) {
-            return null;
+    /**
+     * Resolves source paths to node ids: NodeId strings ("ns=2;s=Tag") are parsed, paths whose segments all carry
+     * their namespace index ("/0:Objects/2:Device/2:Tag") are translated in bulk with TranslateBrowsePathsToNodeIds,
+     * the others are browsed level by level from the root, sharing the browsed levels between paths.
+     *
+     * @param notFound collects the paths the server answered it does not know; not those that failed on an error
+     */
+    private Map<String, NodeId> resolveNodeIds(OpcUaClient client, Set<String> sourcePaths, Set<String> notFound) {
+        var resolved = new HashMap<String, NodeId>();
+        var qualified = new ArrayList<String>();
+        var browsed = new HashMap<NodeId, List<? extends UaNode>>();
+
+        for (String sourcePath : sourcePaths) {
+            NodeId nodeId = NodeId.parseOrNull(sourcePath);
+            if (nodeId != null) {
+                resolved.put(sourcePath, nodeId);
+            } else if (toBrowsePath(sourcePath) != null) {
+                qualified.add(sourcePath);
+            } else {
+                try {
+                    nodeId = browseAndFindNode(client, NodeIds.RootFolder, sourcePath, browsed);
+                } catch (UaException e) {
+                    log.error("Error browsing OPC UA path '{}' on {}", sourcePath, endpointUrl, e);
+                    continue;
+                }
+                if (nodeId != null) {
+                    resolved.put(sourcePath, nodeId);
+                } else {
+                    log.warn("OPC UA browse path '{}' not found", sourcePath);
+                    notFound.add(sourcePath);
+                }
+            }
         }
-        if (client == null) {
+
+        for (int from = 0; from < qualified.size(); from += readBatchSize) {
+            var batch = qualified.subList(from, Math.min(qualified.size(), from + readBatchSize));
+            try {
+                var response = client.translateBrowsePaths(batch.stream().map(this::toBrowsePath).toList());
+                BrowsePathResult[] results = response.getResults();
+                for (int i = 0; i < batch.size() && results != null && i < results.length; i++) {
+                    BrowsePathTarget[] targets = results[i].getTargets();
+                    if (!results[i].getStatusCode().isGood() || targets == null || targets.length == 0) {
+                        log.warn("OPC UA browse path '{}' not found: {}", batch.get(i), results[i].getStatusCode());
+                        notFound.add(batch.get(i));
+                        continue;
+                    }
+                    String sourcePath = batch.get(i);
+                    targets[0].getTargetId().toNodeId(client.getNamespaceTable())
+                            .ifPresent(nodeId -> resolved.put(sourcePath, nodeId));
+                }
+            } catch (Exception e) {
+                log.error("Error translating {} browse paths on {}", batch.size(), endpointUrl, e);
+            }
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Browse path from the root folder when every segment is qualified with its namespace index, null otherwise.
+     */
+    private BrowsePath toBrowsePath(String sourcePath) {
+        var segments = splitPath(sourcePath);
+        if (segments.length == 0) {
             return null;
         }
+        var elements = new RelativePathElement[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            var matcher = QUALIFIED_SEGMENT.matcher(segments[i]);
+            if (!matcher.matches()) {
+                return null;
+            }
+            elements[i] = new RelativePathElement(NodeIds.HierarchicalReferences, false, true,
+                    new QualifiedName(Integer.parseInt(matcher.group(1)), matcher.group(2)));
+        }
+        return new BrowsePath(NodeIds.RootFolder, new RelativePath(elements));
+    }
+
+    private static String[] splitPath(String sourcePath) {
+        if (sourcePath == null || sourcePath.isEmpty()) {
+            return new String[0];
+        }
         // Remove leading slash if present, then split into segments
         String trimmed = sourcePath.startsWith("/")
                 ? sourcePath.substring(1)
                 : sourcePath;
-        String[] segments = trimmed.split("/");
-        return browseAndFindNode(client, browseRoot, segments, 0);
+        return trimmed.split("/");
     }
 
-    private NodeId browseAndFindNode(
-            OpcUaClient client,
-            NodeId currentRoot,
-            String[] segments,
-            int index
-    ) {
-        // If we’ve consumed all segments, currentRoot is our target
-        if (index >= segments.length) {
-            return currentRoot;
-        }
-
-        if (client == null) {
+    /**
+     * @return the node at the path, null when a segment is not found
+     * @throws UaException when browsing a level failed
+     */
+    private NodeId browseAndFindNode(OpcUaClient client,
+                                     NodeId browseRoot,
+                                     String sourcePath,
+                                     Map<NodeId, List<? extends UaNode>> browsed) throws UaException {
+        String[] segments = splitPath(sourcePath);
+        if (segments.length == 0 || client == null) {
             return null;
         }
 
-        String segment = segments[index];
-        try {
-            // Browse only the direct children of currentRoot
-            List<? extends UaNode> children = client
-                    .getAddressSpace()
-                    .browseNodes(currentRoot);
+        NodeId currentRoot = browseRoot;
+        for (String segment : segments) {
+            List<? extends UaNode> children = browsed.get(currentRoot);
+            if (children == null) {
+                // Browse only the direct children of currentRoot, once per resolution
+                children = client.getAddressSpace().browseNodes(currentRoot);
+                browsed.put(currentRoot, children);
+            }
 
+            NodeId found = null;
             for (UaNode child : children) {
-                String name = child.getBrowseName().getName();
-                if (segment.equals(name)) {
-                    // Found this level—recurse into the next
-                    NodeId foundId = child.getNodeId();
-                    return browseAndFindNode(client, foundId, segments, index + 1);
+                if (segment.equals(child.getBrowseName().getName())) {
+                    found = child.getNodeId();
+                    break;
                 }
             }
-        } catch (UaException e) {
-            log.error("Error browsing nodes under {} at segment '{}'", currentRoot, segment, e);
+            if (found == null) {
+                // Not found at this level
+                return null;
+            }
+            currentRoot = found;
         }
-
-        // Not found at this level or an error occurred
-        return null;
+        return currentRoot;
     }
 
+    private static OpcUaAcquisitionMode resolveAcquisitionMode(Object raw) {
+        if (raw == null || raw.toString().isBlank()) {
+            return OpcUaAcquisitionMode.POLL_SINGLE;
+        }
+        try {
+            return OpcUaAcquisitionMode.valueOf(raw.toString().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown OPC UA acquisitionMode '{}', using {}", raw, OpcUaAcquisitionMode.POLL_SINGLE);
+            return OpcUaAcquisitionMode.POLL_SINGLE;
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import com.id.pulse.utils.PulseColumnarFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a streamed extraction in the binary columnar layout described in {@link PulseColumnarFormat},
+ * one frame per chunk.
+ */
+public class ColumnarExtractionSink implements ExtractionSink {
+
+    private final PulseColumnarFormat.Writer writer;
+
+    public ColumnarExtractionSink(OutputStream out) throws IOException {
+        this.writer = PulseColumnarFormat.writer(out);
+    }
+
+    @Override
+    public void write(String groupCode, String path, PulseDataType type, ChunkColumns columns) throws IOException {
+        writer.writeSeries(groupCode, path, type, columns.ts(), columns.v());
+    }
+
+    @Override
+    public void complete() throws IOException {
+        writer.end();
+    }
+}
@@ -4,19 +4,23 @@ import com.id.pulse.config.AppConfig;
 import com.id.pulse.model.PulseDataMatrix;
 import com.id.pulse.modules.channel.model.PulseChannel;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
-import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
-import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
 import com.id.pulse.modules.datapoints.model.PulseChunk;
-import com.id.pulse.modules.datapoints.service.ChunkMetadataCrudService;
-import com.id.pulse.modules.measures.model.PulseMeasure;
-import com.id.pulse.modules.measures.service.MeasuresCrudService;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCache;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader;
+import com.id.pulse.modules.hottier.service.HotTierService;
+import com.id.pulse.modules.rollups.logic.RollupAggregator;
+import com.id.pulse.modules.rollups.service.RollupService;
 import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
 import com.id.pulse.utils.PulseDataMatrixBuilder;
-import com.id.px3.utils.ThrowingFn;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -25,13 +29,11 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Component
 @Scope(BeanDefinition.SCOPE_PROTOTYPE)
@@ -40,219 +42,386 @@ public class DataExtractorProcessor {
 
     public static final String MEASURES_GROUP = "_MEASURES_";
 
+    // Runs of adjacent cached chunks a query excludes by time at most, per path
+    static final int MAX_EXCLUDED_RUNS = 8;
+
     private final AppConfig appConfig;
-    private final ChannelsCrudService channelsCrudService;
-    private final ChannelGroupsCrudService channelGroupsCrudService;
-    private final ChunkMetadataCrudService chunkMetadataCrudService;
-    private final MeasuresCrudService measuresCrudService;
+    private final ConfigSnapshotService configSnapshotService;
+    private final ChunkMetadataCache chunkMetadataCache;
     private final MongoTemplate mongoTemplate;
+    private final RollupService rollupService;
+    private final ExtractionScheduler extractionScheduler;
+    private final ChunkReadCache chunkReadCache;
+    private final HotTierService hotTierService;
 
     public DataExtractorProcessor(AppConfig appConfig,
-                                  ChannelsCrudService channelsCrudService,
-                                  ChannelGroupsCrudService channelGroupsCrudService,
-                                  ChunkMetadataCrudService chunkMetadataCrudService,
-                                  MongoClient mongoClient, MeasuresCrudService measuresCrudService,
-                                  MongoTemplate mongoTemplate) {
+                                  ConfigSnapshotService configSnapshotService,
+                                  ChunkMetadataCache chunkMetadataCache,
+                                  MongoClient mongoClient,
+                                  MongoTemplate mongoTemplate,
+                                  RollupService rollupService,
+                                  ExtractionScheduler extractionScheduler,
+                                  ChunkReadCache chunkReadCache,
+                                  HotTierService hotTierService) {
 
         this.appConfig = appConfig;
-        this.channelsCrudService = channelsCrudService;
-        this.channelGroupsCrudService = channelGroupsCrudService;
-        this.chunkMetadataCrudService = chunkMetadataCrudService;
-        this.measuresCrudService = measuresCrudService;
+        this.configSnapshotService = configSnapshotService;
+        this.chunkMetadataCache = chunkMetadataCache;
         this.mongoTemplate = mongoTemplate;
+        this.rollupService = rollupService;
+        this.extractionScheduler = extractionScheduler;
+        this.chunkReadCache = chunkReadCache;
+        this.hotTierService = hotTierService;
     }
 
     public PulseDataMatrix extract(List<String> paths, Instant tsReadStart, Instant tsReadEnd) {
         if (paths == null || paths.isEmpty() || tsReadStart == null || tsReadEnd == null) {
             throw new IllegalArgumentException("Invalid input parameters.");
         }
+        long tsReadStartMillis = tsReadStart.toEpochMilli();
+        long tsReadEndMillis = tsReadEnd.toEpochMilli();
 
-        // Find channels and groups
-        var channelsMap = channelsCrudService.findByPaths(paths).stream().collect(Collectors.toMap(PulseChannel::getPath, ch -> ch));
-        var channelGroupCodes = channelsMap.values().stream().map(PulseChannel::getChannelGroupCode).collect(Collectors.toSet());
-        var channelGroupsMap = channelGroupsCrudService.findByCodes(new ArrayList<>(channelGroupCodes)).stream().collect(Collectors.toMap(PulseChannelGroup::getCode, gr -> gr));
-
-        // Find channels metadata
-        var channelMetadataMap = buildMetadataMap(chunkMetadataCrudService.findByPaths(paths));
-
-        // Process group by group
-        List<CompletableFuture<PulseDataMatrix>> channelsTasks;
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            channelsTasks = channelGroupsMap.values().stream().map(gr ->
-                    CompletableFuture.supplyAsync(() -> extractChannelGroup(gr, channelsMap, channelMetadataMap, tsReadStart, tsReadEnd), executor)
-            ).toList();
+        var targets = resolveTargets(paths);
+        Map<String, PulseChunkMetadata> metadataMap = new HashMap<>();
+        Map<String, List<String>> pathsByGroup = new LinkedHashMap<>();
+        for (PathTarget target : targets) {
+            metadataMap.put(target.path(), target.metadata());
+            pathsByGroup.computeIfAbsent(target.groupCode(), k -> new ArrayList<>()).add(target.path());
         }
 
-        // Find measures and groups
-        var measuresMap = measuresCrudService.findByPaths(paths).stream().collect(Collectors.toMap(PulseMeasure::getPath, ch -> ch));
-
-        // Find measures metadata
-        var measureMetadataMap = buildMetadataMap(chunkMetadataCrudService.findByPaths(paths));
-
-        // Process group by group
-        CompletableFuture<PulseDataMatrix> measuresTask;
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            measuresTask = CompletableFuture.supplyAsync(() -> extractMeasureGroup(measuresMap, measureMetadataMap, tsReadStart, tsReadEnd), executor);
-        }
+        // One query per group, collection and batch of paths, all run in parallel
+        List<ExtractionScheduler.CursorTask<PulseDataMatrix>> tasks = new ArrayList<>();
+        pathsByGroup.forEach((groupCode, groupPaths) ->
+                addQueryTasks(tasks, groupCode, groupPaths, metadataMap, tsReadStartMillis, tsReadEndMillis));
 
         // Merge matrix
         return PulseDataMatrix.builder()
-                .addMatrices(channelsTasks.stream().map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
-                .addMatrices(Stream.of(measuresTask).map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
+                .addMatrices(extractionScheduler.invokeAll(tasks))
                 .build();
     }
 
-    private PulseDataMatrix extractChannelGroup(PulseChannelGroup gr,
-                                                Map<String, PulseChannel> channelsMap,
-                                                Map<String, PulseChunkMetadata> metaMap,
-                                                Instant tsReadStart,
-                                                Instant tsReadEnd) {
-        // Split the channels list into smaller batches (up to AppConfig.extractorReadThreads)
-        // and process each batch in parallel
-        List<CompletableFuture<PulseDataMatrix>> tasks = new ArrayList<>();
-        for (int batchStart = 0; batchStart < channelsMap.size(); batchStart += appConfig.getExtractorReadThreads()) {
-            int batchEnd = Math.min(batchStart + appConfig.getExtractorReadThreads(), channelsMap.size());
-            List<PulseChannel> channelsBatch = new ArrayList<>(channelsMap.values()).subList(batchStart, batchEnd);
-            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-                tasks.add(CompletableFuture.supplyAsync(() -> extractChannelBatch(gr, channelsBatch, metaMap, tsReadStart, tsReadEnd), executor));
-            }
+    /**
+     * Streams the chunks of the requested paths to the sink instead of building a matrix.
+     * <p>
+     * Paths are read one at a time, in request order, with one cursor sorted by chunk start: at most one cursor batch
+     * ({@code pulse.extractor.stream-batch-size} chunks) is held in memory, whatever the requested range. The extraction
+     * stops when the sink fails or the calling thread is interrupted, closing the cursor. A downsampling sink is fed
+     * from the rollup tiers when they cover the range.
+     */
+    public void stream(List<String> paths, Instant tsReadStart, Instant tsReadEnd, ExtractionSink sink) throws IOException {
+        if (paths == null || paths.isEmpty() || tsReadStart == null || tsReadEnd == null || sink == null) {
+            throw new IllegalArgumentException("Invalid input parameters.");
         }
-        return PulseDataMatrix.builder()
-                .addMatrices(tasks.stream().map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
-                .build();
-    }
 
-    private PulseDataMatrix extractMeasureGroup(Map<String, PulseMeasure> measuresMap,
-                                                Map<String, PulseChunkMetadata> metaMap,
-                                                Instant tsReadStart,
-                                                Instant tsReadEnd) {
-        // Split the measures list into smaller batches (up to AppConfig.extractorReadThreads)
-        // and process each batch in parallel
-        List<CompletableFuture<PulseDataMatrix>> tasks = new ArrayList<>();
-        for (int batchStart = 0; batchStart < measuresMap.size(); batchStart += appConfig.getExtractorReadThreads()) {
-            int batchEnd = Math.min(batchStart + appConfig.getExtractorReadThreads(), measuresMap.size());
-            List<PulseMeasure> measuresBatch = new ArrayList<>(measuresMap.values()).subList(batchStart, batchEnd);
-            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-                tasks.add(CompletableFuture.supplyAsync(() -> extractMeasureBatch(measuresBatch, metaMap, tsReadStart, tsReadEnd), executor));
-            }
+        // Process path by path
+        for (PathTarget target : resolveTargets(paths)) {
+            extractionScheduler.withCursor(() -> {
+                if (sink instanceof DownsamplingExtractionSink downsamplingSink) {
+                    streamPathDownsampled(target, tsReadStart, tsReadEnd, downsamplingSink);
+                } else {
+                    streamPath(target, tsReadStart, tsReadEnd, sink);
+                }
+                return null;
+            });
         }
-        return PulseDataMatrix.builder()
-                .addMatrices(tasks.stream().map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
-                .build();
+
+        sink.complete();
     }
 
-    private PulseDataMatrix extractChannelBatch(PulseChannelGroup gr,
-                                                List<PulseChannel> channelsBatch,
-                                                Map<String, PulseChunkMetadata> metaMap,
-                                                Instant tsReadStart,
-                                                Instant tsReadEnd) {
+    /**
+     * Extracts a downsampled matrix: each path is reduced chunk by chunk while it is read, so only the reduced points
+     * are kept in memory. Paths are read in parallel through the {@link ExtractionScheduler}.
+     */
+    public PulseDataMatrix extractDownsampled(List<String> paths, Instant tsReadStart, Instant tsReadEnd, DownsamplingSpec spec) {
+        if (paths == null || paths.isEmpty() || tsReadStart == null || tsReadEnd == null || spec == null) {
+            throw new IllegalArgumentException("Invalid input parameters.");
+        }
+
+        PulseDataMatrixBuilder matrixBuilder = PulseDataMatrix.builder();
+        ExtractionSink matrixSink = (groupCode, path, type, columns) -> matrixBuilder.addValues(groupCode, path, columns.ts(), columns.v());
+
+        List<ExtractionScheduler.CursorTask<Void>> tasks = resolveTargets(paths).stream()
+                .<ExtractionScheduler.CursorTask<Void>>map(target -> () -> {
+                    var sink = new DownsamplingExtractionSink(spec, matrixSink);
+                    streamPathDownsampled(target, tsReadStart, tsReadEnd, sink);
+                    sink.complete();
+                    return null;
+                })
+                .toList();
+        extractionScheduler.invokeAll(tasks);
 
-        long chunkMillis = gr.getInterval() * appConfig.getIngestorChunkSize();
-        long tsReadStartMillis = tsReadStart.toEpochMilli();
-        long tsReadStartNorm = (tsReadStartMillis / chunkMillis) * chunkMillis;
-        long tsReadEndMillis = tsReadEnd.toEpochMilli();
-        long tsReadEndNorm = ((tsReadEndMillis + chunkMillis - 1) / chunkMillis) * chunkMillis;
+        return matrixBuilder.build();
+    }
 
-        // Get collections
-        var collections = channelsBatch.stream()
-                .map(ch -> metaMap.get(ch.getPath()))
-                .filter(Objects::nonNull)
-                .map(PulseChunkMetadata::getCollectionName)
-                .collect(Collectors.toSet());
+    private record PathTarget(String groupCode, String path, PulseChunkMetadata metadata) {
+    }
 
-        // Query each collection
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<CompletableFuture<PulseDataMatrix>> tasks = collections.stream()
-                    .map(collectionName -> CompletableFuture.supplyAsync(() -> queryCollection(
-                            gr.getCode(),
-                            collectionName,
-                            channelsBatch.stream().map(PulseChannel::getPath).collect(Collectors.toSet()),
-                            metaMap,
-                            tsReadStartNorm,
-                            tsReadEndNorm
-                    ), executor))
-                    .toList();
-
-            return PulseDataMatrix.builder()
-                    .addMatrices(tasks.stream().map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
-                    .build();
+    /**
+     * Resolves the group and metadata of each requested path, in request order, from the configuration snapshot and
+     * the metadata cache. Unknown paths are skipped.
+     */
+    private List<PathTarget> resolveTargets(List<String> paths) {
+        // Channels of an existing group first, then measures
+        var snapshot = configSnapshotService.get();
+        Map<String, String> groupCodes = new LinkedHashMap<>();
+        for (String path : paths) {
+            snapshot.findChannel(path)
+                    .map(PulseChannel::getChannelGroupCode)
+                    .flatMap(snapshot::findGroup)
+                    .map(PulseChannelGroup::getCode)
+                    .or(() -> snapshot.findMeasure(path).map(ms -> MEASURES_GROUP))
+                    .ifPresent(groupCode -> groupCodes.putIfAbsent(path, groupCode));
+        }
+        if (groupCodes.isEmpty()) {
+            return List.of();
         }
+
+        var metadataMap = buildMetadataMap(chunkMetadataCache.findByPaths(groupCodes.keySet()));
+
+        List<PathTarget> targets = new ArrayList<>();
+        groupCodes.forEach((path, groupCode) -> {
+            var metadata = metadataMap.get(path);
+            if (metadata != null) {
+                targets.add(new PathTarget(groupCode, path, metadata));
+            }
+        });
+        return targets;
     }
 
-    private PulseDataMatrix extractMeasureBatch(List<PulseMeasure> measuresBatch,
-                                                Map<String, PulseChunkMetadata> metaMap,
-                                                Instant tsReadStart,
-                                                Instant tsReadEnd) {
+    /**
+     * Reads the coarsest rollup tier aligned with the downsampling buckets when the series has one covering the
+     * range, the raw chunks otherwise. The buckets read are refreshed first when dirty; the range past the last whole
+     * tier bucket comes from the raw chunks.
+     */
+    private void streamPathDownsampled(PathTarget target, Instant tsReadStart, Instant tsReadEnd, DownsamplingExtractionSink sink) throws IOException {
+        var spec = sink.getSpec();
+        var metadata = target.metadata();
+        long tsReadStartMillis = tsReadStart.toEpochMilli();
+        var tier = rollupService.selectTier(metadata.getCollectionName(), target.path(), metadata.getType(), spec.bucketMillis(), spec.startMillis());
+        if (tier.isEmpty()) {
+            streamPath(target, tsReadStart, tsReadEnd, sink);
+            return;
+        }
+
+        long rollupsEndMillis = Math.max(tsReadStartMillis, RollupAggregator.floor(tsReadEnd.toEpochMilli(), tier.getAsLong()));
+        if (rollupsEndMillis > tsReadStartMillis) {
+            rollupService.refreshBeforeRead(metadata.getCollectionName(), target.path(), tsReadStartMillis, rollupsEndMillis);
+            rollupService.read(metadata.getCollectionName(), target.path(), metadata.getType(), tier.getAsLong(),
+                    tsReadStartMillis, rollupsEndMillis, rollups -> {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new CancellationException("Extraction stream cancelled on %s".formatted(target.path()));
+                        }
+                        sink.writeRollups(target.groupCode(), target.path(), metadata.getType(), rollups);
+                    });
+        }
+        if (rollupsEndMillis < tsReadEnd.toEpochMilli()) {
+            streamPath(target, Instant.ofEpochMilli(rollupsEndMillis), tsReadEnd, sink);
+        }
+    }
 
-        long chunkMillis = 1000L;
+    private void streamPath(PathTarget target, Instant tsReadStart, Instant tsReadEnd, ExtractionSink sink) throws IOException {
+        String path = target.path();
+        PulseChunkMetadata metadata = target.metadata();
         long tsReadStartMillis = tsReadStart.toEpochMilli();
-        long tsReadStartNorm = (tsReadStartMillis / chunkMillis) * chunkMillis;
         long tsReadEndMillis = tsReadEnd.toEpochMilli();
-        long tsReadEndNorm = ((tsReadEndMillis + chunkMillis - 1) / chunkMillis) * chunkMillis;
 
-        // Get collections
-        var collections = measuresBatch.stream()
-                .map(ch -> metaMap.get(ch.getPath()))
-                .filter(Objects::nonNull)
-                .map(PulseChunkMetadata::getCollectionName)
-                .collect(Collectors.toSet());
+        // Recent ranges are served by the local hot tier when it holds them entirely
+        var hot = hotTierService.read(metadata.getCollectionName(), path, tsReadStartMillis, tsReadEndMillis);
+        if (hot.isPresent()) {
+            for (ChunkDocumentReader.ChunkColumns columns : hot.get()) {
+                write(target, columns.slice(tsReadStartMillis, tsReadEndMillis), sink);
+            }
+            return;
+        }
+
+        MongoCollection<Document> collection = mongoTemplate.getDb().getCollection(metadata.getCollectionName());
+
+        // Closed chunks held in memory are merged, by chunk start, with the ones read from Mongo
+        long generation = chunkReadCache.generation(metadata.getCollectionName(), path);
+        var runs = cachedRuns(chunkReadCache.get(metadata.getCollectionName(), path, tsReadStartMillis, tsReadEndMillis));
+        var hits = runs.stream().flatMap(List::stream).toList();
+        int nextHit = 0;
+
+        Bson query = Filters.and(
+                Filters.eq(PulseChunk.PATH, path),
+                overlapping(tsReadStartMillis, tsReadEndMillis),
+                notCached(path, runs)
+        );
+
+        try (MongoCursor<Document> cursor = collection.find(query)
+                .sort(Sorts.ascending(PulseChunk.TS_START))
+                .batchSize(appConfig.getExtractorStreamBatchSize())
+                .iterator()) {
+            while (cursor.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Extraction stream cancelled on %s".formatted(path));
+                }
+                Document doc = cursor.next();
+                long tsStart = doc.get(PulseChunk.TS_START, Number.class).longValue();
+                for (; nextHit < hits.size() && hits.get(nextHit).tsStart() < tsStart; nextHit++) {
+                    write(target, hits.get(nextHit).columns().slice(tsReadStartMillis, tsReadEndMillis), sink);
+                }
+                // Late points may have been appended out of order: sort each chunk before trimming and sending it
+                var columns = ChunkDocumentReader.read(doc, metadata.getType()).sorted();
+                chunkReadCache.put(metadata.getCollectionName(), path, metadata.getType(), doc, columns, generation);
+                write(target, columns.slice(tsReadStartMillis, tsReadEndMillis), sink);
+            }
+        }
+        for (; nextHit < hits.size(); nextHit++) {
+            write(target, hits.get(nextHit).columns().slice(tsReadStartMillis, tsReadEndMillis), sink);
+        }
+    }
 
-        // Query each collection
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<CompletableFuture<PulseDataMatrix>> tasks = collections.stream()
-                    .map(collectionName -> CompletableFuture.supplyAsync(() -> queryCollection(
-                            MEASURES_GROUP,
-                            collectionName,
-                            measuresBatch.stream().map(PulseMeasure::getPath).collect(Collectors.toSet()),
-                            metaMap,
-                            tsReadStartNorm,
-                            tsReadEndNorm
-                    ), executor))
-                    .toList();
-
-            return PulseDataMatrix.builder()
-                    .addMatrices(tasks.stream().map(ThrowingFn.mayThrow(CompletableFuture::get)).toList())
-                    .build();
+    private static void write(PathTarget target, ChunkDocumentReader.ChunkColumns columns, ExtractionSink sink) throws IOException {
+        if (!columns.isEmpty()) {
+            sink.write(target.groupCode(), target.path(), target.metadata().getType(), columns);
         }
     }
 
+    /**
+     * Adds the queries reading {@code paths}: one per collection and batch of {@code pulse.extractor.paths-per-query}
+     * paths. Paths without metadata are skipped.
+     */
+    private void addQueryTasks(List<ExtractionScheduler.CursorTask<PulseDataMatrix>> tasks,
+                               String groupCode,
+                               Collection<String> paths,
+                               Map<String, PulseChunkMetadata> metaMap,
+                               long tsReadStartMillis,
+                               long tsReadEndMillis) {
+        var pathsByCollection = paths.stream()
+                .filter(metaMap::containsKey)
+                .collect(Collectors.groupingBy(path -> metaMap.get(path).getCollectionName(), LinkedHashMap::new, Collectors.toList()));
+
+        int batchSize = Math.max(1, appConfig.getExtractorPathsPerQuery());
+        pathsByCollection.forEach((collectionName, collectionPaths) -> {
+            for (int batchStart = 0; batchStart < collectionPaths.size(); batchStart += batchSize) {
+                Set<String> batch = new HashSet<>(collectionPaths.subList(batchStart, Math.min(batchStart + batchSize, collectionPaths.size())));
+                tasks.add(() -> queryCollection(groupCode, collectionName, batch, metaMap, tsReadStartMillis, tsReadEndMillis));
+            }
+        });
+    }
+
     private PulseDataMatrix queryCollection(String groupCode,
                                             String collectionName,
                                             Set<String> paths,
                                             Map<String, PulseChunkMetadata> metaMap,
-                                            long tsReadStartNorm,
-                                            long tsReadEndNorm) {
+                                            long tsReadStartMillis,
+                                            long tsReadEndMillis) {
 
         MongoDatabase database = mongoTemplate.getDb();
         MongoCollection<Document> collection = database.getCollection(collectionName);
         PulseDataMatrixBuilder matrixBuilder = PulseDataMatrix.builder();
 
+        // Serve the paths held by the hot tier and the closed chunks cached in memory, read the others
+        Set<String> mongoPaths = new HashSet<>();
+        for (String path : paths) {
+            var hot = hotTierService.read(collectionName, path, tsReadStartMillis, tsReadEndMillis);
+            if (hot.isEmpty()) {
+                mongoPaths.add(path);
+                continue;
+            }
+            for (ChunkDocumentReader.ChunkColumns chunk : hot.get()) {
+                var columns = chunk.slice(tsReadStartMillis, tsReadEndMillis);
+                if (!columns.isEmpty()) {
+                    matrixBuilder.addValues(groupCode, path, columns.ts(), columns.v());
+                }
+            }
+        }
+        if (mongoPaths.isEmpty()) {
+            return matrixBuilder.build();
+        }
+
+        Map<String, Long> generations = new HashMap<>();
+        List<Bson> cached = new ArrayList<>();
+        for (String path : mongoPaths) {
+            generations.put(path, chunkReadCache.generation(collectionName, path));
+            var runs = cachedRuns(chunkReadCache.get(collectionName, path, tsReadStartMillis, tsReadEndMillis));
+            for (List<ChunkReadCache.Hit> run : runs) {
+                for (ChunkReadCache.Hit hit : run) {
+                    var columns = hit.columns().slice(tsReadStartMillis, tsReadEndMillis);
+                    if (!columns.isEmpty()) {
+                        matrixBuilder.addValues(groupCode, path, columns.ts(), columns.v());
+                    }
+                }
+                cached.add(cachedRun(path, run));
+            }
+        }
+
         Bson query = Filters.and(
-                Filters.in(PulseChunk.PATH, paths),
-                Filters.gte(PulseChunk.TS_START, tsReadStartNorm),
-                Filters.lte(PulseChunk.TS_END, tsReadEndNorm)
+                Filters.in(PulseChunk.PATH, mongoPaths),
+                overlapping(tsReadStartMillis, tsReadEndMillis),
+                cached.isEmpty() ? Filters.empty() : Filters.nor(cached)
         );
 
         for (Document doc : collection.find(query)) {
             String path = doc.getString(PulseChunk.PATH);
-            List<Long> timestamps = doc.getList(PulseChunk.TS, Long.class, Collections.emptyList());
-            if (timestamps.isEmpty() || timestamps.getFirst() < tsReadStartNorm || timestamps.getLast() >= tsReadEndNorm) {
-                throw new IllegalStateException("Invalid timestamps in data chunk.");
+            PulseDataType type = metaMap.get(path).getType();
+            // Decode both array and compressed block layouts, then keep the points of the range: edge chunks
+            // only partially overlap it
+            var sorted = ChunkDocumentReader.read(doc, type).sorted();
+            chunkReadCache.put(collectionName, path, type, doc, sorted, generations.get(path));
+            var columns = sorted.slice(tsReadStartMillis, tsReadEndMillis);
+            if (columns.isEmpty()) {
+                continue;
             }
 
-            var values = switch (metaMap.get(path).getType()) {
-                case DOUBLE -> doc.getList(PulseChunk.V, Double.class, Collections.emptyList());
-                case LONG -> doc.getList(PulseChunk.V, Long.class, Collections.emptyList());
-                case BOOLEAN -> doc.getList(PulseChunk.V, Boolean.class, Collections.emptyList());
-                case STRING -> doc.getList(PulseChunk.V, String.class, Collections.emptyList());
-            };
-
-            matrixBuilder.addValues(groupCode, path, timestamps, values);
+            matrixBuilder.addValues(groupCode, path, columns.ts(), columns.v());
         }
 
         return matrixBuilder.build();
     }
 
+    /**
+     * Groups the hits of a path into runs of adjacent chunks, one ending where the next starts. Chunks of a path do not
+     * overlap, so no other chunk starts within a run and a query can exclude it by time, whatever the number of chunks.
+     * Only the {@value #MAX_EXCLUDED_RUNS} largest runs are kept, by chunk start: the chunks of the others are read
+     * from Mongo again.
+     */
+    static List<List<ChunkReadCache.Hit>> cachedRuns(List<ChunkReadCache.Hit> hits) {
+        List<List<ChunkReadCache.Hit>> runs = new ArrayList<>();
+        List<ChunkReadCache.Hit> run = null;
+        for (ChunkReadCache.Hit hit : hits) {
+            if (run == null || run.getLast().tsEnd() != hit.tsStart()) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(hit);
+        }
+        if (runs.size() <= MAX_EXCLUDED_RUNS) {
+            return runs;
+        }
+        var largest = runs.stream()
+                .sorted(Comparator.comparingInt((List<ChunkReadCache.Hit> r) -> r.size()).reversed())
+                .limit(MAX_EXCLUDED_RUNS)
+                .map(r -> r.getFirst().tsStart())
+                .collect(Collectors.toSet());
+        return runs.stream().filter(r -> largest.contains(r.getFirst().tsStart())).toList();
+    }
+
+    private static Bson notCached(String path, List<List<ChunkReadCache.Hit>> runs) {
+        if (runs.isEmpty()) {
+            return Filters.empty();
+        }
+        return Filters.nor(runs.stream().map(run -> cachedRun(path, run)).toList());
+    }
+
+    private static Bson cachedRun(String path, List<ChunkReadCache.Hit> run) {
+        return Filters.and(
+                Filters.eq(PulseChunk.PATH, path),
+                Filters.gte(PulseChunk.TS_START, run.getFirst().tsStart()),
+                Filters.lt(PulseChunk.TS_START, run.getLast().tsEnd()));
+    }
+
+    /**
+     * Chunks overlapping {@code [start, end)}: a chunk spans {@code [tsStart, tsEnd)}.
+     */
+    static Bson overlapping(long start, long end) {
+        return Filters.and(
+                Filters.lt(PulseChunk.TS_START, end),
+                Filters.gt(PulseChunk.TS_END, start)
+        );
+    }
+
     /**
      * Builds a path-indexed metadata map, resolving duplicates by keeping the lowest samplingRate
      * (highest frequency) and logging a warning. This prevents extractor failures when legacy
@@ -0,0 +1,257 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.rollups.model.PulseRollup;
+import com.id.pulse.modules.timeseries.model.enums.PulseDownsamplingMode;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reduces the time-ordered points of one series, bucket by bucket, as they are read.
+ * <p>
+ * MIN_MAX, AVG and LAST hold a handful of scalars; LTTB holds the points of two buckets, since the selection in a
+ * bucket depends on the average of the next one. Nulls are skipped; non numeric series fall back to LAST.
+ * <p>
+ * Rollup buckets can be fed instead of raw points ({@link #addRollup}), as long as they are finer than the
+ * downsampling buckets.
+ */
+public class Downsampler {
+
+    @FunctionalInterface
+    public interface Emitter {
+        void emit(long ts, Object value) throws IOException;
+    }
+
+    private final DownsamplingSpec spec;
+    private final PulseDownsamplingMode mode;
+    private final Emitter emitter;
+
+    private long bucket = Long.MIN_VALUE;
+    private long lastEmittedTs = Long.MIN_VALUE;
+
+    // MIN_MAX, AVG, LAST
+    private long count;
+    private double sum;
+    private long minTs, maxTs, lastTs;
+    private double min, max;
+    private Object minValue, maxValue, lastValue;
+
+    // LTTB
+    private Bucket pending;
+    private Bucket current;
+    private boolean firstEmitted = false;
+    private double anchorX, anchorY;
+
+    public Downsampler(DownsamplingSpec spec, PulseDataType type, Emitter emitter) {
+        this.spec = spec;
+        this.mode = effectiveMode(spec.mode(), type);
+        this.emitter = emitter;
+    }
+
+    public static PulseDownsamplingMode effectiveMode(PulseDownsamplingMode mode, PulseDataType type) {
+        boolean numeric = type == PulseDataType.DOUBLE || type == PulseDataType.LONG;
+        return numeric ? mode : PulseDownsamplingMode.LAST;
+    }
+
+    /**
+     * Type of the emitted values: AVG turns numeric series into doubles.
+     */
+    public static PulseDataType outputType(PulseDownsamplingMode mode, PulseDataType type) {
+        return effectiveMode(mode, type) == PulseDownsamplingMode.AVG ? PulseDataType.DOUBLE : type;
+    }
+
+    public void add(long ts, Object value) throws IOException {
+        if (!spec.contains(ts) || value == null) {
+            return;
+        }
+        if (mode != PulseDownsamplingMode.LAST && !(value instanceof Number)) {
+            return;
+        }
+
+        switchBucket(spec.bucketOf(ts));
+
+        switch (mode) {
+            case LTTB -> addLttb(ts, value);
+            case LAST -> {
+                lastTs = ts;
+                lastValue = value;
+            }
+            default -> {
+                double y = ((Number) value).doubleValue();
+                if (count == 0 || y < min) {
+                    min = y;
+                    minTs = ts;
+                    minValue = value;
+                }
+                if (count == 0 || y > max) {
+                    max = y;
+                    maxTs = ts;
+                    maxValue = value;
+                }
+                sum += y;
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Adds a rollup bucket, in time order: AVG uses its count and sum, LAST its last point, MIN_MAX and LTTB its
+     * extremes at their own timestamps. A rollup bucket straddling the range start counts in the first bucket.
+     */
+    public void addRollup(PulseRollup rollup) throws IOException {
+        switch (mode) {
+            case AVG -> {
+                long ts = Math.max(rollup.ts(), spec.startMillis());
+                if (!spec.contains(ts) || rollup.count() == 0) {
+                    return;
+                }
+                switchBucket(spec.bucketOf(ts));
+                sum += rollup.sum();
+                count += rollup.count();
+            }
+            case LAST -> add(rollup.lastTs(), rollup.last());
+            default -> {
+                if (rollup.minTs() <= rollup.maxTs()) {
+                    add(rollup.minTs(), rollup.min());
+                    if (rollup.maxTs() != rollup.minTs()) {
+                        add(rollup.maxTs(), rollup.max());
+                    }
+                } else {
+                    add(rollup.maxTs(), rollup.max());
+                    add(rollup.minTs(), rollup.min());
+                }
+            }
+        }
+    }
+
+    public void finish() throws IOException {
+        if (bucket == Long.MIN_VALUE) {
+            return;
+        }
+        if (mode != PulseDownsamplingMode.LTTB) {
+            closeBucket();
+            return;
+        }
+
+        // Last bucket: select in the previous one against it, then keep the very last point
+        if (pending != null) {
+            selectLttb(pending, current.avgX(), current.avgY());
+        }
+        emit(current.ts[current.size - 1], current.values[current.size - 1]);
+    }
+
+    private void switchBucket(long b) throws IOException {
+        if (b == bucket) {
+            return;
+        }
+        if (bucket != Long.MIN_VALUE) {
+            closeBucket();
+        }
+        bucket = b;
+        count = 0;
+        sum = 0;
+    }
+
+    private void closeBucket() throws IOException {
+        switch (mode) {
+            case MIN_MAX -> {
+                if (minTs == maxTs) {
+                    emit(minTs, minValue);
+                } else if (minTs < maxTs) {
+                    emit(minTs, minValue);
+                    emit(maxTs, maxValue);
+                } else {
+                    emit(maxTs, maxValue);
+                    emit(minTs, minValue);
+                }
+            }
+            case AVG -> emit(spec.bucketStart(bucket), sum / count);
+            case LAST -> emit(lastTs, lastValue);
+            case LTTB -> {
+                // The bucket being filled is complete: it is the "next" bucket of the pending one
+                if (pending != null) {
+                    selectLttb(pending, current.avgX(), current.avgY());
+                }
+                pending = current;
+                current = null;
+            }
+        }
+    }
+
+    private void addLttb(long ts, Object value) throws IOException {
+        double x = ts - spec.startMillis();
+        double y = ((Number) value).doubleValue();
+        if (!firstEmitted) {
+            // The first point is always kept
+            firstEmitted = true;
+            anchorX = x;
+            anchorY = y;
+            emit(ts, value);
+        }
+        if (current == null) {
+            current = new Bucket();
+        }
+        current.add(ts, x, y, value);
+    }
+
+    private void selectLttb(Bucket bucket, double nextX, double nextY) throws IOException {
+        int selected = 0;
+        double maxArea = -1;
+        for (int i = 0; i < bucket.size; i++) {
+            double area = Math.abs((anchorX - nextX) * (bucket.y[i] - anchorY) - (anchorX - bucket.x[i]) * (nextY - anchorY));
+            if (area > maxArea) {
+                maxArea = area;
+                selected = i;
+            }
+        }
+        anchorX = bucket.x[selected];
+        anchorY = bucket.y[selected];
+        emit(bucket.ts[selected], bucket.values[selected]);
+    }
+
+    private void emit(long ts, Object value) throws IOException {
+        // Never emit twice the same point (e.g. the first point, also selected in its bucket)
+        if (ts <= lastEmittedTs) {
+            return;
+        }
+        lastEmittedTs = ts;
+        emitter.emit(ts, value);
+    }
+
+    private static final class Bucket {
+
+        private long[] ts = new long[16];
+        private double[] x = new double[16];
+        private double[] y = new double[16];
+        private Object[] values = new Object[16];
+        private int size = 0;
+        private double sumX = 0;
+        private double sumY = 0;
+
+        private void add(long t, double px, double py, Object value) {
+            if (size == ts.length) {
+                int capacity = size * 2;
+                ts = Arrays.copyOf(ts, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            ts[size] = t;
+            x[size] = px;
+            y[size] = py;
+            values[size] = value;
+            size++;
+            sumX += px;
+            sumY += py;
+        }
+
+        private double avgX() {
+            return sumX / size;
+        }
+
+        private double avgY() {
+            return sumY / size;
+        }
+    }
+}
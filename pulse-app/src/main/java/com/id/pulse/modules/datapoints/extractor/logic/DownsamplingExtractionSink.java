@@ -0,0 +1,101 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import com.id.pulse.modules.rollups.model.PulseRollup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Downsamples a path-ordered extraction before handing it to another sink. Reduced points are forwarded in runs of
+ * at most {@value #FLUSH_POINTS} points and at the end of each path.
+ */
+public class DownsamplingExtractionSink implements ExtractionSink {
+
+    static final int FLUSH_POINTS = 1024;
+
+    private final DownsamplingSpec spec;
+    private final ExtractionSink delegate;
+
+    private String groupCode;
+    private String path;
+    private PulseDataType outputType;
+    private Downsampler downsampler;
+
+    private List<Long> ts = new ArrayList<>();
+    private List<Object> v = new ArrayList<>();
+
+    public DownsamplingExtractionSink(DownsamplingSpec spec, ExtractionSink delegate) {
+        this.spec = spec;
+        this.delegate = delegate;
+    }
+
+    public DownsamplingSpec getSpec() {
+        return spec;
+    }
+
+    @Override
+    public void write(String groupCode, String path, PulseDataType type, ChunkColumns columns) throws IOException {
+        startPath(groupCode, path, type);
+        for (int i = 0; i < columns.size(); i++) {
+            downsampler.add(columns.ts().get(i), columns.v().get(i));
+        }
+    }
+
+    /**
+     * Same as {@link #write} for the rollup buckets of a path.
+     */
+    public void writeRollups(String groupCode, String path, PulseDataType type, List<PulseRollup> rollups) throws IOException {
+        startPath(groupCode, path, type);
+        for (PulseRollup rollup : rollups) {
+            downsampler.addRollup(rollup);
+        }
+    }
+
+    @Override
+    public void complete() throws IOException {
+        finishPath();
+        delegate.complete();
+    }
+
+    private void startPath(String groupCode, String path, PulseDataType type) throws IOException {
+        if (downsampler != null && Objects.equals(this.groupCode, groupCode) && Objects.equals(this.path, path)) {
+            return;
+        }
+        finishPath();
+        this.groupCode = groupCode;
+        this.path = path;
+        this.outputType = Downsampler.outputType(spec.mode(), type);
+        this.downsampler = new Downsampler(spec, type, this::collect);
+    }
+
+    private void finishPath() throws IOException {
+        if (downsampler == null) {
+            return;
+        }
+        downsampler.finish();
+        flush();
+        downsampler = null;
+    }
+
+    private void collect(long t, Object value) throws IOException {
+        ts.add(t);
+        v.add(value);
+        if (ts.size() >= FLUSH_POINTS) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (ts.isEmpty()) {
+            return;
+        }
+        delegate.write(groupCode, path, outputType, new ChunkColumns(ts, v, Collections.nCopies(ts.size(), null)));
+        ts = new ArrayList<>();
+        v = new ArrayList<>();
+    }
+}
@@ -0,0 +1,66 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.model.PulseExtractorReq;
+import com.id.pulse.modules.timeseries.model.enums.PulseDownsamplingMode;
+
+/**
+ * Downsampling resolved from an extractor request. Buckets are {@code bucketMillis} wide and aligned on
+ * {@code startMillis}; points outside {@code [startMillis, endMillis)} are dropped.
+ */
+public record DownsamplingSpec(PulseDownsamplingMode mode, long bucketMillis, long startMillis, long endMillis) {
+
+    public DownsamplingSpec {
+        if (mode == null) {
+            throw new IllegalArgumentException("Downsampling mode cannot be null");
+        }
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        if (endMillis <= startMillis) {
+            throw new IllegalArgumentException("Start must be before End");
+        }
+    }
+
+    /**
+     * Returns the downsampling requested by {@code req}, or null when the raw points are requested.
+     */
+    public static DownsamplingSpec of(PulseExtractorReq req) {
+        if (req.getTargetPoints() == null && req.getBucketMillis() == null) {
+            if (req.getAggregation() != null) {
+                throw new IllegalArgumentException("Aggregation requires targetPoints or bucketMillis");
+            }
+            return null;
+        }
+
+        var mode = req.getAggregation() == null ? PulseDownsamplingMode.MIN_MAX : req.getAggregation();
+        long start = req.getStart().toEpochMilli();
+        long end = req.getEnd().toEpochMilli();
+
+        long bucketMillis;
+        if (req.getBucketMillis() != null) {
+            bucketMillis = req.getBucketMillis();
+        } else {
+            if (req.getTargetPoints() <= 0) {
+                throw new IllegalArgumentException("targetPoints must be positive");
+            }
+            // MIN_MAX returns up to two points per bucket
+            long buckets = mode == PulseDownsamplingMode.MIN_MAX
+                    ? Math.max(1, req.getTargetPoints() / 2)
+                    : req.getTargetPoints();
+            bucketMillis = Math.max(1, (end - start + buckets - 1) / buckets);
+        }
+        return new DownsamplingSpec(mode, bucketMillis, start, end);
+    }
+
+    public long bucketOf(long ts) {
+        return Math.floorDiv(ts - startMillis, bucketMillis);
+    }
+
+    public long bucketStart(long bucket) {
+        return startMillis + bucket * bucketMillis;
+    }
+
+    public boolean contains(long ts) {
+        return ts >= startMillis && ts < endMillis;
+    }
+}
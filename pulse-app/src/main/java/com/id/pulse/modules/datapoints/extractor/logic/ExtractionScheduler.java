@@ -0,0 +1,134 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.config.AppConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the Mongo reads of all extractions on one shared virtual-thread executor.
+ * <p>
+ * Open cursors are bounded globally by {@code pulse.extractor.max-cursors}, with a fair semaphore so reads get a cursor
+ * in arrival order. Each call to {@link #invokeAll} is one request: it keeps at most {@code pulse.extractor.read-threads}
+ * reads in flight, and never more than {@code pulse.extractor.max-cursors-per-request}, submitting the next one only
+ * when one of them completes. Concurrent exports therefore cannot hold every cursor, and a small dashboard read waits
+ * behind a handful of their reads only.
+ */
+@Component
+@Slf4j
+public class ExtractionScheduler {
+
+    @FunctionalInterface
+    public interface CursorTask<T> {
+        T run() throws IOException;
+    }
+
+    private final AppConfig appConfig;
+    private final Semaphore cursors;
+    private final ExecutorService executor;
+
+    public ExtractionScheduler(AppConfig appConfig) {
+        this.appConfig = appConfig;
+        this.cursors = new Semaphore(maxCursors(), true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("extractor-", 0).factory());
+    }
+
+    /**
+     * Runs the reads of one request in parallel and returns their results in task order. The first failure cancels
+     * the remaining reads and is rethrown; an interrupt of the calling thread cancels them all.
+     */
+    public <T> List<T> invokeAll(List<? extends CursorTask<T>> tasks) {
+        Semaphore inFlight = new Semaphore(maxCursorsPerRequest());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (CursorTask<T> task : tasks) {
+                inFlight.acquire();
+                if (failed.get()) {
+                    inFlight.release();
+                    break;
+                }
+                futures.add(executor.submit(() -> {
+                    try {
+                        return withCursor(task);
+                    } catch (Throwable ex) {
+                        // Set before releasing the permit, so the submitting loop sees it on its next acquire
+                        failed.set(true);
+                        throw ex;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction interrupted");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Runs a read in the calling thread once a cursor is available.
+     */
+    public <T> T withCursor(CursorTask<T> task) throws IOException {
+        try {
+            cursors.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extraction interrupted while waiting for a cursor");
+        }
+        try {
+            return task.run();
+        } finally {
+            cursors.release();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private int maxCursors() {
+        return Math.max(1, appConfig.getExtractorMaxCursors());
+    }
+
+    private int maxCursorsPerRequest() {
+        int perRequest = Math.min(appConfig.getExtractorReadThreads(), appConfig.getExtractorMaxCursorsPerRequest());
+        return Math.max(1, Math.min(perRequest, maxCursors()));
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        if (cause instanceof IOException io) {
+            return new UncheckedIOException(io);
+        }
+        return new IllegalStateException("Extraction read failed", cause);
+    }
+}
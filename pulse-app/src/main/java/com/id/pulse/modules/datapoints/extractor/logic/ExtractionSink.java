@@ -0,0 +1,22 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+
+import java.io.IOException;
+
+/**
+ * Receives the chunks of a streamed extraction, path by path and in time order within each path.
+ * <p>
+ * An {@link IOException} thrown by the sink (typically the client closing the connection) stops the extraction.
+ */
+public interface ExtractionSink {
+
+    void write(String groupCode, String path, PulseDataType type, ChunkColumns columns) throws IOException;
+
+    /**
+     * Called once after the last chunk, only when the extraction completed.
+     */
+    default void complete() throws IOException {
+    }
+}
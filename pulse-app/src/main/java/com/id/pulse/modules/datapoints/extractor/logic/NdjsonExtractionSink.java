@@ -0,0 +1,87 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a streamed extraction as newline-delimited JSON, one line per chunk:
+ * <pre>
+ * {"groupCode":"G1","path":"plant.temp","ts":[1700000000000,...],"v":[20.5,...]}
+ * </pre>
+ * A last {@code {"end":true,"chunks":n,"points":m}} line marks a complete stream; its absence means the stream
+ * was truncated. Each line is flushed as soon as it is written, nothing else is buffered.
+ */
+public class NdjsonExtractionSink implements ExtractionSink {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private final JsonGenerator generator;
+
+    private long chunks = 0;
+    private long points = 0;
+
+    public NdjsonExtractionSink(JsonFactory jsonFactory, OutputStream out) throws IOException {
+        this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        // The output stream belongs to the caller
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Lines are separated by newlines only, not by the default root value separator
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(String groupCode, String path, PulseDataType type, ChunkColumns columns) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("groupCode", groupCode);
+        generator.writeStringField("path", path);
+
+        generator.writeArrayFieldStart("ts");
+        for (Long ts : columns.ts()) {
+            generator.writeNumber(ts);
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("v");
+        for (Object value : columns.v()) {
+            writeValue(value);
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+        endLine();
+
+        chunks++;
+        points += columns.size();
+    }
+
+    @Override
+    public void complete() throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("end", true);
+        generator.writeNumberField("chunks", chunks);
+        generator.writeNumberField("points", points);
+        generator.writeEndObject();
+        endLine();
+    }
+
+    private void endLine() throws IOException {
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        switch (value) {
+            case null -> generator.writeNull();
+            case Double d -> generator.writeNumber(d);
+            case Long l -> generator.writeNumber(l);
+            case Integer i -> generator.writeNumber(i);
+            case Boolean b -> generator.writeBoolean(b);
+            default -> generator.writeString(value.toString());
+        }
+    }
+}
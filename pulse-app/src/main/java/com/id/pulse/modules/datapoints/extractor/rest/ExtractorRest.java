@@ -1,29 +1,116 @@
 package com.id.pulse.modules.datapoints.extractor.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.id.pulse.model.PulseDataMatrix;
 import com.id.pulse.model.PulseExtractorReq;
+import com.id.pulse.modules.datapoints.extractor.logic.ColumnarExtractionSink;
+import com.id.pulse.modules.datapoints.extractor.logic.ExtractionSink;
+import com.id.pulse.modules.datapoints.extractor.logic.NdjsonExtractionSink;
 import com.id.pulse.modules.datapoints.ingestor.service.DataExtractor;
+import com.id.pulse.modules.datapoints.model.ChunkReadCacheStats;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.utils.PulseColumnarFormat;
 import com.id.px3.rest.PxRestControllerBase;
 import com.id.px3.rest.security.JwtSecured;
+import com.mongodb.MongoInterruptedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 @RestController
 @RequestMapping("pulse-extractor")
+@Slf4j
 public class ExtractorRest extends PxRestControllerBase {
 
+    private static final MediaType COLUMNAR = MediaType.parseMediaType(PulseColumnarFormat.MEDIA_TYPE);
+    private static final MediaType NDJSON = MediaType.parseMediaType(NdjsonExtractionSink.MEDIA_TYPE);
+
     private final DataExtractor dataExtractor;
+    private final ObjectMapper objectMapper;
+    private final ChunkReadCache chunkReadCache;
 
-    public ExtractorRest(DataExtractor dataExtractor) {
+    public ExtractorRest(DataExtractor dataExtractor, ObjectMapper objectMapper, ChunkReadCache chunkReadCache) {
         this.dataExtractor = dataExtractor;
+        this.objectMapper = objectMapper;
+        this.chunkReadCache = chunkReadCache;
     }
 
+    /**
+     * Returns the data matrix as JSON, or the binary columnar layout of {@link PulseColumnarFormat} when the client
+     * explicitly accepts {@value PulseColumnarFormat#MEDIA_TYPE}. The columnar response is written from the chunks
+     * as they are read, without building the matrix.
+     */
     @PostMapping("extract")
     @JwtSecured
-    public ResponseEntity<PulseDataMatrix> extract(@RequestBody PulseExtractorReq req) {
-        return ResponseEntity.ok(dataExtractor.processRequest(req));
+    public ResponseEntity<StreamingResponseBody> extract(@RequestBody PulseExtractorReq req,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (!accepts(accept, COLUMNAR)) {
+            // Built before the response is committed, so that failures still get an error status
+            PulseDataMatrix matrix = dataExtractor.processRequest(req);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, matrix));
+        }
+
+        dataExtractor.validateRequest(req);
+        return ResponseEntity.ok()
+                .contentType(COLUMNAR)
+                .body(out -> stream(req, new ColumnarExtractionSink(out)));
+    }
+
+    /**
+     * Same request as {@code extract}, answered as a stream of chunks with bounded memory: NDJSON by default
+     * (see {@link NdjsonExtractionSink}), or the columnar layout when accepted. Closing the connection cancels
+     * the extraction.
+     */
+    @PostMapping("extract-stream")
+    @JwtSecured
+    public ResponseEntity<StreamingResponseBody> extractStream(@RequestBody PulseExtractorReq req,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        // Validate before the response is committed, so that bad requests still get an error status
+        dataExtractor.validateRequest(req);
+
+        boolean columnar = accepts(accept, COLUMNAR);
+        StreamingResponseBody body = out -> stream(req, columnar
+                ? new ColumnarExtractionSink(out)
+                : new NdjsonExtractionSink(objectMapper.getFactory(), out));
+        return ResponseEntity.ok()
+                .contentType(columnar ? COLUMNAR : NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("cache-stats")
+    @JwtSecured
+    public ResponseEntity<ChunkReadCacheStats> cacheStats() {
+        return ResponseEntity.ok(chunkReadCache.getStats());
+    }
+
+    private void stream(PulseExtractorReq req, ExtractionSink sink) throws IOException {
+        try {
+            dataExtractor.streamRequest(req, sink);
+        } catch (IOException | CancellationException | MongoInterruptedException ex) {
+            // Client went away or the request timed out: nothing left to answer. Cancelling interrupts the streaming
+            // thread, which surfaces from the driver when it was blocked on a cursor
+            log.debug("Extraction stream aborted: {}", ex.getMessage());
+        }
+    }
+
+    private static boolean accepts(String accept, MediaType mediaType) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        // Explicit match only: wildcards keep the JSON default
+        return MediaType.parseMediaTypes(accept).stream().anyMatch(mediaType::equalsTypeAndSubtype);
     }
 }
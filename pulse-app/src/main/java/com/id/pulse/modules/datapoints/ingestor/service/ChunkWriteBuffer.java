@@ -0,0 +1,316 @@
+package com.id.pulse.modules.datapoints.ingestor.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind buffer in front of {@link DataIngestor}.
+ * <p>
+ * Points are accumulated per chunk (collection + chunk id) and flushed with one unordered bulk write per collection
+ * when a chunk reaches {@code flush-points}, when its oldest point is older than {@code max-age-ms}, or on shutdown.
+ * Buffered points are bounded by {@code max-buffered-points}: offers wait up to {@code offer-timeout-ms} for room and
+ * then write synchronously, so a slow database pushes back on the caller instead of growing the heap.
+ * <p>
+ * All writes, synchronous ones included, run on a single flusher, after the buffered points of the same chunks, so
+ * the points of a chunk are written in offer order. A failed flush puts its chunks back in front of the points
+ * buffered since, to be retried after {@code max-age-ms}; after {@code max-flush-attempts} they are dropped. A retried
+ * write may repeat points applied by the failed one, readers keep the last write of a timestamp.
+ */
+@Service
+@Slf4j
+public class ChunkWriteBuffer {
+
+    private final AppConfig appConfig;
+    private final DataIngestor dataIngestor;
+
+    private final ConcurrentHashMap<String, PendingChunk> pending = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final ExecutorService flusher;
+
+    private volatile boolean closed = false;
+
+    private record FlushTarget(String collectionName, PulseChunkEncoding encoding) {
+    }
+
+    private static final class PendingChunk {
+
+        private final String key;
+        private final FlushTarget target;
+        private final PrimitiveChunkBuilder chunk;
+        private final long createdAt;
+        private final int failedFlushes;
+        // Buffer capacity held by the points, released once they are written or dropped
+        private int permits;
+
+        private PendingChunk(String key, FlushTarget target, PrimitiveChunkBuilder first, int permits) {
+            this(key, target, first, System.currentTimeMillis(), 0, permits);
+        }
+
+        private PendingChunk(String key, FlushTarget target, PrimitiveChunkBuilder first, long createdAt, int failedFlushes, int permits) {
+            this.key = key;
+            this.target = target;
+            this.chunk = first.emptyCopy();
+            this.createdAt = createdAt;
+            this.failedFlushes = failedFlushes;
+            this.permits = permits;
+            chunk.appendAll(first);
+        }
+
+        private PendingChunk append(PrimitiveChunkBuilder other, int otherPermits) {
+            chunk.appendAll(other);
+            permits += otherPermits;
+            return this;
+        }
+
+        private PendingChunk retry() {
+            return new PendingChunk(key, target, chunk, System.currentTimeMillis(), failedFlushes + 1, permits);
+        }
+
+        private int size() {
+            return chunk.size();
+        }
+    }
+
+    public ChunkWriteBuffer(AppConfig appConfig, DataIngestor dataIngestor) {
+        this.appConfig = appConfig;
+        this.dataIngestor = dataIngestor;
+        this.capacity = new Semaphore(appConfig.getIngestorWriteBehindMaxBufferedPoints(), true);
+        // A single flusher keeps the writes of each chunk in order
+        this.flusher = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("chunk-write-behind").factory());
+    }
+
+    public boolean isEnabled() {
+        return appConfig.isIngestorWriteBehindEnabled() && !closed;
+    }
+
+    public int getBufferedPoints() {
+        return appConfig.getIngestorWriteBehindMaxBufferedPoints() - capacity.availablePermits();
+    }
+
+    /**
+     * Buffers a time series. When the buffer is disabled or closed, the points are handed to the ingestor directly.
+     */
+    public void offer(PulseChunkMetadata metadata,
+                      PulseChunkEncoding encoding,
+                      Map<Long, Object> timeSeries,
+                      Map<Long, String> batchIdsByTs) {
+        if (!isEnabled()) {
+            dataIngestor.writeAsync(metadata, encoding, timeSeries, batchIdsByTs)
+                    .thenAccept(result -> log.trace("Ingestor perfs: %s".formatted(result)))
+                    .exceptionally(ex -> {
+                        log.error("Error writing data to ingestor", ex);
+                        return null;
+                    });
+            return;
+        }
+
+        var chunks = dataIngestor.splitIntoChunks(metadata, timeSeries, batchIdsByTs);
+        int points = chunks.stream().mapToInt(PrimitiveChunkBuilder::size).sum();
+        if (points == 0) {
+            return;
+        }
+
+        FlushTarget target = new FlushTarget(metadata.getCollectionName(), encoding);
+
+        // Back-pressure: wait for room, then give up and write on the caller's thread
+        if (!acquire(points)) {
+            log.warn("Write-behind buffer full (%d points), writing %d points of %s synchronously"
+                    .formatted(getBufferedPoints(), points, metadata.getPath()));
+            writeThrough(target, chunks);
+            return;
+        }
+
+        List<String> ready = new ArrayList<>();
+        for (PrimitiveChunkBuilder chunk : chunks) {
+            if (buffer(target, chunk, chunk.size()) >= appConfig.getIngestorWriteBehindFlushPoints()) {
+                ready.add(key(target, chunk));
+            }
+        }
+        if (!ready.isEmpty()) {
+            submitFlush(ready);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${pulse.ingestor.write-behind.flush-check-ms:250}")
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        var expired = pending.entrySet().stream()
+                .filter(entry -> now - entry.getValue().createdAt >= appConfig.getIngestorWriteBehindMaxAgeMs())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!expired.isEmpty()) {
+            submitFlush(expired);
+        }
+    }
+
+    public void flushAll() {
+        flush(new ArrayList<>(pending.keySet()));
+    }
+
+    /**
+     * Writes the buffered points and waits for the write, for callers about to read or rewrite stored chunks.
+     */
+    public void drain() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        runOnFlusher(this::flushAll);
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Write-behind flusher did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Offers that passed the enabled check before closing may still land here. Failed chunks are requeued until
+        // they run out of attempts, so this ends
+        while (!pending.isEmpty()) {
+            flushAll();
+        }
+        log.info("Write-behind buffer closed");
+    }
+
+    private static String key(FlushTarget target, PrimitiveChunkBuilder chunk) {
+        return "%s/%s".formatted(target.collectionName(), chunk.getId());
+    }
+
+    /**
+     * Appends a chunk behind the buffered points of the same chunk.
+     *
+     * @return the number of points now buffered for the chunk
+     */
+    private int buffer(FlushTarget target, PrimitiveChunkBuilder chunk, int permits) {
+        String key = key(target, chunk);
+        return pending.compute(key, (k, existing) -> existing == null
+                ? new PendingChunk(k, target, chunk, permits)
+                : existing.append(chunk, permits)).size();
+    }
+
+    /**
+     * Writes chunks bypassing the buffer, once the buffered points of the same chunks are written; the caller waits.
+     * When those could not be written, the chunks are queued behind them instead, beyond the buffer capacity.
+     */
+    private void writeThrough(FlushTarget target, List<PrimitiveChunkBuilder> chunks) {
+        List<String> keys = chunks.stream().map(chunk -> key(target, chunk)).toList();
+        runOnFlusher(() -> {
+            if (flush(keys).isEmpty()) {
+                dataIngestor.writeChunks(target.collectionName(), target.encoding(), chunks);
+            } else {
+                chunks.forEach(chunk -> buffer(target, chunk, 0));
+            }
+        });
+    }
+
+    private void runOnFlusher(Runnable task) {
+        try {
+            flusher.submit(task).get();
+        } catch (RejectedExecutionException ex) {
+            // Closing: the flusher no longer runs, close() flushes on its own thread
+            task.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind flusher", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private boolean acquire(int points) {
+        if (points > appConfig.getIngestorWriteBehindMaxBufferedPoints()) {
+            return false;
+        }
+        if (capacity.availablePermits() < points) {
+            // Free up room as soon as possible
+            submitFlush(new ArrayList<>(pending.keySet()));
+        }
+        try {
+            return capacity.tryAcquire(points, appConfig.getIngestorWriteBehindOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void submitFlush(Collection<String> keys) {
+        try {
+            flusher.execute(() -> flush(keys));
+        } catch (RejectedExecutionException ex) {
+            // Closing: the remaining chunks are flushed by close()
+            log.debug("Write-behind flush rejected, buffer is closing");
+        }
+    }
+
+    /**
+     * @return the keys of the chunks whose write failed and that were requeued
+     */
+    private Set<String> flush(Collection<String> keys) {
+        // Removing the entry detaches it: later offers for the same chunk start a new pending entry
+        var drained = keys.stream()
+                .map(pending::remove)
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(pendingChunk -> pendingChunk.target));
+
+        Set<String> requeued = new HashSet<>();
+        drained.forEach((target, chunks) -> {
+            try {
+                var result = dataIngestor.writeChunks(
+                        target.collectionName(),
+                        target.encoding(),
+                        chunks.stream().map(pendingChunk -> pendingChunk.chunk).toList());
+                log.trace("Write-behind flush on %s: %s".formatted(target.collectionName(), result));
+                capacity.release(chunks.stream().mapToInt(pendingChunk -> pendingChunk.permits).sum());
+            } catch (Exception ex) {
+                log.error("Write-behind flush failed on {} ({} chunks)", target.collectionName(), chunks.size(), ex);
+                chunks.forEach(pendingChunk -> {
+                    if (requeue(pendingChunk)) {
+                        requeued.add(pendingChunk.key);
+                    }
+                });
+            }
+        });
+        return requeued;
+    }
+
+    private boolean requeue(PendingChunk failed) {
+        if (failed.failedFlushes + 1 >= appConfig.getIngestorWriteBehindMaxFlushAttempts()) {
+            log.error("Write-behind dropped {} points of {} after {} failed flushes",
+                    failed.size(), failed.key, failed.failedFlushes + 1);
+            capacity.release(failed.permits);
+            return false;
+        }
+        // In front of the points buffered since the failed flush started
+        pending.merge(failed.key, failed.retry(), (newer, retry) -> retry.append(newer.chunk, newer.permits));
+        return true;
+    }
+}
@@ -3,10 +3,15 @@ package com.id.pulse.modules.datapoints.ingestor.service;
 import com.id.pulse.model.PulseDataMatrix;
 import com.id.pulse.model.PulseExtractorReq;
 import com.id.pulse.modules.datapoints.extractor.logic.DataExtractorProcessor;
+import com.id.pulse.modules.datapoints.extractor.logic.DownsamplingExtractionSink;
+import com.id.pulse.modules.datapoints.extractor.logic.DownsamplingSpec;
+import com.id.pulse.modules.datapoints.extractor.logic.ExtractionSink;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
 @Service
 @Slf4j
 public class DataExtractor {
@@ -18,6 +23,45 @@ public class DataExtractor {
     }
 
     public PulseDataMatrix processRequest(PulseExtractorReq req) {
+        validateRequest(req);
+
+        // Downsampled requests are reduced while reading, without building the full matrix
+        var downsampling = DownsamplingSpec.of(req);
+        if (downsampling != null) {
+            return appCtx.getBean(DataExtractorProcessor.class).extractDownsampled(
+                    req.getPaths(),
+                    req.getStart(),
+                    req.getEnd(),
+                    downsampling
+            );
+        }
+
+        var matrix = appCtx.getBean(DataExtractorProcessor.class).extract(
+                req.getPaths(),
+                req.getStart(),
+                req.getEnd()
+        );
+
+        return matrix;
+    }
+
+    /**
+     * Streams the requested data to the sink, chunk by chunk. Call {@link #validateRequest} first when the
+     * response must report invalid requests before streaming starts.
+     */
+    public void streamRequest(PulseExtractorReq req, ExtractionSink sink) throws IOException {
+        validateRequest(req);
+
+        var downsampling = DownsamplingSpec.of(req);
+        appCtx.getBean(DataExtractorProcessor.class).stream(
+                req.getPaths(),
+                req.getStart(),
+                req.getEnd(),
+                downsampling == null ? sink : new DownsamplingExtractionSink(downsampling, sink)
+        );
+    }
+
+    public void validateRequest(PulseExtractorReq req) {
         if (req == null) {
             throw new IllegalArgumentException("Request cannot be null");
         }
@@ -30,13 +74,7 @@ public class DataExtractor {
         if (req.getStart().isAfter(req.getEnd()) || req.getStart().equals(req.getEnd())) {
             throw new IllegalArgumentException("Start must be before End");
         }
-
-        var matrix = appCtx.getBean(DataExtractorProcessor.class).extract(
-                req.getPaths(),
-                req.getStart(),
-                req.getEnd()
-        );
-
-        return matrix;
+        // Validates the downsampling options
+        DownsamplingSpec.of(req);
     }
 }
@@ -1,37 +1,71 @@
 package com.id.pulse.modules.datapoints.ingestor.service;
 
 import com.id.pulse.config.AppConfig;
+import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
-import com.id.pulse.modules.datapoints.model.PulseChunk;
-import com.id.pulse.modules.datapoints.model.PulseChunkMetadataEntity;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCache;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.hottier.service.HotTierService;
+import com.id.pulse.modules.datapoints.util.ChunkRewriter;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.rollups.service.RollupService;
 import com.id.pulse.modules.timeseries.model.PulseIngestorWriteResult;
 import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
+import org.bson.Document;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.index.Index;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
-
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class DataIngestor {
 
+    private static final String MONGO_ID = "_id";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
     private final AppConfig appConfig;
     private final MongoTemplate mongoTemplate;
+    private final ChunkMetadataCache chunkMetadataCache;
+    private final RollupService rollupService;
+    private final ChunkReadCache chunkReadCache;
+    private final HotTierService hotTierService;
+
+    // Open Gorilla chunk of each series, with the blocks pushed to it since its last compaction. Entries of series no
+    // longer written (idle, dropped collections) are swept
+    private final ConcurrentHashMap<BlockSeries, OpenBlockChunk> openBlockChunks = new ConcurrentHashMap<>();
+    // Chunks queued for compaction (collection|chunkId), so that a chunk is queued once until its compaction starts
+    private final Set<String> pendingCompactions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor;
+
+    private record BlockSeries(String collectionName, String path) {
+    }
+
+    private record OpenBlockChunk(String chunkId, long tsStart, int blocks, long lastWrite) {
+    }
 
     // This task queue logs a warning when the number of enqueued tasks exceeds the given warningThreshold
     static class WarningLinkedBlockingQueue<E> extends LinkedBlockingQueue<E> {
@@ -62,9 +96,18 @@ public class DataIngestor {
     private final ExecutorService executor;
 
 
-    public DataIngestor(AppConfig appConfig, MongoTemplate mongoTemplate) {
+    public DataIngestor(AppConfig appConfig,
+                        MongoTemplate mongoTemplate,
+                        ChunkMetadataCache chunkMetadataCache,
+                        RollupService rollupService,
+                        ChunkReadCache chunkReadCache,
+                        HotTierService hotTierService) {
         this.appConfig = appConfig;
         this.mongoTemplate = mongoTemplate;
+        this.chunkMetadataCache = chunkMetadataCache;
+        this.rollupService = rollupService;
+        this.chunkReadCache = chunkReadCache;
+        this.hotTierService = hotTierService;
 
         executor = new ThreadPoolExecutor(
                 appConfig.getIngestorWriteThreads(),
@@ -74,238 +117,322 @@ public class DataIngestor {
                 Thread.ofVirtual().factory(),
                 new ThreadPoolExecutor.AbortPolicy()
         );
+        compactor = Executors.newFixedThreadPool(Math.max(1, appConfig.getIngestorGorillaCompactThreads()),
+                Thread.ofVirtual().name("gorilla-compactor-", 0).factory());
     }
 
-    @Transactional
-    public PulseChunkMetadata prepareMetadata(String groupCode, String path, PulseDataType type, long samplingRate) {
-        // Check params
-        if (path == null) {
-            throw new IllegalArgumentException("Path cannot be null");
-        }
-        if (type == null) {
-            throw new IllegalArgumentException("Type cannot be null");
-        }
-        if (samplingRate <= 1) {
-            throw new IllegalArgumentException("Sampling rate must be greater than one");
-        }
-
-        // Logic to prepare metadata
-        log.trace("Preparing DataIngestor for path:%s, type:%s, samplingRate:%d".formatted(path, type, samplingRate));
-
-        // Clean and sanitize path and type
-        String safePath = path.replaceAll("\\s+", "").replaceAll("[^a-zA-Z0-9._-]", "__");
-        String safeType = type.name().replaceAll("\\s+", "").replaceAll("[^a-zA-Z0-9._-]", "__");
-
-        // Generate collection name and ID
-        String collectionName = "PulseChunks_%s_%s_%d".formatted(groupCode, safeType, samplingRate);
-        String metadataId = "%s_%s_%s_%d".formatted(groupCode, safePath, safeType, samplingRate);
-
-        // Upsert metadata entry - Upsert's here to guarantee atomicity and idempotency
-        Criteria criteria = new Criteria().andOperator(
-                where(PulseChunkMetadataEntity.SAFE_PATH).is(safePath),
-                where(PulseChunkMetadataEntity.TYPE).is(type),
-                where(PulseChunkMetadataEntity.SAMPLING_RATE).is(samplingRate)
-        );
-        Update update = new Update()
-                .setOnInsert(PulseChunkMetadataEntity.ID, metadataId)
-                .setOnInsert(PulseChunkMetadataEntity.GROUP_CODE, groupCode)
-                .setOnInsert(PulseChunkMetadataEntity.SAFE_PATH, safePath)
-                .setOnInsert(PulseChunkMetadataEntity.PATH, path)
-                .setOnInsert(PulseChunkMetadataEntity.TYPE, type)
-                .setOnInsert(PulseChunkMetadataEntity.SAMPLING_RATE, samplingRate)
-                .setOnInsert(PulseChunkMetadataEntity.COLLECTION_NAME, collectionName);
-        mongoTemplate.upsert(query(criteria), update, PulseChunkMetadataEntity.class);
-
-        // Read, map to model and return
-        var entity = mongoTemplate.findOne(query(criteria), PulseChunkMetadataEntity.class);
-        if (entity == null) {
-            throw new IllegalStateException("Failed to retrieve metadata entry");
-        }
-        var model = new PulseChunkMetadata();
-        BeanUtils.copyProperties(entity, model);
+    @PreDestroy
+    public void close() {
+        // Compaction is best effort: the chunks still queued stay readable as they are
+        compactor.shutdownNow();
+    }
 
-        // Ensure batchId index exists on the data collection
-        try {
-            mongoTemplate.indexOps(collectionName)
-                    .ensureIndex(new Index().on(PulseChunk.BATCH_IDS, org.springframework.data.domain.Sort.Direction.ASC));
-        } catch (Exception ex) {
-            log.warn("Failed to ensure batchIds index on {}", collectionName, ex);
-        }
+    /**
+     * Returns the chunk metadata of a series, creating it on first use. Served by the shared {@link ChunkMetadataCache}.
+     */
+    public PulseChunkMetadata prepareMetadata(String groupCode, String path, PulseDataType type, long samplingRate) {
+        return chunkMetadataCache.get(groupCode, path, type, samplingRate);
+    }
 
-        return model;
+    public CompletableFuture<PulseIngestorWriteResult> writeAsync(PulseChunkMetadata metadata,
+                                                                  PulseChunkEncoding encoding,
+                                                                  Map<Long, Object> timeSeries,
+                                                                  Map<Long, String> batchIdsByTs) {
+        return CompletableFuture.supplyAsync(() -> writeSync(metadata, resolveEncoding(encoding), timeSeries, batchIdsByTs), executor);
     }
 
     public CompletableFuture<PulseIngestorWriteResult> writeAsync(PulseChunkMetadata metadata,
                                                                   Map<Long, Object> timeSeries,
                                                                   Map<Long, String> batchIdsByTs) {
-        return CompletableFuture.supplyAsync(() -> writeSync(metadata, timeSeries, batchIdsByTs), executor);
+        return writeAsync(metadata, null, timeSeries, batchIdsByTs);
     }
 
     public CompletableFuture<PulseIngestorWriteResult> writeAsync(PulseChunkMetadata metadata, Map<Long, Object> timeSeries) {
         return writeAsync(metadata, timeSeries, Map.of());
     }
 
+    public CompletableFuture<Map<String, PulseIngestorWriteResult>> writeBatchAsync(List<PulseDataPoint> dataPoints,
+                                                                                    Function<PulseDataPoint, PulseChunkMetadata> metadataResolver,
+                                                                                    PulseChunkEncoding encoding) {
+        return CompletableFuture.supplyAsync(() -> writeBatch(dataPoints, metadataResolver, encoding), executor);
+    }
+
+    /**
+     * Writes all the data points of a poll cycle: points are split into chunks path by path, then the chunks are
+     * grouped by collection and written with one unordered bulk write per collection.
+     *
+     * @param dataPoints       points to write, any path and type
+     * @param metadataResolver resolves the chunk metadata of a point (called once per path)
+     * @param encoding         chunk encoding, null for the configured default
+     * @return write results by path; the duration is the one of the bulk write that carried the path.
+     * Paths of a collection whose write failed have a result with the error set
+     */
+    public Map<String, PulseIngestorWriteResult> writeBatch(List<PulseDataPoint> dataPoints,
+                                                            Function<PulseDataPoint, PulseChunkMetadata> metadataResolver,
+                                                            PulseChunkEncoding encoding) {
+        // Split each path into chunks, grouping them by collection
+        Map<String, List<PrimitiveChunkBuilder>> chunksByCollection = new LinkedHashMap<>();
+        Map<String, Set<String>> pathsByCollection = new HashMap<>();
+        Map<String, List<PrimitiveChunkBuilder>> chunksByPath = new HashMap<>();
+        dataPoints.stream()
+                .collect(Collectors.groupingBy(PulseDataPoint::getPath, LinkedHashMap::new, Collectors.toList()))
+                .forEach((path, dataPointsOfPath) -> {
+                    var metadata = metadataResolver.apply(dataPointsOfPath.getFirst());
+
+                    var chunks = splitIntoChunks(metadata, dataPointsOfPath);
+                    chunksByPath.put(path, chunks);
+                    chunksByCollection.computeIfAbsent(metadata.getCollectionName(), k -> new ArrayList<>()).addAll(chunks);
+                    pathsByCollection.computeIfAbsent(metadata.getCollectionName(), k -> new HashSet<>()).add(path);
+                });
+
+        // One bulk write per collection. A failing collection does not prevent writing the others
+        Map<String, PulseIngestorWriteResult> results = new HashMap<>();
+        chunksByCollection.forEach((collectionName, chunks) -> {
+            Duration duration;
+            String error;
+            try {
+                duration = writeChunks(collectionName, encoding, chunks).getDuration();
+                error = null;
+            } catch (Exception ex) {
+                log.error("Batch write failed on {} ({} chunks)", collectionName, chunks.size(), ex);
+                duration = Duration.ZERO;
+                error = Objects.requireNonNullElse(ex.getMessage(), ex.getClass().getSimpleName());
+            }
+            for (String path : pathsByCollection.get(collectionName)) {
+                var chunksOfPath = chunksByPath.get(path);
+                results.put(path, PulseIngestorWriteResult.builder()
+                        .chunks(chunksOfPath.size())
+                        .points(chunksOfPath.stream().mapToLong(PrimitiveChunkBuilder::size).sum())
+                        .duration(duration)
+                        .error(error)
+                        .build());
+            }
+        });
+
+        return results;
+    }
+
+    private PulseChunkEncoding resolveEncoding(PulseChunkEncoding encoding) {
+        if (encoding != null) {
+            return encoding;
+        }
+        return Objects.requireNonNullElse(appConfig.getIngestorDefaultChunkEncoding(), PulseChunkEncoding.ARRAY);
+    }
+
     private PulseIngestorWriteResult writeSync(PulseChunkMetadata metadata,
+                                               PulseChunkEncoding encoding,
                                                Map<Long, Object> timeSeries,
                                                Map<Long, String> batchIdsByTs) {
-        // Put data into chunks. Create them if they don't exist
-        return switch (metadata.getType()) {
-            case DOUBLE ->
-                    writeSyncTyped(new LinkedHashMap<String, PulseChunk<Double>>(), metadata, metadata.getType(), timeSeries, batchIdsByTs);
-            case LONG ->
-                    writeSyncTyped(new LinkedHashMap<String, PulseChunk<Long>>(), metadata, metadata.getType(), timeSeries, batchIdsByTs);
-            case STRING ->
-                    writeSyncTyped(new LinkedHashMap<String, PulseChunk<String>>(), metadata, metadata.getType(), timeSeries, batchIdsByTs);
-            case BOOLEAN ->
-                    writeSyncTyped(new LinkedHashMap<String, PulseChunk<Boolean>>(), metadata, metadata.getType(), timeSeries, batchIdsByTs);
-        };
+        var chunks = splitIntoChunks(metadata, timeSeries, batchIdsByTs);
+        return writeChunks(metadata.getCollectionName(), encoding, chunks);
     }
 
-    private <T> PulseIngestorWriteResult writeSyncTyped(Map<String, PulseChunk<T>> chunkMap,
-                                                        PulseChunkMetadata metadata,
-                                                        PulseDataType dataType,
-                                                        Map<Long, Object> timeSeries,
-                                                        Map<Long, String> batchIdsByTs) {
-
-        // Fill chunks
+    /**
+     * Splits a time series into the chunks its points belong to. Points with a non-positive timestamp or with
+     * a value not matching the metadata type are skipped; empty chunks are not returned.
+     */
+    public List<PrimitiveChunkBuilder> splitIntoChunks(PulseChunkMetadata metadata,
+                                                       Map<Long, Object> timeSeries,
+                                                       Map<Long, String> batchIdsByTs) {
+        // Put data into chunks. Create them if they don't exist
+        Map<String, PrimitiveChunkBuilder> chunkMap = new LinkedHashMap<>();
         for (Map.Entry<Long, Object> entry : timeSeries.entrySet()) {
             long ts = entry.getKey();
-            T value = getTypedValue(dataType, entry.getValue());
             String batchId = batchIdsByTs != null ? batchIdsByTs.get(ts) : null;
+            appendPoint(chunkMap, metadata, ts, entry.getValue(), batchId);
+        }
+        return nonEmptyChunks(chunkMap);
+    }
 
-            if (ts <= 0) {
-                log.warn("Ignoring data point with non-positive timestamp: %d".formatted(ts));
-                continue;
+    /**
+     * Same as {@link #splitIntoChunks(PulseChunkMetadata, Map, Map)} for the data points of a single path.
+     * When a timestamp appears more than once, the last point wins.
+     */
+    public List<PrimitiveChunkBuilder> splitIntoChunks(PulseChunkMetadata metadata, List<PulseDataPoint> dataPoints) {
+        Map<String, PrimitiveChunkBuilder> chunkMap = new LinkedHashMap<>();
+        for (PulseDataPoint dataPoint : dataPoints) {
+            if (dataPoint.getTms() != null) {
+                appendPoint(chunkMap, metadata, dataPoint.getTms(), dataPoint.getVal(), dataPoint.getBatchId());
             }
+        }
+        chunkMap.values().forEach(PrimitiveChunkBuilder::removeDuplicates);
+        return nonEmptyChunks(chunkMap);
+    }
 
-            if (value != null) {
-                // Calculate chunk size in terms of milliseconds
-                long chunkTimeRange = appConfig.getIngestorChunkSize() * metadata.getSamplingRate();
-
-                // Normalize ts according to samplingRate
-                // This could arithmetically to negative nTs, but we can ignore it since
-                // we are writing 'real' timestamps, that are always significantly greater than both 0 and samplingRate
-                long nTs = ts - (ts % metadata.getSamplingRate());
-
-                // Calculate tsStart and tsEnd (tsStart <= ts < tsEnd (== tsStart + chunkTimeRange)
-                long tsStart = nTs - (nTs % chunkTimeRange);
-                long tsEnd = tsStart + chunkTimeRange;
-
-                // Determine the chunk ID based on the timestamp and metadata
-                String chunkId = "%s_%s_%d_%d".formatted(metadata.getSafePath(), dataType.name(), tsStart, metadata.getSamplingRate());
-
-                // Create or update the chunk
-                PulseChunk<T> chunk = chunkMap.computeIfAbsent(chunkId, id -> buildNewChunk(metadata, dataType, id, tsStart, tsEnd));
-
-                // Update the start and end timestamps
-                // nTs cannot be outside the range of [tsStart, tsEnd] here
-                if (nTs < chunk.getTsStart() || nTs >= chunk.getTsEnd()) {
-                    log.warn("nTs '%d' out of range [%d, %d]... This should not happen".formatted(nTs, chunk.getTsStart(), chunk.getTsEnd()));
-                } else {
-                    // Update the chunk with the new data point
-                    chunk.getTs().add(nTs);
-                    chunk.getV().add(value);
-                    chunk.getBatchIds().add(batchId);
-                }
-            }
+    /**
+     * Upserts chunks of one collection with a single unordered bulk write: one UpdateOneModel per chunk,
+     * appending its points to the stored document (created on first write).
+     */
+    public PulseIngestorWriteResult writeChunks(String collectionName,
+                                               PulseChunkEncoding encoding,
+                                               Collection<PrimitiveChunkBuilder> chunks) {
+        if (chunks.isEmpty()) {
+            return PulseIngestorWriteResult.builder().build();
         }
 
-        // Persist non-void chunks
-        final long[] points = {0};
-        final Duration[] writeDuration = {Duration.ZERO};
-        chunkMap.values().stream()
-                .filter(chunk -> !chunk.getTs().isEmpty())
-                .forEach(chunk -> {
-                    Instant writeStart = Instant.now();
-
-                    Update update = new Update()
-                            .setOnInsert(PulseChunk.ID, chunk.getId())
-                            .setOnInsert(PulseChunk.PATH, chunk.getPath())
-                            .setOnInsert(PulseChunk.TS_START, chunk.getTsStart())
-                            .setOnInsert(PulseChunk.TS_END, chunk.getTsEnd())
-                            .setOnInsert(PulseChunk.DATA_TYPE, chunk.getDataType())
-                            .push(PulseChunk.TS).each(chunk.getTs())
-                            .push(PulseChunk.V).each(chunk.getV())
-                            .push(PulseChunk.BATCH_IDS).each(chunk.getBatchIds());
-
-                    mongoTemplate.upsert(
-                            query(Criteria.where(PulseChunk.ID).is(chunk.getId())),
-                            update,
-                            metadata.getCollectionName());
-
-
-                    points[0] += chunk.getTs().size();
-
-                    writeDuration[0] = writeDuration[0].plus(Duration.between(writeStart, Instant.now()));
-                });
+        PulseChunkEncoding resolvedEncoding = resolveEncoding(encoding);
+        List<UpdateOneModel<Document>> models = new ArrayList<>(chunks.size());
+        long points = 0;
+        for (PrimitiveChunkBuilder chunk : chunks) {
+            models.add(resolvedEncoding == PulseChunkEncoding.GORILLA
+                    ? new UpdateOneModel<>(Filters.eq(MONGO_ID, chunk.getId()), chunk.toBlockUpdate(), UPSERT)
+                    : new UpdateOneModel<>(Filters.eq(MONGO_ID, chunk.getId()), chunk.toUpdate(), UPSERT));
+            points += chunk.size();
+        }
+
+        Instant writeStart = Instant.now();
+        try {
+            mongoTemplate.getDb()
+                    .getCollection(collectionName)
+                    .bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (RuntimeException ex) {
+            // Part of an unordered write may have been applied: the local copies can no longer be trusted
+            chunks.forEach(chunk -> chunkReadCache.invalidate(collectionName, chunk.getPath(), chunk.getTsStart()));
+            hotTierService.onWriteFailed(collectionName);
+            throw ex;
+        }
+        Duration writeDuration = Duration.between(writeStart, Instant.now());
+        chunks.forEach(chunk -> chunkReadCache.invalidate(collectionName, chunk.getPath(), chunk.getTsStart()));
+
+        if (resolvedEncoding == PulseChunkEncoding.GORILLA) {
+            compactBlocks(collectionName, chunks);
+        }
+
+        try {
+            hotTierService.onChunksWritten(collectionName, chunks);
+        } catch (Exception ex) {
+            log.warn("Hot tier update failed on {} ({} chunks)", collectionName, chunks.size(), ex);
+        }
+
+        // Rollups follow the raw data: a failure here must not fail the write, a rebuild repairs them
+        try {
+            rollupService.onChunksWritten(collectionName, chunks);
+        } catch (Exception ex) {
+            log.warn("Rollup update failed on {} ({} chunks)", collectionName, chunks.size(), ex);
+        }
 
-        // Create a write result for this chunk
         return PulseIngestorWriteResult.builder()
-                .chunks(chunkMap.size())
-                .points(points[0])
-                .duration(writeDuration[0])
+                .chunks(chunks.size())
+                .points(points)
+                .duration(writeDuration)
                 .build();
     }
 
-    private <T> PulseChunk<T> buildNewChunk(PulseChunkMetadata metadata, PulseDataType dataType, String id, long tsStart, long tsEnd) {
-        var newChunk = switch (dataType) {
-            case DOUBLE -> new PulseChunk<Double>();
-            case LONG -> new PulseChunk<Long>();
-            case STRING -> new PulseChunk<String>();
-            case BOOLEAN -> new PulseChunk<Boolean>();
-        };
-
-        newChunk.setId(id);
-        newChunk.setPath(metadata.getPath());
-        newChunk.setTsStart(tsStart);
-        newChunk.setTsEnd(tsEnd);
-        newChunk.setDataType(dataType);
-        newChunk.setTs(new ArrayList<>());
-        newChunk.setV(new ArrayList<>());
-
-        // This is safe because we are using the type as instructed from dataType param
-        //noinspection unchecked
-        return (PulseChunk<T>) newChunk;
+    /**
+     * Each Gorilla write pushes a block holding the points of that write only, a few points with short flush
+     * intervals. The blocks of a chunk are re-encoded into one when its series moves on to a later chunk (the chunk
+     * closed), when a late write reaches an already closed chunk, when the chunk collected the configured number of
+     * blocks, or when its series stays idle. Compaction runs on the compactor threads, off the write path, and is best
+     * effort: a failure leaves the blocks as they are, still readable.
+     */
+    private void compactBlocks(String collectionName, Collection<PrimitiveChunkBuilder> chunks) {
+        int maxBlocks = appConfig.getIngestorGorillaCompactBlocks();
+        long now = System.currentTimeMillis();
+        Set<String> toCompact = new LinkedHashSet<>();
+        for (PrimitiveChunkBuilder chunk : chunks) {
+            openBlockChunks.compute(new BlockSeries(collectionName, chunk.getPath()), (key, open) -> {
+                if (open == null || chunk.getTsStart() > open.tsStart()) {
+                    if (open != null) {
+                        toCompact.add(open.chunkId());
+                    }
+                    return new OpenBlockChunk(chunk.getId(), chunk.getTsStart(), 1, now);
+                }
+                if (chunk.getTsStart() < open.tsStart()) {
+                    toCompact.add(chunk.getId());
+                    return open;
+                }
+                if (maxBlocks > 0 && open.blocks() + 1 >= maxBlocks) {
+                    toCompact.add(chunk.getId());
+                    return new OpenBlockChunk(open.chunkId(), open.tsStart(), 1, now);
+                }
+                return new OpenBlockChunk(open.chunkId(), open.tsStart(), open.blocks() + 1, now);
+            });
+        }
+        toCompact.forEach(chunkId -> submitCompaction(collectionName, chunkId));
     }
 
-    private <T> T getTypedValue(PulseDataType dataType, Object untypedValue) {
-        return switch (dataType) {
-            case DOUBLE -> {
-                if (untypedValue instanceof Double) {
-                    //noinspection unchecked
-                    yield (T) untypedValue;
-                } else {
-                    yield null;
-                }
+    /**
+     * Compacts the open chunks of the series not written for {@code gorilla-compact-idle-ms} and stops tracking
+     * them, so that stopped series and dropped collections do not stay in memory.
+     */
+    @Scheduled(fixedDelayString = "${pulse.ingestor.gorilla-compact-idle-check-ms:60000}")
+    public void sweepIdleBlockChunks() {
+        long idleBefore = System.currentTimeMillis() - appConfig.getIngestorGorillaCompactIdleMs();
+        openBlockChunks.forEach((series, open) -> {
+            if (open.lastWrite() <= idleBefore && openBlockChunks.remove(series, open) && open.blocks() > 1) {
+                submitCompaction(series.collectionName(), open.chunkId());
             }
+        });
+    }
 
-            case LONG -> {
-                if (untypedValue instanceof Long) {
-                    //noinspection unchecked
-                    yield (T) untypedValue;
-                } else {
-                    yield null;
+    private void submitCompaction(String collectionName, String chunkId) {
+        String key = collectionName + "|" + chunkId;
+        if (!pendingCompactions.add(key)) {
+            return;
+        }
+        try {
+            compactor.execute(() -> {
+                // Blocks pushed from now on are queued again
+                pendingCompactions.remove(key);
+                try {
+                    ChunkRewriter.compact(mongoTemplate.getDb().getCollection(collectionName), chunkId);
+                } catch (Exception ex) {
+                    log.warn("Block compaction failed for chunk {} on {}", chunkId, collectionName, ex);
                 }
-            }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            pendingCompactions.remove(key);
+        }
+    }
 
-            case STRING -> {
-                if (untypedValue instanceof String) {
-                    //noinspection unchecked
-                    yield (T) untypedValue;
-                } else {
-                    yield null;
-                }
-            }
+    private void appendPoint(Map<String, PrimitiveChunkBuilder> chunkMap,
+                             PulseChunkMetadata metadata,
+                             long ts,
+                             Object value,
+                             String batchId) {
+        if (ts <= 0) {
+            log.warn("Ignoring data point with non-positive timestamp: %d".formatted(ts));
+            return;
+        }
+        if (value == null) {
+            return;
+        }
 
-            case BOOLEAN -> {
-                if (untypedValue instanceof Boolean) {
-                    //noinspection unchecked
-                    yield (T) untypedValue;
-                } else {
-                    yield null;
-                }
+        PulseDataType dataType = metadata.getType();
+
+        // Calculate chunk size in terms of milliseconds
+        long chunkTimeRange = appConfig.getIngestorChunkSize() * metadata.getSamplingRate();
+
+        // Normalize ts according to samplingRate
+        // This could arithmetically to negative nTs, but we can ignore it since
+        // we are writing 'real' timestamps, that are always significantly greater than both 0 and samplingRate
+        long nTs = ts - (ts % metadata.getSamplingRate());
+
+        // Calculate tsStart and tsEnd (tsStart <= ts < tsEnd (== tsStart + chunkTimeRange)
+        long tsStart = nTs - (nTs % chunkTimeRange);
+        long tsEnd = tsStart + chunkTimeRange;
+
+        // Determine the chunk ID based on the timestamp and metadata
+        String chunkId = "%s_%s_%d_%d".formatted(metadata.getSafePath(), dataType.name(), tsStart, metadata.getSamplingRate());
+
+        // Create or update the chunk through its typed append. Values not matching the data type are skipped
+        PrimitiveChunkBuilder chunk = chunkMap.computeIfAbsent(chunkId, id ->
+                PrimitiveChunkBuilder.create(dataType, id, metadata.getPath(), tsStart, tsEnd));
+        switch (chunk) {
+            case PrimitiveChunkBuilder.DoubleChunkBuilder doubles when value instanceof Double d -> doubles.appendDouble(nTs, d, batchId);
+            case PrimitiveChunkBuilder.LongChunkBuilder longs when value instanceof Long l -> longs.appendLong(nTs, l, batchId);
+            case PrimitiveChunkBuilder.BooleanChunkBuilder booleans when value instanceof Boolean b -> booleans.appendBoolean(nTs, b, batchId);
+            case PrimitiveChunkBuilder.StringChunkBuilder strings when value instanceof String str -> strings.appendString(nTs, str, batchId);
+            default -> {
             }
-        };
+        }
+    }
+
+    private List<PrimitiveChunkBuilder> nonEmptyChunks(Map<String, PrimitiveChunkBuilder> chunkMap) {
+        return chunkMap.values().stream()
+                .filter(chunk -> !chunk.isEmpty())
+                .toList();
     }
 
 }
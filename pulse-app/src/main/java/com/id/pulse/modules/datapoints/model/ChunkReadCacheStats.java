@@ -0,0 +1,12 @@
+package com.id.pulse.modules.datapoints.model;
+
+public record ChunkReadCacheStats(boolean enabled,
+                                  boolean offHeap,
+                                  long entries,
+                                  long bytes,
+                                  long maxBytes,
+                                  long hits,
+                                  long misses,
+                                  long evictions,
+                                  long invalidations) {
+}
@@ -3,21 +3,47 @@ package com.id.pulse.modules.datapoints.model;
 import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.channel.model.enums.PulseAggregationType;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
-import lombok.Data;
+import lombok.Getter;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
-@Data
+/**
+ * Accumulates the data points of one aggregation window, keeping only running aggregates: memory does not grow with
+ * the number of points.
+ * <p>
+ * Pushes are lock-free: count and sums are striped adders, min/max are CAS loops on primitive bits for DOUBLE and
+ * LONG points and on the value for other Comparable types. Null values are only kept by COPY.
+ */
 public class DpAccumulator {
 
+    @Getter
     private final String groupCode;
+    @Getter
     private final String path;
+    @Getter
     private final long tmsAccStart;
+    @Getter
     private final long tmsAccEnd;
-    private final List<PulseDataPoint> dps = Collections.synchronizedList(new ArrayList<>());
+
+    // Type of the first pushed point, which drives the aggregation
+    private final AtomicReference<PulseDataType> type = new AtomicReference<>();
+    // Last pushed point (COPY) and point with the greatest tms (batch id of the aggregated point)
+    private final AtomicReference<PulseDataPoint> last = new AtomicReference<>();
+    private final AtomicReference<PulseDataPoint> latest = new AtomicReference<>();
+
+    // Numeric points (DOUBLE, LONG)
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder doubleSum = new DoubleAdder();
+    private final LongAdder longSum = new LongAdder();
+    private final AtomicLong doubleMin = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong doubleMax = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong longMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong longMax = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicReference<Comparable<Object>> min = new AtomicReference<>();
+    private final AtomicReference<Comparable<Object>> max = new AtomicReference<>();
 
     public DpAccumulator(String groupCode, String path, long tmsAccStart, long tmsAccEnd) {
         this.groupCode = groupCode;
@@ -27,10 +53,36 @@ public class DpAccumulator {
     }
 
     /**
-     * Add a data point to the accumulator. Thread-safe via synchronizedList.
+     * Add a data point to the accumulator. Thread-safe and lock-free.
      */
     public void push(PulseDataPoint dp) {
-        dps.add(dp);
+        type.compareAndSet(null, dp.getType());
+        last.set(dp);
+        latest.accumulateAndGet(dp, (current, candidate) ->
+                current == null || tmsOf(candidate) > tmsOf(current) ? candidate : current);
+
+        Object val = dp.getVal();
+        if (val == null) {
+            return;
+        }
+        if (val instanceof Number number && (dp.getType() == PulseDataType.DOUBLE || dp.getType() == PulseDataType.LONG)) {
+            double d = number.doubleValue();
+            long l = number.longValue();
+            doubleSum.add(d);
+            longSum.add(l);
+            if (!Double.isNaN(d)) {
+                doubleMin.accumulateAndGet(Double.doubleToRawLongBits(d), DpAccumulator::minDoubleBits);
+                doubleMax.accumulateAndGet(Double.doubleToRawLongBits(d), DpAccumulator::maxDoubleBits);
+            }
+            longMin.accumulateAndGet(l, Math::min);
+            longMax.accumulateAndGet(l, Math::max);
+            count.increment();
+        } else if (val instanceof Comparable<?>) {
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) val;
+            min.accumulateAndGet(comparable, (current, candidate) -> current == null || candidate.compareTo(current) < 0 ? candidate : current);
+            max.accumulateAndGet(comparable, (current, candidate) -> current == null || candidate.compareTo(current) > 0 ? candidate : current);
+        }
     }
 
     /**
@@ -38,103 +90,83 @@ public class DpAccumulator {
      * Supports DOUBLE and LONG for SUM/AVG; MIN/MAX/COPY work with Comparable values including BOOLEAN and STRING.
      */
     public PulseDataPoint aggregate(PulseAggregationType aggType) {
-        synchronized (dps) {
-            if (dps.isEmpty()) {
-                return null;
-            }
-
-            PulseDataType type = dps.getFirst().getType();
-            return switch (aggType) {
-                case COPY -> dps.getLast();
-                case MIN -> aggregateMin(type);
-                case MAX -> aggregateMax(type);
-                case SUM -> aggregateSum(type);
-                case AVG -> aggregateAvg(type);
-                default -> throw new IllegalArgumentException("Unsupported aggregation type: " + aggType);
-            };
+        PulseDataPoint lastPoint = last.get();
+        if (lastPoint == null) {
+            return null;
         }
+
+        PulseDataType dataType = type.get();
+        return switch (aggType) {
+            case COPY -> lastPoint;
+            case MIN -> aggregateMin(dataType);
+            case MAX -> aggregateMax(dataType);
+            case SUM -> aggregateSum(dataType);
+            case AVG -> aggregateAvg(dataType);
+            default -> throw new IllegalArgumentException("Unsupported aggregation type: " + aggType);
+        };
     }
 
-    private PulseDataPoint aggregateAvg(PulseDataType type) {
-        double avg = switch (type) {
-            case DOUBLE -> dps.stream()
-                    .mapToDouble(dp -> ((Number) dp.getVal()).doubleValue())
-                    .average().orElse(0.0);
-            case LONG -> dps.stream()
-                    .mapToLong(dp -> ((Number) dp.getVal()).longValue())
-                    .average().orElse(0.0);
-            default -> throw new IllegalArgumentException("AVG not supported for type: " + type);
+    private PulseDataPoint aggregateAvg(PulseDataType dataType) {
+        long n = count.sum();
+        double avg = switch (dataType) {
+            case DOUBLE -> n == 0 ? 0.0 : doubleSum.sum() / n;
+            case LONG -> n == 0 ? 0.0 : (double) longSum.sum() / n;
+            default -> throw new IllegalArgumentException("AVG not supported for type: " + dataType);
         };
-        return PulseDataPoint.builder()
-                .groupCode(groupCode)
-                .path(path)
-                .tms(tmsAccEnd)
-                .type(PulseDataType.DOUBLE)
-                .val(avg)
-                .batchId(resolveBatchId())
-                .build();
+        return newPoint(PulseDataType.DOUBLE, avg);
     }
 
-    private PulseDataPoint aggregateSum(PulseDataType type) {
-        var builder = PulseDataPoint.builder()
-                .groupCode(groupCode)
-                .path(path)
-                .tms(tmsAccEnd)
-                .batchId(resolveBatchId());
-
-        switch (type) {
-            case DOUBLE -> {
-                double sum = dps.stream()
-                        .mapToDouble(dp -> ((Number) dp.getVal()).doubleValue())
-                        .sum();
-                return builder.type(PulseDataType.DOUBLE).val(sum).build();
-            }
-            case LONG -> {
-                long sum = dps.stream()
-                        .mapToLong(dp -> ((Number) dp.getVal()).longValue())
-                        .sum();
-                return builder.type(PulseDataType.LONG).val(sum).build();
-            }
-            default -> throw new IllegalArgumentException("SUM not supported for type: " + type);
-        }
+    private PulseDataPoint aggregateSum(PulseDataType dataType) {
+        return switch (dataType) {
+            case DOUBLE -> newPoint(PulseDataType.DOUBLE, doubleSum.sum());
+            case LONG -> newPoint(PulseDataType.LONG, longSum.sum());
+            default -> throw new IllegalArgumentException("SUM not supported for type: " + dataType);
+        };
     }
 
-    private <T extends Comparable<T>> PulseDataPoint aggregateMin(PulseDataType dataType) {
-        @SuppressWarnings("unchecked")
-        T minValue = dps.stream()
-                .map(dp -> (T) dp.getVal())
-                .min(Comparator.naturalOrder())
-                .orElse(null);
-        return PulseDataPoint.builder()
-                .groupCode(groupCode)
-                .path(path)
-                .tms(tmsAccEnd)
-                .type(dataType)
-                .val(minValue)
-                .batchId(resolveBatchId())
-                .build();
+    private PulseDataPoint aggregateMin(PulseDataType dataType) {
+        boolean empty = count.sum() == 0;
+        return newPoint(dataType, switch (dataType) {
+            case DOUBLE -> empty ? null : Double.longBitsToDouble(doubleMin.get());
+            case LONG -> empty ? null : longMin.get();
+            default -> min.get();
+        });
+    }
+
+    private PulseDataPoint aggregateMax(PulseDataType dataType) {
+        boolean empty = count.sum() == 0;
+        return newPoint(dataType, switch (dataType) {
+            case DOUBLE -> empty ? null : Double.longBitsToDouble(doubleMax.get());
+            case LONG -> empty ? null : longMax.get();
+            default -> max.get();
+        });
     }
 
-    private <T extends Comparable<T>> PulseDataPoint aggregateMax(PulseDataType dataType) {
-        @SuppressWarnings("unchecked")
-        T maxValue = dps.stream()
-                .map(dp -> (T) dp.getVal())
-                .max(Comparator.naturalOrder())
-                .orElse(null);
+    private PulseDataPoint newPoint(PulseDataType dataType, Object val) {
+        PulseDataPoint latestPoint = latest.get();
         return PulseDataPoint.builder()
                 .groupCode(groupCode)
                 .path(path)
                 .tms(tmsAccEnd)
                 .type(dataType)
-                .val(maxValue)
-                .batchId(resolveBatchId())
+                .val(val)
+                .batchId(latestPoint != null ? latestPoint.getBatchId() : null)
                 .build();
     }
 
-    private String resolveBatchId() {
-        return dps.stream()
-                .max(Comparator.comparingLong(PulseDataPoint::getTms))
-                .map(PulseDataPoint::getBatchId)
-                .orElse(null);
+    private static long tmsOf(PulseDataPoint dp) {
+        return dp.getTms() != null ? dp.getTms() : Long.MIN_VALUE;
+    }
+
+    // NaN bits mark "no value yet" (NaN points are left out of min/max); otherwise Double.compare ordering, as the
+    // boxed natural order
+    private static long minDoubleBits(long current, long candidate) {
+        double c = Double.longBitsToDouble(current);
+        return Double.isNaN(c) || Double.compare(Double.longBitsToDouble(candidate), c) < 0 ? candidate : current;
+    }
+
+    private static long maxDoubleBits(long current, long candidate) {
+        double c = Double.longBitsToDouble(current);
+        return Double.isNaN(c) || Double.compare(Double.longBitsToDouble(candidate), c) > 0 ? candidate : current;
     }
 }
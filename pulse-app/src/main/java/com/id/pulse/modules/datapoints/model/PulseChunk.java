@@ -26,6 +26,10 @@ public class PulseChunk<T> {
     public static final String TS = "ts";
     public static final String V = "v";
     public static final String BATCH_IDS = "batchIds";
+    public static final String BLOCKS = "blocks";
+    public static final String BLOCK_OFFSETS = "blockOffsets";
+    public static final String BLOCK_BATCH_IDS = "blockBatchIds";
+    public static final String REVISION = "rev";
 
     public static final String PATH_START_END_TYPE_IDX = "path_start_end_type_idx";
 
@@ -0,0 +1,328 @@
+package com.id.pulse.modules.datapoints.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.model.PulseChunkMetadataEntity;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Process-wide cache of chunk metadata, shared by every writer (poller, measures, output writers).
+ * <ul>
+ *     <li>warmed up in bulk when the application is ready</li>
+ *     <li>entries expire after {@code ttl-ms}; least recently used entries are evicted above {@code max-size}</li>
+ *     <li>loaded outside the map locks: concurrent readers of a loading series wait for its single load</li>
+ *     <li>the affected entries are invalidated on {@link PulseConfigChangedEvent} (local edits, or other nodes through
+ *     the version stamp); a full change reloads all entries in bulk instead of dropping them</li>
+ *     <li>the batchIds index is ensured once per collection, not once per path</li>
+ *     <li>readers look metadata up by path only ({@link #findByPaths}), from a separate index filled on their misses</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class ChunkMetadataCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern UNSAFE_CHARS = Pattern.compile("[^a-zA-Z0-9._-]");
+
+    private final AppConfig appConfig;
+    private final MongoTemplate mongoTemplate;
+    private final ChunkMetadataCrudService chunkMetadataCrudService;
+
+    private final ConcurrentHashMap<MetadataKey, CachedMetadata> cache = new ConcurrentHashMap<>();
+    private final Set<String> indexedCollections = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Stored metadata of the paths looked up by readers, every sampling rate of a path. Paths without metadata are not
+    // kept, they may be written at any time
+    private final ConcurrentHashMap<String, List<PulseChunkMetadata>> byPath = new ConcurrentHashMap<>();
+
+    // Keyed by raw path, so hits skip the sanitizing. Metadata rows are unique by (safePath, type, samplingRate),
+    // whatever the group: paths sanitized alike share the same metadata under distinct keys
+    private record MetadataKey(String path, PulseDataType type, long samplingRate) {
+    }
+
+    private static final class CachedMetadata {
+
+        // Completed by the thread that created the entry, once loaded
+        private final CompletableFuture<PulseChunkMetadata> metadata;
+        private final long loadedAt = System.currentTimeMillis();
+        private volatile long lastAccess = loadedAt;
+
+        private CachedMetadata(CompletableFuture<PulseChunkMetadata> metadata) {
+            this.metadata = metadata;
+        }
+
+        private static CachedMetadata loaded(PulseChunkMetadata metadata) {
+            return new CachedMetadata(CompletableFuture.completedFuture(metadata));
+        }
+
+        // Null while loading
+        private PulseChunkMetadata loadedMetadata() {
+            return metadata.isCompletedExceptionally() ? null : metadata.getNow(null);
+        }
+    }
+
+    public ChunkMetadataCache(AppConfig appConfig, MongoTemplate mongoTemplate, ChunkMetadataCrudService chunkMetadataCrudService) {
+        this.appConfig = appConfig;
+        this.mongoTemplate = mongoTemplate;
+        this.chunkMetadataCrudService = chunkMetadataCrudService;
+    }
+
+    public static String toSafePath(String path) {
+        return UNSAFE_CHARS.matcher(WHITESPACE.matcher(path).replaceAll("")).replaceAll("__");
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the metadata of a series, creating it (and its collection index) on first use.
+     */
+    public PulseChunkMetadata get(String groupCode, String path, PulseDataType type, long samplingRate) {
+        // Check params
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+        if (samplingRate <= 1) {
+            throw new IllegalArgumentException("Sampling rate must be greater than one");
+        }
+
+        var key = new MetadataKey(path, type, samplingRate);
+        long now = System.currentTimeMillis();
+        var cached = cache.get(key);
+        if (cached != null && now - cached.loadedAt >= appConfig.getIngestorMetadataCacheTtlMs()) {
+            cache.remove(key, cached);
+            cached = null;
+        }
+        if (cached == null) {
+            // Load outside the map locks (upsert, read, indexes): only the thread that installs the entry loads it
+            var loading = new CachedMetadata(new CompletableFuture<>());
+            cached = cache.putIfAbsent(key, loading);
+            if (cached == null) {
+                cached = loading;
+                try {
+                    loading.metadata.complete(load(groupCode, path, type, samplingRate));
+                } catch (RuntimeException ex) {
+                    cache.remove(key, loading);
+                    loading.metadata.completeExceptionally(ex);
+                    throw ex;
+                }
+                evictIfNeeded();
+            }
+        }
+        cached.lastAccess = now;
+        try {
+            return cached.metadata.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the stored metadata of the given paths, any type and sampling rate, without creating any. Paths not
+     * looked up before are read with one query.
+     */
+    public List<PulseChunkMetadata> findByPaths(Collection<String> paths) {
+        List<PulseChunkMetadata> result = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String path : paths) {
+            var cached = byPath.get(path);
+            if (cached != null) {
+                result.addAll(cached);
+            } else {
+                missing.add(path);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        var loaded = new HashMap<String, List<PulseChunkMetadata>>();
+        for (PulseChunkMetadata metadata : chunkMetadataCrudService.findByPaths(missing)) {
+            loaded.computeIfAbsent(metadata.getPath(), k -> new ArrayList<>()).add(metadata);
+            result.add(metadata);
+        }
+        if (byPath.size() + loaded.size() > appConfig.getIngestorMetadataCacheMaxSize()) {
+            // Rare: the index covers the paths read, far fewer than the series written
+            byPath.clear();
+        }
+        loaded.forEach((path, metadata) -> byPath.put(path, List.copyOf(metadata)));
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            loadAll();
+            log.info("Chunk metadata cache warmed up with {} entries ({} collections) in {} ms",
+                    cache.size(), indexedCollections.size(), System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            log.warn("Chunk metadata cache warm-up failed, entries will be loaded on demand", ex);
+        }
+    }
+
+    @EventListener
+    public void onConfigChanged(PulseConfigChangedEvent event) {
+        if (event.full()) {
+            // Metadata never changes once created, only disappears with its series: reload it with one read and drop
+            // the deleted entries, rather than having every writer load its series again
+            try {
+                loadAll();
+            } catch (Exception ex) {
+                log.warn("Chunk metadata cache reload failed, entries will be loaded on demand", ex);
+                cache.clear();
+                byPath.clear();
+            }
+            return;
+        }
+        cache.entrySet().removeIf(entry -> {
+            var metadata = entry.getValue().loadedMetadata();
+            // Entries still loading may predate the change
+            return metadata == null
+                    || event.affectsPath(entry.getKey().path())
+                    || event.affectsPath(metadata.getPath())
+                    || event.affectsGroup(metadata.getGroupCode());
+        });
+        byPath.entrySet().removeIf(entry -> event.affectsPath(entry.getKey())
+                || entry.getValue().stream().anyMatch(metadata -> event.affectsGroup(metadata.getGroupCode())));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+        byPath.clear();
+    }
+
+    private void loadAll() {
+        var stored = new HashMap<MetadataKey, PulseChunkMetadata>();
+        for (PulseChunkMetadata metadata : chunkMetadataCrudService.findAll()) {
+            if (metadata.getPath() == null || metadata.getType() == null || metadata.getSamplingRate() == null) {
+                continue;
+            }
+            stored.put(new MetadataKey(metadata.getPath(), metadata.getType(), metadata.getSamplingRate()), metadata);
+        }
+        // Loaded entries missing from the store were deleted (entries keyed by a path sanitized alike are reloaded on
+        // demand); entries still loading are kept
+        cache.entrySet().removeIf(entry -> entry.getValue().loadedMetadata() != null && !stored.containsKey(entry.getKey()));
+        stored.forEach((key, metadata) -> {
+            cache.putIfAbsent(key, CachedMetadata.loaded(metadata));
+            ensureIndex(metadata.getCollectionName());
+        });
+        evictIfNeeded();
+
+        // The paths indexed for readers get their metadata from the same read
+        var storedByPath = new HashMap<String, List<PulseChunkMetadata>>();
+        stored.values().forEach(metadata -> storedByPath.computeIfAbsent(metadata.getPath(), k -> new ArrayList<>()).add(metadata));
+        byPath.replaceAll((path, metadata) -> List.copyOf(storedByPath.getOrDefault(path, List.of())));
+        byPath.values().removeIf(List::isEmpty);
+    }
+
+    private PulseChunkMetadata load(String groupCode, String path, PulseDataType type, long samplingRate) {
+        // Logic to prepare metadata
+        log.trace("Preparing metadata for path:%s, type:%s, samplingRate:%d".formatted(path, type, samplingRate));
+
+        // Clean and sanitize path and type
+        String safePath = toSafePath(path);
+        String safeType = toSafePath(type.name());
+
+        // Generate collection name and ID
+        String collectionName = "PulseChunks_%s_%s_%d".formatted(groupCode, safeType, samplingRate);
+        String metadataId = "%s_%s_%s_%d".formatted(groupCode, safePath, safeType, samplingRate);
+
+        // Upsert metadata entry - Upsert's here to guarantee atomicity and idempotency
+        Criteria criteria = new Criteria().andOperator(
+                where(PulseChunkMetadataEntity.SAFE_PATH).is(safePath),
+                where(PulseChunkMetadataEntity.TYPE).is(type),
+                where(PulseChunkMetadataEntity.SAMPLING_RATE).is(samplingRate)
+        );
+        Update update = new Update()
+                .setOnInsert(PulseChunkMetadataEntity.ID, metadataId)
+                .setOnInsert(PulseChunkMetadataEntity.GROUP_CODE, groupCode)
+                .setOnInsert(PulseChunkMetadataEntity.SAFE_PATH, safePath)
+                .setOnInsert(PulseChunkMetadataEntity.PATH, path)
+                .setOnInsert(PulseChunkMetadataEntity.TYPE, type)
+                .setOnInsert(PulseChunkMetadataEntity.SAMPLING_RATE, samplingRate)
+                .setOnInsert(PulseChunkMetadataEntity.COLLECTION_NAME, collectionName);
+        mongoTemplate.upsert(query(criteria), update, PulseChunkMetadataEntity.class);
+
+        // Read, map to model and return
+        var entity = mongoTemplate.findOne(query(criteria), PulseChunkMetadataEntity.class);
+        if (entity == null) {
+            throw new IllegalStateException("Failed to retrieve metadata entry");
+        }
+        var model = new PulseChunkMetadata();
+        BeanUtils.copyProperties(entity, model);
+
+        ensureIndex(model.getCollectionName());
+        return model;
+    }
+
+    private void ensureIndex(String collectionName) {
+        if (collectionName == null || !indexedCollections.add(collectionName)) {
+            return;
+        }
+        // Ensure the batch id indexes (one per layout) exist on the data collection, and the (path, tsStart) index
+        // used by range reads
+        try {
+            var indexOps = mongoTemplate.indexOps(collectionName);
+            indexOps.ensureIndex(new Index().on(PulseChunk.BATCH_IDS, Sort.Direction.ASC));
+            indexOps.ensureIndex(new Index().on(PulseChunk.BLOCK_BATCH_IDS, Sort.Direction.ASC).sparse());
+            indexOps.ensureIndex(new Index().on(PulseChunk.PATH, Sort.Direction.ASC).on(PulseChunk.TS_START, Sort.Direction.ASC));
+        } catch (Exception ex) {
+            // Retry on the next load
+            indexedCollections.remove(collectionName);
+            log.warn("Failed to ensure indexes on {}", collectionName, ex);
+        }
+    }
+
+    private void evictIfNeeded() {
+        int maxSize = appConfig.getIngestorMetadataCacheMaxSize();
+        if (cache.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // Evict a tenth of the capacity at once, least recently used first, to amortize the scan
+            int toEvict = cache.size() - maxSize + Math.max(1, maxSize / 10);
+            cache.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                    .limit(toEvict)
+                    .toList()
+                    .forEach(entry -> cache.remove(entry.getKey(), entry.getValue()));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.id.pulse.modules.datapoints.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.ChunkReadCacheStats;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import com.id.pulse.modules.datapoints.util.GorillaChunkCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide cache of the decoded points of closed chunks, used by the extractor.
+ * <ul>
+ *     <li>only chunks whose time span is over are cached: the live tail is always read from Mongo</li>
+ *     <li>points are kept re-encoded as a single Gorilla block, on the heap or in direct buffers
+ *     ({@code off-heap}), and decoded by every hit: only the blocks are held, so {@code max-bytes} bounds the cache</li>
+ *     <li>above {@code max-bytes}, a clock hand goes round the chunks: chunks read again since its last pass get a
+ *     second chance, the others are evicted</li>
+ *     <li>chunks are invalidated when this node writes to them (late points, batch cleanup); entries expire after
+ *     {@code ttl-ms}, which bounds how long a write made by another node can go unseen</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class ChunkReadCache {
+
+    private final AppConfig appConfig;
+
+    private final ConcurrentHashMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // Clock hand, kept between evictions and guarded by the eviction lock
+    private Iterator<Series> seriesHand;
+    private Series handSeries;
+    private Iterator<CachedChunk> chunkHand;
+
+    private record SeriesKey(String collectionName, String path) {
+    }
+
+    private static final class Series {
+
+        // Bumped by every invalidation, so a read racing with a write does not cache the old chunk
+        private final AtomicLong generation = new AtomicLong();
+        private final ConcurrentSkipListMap<Long, CachedChunk> chunks = new ConcurrentSkipListMap<>();
+    }
+
+    private static final class CachedChunk {
+
+        private final Object id;
+        private final long tsStart;
+        private final long tsEnd;
+        private final byte[] heapBlock;
+        private final ByteBuffer directBlock;
+        private final int size;
+        private final long loadedAt = System.currentTimeMillis();
+        // Set by hits, cleared by the clock hand
+        private volatile boolean referenced;
+
+        private CachedChunk(Object id, long tsStart, long tsEnd, byte[] block, boolean offHeap) {
+            this.id = id;
+            this.tsStart = tsStart;
+            this.tsEnd = tsEnd;
+            this.size = block.length;
+            if (offHeap) {
+                this.heapBlock = null;
+                this.directBlock = ByteBuffer.allocateDirect(block.length).put(block).flip();
+            } else {
+                this.heapBlock = block;
+                this.directBlock = null;
+            }
+        }
+
+        private byte[] block() {
+            if (heapBlock != null) {
+                return heapBlock;
+            }
+            byte[] copy = new byte[size];
+            directBlock.duplicate().get(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * A chunk served from memory, with its points in time order.
+     */
+    public record Hit(Object id, long tsStart, long tsEnd, ChunkColumns columns) {
+    }
+
+    public ChunkReadCache(AppConfig appConfig) {
+        this.appConfig = appConfig;
+    }
+
+    public boolean isEnabled() {
+        return appConfig.isExtractorCacheEnabled() && appConfig.getExtractorCacheMaxBytes() > 0;
+    }
+
+    /**
+     * Returns the cached chunks of a path overlapping {@code [start, end)}, by chunk start. Expired entries are dropped.
+     */
+    public List<Hit> get(String collectionName, String path, long start, long end) {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        var cached = series.get(new SeriesKey(collectionName, path));
+        if (cached == null) {
+            return List.of();
+        }
+
+        long now = System.currentTimeMillis();
+        List<Hit> result = new ArrayList<>();
+        // Chunks of a path do not overlap: the first one that can reach start is the one starting at or before it
+        Long from = cached.chunks.floorKey(start);
+        for (CachedChunk chunk : cached.chunks.subMap(from == null ? Long.MIN_VALUE : from, true, end, false).values()) {
+            if (chunk.tsEnd <= start) {
+                continue;
+            }
+            if (now - chunk.loadedAt >= appConfig.getExtractorCacheTtlMs()) {
+                remove(cached, chunk);
+                continue;
+            }
+            chunk.referenced = true;
+            result.add(new Hit(chunk.id, chunk.tsStart, chunk.tsEnd, decode(chunk.block())));
+        }
+        hits.addAndGet(result.size());
+        return result;
+    }
+
+    /**
+     * Current generation of a series: pass it back to {@link #put} for the chunks read after this call.
+     */
+    public long generation(String collectionName, String path) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        return series.computeIfAbsent(new SeriesKey(collectionName, path), k -> new Series()).generation.get();
+    }
+
+    /**
+     * Caches a chunk read from Mongo if its time span is over, unless the series was invalidated since
+     * {@code generation} was taken.
+     *
+     * @param columns the points of the chunk, in time order
+     */
+    public void put(String collectionName, String path, PulseDataType type, Document doc, ChunkColumns columns, long generation) {
+        if (!isEnabled()) {
+            return;
+        }
+        misses.incrementAndGet();
+        if (type == null || columns.isEmpty()) {
+            return;
+        }
+        Number tsStart = doc.get(PulseChunk.TS_START, Number.class);
+        Number tsEnd = doc.get(PulseChunk.TS_END, Number.class);
+        if (tsStart == null || tsEnd == null || tsEnd.longValue() > System.currentTimeMillis()) {
+            return;
+        }
+        if (columns.v().contains(null)) {
+            return;
+        }
+
+        var encoder = GorillaChunkCodec.encoder(type);
+        for (int i = 0; i < columns.size(); i++) {
+            encoder.append(columns.ts().get(i), columns.v().get(i), columns.batchIds().get(i));
+        }
+        byte[] block = encoder.toByteArray();
+        if (block.length > appConfig.getExtractorCacheMaxBytes()) {
+            return;
+        }
+
+        var target = series.computeIfAbsent(new SeriesKey(collectionName, path), k -> new Series());
+        var chunk = new CachedChunk(doc.get("_id"), tsStart.longValue(), tsEnd.longValue(), block, appConfig.isExtractorCacheOffHeap());
+        var previous = target.chunks.put(chunk.tsStart, chunk);
+        bytes.addAndGet(chunk.size - (previous == null ? 0 : previous.size));
+        if (target.generation.get() != generation) {
+            remove(target, chunk);
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Drops the cached chunk of a path starting at {@code tsStart}, after a write to it.
+     */
+    public void invalidate(String collectionName, String path, long tsStart) {
+        var target = series.get(new SeriesKey(collectionName, path));
+        if (target == null) {
+            return;
+        }
+        target.generation.incrementAndGet();
+        var removed = target.chunks.remove(tsStart);
+        if (removed != null) {
+            bytes.addAndGet(-removed.size);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        // Series are kept, with their generation, so that reads in progress do not cache what they read
+        series.values().forEach(target -> {
+            target.generation.incrementAndGet();
+            target.chunks.values().forEach(chunk -> remove(target, chunk));
+        });
+    }
+
+    public ChunkReadCacheStats getStats() {
+        long entries = series.values().stream().mapToLong(target -> target.chunks.size()).sum();
+        return new ChunkReadCacheStats(
+                isEnabled(),
+                appConfig.isExtractorCacheOffHeap(),
+                entries,
+                bytes.get(),
+                appConfig.getExtractorCacheMaxBytes(),
+                hits.get(),
+                misses.get(),
+                evictions.get(),
+                invalidations.get());
+    }
+
+    private static ChunkColumns decode(byte[] block) {
+        var decoder = GorillaChunkCodec.decoder(block);
+        List<Long> ts = new ArrayList<>(decoder.size());
+        List<Object> v = new ArrayList<>(decoder.size());
+        List<String> batchIds = new ArrayList<>(decoder.size());
+        while (decoder.hasNext()) {
+            decoder.next();
+            ts.add(decoder.ts());
+            v.add(decoder.value());
+            batchIds.add(decoder.batchId());
+        }
+        return new ChunkColumns(Collections.unmodifiableList(ts), Collections.unmodifiableList(v), Collections.unmodifiableList(batchIds));
+    }
+
+    private boolean remove(Series target, CachedChunk chunk) {
+        if (target.chunks.remove(chunk.tsStart, chunk)) {
+            bytes.addAndGet(-chunk.size);
+            return true;
+        }
+        return false;
+    }
+
+    private void evictIfNeeded() {
+        long maxBytes = appConfig.getExtractorCacheMaxBytes();
+        if (bytes.get() <= maxBytes || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // Evict down to 90% of the budget at once, resuming where the hand stopped. Three rounds at most: past the
+            // first full round every chunk has lost its second chance, unless read again meanwhile
+            long target = maxBytes - maxBytes / 10;
+            int rounds = 0;
+            while (bytes.get() > target && rounds < 3) {
+                if (chunkHand == null || !chunkHand.hasNext()) {
+                    if (seriesHand == null || !seriesHand.hasNext()) {
+                        seriesHand = series.values().iterator();
+                        rounds++;
+                        if (!seriesHand.hasNext()) {
+                            break;
+                        }
+                    }
+                    handSeries = seriesHand.next();
+                    chunkHand = handSeries.chunks.values().iterator();
+                    continue;
+                }
+                var chunk = chunkHand.next();
+                if (chunk.referenced) {
+                    chunk.referenced = false;
+                } else if (remove(handSeries, chunk)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
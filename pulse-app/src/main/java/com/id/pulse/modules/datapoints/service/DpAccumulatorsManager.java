@@ -1,19 +1,47 @@
 package com.id.pulse.modules.datapoints.service;
 
+import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.datapoints.model.DpAccumulator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * Open accumulators, indexed by group code and path then ordered by window end: completed windows are the head of
+ * their series.
+ * <p>
+ * Each series remembers the end of the last window it closed: points pushed into a window already closed are late,
+ * dropped and counted per group.
+ */
 @Service
 @Slf4j
 public class DpAccumulatorsManager {
 
-    private final Map<String, DpAccumulator> accumulators = Collections.synchronizedMap(new HashMap<>());
+    private record WindowKey(long tmsAccEnd, long tmsAccStart) {
+    }
+
+    private static final Comparator<WindowKey> WINDOW_ORDER = Comparator
+            .comparingLong(WindowKey::tmsAccEnd)
+            .thenComparingLong(WindowKey::tmsAccStart);
+
+    private static final class Series {
+
+        private final ConcurrentSkipListMap<WindowKey, DpAccumulator> windows = new ConcurrentSkipListMap<>(WINDOW_ORDER);
+        // End of the latest closed window, guarded by the series lock
+        private long closedUpTo = Long.MIN_VALUE;
+    }
+
+    // Series are kept once created: one (possibly empty) series per accumulated channel
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Series>> accumulators = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> lateDroppedPoints = new ConcurrentHashMap<>();
 
     /**
      * Creates a new DpAccumulator if it does not exist, or returns the existing one.
@@ -26,34 +54,115 @@ public class DpAccumulatorsManager {
      * @return The DpAccumulator object
      */
     public DpAccumulator getOrCreate(String groupCode, String path, long tmsAccStart, long tmsAccEnd) {
-        return accumulators.computeIfAbsent(
-                makeKey(groupCode, path, tmsAccStart, tmsAccEnd),
+        return series(groupCode, path).windows.computeIfAbsent(
+                new WindowKey(tmsAccEnd, tmsAccStart),
                 (k) -> new DpAccumulator(groupCode, path, tmsAccStart, tmsAccEnd)
         );
     }
 
+    /**
+     * Pushes a data point into its window, unless the window was already closed.
+     *
+     * @return false when the point is late and was dropped
+     */
+    public boolean push(String groupCode, String path, long tmsAccStart, long tmsAccEnd, PulseDataPoint dp) {
+        var series = series(groupCode, path);
+        // Serialized with closing, so that no point lands in a window being polled
+        synchronized (series) {
+            if (tmsAccEnd <= series.closedUpTo) {
+                lateDroppedPoints.computeIfAbsent(groupCode, k -> new AtomicLong()).incrementAndGet();
+                return false;
+            }
+            series.windows.computeIfAbsent(
+                    new WindowKey(tmsAccEnd, tmsAccStart),
+                    (k) -> new DpAccumulator(groupCode, path, tmsAccStart, tmsAccEnd)
+            ).push(dp);
+        }
+        return true;
+    }
+
     /**
      * Finds all accumulators that are completed (i.e., tmsAccEnd <= tmsCompare).
      *
      * @param path        - Path of the accumulator
      * @param tmsCompare  - Time to compare against
      *
-     * @return List of completed accumulators
+     * @return List of completed accumulators, by window end
      */
     public List<DpAccumulator> findCompleted(String groupCode, String path, long tmsCompare) {
         if (path == null) {
             throw new IllegalArgumentException("Path cannot be null");
         }
 
-        // Take a snapshot of the values to avoid ConcurrentModificationException
-        List<DpAccumulator> snapshot;
-        synchronized (accumulators) {
-            snapshot = List.copyOf(accumulators.values());
+        var series = find(groupCode, path);
+        if (series == null) {
+            return List.of();
+        }
+        return List.copyOf(series.windows.headMap(new WindowKey(tmsCompare, Long.MAX_VALUE), true).values());
+    }
+
+    /**
+     * Removes and returns the accumulators that are completed (i.e., tmsAccEnd <= tmsCompare). Later points of their
+     * windows are dropped as late.
+     *
+     * @param path        - Path of the accumulator
+     * @param tmsCompare  - Time to compare against
+     *
+     * @return List of completed accumulators, by window end
+     */
+    public List<DpAccumulator> pollCompleted(String groupCode, String path, long tmsCompare) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+
+        var series = find(groupCode, path);
+        if (series == null) {
+            return List.of();
+        }
+        List<DpAccumulator> completed = new ArrayList<>();
+        synchronized (series) {
+            for (Map.Entry<WindowKey, DpAccumulator> head = series.windows.firstEntry();
+                 head != null && head.getKey().tmsAccEnd() <= tmsCompare;
+                 head = series.windows.firstEntry()) {
+                series.windows.remove(head.getKey());
+                series.closedUpTo = Math.max(series.closedUpTo, head.getKey().tmsAccEnd());
+                completed.add(head.getValue());
+            }
         }
+        return completed;
+    }
 
-        return snapshot.stream()
-                .filter(acc -> acc.getGroupCode().equals(groupCode) && acc.getPath().equals(path) && acc.getTmsAccEnd() <= tmsCompare)
-                .toList();
+    /**
+     * Earliest end among the open windows of a group, Long.MAX_VALUE when none is open.
+     */
+    public long earliestOpenEnd(String groupCode) {
+        var paths = accumulators.get(groupCode);
+        if (paths == null) {
+            return Long.MAX_VALUE;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Series series : paths.values()) {
+            var head = series.windows.firstEntry();
+            if (head != null) {
+                earliest = Math.min(earliest, head.getKey().tmsAccEnd());
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Group codes having accumulated series.
+     */
+    public List<String> getGroupCodes() {
+        return List.copyOf(accumulators.keySet());
+    }
+
+    /**
+     * Number of late points dropped since startup, by group code.
+     */
+    public Map<String, Long> getLateDroppedPoints() {
+        return lateDroppedPoints.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()));
     }
 
     /**
@@ -66,12 +175,21 @@ public class DpAccumulatorsManager {
             throw new IllegalArgumentException("RemoveList cannot be null");
         }
 
-        removeList.stream()
-                .map(acc -> makeKey(acc.getGroupCode(), acc.getPath(), acc.getTmsAccStart(), acc.getTmsAccEnd()))
-                .forEach(accumulators::remove);
+        for (DpAccumulator acc : removeList) {
+            var series = find(acc.getGroupCode(), acc.getPath());
+            if (series != null) {
+                series.windows.remove(new WindowKey(acc.getTmsAccEnd(), acc.getTmsAccStart()), acc);
+            }
+        }
+    }
+
+    private Series series(String groupCode, String path) {
+        return accumulators.computeIfAbsent(groupCode, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(path, k -> new Series());
     }
 
-    private static String makeKey(String groupCode, String path, long tmsAccStart, long tmsAccEnd) {
-        return "%s_%s_%d_%d".formatted(groupCode, path, tmsAccStart, tmsAccEnd);
+    private Series find(String groupCode, String path) {
+        var paths = accumulators.get(groupCode);
+        return paths == null ? null : paths.get(path);
     }
 }
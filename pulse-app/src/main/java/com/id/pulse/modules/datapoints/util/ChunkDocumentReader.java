@@ -0,0 +1,174 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the points of a raw chunk document regardless of its encoding.
+ * <p>
+ * A chunk may hold points in the array layout ({@code ts}, {@code v}, {@code batchIds}), in Gorilla blocks
+ * ({@code blocks}) or both, when a group switched encoding while the chunk was open. Points are returned in write
+ * order: each block records in {@code blockOffsets} how many array points were written before it, so array points
+ * and blocks are interleaved as they were pushed. {@code batchIds} only holds the ids of the array points, one per
+ * point; the blocks carry their own ids, and their distinct ones are kept in {@code blockBatchIds} for lookups.
+ */
+public final class ChunkDocumentReader {
+
+    private ChunkDocumentReader() {
+    }
+
+    public record ChunkColumns(List<Long> ts, List<Object> v, List<String> batchIds) {
+
+        public int size() {
+            return ts.size();
+        }
+
+        public boolean isEmpty() {
+            return ts.isEmpty();
+        }
+
+        /**
+         * Returns the points in timestamp order; on duplicate timestamps the last written point wins.
+         * Returns this instance when the points are already strictly increasing, which is the common case.
+         */
+        public ChunkColumns sorted() {
+            boolean ordered = true;
+            for (int i = 1; i < ts.size() && ordered; i++) {
+                ordered = ts.get(i - 1) < ts.get(i);
+            }
+            if (ordered) {
+                return this;
+            }
+
+            // Stable sort keeps write order among equal timestamps, so the last one is the latest write
+            Integer[] order = new Integer[ts.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(ts::get));
+
+            List<Long> sortedTs = new ArrayList<>(order.length);
+            List<Object> sortedV = new ArrayList<>(order.length);
+            List<String> sortedBatchIds = new ArrayList<>(order.length);
+            for (int i = 0; i < order.length; i++) {
+                if (i + 1 < order.length && ts.get(order[i]).equals(ts.get(order[i + 1]))) {
+                    continue;
+                }
+                sortedTs.add(ts.get(order[i]));
+                sortedV.add(v.get(order[i]));
+                sortedBatchIds.add(batchIds.get(order[i]));
+            }
+            return new ChunkColumns(sortedTs, sortedV, sortedBatchIds);
+        }
+
+        /**
+         * Returns the points in {@code [start, end)} as views over these columns, located by binary search: the
+         * points must be in timestamp order (see {@link #sorted()}). Returns this instance when all points are in range.
+         */
+        public ChunkColumns slice(long start, long end) {
+            int from = lowerBound(start);
+            int to = lowerBound(end);
+            if (from == 0 && to == ts.size()) {
+                return this;
+            }
+            if (from >= to) {
+                return new ChunkColumns(List.of(), List.of(), List.of());
+            }
+            return new ChunkColumns(ts.subList(from, to), v.subList(from, to), batchIds.subList(from, to));
+        }
+
+        private int lowerBound(long t) {
+            int low = 0;
+            int high = ts.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ts.get(mid) < t) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    public static boolean hasBlocks(Document doc) {
+        List<?> blocks = doc.getList(PulseChunk.BLOCKS, Object.class);
+        return blocks != null && !blocks.isEmpty();
+    }
+
+    /**
+     * Decodes all points in the document.
+     *
+     * @param doc  raw chunk document
+     * @param type expected data type, used to coerce array values stored with a narrower BSON type;
+     *             may be null to keep values as stored
+     */
+    public static ChunkColumns read(Document doc, PulseDataType type) {
+        List<Long> ts = new ArrayList<>();
+        List<Object> v = new ArrayList<>();
+        List<String> batchIds = new ArrayList<>();
+
+        // Array layout
+        List<Long> arrTs = doc.getList(PulseChunk.TS, Long.class, Collections.emptyList());
+        List<Object> arrV = doc.getList(PulseChunk.V, Object.class, Collections.emptyList());
+        List<String> arrBatchIds = doc.getList(PulseChunk.BATCH_IDS, String.class, Collections.emptyList());
+        int size = Math.min(arrTs.size(), arrV.size());
+
+        // Block layout, each block after the array points written before it. Without offsets blocks come last
+        List<Object> blocks = hasBlocks(doc) ? doc.getList(PulseChunk.BLOCKS, Object.class) : List.of();
+        List<Number> offsets = doc.getList(PulseChunk.BLOCK_OFFSETS, Number.class, Collections.emptyList());
+        int next = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            int offset = b < offsets.size() ? Math.min(offsets.get(b).intValue(), size) : size;
+            for (; next < offset; next++) {
+                ts.add(arrTs.get(next));
+                v.add(coerce(type, arrV.get(next)));
+                batchIds.add(next < arrBatchIds.size() ? arrBatchIds.get(next) : null);
+            }
+            var decoder = GorillaChunkCodec.decoder(toBytes(blocks.get(b)));
+            while (decoder.hasNext()) {
+                decoder.next();
+                ts.add(decoder.ts());
+                v.add(decoder.value());
+                batchIds.add(decoder.batchId());
+            }
+        }
+        for (; next < size; next++) {
+            ts.add(arrTs.get(next));
+            v.add(coerce(type, arrV.get(next)));
+            batchIds.add(next < arrBatchIds.size() ? arrBatchIds.get(next) : null);
+        }
+
+        return new ChunkColumns(ts, v, batchIds);
+    }
+
+    private static byte[] toBytes(Object block) {
+        if (block instanceof Binary binary) {
+            return binary.getData();
+        }
+        if (block instanceof byte[] bytes) {
+            return bytes;
+        }
+        throw new IllegalStateException("Unexpected chunk block type: %s".formatted(block == null ? "null" : block.getClass().getName()));
+    }
+
+    private static Object coerce(PulseDataType type, Object value) {
+        if (type == null || !(value instanceof Number number)) {
+            return value;
+        }
+        return switch (type) {
+            case DOUBLE -> number instanceof Double ? number : number.doubleValue();
+            case LONG -> number instanceof Long ? number : number.longValue();
+            default -> value;
+        };
+    }
+}
@@ -0,0 +1,158 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Rewrites a raw chunk document in place: points can be dropped by batch id, and a chunk holding blocks is
+ * re-encoded as a single block (array points included), which also compacts the blocks pushed by successive writes.
+ * Chunks holding only array points keep the array layout.
+ * <p>
+ * The rewrite is conditional: it only applies when the document still has the revision and the number of blocks and
+ * array points it was read with. Writers only push, so any concurrent write changes one of them; on a mismatch the
+ * document is read again and the rewrite retried.
+ */
+public final class ChunkRewriter {
+
+    private static final String MONGO_ID = "_id";
+    private static final int MAX_ATTEMPTS = 5;
+
+    private ChunkRewriter() {
+    }
+
+    /**
+     * @param removed points dropped from the chunk
+     * @param deleted whether the chunk was deleted, having no point left
+     * @param applied whether the document was changed
+     */
+    public record Outcome(int removed, boolean deleted, boolean applied) {
+
+        private static final Outcome NONE = new Outcome(0, false, false);
+    }
+
+    /**
+     * Compacts the blocks of a chunk into one. No-op for chunks with a single block and no array point.
+     */
+    public static Outcome compact(MongoCollection<Document> collection, Object id) {
+        Document doc = collection.find(Filters.eq(MONGO_ID, id)).first();
+        return doc == null ? Outcome.NONE : rewrite(collection, doc, batchId -> false);
+    }
+
+    /**
+     * Drops the points whose batch id matches, compacting the blocks of the chunk on the way.
+     *
+     * @param doc  the chunk as last read, re-read on a concurrent write
+     * @param drop batch ids of the points to drop; null batch ids are never tested
+     * @throws IllegalStateException when the chunk kept changing for all the attempts
+     */
+    public static Outcome rewrite(MongoCollection<Document> collection, Document doc, Predicate<String> drop) {
+        Object id = doc.get(MONGO_ID);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (doc == null) {
+                return Outcome.NONE;
+            }
+            var outcome = tryRewrite(collection, doc, drop);
+            if (outcome != null) {
+                return outcome;
+            }
+            doc = collection.find(Filters.eq(MONGO_ID, id)).first();
+        }
+        throw new IllegalStateException("Chunk %s kept changing, rewrite abandoned after %d attempts".formatted(id, MAX_ATTEMPTS));
+    }
+
+    /**
+     * @return the outcome, or null when the document changed since it was read
+     */
+    private static Outcome tryRewrite(MongoCollection<Document> collection, Document doc, Predicate<String> drop) {
+        String dataType = doc.getString(PulseChunk.DATA_TYPE);
+        boolean blockLayout = ChunkDocumentReader.hasBlocks(doc);
+        if (blockLayout && dataType == null) {
+            throw new IllegalStateException("Chunk %s has blocks but no data type".formatted(doc.get(MONGO_ID)));
+        }
+        var type = dataType == null ? null : PulseDataType.valueOf(dataType);
+        var columns = ChunkDocumentReader.read(doc, type);
+
+        List<Long> nextTs = new ArrayList<>(columns.size());
+        List<Object> nextV = new ArrayList<>(columns.size());
+        List<String> nextBatchIds = new ArrayList<>(columns.size());
+        int removed = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            String batchId = columns.batchIds().get(i);
+            if (batchId != null && drop.test(batchId)) {
+                removed++;
+                continue;
+            }
+            nextTs.add(columns.ts().get(i));
+            nextV.add(columns.v().get(i));
+            nextBatchIds.add(batchId);
+        }
+
+        int blocks = blockLayout ? doc.getList(PulseChunk.BLOCKS, Object.class).size() : 0;
+        int arrayPoints = doc.getList(PulseChunk.TS, Long.class, List.of()).size();
+        boolean fragmented = blocks > 1 || (blocks == 1 && arrayPoints > 0);
+        if (removed == 0 && !fragmented) {
+            return Outcome.NONE;
+        }
+
+        Bson unchanged = unchanged(doc, blocks, arrayPoints);
+        if (nextTs.isEmpty()) {
+            return collection.deleteOne(unchanged).getDeletedCount() == 1 ? new Outcome(removed, true, true) : null;
+        }
+
+        Bson update;
+        if (blockLayout) {
+            // Write order resolved: one block in timestamp order
+            var sorted = new ChunkDocumentReader.ChunkColumns(nextTs, nextV, nextBatchIds).sorted();
+            var encoder = GorillaChunkCodec.encoder(type);
+            Set<String> distinctBatchIds = new LinkedHashSet<>();
+            for (int i = 0; i < sorted.size(); i++) {
+                encoder.append(sorted.ts().get(i), sorted.v().get(i), sorted.batchIds().get(i));
+                if (sorted.batchIds().get(i) != null) {
+                    distinctBatchIds.add(sorted.batchIds().get(i));
+                }
+            }
+            update = Updates.combine(
+                    Updates.set(PulseChunk.BLOCKS, List.of(new Binary(encoder.toByteArray()))),
+                    Updates.set(PulseChunk.BLOCK_OFFSETS, List.of(0)),
+                    Updates.set(PulseChunk.BLOCK_BATCH_IDS, new ArrayList<>(distinctBatchIds)),
+                    Updates.unset(PulseChunk.TS),
+                    Updates.unset(PulseChunk.V),
+                    Updates.unset(PulseChunk.BATCH_IDS),
+                    Updates.inc(PulseChunk.REVISION, 1));
+        } else {
+            update = Updates.combine(
+                    Updates.set(PulseChunk.TS, nextTs),
+                    Updates.set(PulseChunk.V, nextV),
+                    Updates.set(PulseChunk.BATCH_IDS, nextBatchIds),
+                    Updates.inc(PulseChunk.REVISION, 1));
+        }
+        return collection.updateOne(unchanged, update).getMatchedCount() == 1 ? new Outcome(removed, false, true) : null;
+    }
+
+    // Same revision, blocks and array points as when read
+    private static Bson unchanged(Document doc, int blocks, int arrayPoints) {
+        Number revision = doc.get(PulseChunk.REVISION, Number.class);
+        return Filters.and(
+                Filters.eq(MONGO_ID, doc.get(MONGO_ID)),
+                Filters.expr(new Document("$and", List.of(
+                        new Document("$eq", List.of(ifNull(PulseChunk.REVISION, 0), revision == null ? 0 : revision.intValue())),
+                        new Document("$eq", List.of(new Document("$size", ifNull(PulseChunk.BLOCKS, List.of())), blocks)),
+                        new Document("$eq", List.of(new Document("$size", ifNull(PulseChunk.TS, List.of())), arrayPoints))))));
+    }
+
+    private static Document ifNull(String field, Object fallback) {
+        return new Document("$ifNull", List.of("$" + field, fallback));
+    }
+}
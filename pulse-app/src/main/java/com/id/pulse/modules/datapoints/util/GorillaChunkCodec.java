@@ -0,0 +1,484 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Gorilla-style codec for chunk blocks.
+ * <p>
+ * Block layout: {@code [version:1][dataType:1][count:4][bit stream]}.
+ * The bit stream holds one record per point:
+ * <ul>
+ *     <li>timestamp: first one raw (64 bits), then delta-of-delta in buckets of 7/9/12/64 bits</li>
+ *     <li>value: DOUBLE and LONG are XOR'ed with the previous value (leading/trailing zero windows),
+ *     BOOLEAN takes one bit, STRING is a "same as previous" bit or a length-prefixed UTF-8 payload</li>
+ *     <li>batchId: encoded like a STRING value, null allowed</li>
+ * </ul>
+ */
+public final class GorillaChunkCodec {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 6;
+
+    private GorillaChunkCodec() {
+    }
+
+    public static Encoder encoder(PulseDataType dataType) {
+        return new Encoder(dataType);
+    }
+
+    public static Decoder decoder(byte[] block) {
+        return new Decoder(block);
+    }
+
+    public static final class Encoder {
+
+        private final PulseDataType dataType;
+        private final BitWriter out = new BitWriter();
+
+        private int count = 0;
+
+        private long prevTs;
+        private long prevDelta;
+
+        private long prevBits;
+        private int prevLeading = -1;
+        private int prevTrailing;
+
+        private String prevString;
+        private String prevBatchId;
+
+        private Encoder(PulseDataType dataType) {
+            this.dataType = Objects.requireNonNull(dataType, "dataType");
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public PulseDataType getDataType() {
+            return dataType;
+        }
+
+        public Encoder append(long ts, Object value, String batchId) {
+            if (value == null) {
+                throw new IllegalArgumentException("Null values cannot be encoded");
+            }
+            return switch (dataType) {
+                case DOUBLE -> appendDouble(ts, ((Number) value).doubleValue(), batchId);
+                case LONG -> appendLong(ts, ((Number) value).longValue(), batchId);
+                case BOOLEAN -> appendBoolean(ts, (Boolean) value, batchId);
+                case STRING -> appendString(ts, value.toString(), batchId);
+            };
+        }
+
+        public Encoder appendDouble(long ts, double value, String batchId) {
+            checkType(PulseDataType.DOUBLE);
+            writeTs(ts);
+            writeXor(Double.doubleToRawLongBits(value));
+            writeBatchId(batchId);
+            return this;
+        }
+
+        public Encoder appendLong(long ts, long value, String batchId) {
+            checkType(PulseDataType.LONG);
+            writeTs(ts);
+            writeXor(value);
+            writeBatchId(batchId);
+            return this;
+        }
+
+        public Encoder appendBoolean(long ts, boolean value, String batchId) {
+            checkType(PulseDataType.BOOLEAN);
+            writeTs(ts);
+            out.writeBit(value);
+            writeBatchId(batchId);
+            count++;
+            return this;
+        }
+
+        public Encoder appendString(long ts, String value, String batchId) {
+            checkType(PulseDataType.STRING);
+            if (value == null) {
+                throw new IllegalArgumentException("Null values cannot be encoded");
+            }
+            writeTs(ts);
+            prevString = writeString(out, value, prevString);
+            writeBatchId(batchId);
+            count++;
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            byte[] bits = out.toByteArray();
+            byte[] block = new byte[HEADER_SIZE + bits.length];
+            block[0] = (byte) FORMAT_VERSION;
+            block[1] = (byte) dataType.ordinal();
+            block[2] = (byte) (count >>> 24);
+            block[3] = (byte) (count >>> 16);
+            block[4] = (byte) (count >>> 8);
+            block[5] = (byte) count;
+            System.arraycopy(bits, 0, block, HEADER_SIZE, bits.length);
+            return block;
+        }
+
+        private void checkType(PulseDataType expected) {
+            if (dataType != expected) {
+                throw new IllegalStateException("Encoder is for %s, cannot append %s".formatted(dataType, expected));
+            }
+        }
+
+        private void writeTs(long ts) {
+            if (count == 0) {
+                out.writeBits(ts, 64);
+                prevTs = ts;
+                prevDelta = 0;
+                return;
+            }
+            long delta = ts - prevTs;
+            long dod = delta - prevDelta;
+            if (dod == 0) {
+                out.writeBit(false);
+            } else if (dod >= -63 && dod <= 64) {
+                out.writeBits(0b10, 2);
+                out.writeBits(dod + 63, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                out.writeBits(0b110, 3);
+                out.writeBits(dod + 255, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(dod + 2047, 12);
+            } else {
+                out.writeBits(0b1111, 4);
+                out.writeBits(dod, 64);
+            }
+            prevDelta = delta;
+            prevTs = ts;
+        }
+
+        private void writeXor(long bits) {
+            if (count == 0) {
+                out.writeBits(bits, 64);
+            } else {
+                long xor = bits ^ prevBits;
+                if (xor == 0) {
+                    out.writeBit(false);
+                } else {
+                    out.writeBit(true);
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                        // Meaningful bits fit in the previous window
+                        out.writeBit(false);
+                        out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int significant = 64 - leading - trailing;
+                        out.writeBit(true);
+                        out.writeBits(leading, 5);
+                        // 64 significant bits cannot be represented in 6 bits, so it is stored as 0
+                        out.writeBits(significant == 64 ? 0 : significant, 6);
+                        out.writeBits(xor >>> trailing, significant);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+            prevBits = bits;
+            count++;
+        }
+
+        private void writeBatchId(String batchId) {
+            prevBatchId = writeNullableString(out, batchId, prevBatchId);
+        }
+    }
+
+    public static final class Decoder {
+
+        private final PulseDataType dataType;
+        private final int count;
+        private final BitReader in;
+
+        private int index = 0;
+
+        private long ts;
+        private long prevDelta;
+
+        private long bits;
+        private int prevLeading;
+        private int prevTrailing;
+        private boolean booleanValue;
+
+        private String stringValue;
+        private String batchId;
+
+        private Decoder(byte[] block) {
+            if (block == null || block.length < HEADER_SIZE) {
+                throw new IllegalArgumentException("Invalid chunk block");
+            }
+            if (block[0] != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported chunk block version: %d".formatted(block[0]));
+            }
+            int typeOrdinal = block[1];
+            if (typeOrdinal < 0 || typeOrdinal >= PulseDataType.values().length) {
+                throw new IllegalArgumentException("Invalid chunk block data type: %d".formatted(typeOrdinal));
+            }
+            this.dataType = PulseDataType.values()[typeOrdinal];
+            this.count = ((block[2] & 0xFF) << 24) | ((block[3] & 0xFF) << 16) | ((block[4] & 0xFF) << 8) | (block[5] & 0xFF);
+            this.in = new BitReader(block, HEADER_SIZE);
+        }
+
+        public PulseDataType getDataType() {
+            return dataType;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        /**
+         * Advances to the next point. Accessors return the values of the current point.
+         */
+        public void next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("No more points in block");
+            }
+            readTs();
+            switch (dataType) {
+                case DOUBLE, LONG -> readXor();
+                case BOOLEAN -> booleanValue = in.readBit();
+                case STRING -> stringValue = readString(in, stringValue);
+            }
+            batchId = readNullableString(in, batchId);
+            index++;
+        }
+
+        public long ts() {
+            return ts;
+        }
+
+        public double doubleValue() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        public long longValue() {
+            return bits;
+        }
+
+        public boolean booleanValue() {
+            return booleanValue;
+        }
+
+        public String stringValue() {
+            return stringValue;
+        }
+
+        public Object value() {
+            return switch (dataType) {
+                case DOUBLE -> doubleValue();
+                case LONG -> longValue();
+                case BOOLEAN -> booleanValue;
+                case STRING -> stringValue;
+            };
+        }
+
+        public String batchId() {
+            return batchId;
+        }
+
+        private void readTs() {
+            if (index == 0) {
+                ts = in.readBits(64);
+                prevDelta = 0;
+                return;
+            }
+            long dod;
+            if (!in.readBit()) {
+                dod = 0;
+            } else if (!in.readBit()) {
+                dod = in.readBits(7) - 63;
+            } else if (!in.readBit()) {
+                dod = in.readBits(9) - 255;
+            } else if (!in.readBit()) {
+                dod = in.readBits(12) - 2047;
+            } else {
+                dod = in.readBits(64);
+            }
+            long delta = prevDelta + dod;
+            ts += delta;
+            prevDelta = delta;
+        }
+
+        private void readXor() {
+            if (index == 0) {
+                bits = in.readBits(64);
+                return;
+            }
+            if (!in.readBit()) {
+                return;
+            }
+            if (in.readBit()) {
+                prevLeading = (int) in.readBits(5);
+                int significant = (int) in.readBits(6);
+                if (significant == 0) {
+                    significant = 64;
+                }
+                prevTrailing = 64 - prevLeading - significant;
+            }
+            long xor = in.readBits(64 - prevLeading - prevTrailing) << prevTrailing;
+            bits ^= xor;
+        }
+    }
+
+    private static String writeNullableString(BitWriter out, String value, String prev) {
+        if (Objects.equals(value, prev)) {
+            out.writeBit(false);
+            return prev;
+        }
+        out.writeBit(true);
+        if (value == null) {
+            out.writeBit(false);
+            return null;
+        }
+        out.writeBit(true);
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        return value;
+    }
+
+    private static String readNullableString(BitReader in, String prev) {
+        if (!in.readBit()) {
+            return prev;
+        }
+        if (!in.readBit()) {
+            return null;
+        }
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static String writeString(BitWriter out, String value, String prev) {
+        if (value.equals(prev)) {
+            out.writeBit(false);
+            return prev;
+        }
+        out.writeBit(true);
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        return value;
+    }
+
+    private static String readString(BitReader in, String prev) {
+        if (!in.readBit()) {
+            return prev;
+        }
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(BitWriter out, byte[] bytes) {
+        // Short payloads (the common case) use a 16-bit length, longer ones escape to 32 bits
+        if (bytes.length < 0xFFFF) {
+            out.writeBits(bytes.length, 16);
+        } else {
+            out.writeBits(0xFFFF, 16);
+            out.writeBits(bytes.length, 32);
+        }
+        for (byte b : bytes) {
+            out.writeBits(b, 8);
+        }
+    }
+
+    private static byte[] readBytes(BitReader in) {
+        int length = (int) in.readBits(16);
+        if (length == 0xFFFF) {
+            length = (int) in.readBits(32);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) in.readBits(8);
+        }
+        return bytes;
+    }
+
+    static final class BitWriter {
+
+        private byte[] buffer = new byte[64];
+        private long bitPos = 0;
+
+        void writeBit(boolean bit) {
+            ensureCapacity(1);
+            if (bit) {
+                buffer[(int) (bitPos >>> 3)] |= (byte) (0x80 >>> (bitPos & 7));
+            }
+            bitPos++;
+        }
+
+        /**
+         * Writes the lowest {@code n} bits of {@code value}, most significant first.
+         */
+        void writeBits(long value, int n) {
+            ensureCapacity(n);
+            while (n > 0) {
+                int byteIdx = (int) (bitPos >>> 3);
+                int free = 8 - (int) (bitPos & 7);
+                int take = Math.min(free, n);
+                int chunk = (int) ((value >>> (n - take)) & ((1L << take) - 1));
+                buffer[byteIdx] |= (byte) (chunk << (free - take));
+                bitPos += take;
+                n -= take;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (int) ((bitPos + 7) >>> 3));
+        }
+
+        private void ensureCapacity(int bits) {
+            long requiredBytes = (bitPos + bits + 7) >>> 3;
+            if (requiredBytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.max(requiredBytes, buffer.length * 2L));
+            }
+        }
+    }
+
+    static final class BitReader {
+
+        private final byte[] buffer;
+        private long bitPos;
+
+        BitReader(byte[] buffer, int byteOffset) {
+            this.buffer = buffer;
+            this.bitPos = (long) byteOffset << 3;
+        }
+
+        boolean readBit() {
+            int byteIdx = (int) (bitPos >>> 3);
+            if (byteIdx >= buffer.length) {
+                throw new IllegalStateException("Chunk block truncated");
+            }
+            boolean bit = (buffer[byteIdx] & (0x80 >>> (bitPos & 7))) != 0;
+            bitPos++;
+            return bit;
+        }
+
+        long readBits(int n) {
+            long value = 0;
+            while (n > 0) {
+                int byteIdx = (int) (bitPos >>> 3);
+                if (byteIdx >= buffer.length) {
+                    throw new IllegalStateException("Chunk block truncated");
+                }
+                int avail = 8 - (int) (bitPos & 7);
+                int take = Math.min(avail, n);
+                int chunk = ((buffer[byteIdx] & 0xFF) >>> (avail - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                bitPos += take;
+                n -= take;
+            }
+            return value;
+        }
+    }
+}
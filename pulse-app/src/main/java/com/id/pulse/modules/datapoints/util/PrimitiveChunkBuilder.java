@@ -0,0 +1,624 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Growable buffer for the points of one chunk, backed by primitive arrays (one subclass per {@link PulseDataType}).
+ * <p>
+ * The chunk is serialized straight into a raw BSON upsert update (array layout) or a Gorilla block, so no point is
+ * boxed between the caller and the driver.
+ */
+public abstract class PrimitiveChunkBuilder {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final String id;
+    private final String path;
+    private final long tsStart;
+    private final long tsEnd;
+    private final PulseDataType dataType;
+
+    protected long[] ts = new long[INITIAL_CAPACITY];
+    protected String[] batchIds = new String[INITIAL_CAPACITY];
+    protected int size = 0;
+
+    // Set when a timestamp is not greater than the previous one, i.e. when duplicates are possible
+    private boolean unordered = false;
+
+    protected PrimitiveChunkBuilder(String id, String path, long tsStart, long tsEnd, PulseDataType dataType) {
+        this.id = id;
+        this.path = path;
+        this.tsStart = tsStart;
+        this.tsEnd = tsEnd;
+        this.dataType = dataType;
+    }
+
+    public static PrimitiveChunkBuilder create(PulseDataType dataType, String id, String path, long tsStart, long tsEnd) {
+        return switch (dataType) {
+            case DOUBLE -> new DoubleChunkBuilder(id, path, tsStart, tsEnd);
+            case LONG -> new LongChunkBuilder(id, path, tsStart, tsEnd);
+            case BOOLEAN -> new BooleanChunkBuilder(id, path, tsStart, tsEnd);
+            case STRING -> new StringChunkBuilder(id, path, tsStart, tsEnd);
+        };
+    }
+
+    /**
+     * Creates an empty builder for the same chunk.
+     */
+    public PrimitiveChunkBuilder emptyCopy() {
+        return create(dataType, id, path, tsStart, tsEnd);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getTsStart() {
+        return tsStart;
+    }
+
+    public long getTsEnd() {
+        return tsEnd;
+    }
+
+    public PulseDataType getDataType() {
+        return dataType;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long ts(int index) {
+        return ts[index];
+    }
+
+    public String batchId(int index) {
+        return batchIds[index];
+    }
+
+    /**
+     * Returns the boxed value at the given index. Meant for tests and diagnostics, not for the write path.
+     */
+    public abstract Object value(int index);
+
+    /**
+     * Appends a point whose value comes boxed from the caller. The ingest path uses the typed appends of the subclasses.
+     *
+     * @return false, appending nothing, when the value does not match the chunk data type
+     */
+    public final boolean append(long ts, Object value, String batchId) {
+        if (!accepts(value)) {
+            return false;
+        }
+        int index = nextIndex(ts, batchId);
+        setValue(index, value);
+        return true;
+    }
+
+    /**
+     * Appends all the points of another builder of the same chunk.
+     */
+    public final void appendAll(PrimitiveChunkBuilder other) {
+        if (other.dataType != dataType) {
+            throw new IllegalArgumentException("Cannot merge %s chunk into %s chunk".formatted(other.dataType, dataType));
+        }
+        if (other.size == 0) {
+            return;
+        }
+        ensureCapacity(size + other.size);
+        if (size > 0 && other.ts[0] <= ts[size - 1]) {
+            unordered = true;
+        }
+        unordered |= other.unordered;
+        System.arraycopy(other.ts, 0, ts, size, other.size);
+        System.arraycopy(other.batchIds, 0, batchIds, size, other.size);
+        copyValues(other, size);
+        size += other.size;
+    }
+
+    /**
+     * Removes duplicated timestamps, keeping the last appended point for each of them, and leaves the points in
+     * timestamp order. Cheap no-op when the points were appended in strictly increasing order.
+     */
+    public final void removeDuplicates() {
+        if (!unordered) {
+            return;
+        }
+        // Stable sort of the indexes by timestamp: the last index of a run of equal timestamps is the last appended
+        int[] order = sortedIndexes();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (i + 1 < size && ts[order[i]] == ts[order[i + 1]]) {
+                continue;
+            }
+            order[kept++] = order[i];
+        }
+
+        long[] keptTs = new long[ts.length];
+        String[] keptBatchIds = new String[batchIds.length];
+        for (int i = 0; i < kept; i++) {
+            keptTs[i] = ts[order[i]];
+            keptBatchIds[i] = batchIds[order[i]];
+        }
+        gatherValues(order, kept);
+        ts = keptTs;
+        batchIds = keptBatchIds;
+        size = kept;
+        unordered = false;
+    }
+
+    // Bottom-up merge sort of the indexes on the primitive timestamps, stable
+    private int[] sortedIndexes() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, size);
+                int left = low;
+                int right = mid;
+                int out = low;
+                while (left < mid && right < high) {
+                    buffer[out++] = ts[order[right]] < ts[order[left]] ? order[right++] : order[left++];
+                }
+                while (left < mid) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < high) {
+                    buffer[out++] = order[right++];
+                }
+                System.arraycopy(buffer, low, order, low, high - low);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Builds the upsert update appending this chunk to its document in the array layout, written directly as raw BSON.
+     */
+    public RawBsonDocument toUpdate() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256 + size * 48);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+
+            // _id is set by the upsert filter
+            writer.writeStartDocument("$setOnInsert");
+            writer.writeString(PulseChunk.PATH, path);
+            writer.writeInt64(PulseChunk.TS_START, tsStart);
+            writer.writeInt64(PulseChunk.TS_END, tsEnd);
+            writer.writeString(PulseChunk.DATA_TYPE, dataType.name());
+            writer.writeEndDocument();
+
+            writer.writeStartDocument("$push");
+
+            writer.writeStartDocument(PulseChunk.TS);
+            writer.writeStartArray("$each");
+            for (int i = 0; i < size; i++) {
+                writer.writeInt64(ts[i]);
+            }
+            writer.writeEndArray();
+            writer.writeEndDocument();
+
+            writer.writeStartDocument(PulseChunk.V);
+            writer.writeStartArray("$each");
+            for (int i = 0; i < size; i++) {
+                writeValue(writer, i);
+            }
+            writer.writeEndArray();
+            writer.writeEndDocument();
+
+            writer.writeStartDocument(PulseChunk.BATCH_IDS);
+            writer.writeStartArray("$each");
+            for (int i = 0; i < size; i++) {
+                if (batchIds[i] == null) {
+                    writer.writeNull();
+                } else {
+                    writer.writeString(batchIds[i]);
+                }
+            }
+            writer.writeEndArray();
+            writer.writeEndDocument();
+
+            writer.writeEndDocument();
+
+            writer.writeEndDocument();
+        }
+        return new RawBsonDocument(buffer.toByteArray());
+    }
+
+    /**
+     * Builds the upsert update appending this chunk to its document as a single Gorilla block. It is an update
+     * pipeline, so that the block records how many array points were written before it ({@code blockOffsets}) and
+     * readers can restore the write order of a chunk mixing both layouts. The distinct batch ids of the block go to
+     * {@code blockBatchIds}, keeping {@code batchIds} aligned with the array points.
+     */
+    public List<RawBsonDocument> toBlockUpdate() {
+        Set<String> distinctBatchIds = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (batchIds[i] != null) {
+                distinctBatchIds.add(batchIds[i]);
+            }
+        }
+
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256 + size * 4);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            writer.writeStartDocument("$set");
+
+            // _id is set by the upsert filter; the other fixed fields are only set on insert
+            writeIfNull(writer, PulseChunk.PATH, w -> w.writeString("$literal", path));
+            writeIfNull(writer, PulseChunk.TS_START, w -> w.writeInt64("$literal", tsStart));
+            writeIfNull(writer, PulseChunk.TS_END, w -> w.writeInt64("$literal", tsEnd));
+            writeIfNull(writer, PulseChunk.DATA_TYPE, w -> w.writeString("$literal", dataType.name()));
+
+            writeConcat(writer, PulseChunk.BLOCKS, w -> {
+                w.writeStartDocument();
+                w.writeBinaryData("$literal", new BsonBinary(toGorillaBlock()));
+                w.writeEndDocument();
+            });
+            writeConcat(writer, PulseChunk.BLOCK_OFFSETS, w -> {
+                w.writeStartDocument();
+                w.writeStartDocument("$size");
+                w.writeStartArray("$ifNull");
+                w.writeString("$" + PulseChunk.TS);
+                w.writeStartArray();
+                w.writeEndArray();
+                w.writeEndArray();
+                w.writeEndDocument();
+                w.writeEndDocument();
+            });
+            if (!distinctBatchIds.isEmpty()) {
+                writer.writeStartDocument(PulseChunk.BLOCK_BATCH_IDS);
+                writer.writeStartArray("$setUnion");
+                writeFieldOrEmpty(writer, PulseChunk.BLOCK_BATCH_IDS);
+                writer.writeStartDocument();
+                writer.writeStartArray("$literal");
+                distinctBatchIds.forEach(writer::writeString);
+                writer.writeEndArray();
+                writer.writeEndDocument();
+                writer.writeEndArray();
+                writer.writeEndDocument();
+            }
+
+            writer.writeEndDocument();
+            writer.writeEndDocument();
+        }
+        return List.of(new RawBsonDocument(buffer.toByteArray()));
+    }
+
+    // field: {$ifNull: ["$field", <value>]}
+    private static void writeIfNull(BsonWriter writer, String field, Consumer<BsonWriter> value) {
+        writer.writeStartDocument(field);
+        writer.writeStartArray("$ifNull");
+        writer.writeString("$" + field);
+        writer.writeStartDocument();
+        value.accept(writer);
+        writer.writeEndDocument();
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    // field: {$concatArrays: [{$ifNull: ["$field", []]}, [<element>]]}
+    private static void writeConcat(BsonWriter writer, String field, Consumer<BsonWriter> element) {
+        writer.writeStartDocument(field);
+        writer.writeStartArray("$concatArrays");
+        writeFieldOrEmpty(writer, field);
+        writer.writeStartArray();
+        element.accept(writer);
+        writer.writeEndArray();
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    // {$ifNull: ["$field", []]}
+    private static void writeFieldOrEmpty(BsonWriter writer, String field) {
+        writer.writeStartDocument();
+        writer.writeStartArray("$ifNull");
+        writer.writeString("$" + field);
+        writer.writeStartArray();
+        writer.writeEndArray();
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    public byte[] toGorillaBlock() {
+        var encoder = GorillaChunkCodec.encoder(dataType);
+        for (int i = 0; i < size; i++) {
+            encodePoint(encoder, i);
+        }
+        return encoder.toByteArray();
+    }
+
+    protected abstract boolean accepts(Object value);
+
+    protected abstract void setValue(int index, Object value);
+
+    /**
+     * Replaces the values with the ones at the given indexes, in that order.
+     */
+    protected abstract void gatherValues(int[] indexes, int count);
+
+    protected abstract void copyValues(PrimitiveChunkBuilder from, int offset);
+
+    protected abstract void growValues(int capacity);
+
+    protected abstract void writeValue(BsonWriter writer, int index);
+
+    protected abstract void encodePoint(GorillaChunkCodec.Encoder encoder, int index);
+
+    protected final int nextIndex(long pointTs, String batchId) {
+        ensureCapacity(size + 1);
+        if (size > 0 && pointTs <= ts[size - 1]) {
+            unordered = true;
+        }
+        ts[size] = pointTs;
+        batchIds[size] = batchId;
+        return size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ts.length * 2);
+        ts = Arrays.copyOf(ts, newCapacity);
+        batchIds = Arrays.copyOf(batchIds, newCapacity);
+        growValues(newCapacity);
+    }
+
+    public static final class DoubleChunkBuilder extends PrimitiveChunkBuilder {
+
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleChunkBuilder(String id, String path, long tsStart, long tsEnd) {
+            super(id, path, tsStart, tsEnd, PulseDataType.DOUBLE);
+        }
+
+        public void appendDouble(long pointTs, double value, String batchId) {
+            values[nextIndex(pointTs, batchId)] = value;
+        }
+
+        @Override
+        public Object value(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            values[index] = (Double) value;
+        }
+
+        @Override
+        protected void gatherValues(int[] indexes, int count) {
+            var gathered = Arrays.copyOf(values, values.length);
+            for (int i = 0; i < count; i++) {
+                gathered[i] = values[indexes[i]];
+            }
+            values = gathered;
+        }
+
+        @Override
+        protected void copyValues(PrimitiveChunkBuilder from, int offset) {
+            System.arraycopy(((DoubleChunkBuilder) from).values, 0, values, offset, from.size);
+        }
+
+        @Override
+        protected void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void writeValue(BsonWriter writer, int index) {
+            writer.writeDouble(values[index]);
+        }
+
+        @Override
+        protected void encodePoint(GorillaChunkCodec.Encoder encoder, int index) {
+            encoder.appendDouble(ts[index], values[index], batchIds[index]);
+        }
+    }
+
+    public static final class LongChunkBuilder extends PrimitiveChunkBuilder {
+
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        LongChunkBuilder(String id, String path, long tsStart, long tsEnd) {
+            super(id, path, tsStart, tsEnd, PulseDataType.LONG);
+        }
+
+        public void appendLong(long pointTs, long value, String batchId) {
+            values[nextIndex(pointTs, batchId)] = value;
+        }
+
+        @Override
+        public Object value(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            values[index] = (Long) value;
+        }
+
+        @Override
+        protected void gatherValues(int[] indexes, int count) {
+            var gathered = Arrays.copyOf(values, values.length);
+            for (int i = 0; i < count; i++) {
+                gathered[i] = values[indexes[i]];
+            }
+            values = gathered;
+        }
+
+        @Override
+        protected void copyValues(PrimitiveChunkBuilder from, int offset) {
+            System.arraycopy(((LongChunkBuilder) from).values, 0, values, offset, from.size);
+        }
+
+        @Override
+        protected void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void writeValue(BsonWriter writer, int index) {
+            writer.writeInt64(values[index]);
+        }
+
+        @Override
+        protected void encodePoint(GorillaChunkCodec.Encoder encoder, int index) {
+            encoder.appendLong(ts[index], values[index], batchIds[index]);
+        }
+    }
+
+    public static final class BooleanChunkBuilder extends PrimitiveChunkBuilder {
+
+        private boolean[] values = new boolean[INITIAL_CAPACITY];
+
+        BooleanChunkBuilder(String id, String path, long tsStart, long tsEnd) {
+            super(id, path, tsStart, tsEnd, PulseDataType.BOOLEAN);
+        }
+
+        public void appendBoolean(long pointTs, boolean value, String batchId) {
+            values[nextIndex(pointTs, batchId)] = value;
+        }
+
+        @Override
+        public Object value(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            values[index] = (Boolean) value;
+        }
+
+        @Override
+        protected void gatherValues(int[] indexes, int count) {
+            var gathered = Arrays.copyOf(values, values.length);
+            for (int i = 0; i < count; i++) {
+                gathered[i] = values[indexes[i]];
+            }
+            values = gathered;
+        }
+
+        @Override
+        protected void copyValues(PrimitiveChunkBuilder from, int offset) {
+            System.arraycopy(((BooleanChunkBuilder) from).values, 0, values, offset, from.size);
+        }
+
+        @Override
+        protected void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void writeValue(BsonWriter writer, int index) {
+            writer.writeBoolean(values[index]);
+        }
+
+        @Override
+        protected void encodePoint(GorillaChunkCodec.Encoder encoder, int index) {
+            encoder.appendBoolean(ts[index], values[index], batchIds[index]);
+        }
+    }
+
+    public static final class StringChunkBuilder extends PrimitiveChunkBuilder {
+
+        private String[] values = new String[INITIAL_CAPACITY];
+
+        StringChunkBuilder(String id, String path, long tsStart, long tsEnd) {
+            super(id, path, tsStart, tsEnd, PulseDataType.STRING);
+        }
+
+        public void appendString(long pointTs, String value, String batchId) {
+            if (value == null) {
+                throw new IllegalArgumentException("Null values cannot be appended");
+            }
+            values[nextIndex(pointTs, batchId)] = value;
+        }
+
+        @Override
+        public Object value(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            values[index] = (String) value;
+        }
+
+        @Override
+        protected void gatherValues(int[] indexes, int count) {
+            var gathered = Arrays.copyOf(values, values.length);
+            for (int i = 0; i < count; i++) {
+                gathered[i] = values[indexes[i]];
+            }
+            Arrays.fill(gathered, count, gathered.length, null);
+            values = gathered;
+        }
+
+        @Override
+        protected void copyValues(PrimitiveChunkBuilder from, int offset) {
+            System.arraycopy(((StringChunkBuilder) from).values, 0, values, offset, from.size);
+        }
+
+        @Override
+        protected void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void writeValue(BsonWriter writer, int index) {
+            writer.writeString(values[index]);
+        }
+
+        @Override
+        protected void encodePoint(GorillaChunkCodec.Encoder encoder, int index) {
+            encoder.appendString(ts[index], values[index], batchIds[index]);
+        }
+    }
+}
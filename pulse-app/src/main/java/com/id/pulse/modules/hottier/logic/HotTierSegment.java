@@ -0,0 +1,84 @@
+package com.id.pulse.modules.hottier.logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only, memory-mapped file of length-prefixed records ({@code int length, bytes}).
+ * <p>
+ * The whole capacity is mapped when the file is created. Appends are serialized; reads use absolute accessors on
+ * the shared mapping and may run concurrently with them, at offsets returned by earlier appends.
+ */
+public final class HotTierSegment implements Closeable {
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int position = 0;
+
+    private HotTierSegment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    public static HotTierSegment create(Path file, int capacity) throws IOException {
+        Files.createDirectories(file.getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new HotTierSegment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a record and returns its offset, or -1 when the segment has no room left for it.
+     */
+    public synchronized int append(byte[] record) {
+        if (position + LENGTH_SIZE + record.length > buffer.capacity()) {
+            return -1;
+        }
+        int offset = position;
+        buffer.put(offset + LENGTH_SIZE, record);
+        buffer.putInt(offset, record.length);
+        position += LENGTH_SIZE + record.length;
+        return offset;
+    }
+
+    public byte[] read(int offset) {
+        byte[] record = new byte[buffer.getInt(offset)];
+        buffer.get(offset + LENGTH_SIZE, record);
+        return record;
+    }
+
+    public synchronized int size() {
+        return position;
+    }
+
+    /**
+     * Closes and deletes the file. The mapping itself is released once no reader holds it anymore.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
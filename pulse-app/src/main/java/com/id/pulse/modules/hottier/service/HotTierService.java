@@ -0,0 +1,445 @@
+package com.id.pulse.modules.hottier.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCrudService;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import com.id.pulse.modules.datapoints.util.GorillaChunkCodec;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.hottier.logic.HotTierSegment;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Optional local copy of the recent chunks ({@code pulse.hot-tier.*}), read by the extractor before Mongo.
+ * <p>
+ * Each chunk collection gets append-only, memory-mapped segment files under {@code dir/<collection>/}, one set per
+ * {@code window-ms} of chunk start. Every chunk write made by {@link com.id.pulse.modules.datapoints.ingestor.service.DataIngestor}
+ * is appended there as a Gorilla block once Mongo acknowledged it; an in-memory index maps each chunk to its blocks,
+ * merged in write order when read. Windows older than {@code retention-ms} are dropped.
+ * <p>
+ * Mongo stays the source of truth: segment files are wiped at startup and the retention window is replayed from Mongo
+ * in the background. A collection is served only from the time it is known to hold entirely: until its replay
+ * completed, after a failed append, or before its oldest kept window, reads go to Mongo. Data written by other nodes is
+ * not seen: enable it on nodes that ingest the series they serve.
+ */
+@Service
+@Slf4j
+public class HotTierService {
+
+    private final AppConfig appConfig;
+    private final MongoTemplate mongoTemplate;
+    private final ChunkMetadataCrudService chunkMetadataCrudService;
+
+    private final ConcurrentHashMap<String, CollectionTier> collections = new ConcurrentHashMap<>();
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("hot-tier-replay").factory());
+    private volatile boolean available = false;
+    private volatile boolean recovered = false;
+
+    private enum RecordKind {
+        // Live write: appended after the existing blocks of the chunk
+        APPEND,
+        // Replayed from Mongo: older than any live write of the chunk
+        BASE,
+        // Chunk rewritten in Mongo: replaces the existing blocks
+        REPLACE
+    }
+
+    private static final class CollectionTier {
+
+        private final String name;
+        private final AtomicBoolean replayScheduled = new AtomicBoolean(false);
+        private final ConcurrentSkipListMap<Long, Window> windows = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, ChunkEntry>> index = new ConcurrentHashMap<>();
+
+        // Start of the replayed range; Long.MAX_VALUE until the replay completed
+        private volatile long replayedFrom = Long.MAX_VALUE;
+        // Latest end of the chunks dropped by retention
+        private volatile long droppedUpTo = Long.MIN_VALUE;
+        private volatile boolean failed = false;
+
+        private CollectionTier(String name) {
+            this.name = name;
+        }
+
+        /**
+         * True when the tier holds every chunk ending after {@code start}.
+         */
+        private boolean covers(long start) {
+            return !failed && start >= replayedFrom && start >= droppedUpTo;
+        }
+    }
+
+    private static final class Window {
+
+        private final long start;
+        private final List<HotTierSegment> segments = new ArrayList<>();
+        private long maxTsEnd = Long.MIN_VALUE;
+        private boolean dropped = false;
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+
+    private static final class ChunkEntry {
+
+        private final long tsEnd;
+        private HotTierSegment[] segments = new HotTierSegment[2];
+        private int[] offsets = new int[2];
+        private int size = 0;
+        private boolean replaced = false;
+
+        private ChunkEntry(long tsEnd) {
+            this.tsEnd = tsEnd;
+        }
+
+        private synchronized void add(RecordKind kind, HotTierSegment segment, int offset) {
+            if (kind == RecordKind.REPLACE) {
+                size = 0;
+                replaced = true;
+            } else if (kind == RecordKind.BASE && replaced) {
+                // The chunk was re-read from Mongo since this copy was taken
+                return;
+            }
+            if (size == offsets.length) {
+                segments = Arrays.copyOf(segments, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            int at = kind == RecordKind.BASE ? 0 : size;
+            System.arraycopy(segments, at, segments, at + 1, size - at);
+            System.arraycopy(offsets, at, offsets, at + 1, size - at);
+            segments[at] = segment;
+            offsets[at] = offset;
+            size++;
+        }
+
+        private synchronized List<byte[]> blocks() {
+            List<byte[]> blocks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                blocks.add(segments[i].read(offsets[i]));
+            }
+            return blocks;
+        }
+    }
+
+    public HotTierService(AppConfig appConfig, MongoTemplate mongoTemplate, ChunkMetadataCrudService chunkMetadataCrudService) {
+        this.appConfig = appConfig;
+        this.mongoTemplate = mongoTemplate;
+        this.chunkMetadataCrudService = chunkMetadataCrudService;
+    }
+
+    public boolean isEnabled() {
+        return appConfig.isHotTierEnabled() && available;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!appConfig.isHotTierEnabled()) {
+            return;
+        }
+        // Segments may be torn or stale after a crash: start over, the content is replayed from Mongo when ready
+        try {
+            FileSystemUtils.deleteRecursively(Path.of(appConfig.getHotTierDir()));
+            available = true;
+        } catch (IOException ex) {
+            log.error("Cannot clean the hot tier directory {}, hot tier disabled", appConfig.getHotTierDir(), ex);
+        }
+    }
+
+    /**
+     * Appends freshly written chunks. Called after the Mongo write succeeded.
+     */
+    public void onChunksWritten(String collectionName, Collection<PrimitiveChunkBuilder> chunks) {
+        if (!isEnabled()) {
+            return;
+        }
+        var tier = tier(collectionName);
+        for (PrimitiveChunkBuilder chunk : chunks) {
+            if (!chunk.isEmpty()) {
+                append(tier, chunk.getPath(), chunk.getTsStart(), chunk.getTsEnd(), chunk.toGorillaBlock(), RecordKind.APPEND);
+            }
+        }
+    }
+
+    /**
+     * Forgets a collection after a write that may have been partially applied. Its next write replays it from Mongo.
+     */
+    public void onWriteFailed(String collectionName) {
+        if (!isEnabled()) {
+            return;
+        }
+        var tier = collections.remove(collectionName);
+        if (tier != null) {
+            tier.failed = true;
+            new ArrayList<>(tier.windows.values()).forEach(window -> dropWindow(tier, window));
+        }
+    }
+
+    /**
+     * Replaces a chunk with its current Mongo content, after it was rewritten or deleted ({@code doc} null). Without
+     * a data type the chunk cannot be re-encoded: the whole collection is forgotten instead.
+     */
+    public void onChunkRewritten(String collectionName, String path, PulseDataType type, long tsStart, long tsEnd, Document doc) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (type == null) {
+            onWriteFailed(collectionName);
+            return;
+        }
+        var columns = doc == null ? new ChunkColumns(List.of(), List.of(), List.of()) : ChunkDocumentReader.read(doc, type).sorted();
+        append(tier(collectionName), path, tsStart, tsEnd, encode(type, columns), RecordKind.REPLACE);
+    }
+
+    /**
+     * Returns the chunks of a path overlapping {@code [start, end)}, each sorted, by chunk start; empty when the tier
+     * does not hold the whole range and Mongo must be read instead.
+     */
+    public Optional<List<ChunkColumns>> read(String collectionName, String path, long start, long end) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        var tier = collections.get(collectionName);
+        if (tier == null || !tier.covers(start)) {
+            return Optional.empty();
+        }
+
+        var chunks = tier.index.get(path);
+        if (chunks == null) {
+            return Optional.of(List.of());
+        }
+        List<ChunkColumns> result = new ArrayList<>();
+        for (ChunkEntry entry : chunks.headMap(end, false).values()) {
+            if (entry.tsEnd <= start) {
+                continue;
+            }
+            var columns = decode(entry.blocks());
+            if (!columns.isEmpty()) {
+                result.add(columns);
+            }
+        }
+        // Coverage may have moved while reading, with retention dropping the first chunks
+        return tier.covers(start) ? Optional.of(result) : Optional.empty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!isEnabled()) {
+            return;
+        }
+        var collectionNames = chunkMetadataCrudService.findAll().stream()
+                .map(PulseChunkMetadata::getCollectionName)
+                .filter(name -> name != null && !name.isBlank())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        recovered = true;
+        collectionNames.forEach(this::tier);
+        // Including the collections written to before the application was ready
+        collections.values().forEach(this::scheduleReplay);
+        log.info("Hot tier replaying {} collections from Mongo", collections.size());
+    }
+
+    @Scheduled(fixedDelayString = "${pulse.hot-tier.retention-check-ms:60000}")
+    public void dropExpired() {
+        if (!isEnabled()) {
+            return;
+        }
+        long dropBefore = System.currentTimeMillis() - appConfig.getHotTierRetentionMs();
+        for (CollectionTier tier : collections.values()) {
+            var expired = tier.windows.headMap(dropBefore - appConfig.getHotTierWindowMs(), true);
+            for (Window window : new ArrayList<>(expired.values())) {
+                dropWindow(tier, window);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        replayExecutor.shutdownNow();
+        collections.values().forEach(tier -> tier.windows.values().forEach(window -> {
+            synchronized (window) {
+                window.segments.forEach(segment -> {
+                    try {
+                        segment.close();
+                    } catch (IOException ex) {
+                        log.debug("Failed to close hot tier segment {}", segment.getFile(), ex);
+                    }
+                });
+            }
+        }));
+    }
+
+    private CollectionTier tier(String collectionName) {
+        var existing = collections.get(collectionName);
+        if (existing != null) {
+            return existing;
+        }
+        var created = new CollectionTier(collectionName);
+        existing = collections.putIfAbsent(collectionName, created);
+        if (existing != null) {
+            return existing;
+        }
+        // Collections seen before the startup recovery are replayed by it
+        if (recovered) {
+            scheduleReplay(created);
+        }
+        return created;
+    }
+
+    private void scheduleReplay(CollectionTier tier) {
+        if (tier.replayScheduled.compareAndSet(false, true)) {
+            replayExecutor.execute(() -> replay(tier));
+        }
+    }
+
+    private void replay(CollectionTier tier) {
+        long from = System.currentTimeMillis() - appConfig.getHotTierRetentionMs();
+        long start = System.currentTimeMillis();
+        Map<String, PulseDataType> types = new HashMap<>();
+        int chunks = 0;
+        try (MongoCursor<Document> cursor = mongoTemplate.getDb().getCollection(tier.name)
+                .find(Filters.gt(PulseChunk.TS_END, from))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                String path = doc.getString(PulseChunk.PATH);
+                Number tsStart = doc.get(PulseChunk.TS_START, Number.class);
+                Number tsEnd = doc.get(PulseChunk.TS_END, Number.class);
+                PulseDataType type = path == null ? null : types.computeIfAbsent(path, p -> typeOf(doc));
+                if (type == null || tsStart == null || tsEnd == null) {
+                    continue;
+                }
+                var columns = ChunkDocumentReader.read(doc, type).sorted();
+                append(tier, path, tsStart.longValue(), tsEnd.longValue(), encode(type, columns), RecordKind.BASE);
+                chunks++;
+            }
+        } catch (Exception ex) {
+            log.error("Hot tier replay of {} failed, collection served from Mongo", tier.name, ex);
+            return;
+        }
+        tier.replayedFrom = from;
+        log.info("Hot tier replayed {} chunks of {} in {} ms", chunks, tier.name, System.currentTimeMillis() - start);
+    }
+
+    private PulseDataType typeOf(Document doc) {
+        String dataType = doc.getString(PulseChunk.DATA_TYPE);
+        if (dataType != null) {
+            return PulseDataType.valueOf(dataType);
+        }
+        var metadata = chunkMetadataCrudService.findByPaths(List.of(doc.getString(PulseChunk.PATH)));
+        return metadata.isEmpty() ? null : metadata.getFirst().getType();
+    }
+
+    private void append(CollectionTier tier, String path, long tsStart, long tsEnd, byte[] block, RecordKind kind) {
+        if (tier.failed) {
+            return;
+        }
+        long windowStart = Math.floorDiv(tsStart, appConfig.getHotTierWindowMs()) * appConfig.getHotTierWindowMs();
+        if (windowStart + appConfig.getHotTierWindowMs() <= System.currentTimeMillis() - appConfig.getHotTierRetentionMs()) {
+            return;
+        }
+        try {
+            var window = tier.windows.computeIfAbsent(windowStart, Window::new);
+            synchronized (window) {
+                if (window.dropped) {
+                    return;
+                }
+                var segment = window.segments.isEmpty() ? null : window.segments.getLast();
+                int offset = segment == null ? -1 : segment.append(block);
+                if (offset < 0) {
+                    segment = HotTierSegment.create(segmentFile(tier, windowStart, window.segments.size()),
+                            Math.max(appConfig.getHotTierSegmentBytes(), block.length + Integer.BYTES));
+                    window.segments.add(segment);
+                    offset = segment.append(block);
+                }
+                window.maxTsEnd = Math.max(window.maxTsEnd, tsEnd);
+                tier.index.computeIfAbsent(path, k -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(tsStart, k -> new ChunkEntry(tsEnd))
+                        .add(kind, segment, offset);
+            }
+        } catch (IOException ex) {
+            // A missing block would silently lose points: stop serving the collection
+            tier.failed = true;
+            log.error("Hot tier append failed on {}, collection served from Mongo", tier.name, ex);
+        }
+    }
+
+    private void dropWindow(CollectionTier tier, Window window) {
+        synchronized (window) {
+            // Raise the coverage first: readers must not see a range with dropped chunks as complete
+            tier.droppedUpTo = Math.max(tier.droppedUpTo, window.maxTsEnd);
+            window.dropped = true;
+            tier.windows.remove(window.start, window);
+            long windowEnd = window.start + appConfig.getHotTierWindowMs();
+            tier.index.values().forEach(chunks -> chunks.headMap(windowEnd, false).tailMap(window.start, true).clear());
+            for (HotTierSegment segment : window.segments) {
+                try {
+                    segment.delete();
+                } catch (IOException ex) {
+                    log.warn("Failed to delete hot tier segment {}", segment.getFile(), ex);
+                }
+            }
+        }
+    }
+
+    private Path segmentFile(CollectionTier tier, long windowStart, int sequence) {
+        return Path.of(appConfig.getHotTierDir(), tier.name, "%d-%d.seg".formatted(windowStart, sequence));
+    }
+
+    private static byte[] encode(PulseDataType type, ChunkColumns columns) {
+        var encoder = GorillaChunkCodec.encoder(type);
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.v().get(i) != null) {
+                encoder.append(columns.ts().get(i), columns.v().get(i), columns.batchIds().get(i));
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    private static ChunkColumns decode(List<byte[]> blocks) {
+        List<Long> ts = new ArrayList<>();
+        List<Object> v = new ArrayList<>();
+        List<String> batchIds = new ArrayList<>();
+        for (byte[] block : blocks) {
+            var decoder = GorillaChunkCodec.decoder(block);
+            while (decoder.hasNext()) {
+                decoder.next();
+                ts.add(decoder.ts());
+                v.add(decoder.value());
+                batchIds.add(decoder.batchId());
+            }
+        }
+        // Blocks are in write order: the last write of a timestamp wins
+        return new ChunkColumns(ts, v, batchIds).sorted();
+    }
+}
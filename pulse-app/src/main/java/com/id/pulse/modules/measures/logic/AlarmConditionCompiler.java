@@ -0,0 +1,402 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles alarm conditions into Java predicates, so that alarms skip the JS engine.
+ * <p>
+ * Supported: {@code {{path}}} references, number/string/boolean literals, {@code ( )}, {@code ! -},
+ * {@code * / % + -}, {@code < <= > >=}, {@code == != === !==} and {@code && ||}, over operands of matching types as
+ * given by the path types. Anything else (identifiers, calls, mixed-type comparisons relying on JS coercion) is left
+ * to the generated JS: {@link #compile} returns empty.
+ */
+public final class AlarmConditionCompiler {
+
+    private AlarmConditionCompiler() {
+    }
+
+    /**
+     * Compiles the conditions of an alarm, as {@link AlarmJsCodeGenerator#generate} reads them: a null or blank
+     * disengage condition is the negated engage condition, with the engage duration.
+     *
+     * @param pathTypes - Data type of each referenced path, missing paths are numbers
+     * @return The compiled alarm, or empty when a condition cannot be compiled
+     */
+    public static Optional<CompiledAlarm> compile(String engageCondition,
+                                                  Long engageDuration,
+                                                  String disengageCondition,
+                                                  Long disengageDuration,
+                                                  Map<String, PulseDataType> pathTypes) {
+        if (engageCondition == null || engageCondition.isBlank()) {
+            throw new IllegalArgumentException("Engage condition cannot be null or blank");
+        }
+        if (engageDuration == null || engageDuration <= 0) {
+            throw new IllegalArgumentException("Engage duration must be a positive number");
+        }
+        boolean hasDisengage = disengageCondition != null && !disengageCondition.isBlank();
+        disengageCondition = hasDisengage ? disengageCondition : "!(" + engageCondition + ")";
+        disengageDuration = hasDisengage ? disengageDuration : engageDuration;
+
+        var slots = new LinkedHashMap<String, Integer>();
+        var types = new ArrayList<PulseDataType>();
+        try {
+            var engage = new Parser(engageCondition, pathTypes, slots, types).parseCondition();
+            var disengage = new Parser(disengageCondition, pathTypes, slots, types).parseCondition();
+            return Optional.of(new CompiledAlarm(List.copyOf(slots.keySet()), List.copyOf(types),
+                    engage, engageDuration, disengage, disengageDuration != null ? disengageDuration : 0L));
+        } catch (UnsupportedConditionException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Values of the referenced paths at one timestamp, by slot; only the array of the slot type is set.
+     */
+    public static final class Sample {
+        final double[] numbers;
+        final boolean[] booleans;
+        final String[] strings;
+
+        Sample(int size) {
+            numbers = new double[size];
+            booleans = new boolean[size];
+            strings = new String[size];
+        }
+    }
+
+    static final class UnsupportedConditionException extends RuntimeException {
+        UnsupportedConditionException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private sealed interface Node permits Num, Bool, Str {
+    }
+
+    private record Num(ToDoubleFunction<Sample> f) implements Node {
+    }
+
+    private record Bool(Predicate<Sample> f) implements Node {
+    }
+
+    private record Str(Function<Sample, String> f) implements Node {
+    }
+
+    private enum TokenType {PATH, NUMBER, STRING, TRUE, FALSE, OPERATOR, END}
+
+    private record Token(TokenType type, String text) {
+    }
+
+    /**
+     * Recursive descent over the JS precedence levels of the supported operators.
+     */
+    private static final class Parser {
+
+        private final String src;
+        private final Map<String, PulseDataType> pathTypes;
+        private final Map<String, Integer> slots;
+        private final List<PulseDataType> types;
+        private int pos;
+        private Token token;
+
+        Parser(String src, Map<String, PulseDataType> pathTypes, Map<String, Integer> slots, List<PulseDataType> types) {
+            this.src = src;
+            this.pathTypes = pathTypes;
+            this.slots = slots;
+            this.types = types;
+            this.token = next();
+        }
+
+        Predicate<Sample> parseCondition() {
+            var node = parseOr();
+            if (token.type() != TokenType.END) {
+                throw unsupported("unexpected '" + token.text() + "'");
+            }
+            return truthy(node);
+        }
+
+        private Node parseOr() {
+            var left = parseAnd();
+            while (isOperator("||")) {
+                token = next();
+                var l = bool(left, "||");
+                var r = bool(parseAnd(), "||");
+                left = new Bool(s -> l.test(s) || r.test(s));
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            var left = parseEquality();
+            while (isOperator("&&")) {
+                token = next();
+                var l = bool(left, "&&");
+                var r = bool(parseEquality(), "&&");
+                left = new Bool(s -> l.test(s) && r.test(s));
+            }
+            return left;
+        }
+
+        private Node parseEquality() {
+            var left = parseRelational();
+            while (isOperator("==") || isOperator("===") || isOperator("!=") || isOperator("!==")) {
+                boolean negate = token.text().startsWith("!");
+                token = next();
+                var right = parseRelational();
+                Predicate<Sample> equal = switch (left) {
+                    case Num(var l) when right instanceof Num(var r) -> s -> l.applyAsDouble(s) == r.applyAsDouble(s);
+                    case Bool(var l) when right instanceof Bool(var r) -> s -> l.test(s) == r.test(s);
+                    case Str(var l) when right instanceof Str(var r) -> s -> l.apply(s).equals(r.apply(s));
+                    default -> throw unsupported("equality between different types");
+                };
+                left = new Bool(negate ? equal.negate() : equal);
+            }
+            return left;
+        }
+
+        private Node parseRelational() {
+            var left = parseAdditive();
+            while (isOperator("<") || isOperator("<=") || isOperator(">") || isOperator(">=")) {
+                String op = token.text();
+                token = next();
+                var right = parseAdditive();
+                if (left instanceof Num(var l) && right instanceof Num(var r)) {
+                    left = new Bool(switch (op) {
+                        case "<" -> s -> l.applyAsDouble(s) < r.applyAsDouble(s);
+                        case "<=" -> s -> l.applyAsDouble(s) <= r.applyAsDouble(s);
+                        case ">" -> s -> l.applyAsDouble(s) > r.applyAsDouble(s);
+                        default -> s -> l.applyAsDouble(s) >= r.applyAsDouble(s);
+                    });
+                } else if (left instanceof Str(var l) && right instanceof Str(var r)) {
+                    // JS compares strings by UTF-16 code units, as String.compareTo
+                    left = new Bool(switch (op) {
+                        case "<" -> s -> l.apply(s).compareTo(r.apply(s)) < 0;
+                        case "<=" -> s -> l.apply(s).compareTo(r.apply(s)) <= 0;
+                        case ">" -> s -> l.apply(s).compareTo(r.apply(s)) > 0;
+                        default -> s -> l.apply(s).compareTo(r.apply(s)) >= 0;
+                    });
+                } else {
+                    throw unsupported("'" + op + "' between different types");
+                }
+            }
+            return left;
+        }
+
+        private Node parseAdditive() {
+            var left = parseMultiplicative();
+            while (isOperator("+") || isOperator("-")) {
+                String op = token.text();
+                token = next();
+                var l = num(left, op);
+                var r = num(parseMultiplicative(), op);
+                left = new Num(op.equals("+")
+                        ? s -> l.applyAsDouble(s) + r.applyAsDouble(s)
+                        : s -> l.applyAsDouble(s) - r.applyAsDouble(s));
+            }
+            return left;
+        }
+
+        private Node parseMultiplicative() {
+            var left = parseUnary();
+            while (isOperator("*") || isOperator("/") || isOperator("%")) {
+                String op = token.text();
+                token = next();
+                var l = num(left, op);
+                var r = num(parseUnary(), op);
+                // Double % truncates like the JS remainder
+                left = new Num(switch (op) {
+                    case "*" -> s -> l.applyAsDouble(s) * r.applyAsDouble(s);
+                    case "/" -> s -> l.applyAsDouble(s) / r.applyAsDouble(s);
+                    default -> s -> l.applyAsDouble(s) % r.applyAsDouble(s);
+                });
+            }
+            return left;
+        }
+
+        private Node parseUnary() {
+            if (isOperator("!")) {
+                token = next();
+                return new Bool(truthy(parseUnary()).negate());
+            }
+            if (isOperator("-")) {
+                token = next();
+                var operand = num(parseUnary(), "-");
+                return new Num(s -> -operand.applyAsDouble(s));
+            }
+            if (isOperator("+")) {
+                token = next();
+                return new Num(num(parseUnary(), "+"));
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            var current = token;
+            token = next();
+            return switch (current.type()) {
+                case NUMBER -> {
+                    double value = Double.parseDouble(current.text());
+                    yield new Num(s -> value);
+                }
+                case STRING -> new Str(s -> current.text());
+                case TRUE -> new Bool(s -> true);
+                case FALSE -> new Bool(s -> false);
+                case PATH -> reference(current.text());
+                case OPERATOR -> {
+                    if (!current.text().equals("(")) {
+                        throw unsupported("unexpected '" + current.text() + "'");
+                    }
+                    var inner = parseOr();
+                    if (!isOperator(")")) {
+                        throw unsupported("missing ')'");
+                    }
+                    token = next();
+                    yield inner;
+                }
+                case END -> throw unsupported("unexpected end");
+            };
+        }
+
+        private Node reference(String path) {
+            var type = pathTypes.getOrDefault(path, PulseDataType.DOUBLE);
+            int slot = slots.computeIfAbsent(path, k -> {
+                types.add(type);
+                return types.size() - 1;
+            });
+            return switch (type) {
+                case BOOLEAN -> new Bool(s -> s.booleans[slot]);
+                case STRING -> new Str(s -> s.strings[slot]);
+                default -> new Num(s -> s.numbers[slot]);
+            };
+        }
+
+        private Token next() {
+            while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= src.length()) {
+                return new Token(TokenType.END, "");
+            }
+            char c = src.charAt(pos);
+            if (src.startsWith("{{", pos)) {
+                int end = src.indexOf("}}", pos + 2);
+                if (end < 0) {
+                    throw unsupported("unterminated path reference");
+                }
+                String path = src.substring(pos + 2, end).trim();
+                pos = end + 2;
+                return new Token(TokenType.PATH, path);
+            }
+            if (Character.isDigit(c) || (c == '.' && pos + 1 < src.length() && Character.isDigit(src.charAt(pos + 1)))) {
+                int start = pos;
+                while (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) {
+                    pos++;
+                }
+                if (pos < src.length() && (src.charAt(pos) == 'e' || src.charAt(pos) == 'E')) {
+                    pos++;
+                    if (pos < src.length() && (src.charAt(pos) == '+' || src.charAt(pos) == '-')) {
+                        pos++;
+                    }
+                    while (pos < src.length() && Character.isDigit(src.charAt(pos))) {
+                        pos++;
+                    }
+                }
+                String number = src.substring(start, pos);
+                try {
+                    Double.parseDouble(number);
+                } catch (NumberFormatException e) {
+                    throw unsupported("number '" + number + "'");
+                }
+                return new Token(TokenType.NUMBER, number);
+            }
+            if (c == '\'' || c == '"') {
+                var text = new StringBuilder();
+                pos++;
+                while (pos < src.length() && src.charAt(pos) != c) {
+                    char ch = src.charAt(pos++);
+                    if (ch == '\\') {
+                        if (pos >= src.length()) {
+                            break;
+                        }
+                        char escaped = src.charAt(pos++);
+                        text.append(switch (escaped) {
+                            case '\\', '\'', '"' -> escaped;
+                            case 'n' -> '\n';
+                            case 't' -> '\t';
+                            default -> throw unsupported("escape '\\" + escaped + "'");
+                        });
+                    } else {
+                        text.append(ch);
+                    }
+                }
+                if (pos >= src.length()) {
+                    throw unsupported("unterminated string");
+                }
+                pos++;
+                return new Token(TokenType.STRING, text.toString());
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = pos;
+                while (pos < src.length() && Character.isJavaIdentifierPart(src.charAt(pos))) {
+                    pos++;
+                }
+                String word = src.substring(start, pos);
+                return switch (word) {
+                    case "true" -> new Token(TokenType.TRUE, word);
+                    case "false" -> new Token(TokenType.FALSE, word);
+                    default -> throw unsupported("identifier '" + word + "'");
+                };
+            }
+            for (String op : List.of("===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+                    "<", ">", "!", "+", "-", "*", "/", "%", "(", ")")) {
+                if (src.startsWith(op, pos)) {
+                    pos += op.length();
+                    return new Token(TokenType.OPERATOR, op);
+                }
+            }
+            throw unsupported("unexpected '" + c + "'");
+        }
+
+        private boolean isOperator(String op) {
+            return token.type() == TokenType.OPERATOR && token.text().equals(op);
+        }
+
+        private Predicate<Sample> bool(Node node, String op) {
+            if (node instanceof Bool(var f)) {
+                return f;
+            }
+            // JS && and || yield an operand, not a boolean
+            throw unsupported("'" + op + "' over non-boolean operands");
+        }
+
+        private ToDoubleFunction<Sample> num(Node node, String op) {
+            if (node instanceof Num(var f)) {
+                return f;
+            }
+            throw unsupported("'" + op + "' over non-number operands");
+        }
+
+        private UnsupportedConditionException unsupported(String reason) {
+            return new UnsupportedConditionException("Cannot compile '%s': %s".formatted(src, reason));
+        }
+
+        /**
+         * JS truthiness: false, 0, NaN and '' are false.
+         */
+        private static Predicate<Sample> truthy(Node node) {
+            return switch (node) {
+                case Bool(var f) -> f;
+                case Num(var f) -> s -> {
+                    double v = f.applyAsDouble(s);
+                    return v != 0 && !Double.isNaN(v);
+                };
+                case Str(var f) -> s -> !f.apply(s).isEmpty();
+            };
+        }
+    }
+}
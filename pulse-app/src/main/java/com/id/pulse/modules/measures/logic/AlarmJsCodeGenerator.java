@@ -88,16 +88,17 @@ public class AlarmJsCodeGenerator {
         jsStub.append("const _paths = [")
                 .append(referencedPaths.stream().map(p -> "'" + p + "'").collect(Collectors.joining(",")))
                 .append("];\n");
-        jsStub.append("const _timestamps = _parser.toMergedTimestamps(_paths);\n");
+        jsStub.append("const _timeline = _series.timeline(_paths);\n");
+        jsStub.append("const _timestamps = _timeline.timestamps();\n");
 
         // For each path, create the aligned value array (skip target)
         for (String path : referencedPaths) {
             PulseDataType type = pathTypeMap.getOrDefault(path, PulseDataType.DOUBLE); // default to DOUBLE
             String varName = "_v_" + toJsSafeVar(path);
             String jsArrayCode = switch (type) {
-                case BOOLEAN -> "_parser.toBooleans('" + path + "', false, _timestamps)";
-                case STRING -> "_parser.toStrings('" + path + "', '', _timestamps)";
-                default -> "_parser.toNumbers('" + path + "', 0.0, _timestamps)";
+                case BOOLEAN -> "_timeline.booleans('" + path + "', false)";
+                case STRING -> "_timeline.strings('" + path + "', '')";
+                default -> "_timeline.numbers('" + path + "', 0.0)";
             };
             jsStub.append("const ").append(varName).append(" = ").append(jsArrayCode).append(";\n");
         }
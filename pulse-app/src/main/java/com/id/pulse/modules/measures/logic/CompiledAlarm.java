@@ -0,0 +1,181 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.px3.utils.SafeConvert;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Alarm whose conditions were compiled by {@link AlarmConditionCompiler}.
+ * <p>
+ * Evaluates exactly as the script of {@link AlarmJsCodeGenerator}: the alarm engages when the engage condition holds
+ * at every upstream timestamp within [eval moment - engage duration, eval moment], and disengages likewise with the
+ * disengage condition; a window holding no timestamp satisfies its condition. Values are aligned to each timestamp as
+ * by the generated JS (nearest point of each path, the earlier one on ties, the type default when a path has no
+ * point). Like the script it keeps no state between evaluations: the result only depends on its arguments, whatever
+ * the order evaluations come in (live, reprocessing sessions, late points).
+ */
+public final class CompiledAlarm {
+
+    private final List<String> paths;
+    private final Map<String, Integer> slotsByPath = new HashMap<>();
+    private final PulseDataType[] types;
+    private final Predicate<AlarmConditionCompiler.Sample> engage;
+    private final long engageDuration;
+    private final Predicate<AlarmConditionCompiler.Sample> disengage;
+    private final long disengageDuration;
+
+    CompiledAlarm(List<String> paths,
+                  List<PulseDataType> types,
+                  Predicate<AlarmConditionCompiler.Sample> engage,
+                  long engageDuration,
+                  Predicate<AlarmConditionCompiler.Sample> disengage,
+                  long disengageDuration) {
+        this.paths = paths;
+        this.types = types.toArray(PulseDataType[]::new);
+        this.engage = engage;
+        this.engageDuration = engageDuration;
+        this.disengage = disengage;
+        this.disengageDuration = disengageDuration;
+        for (int slot = 0; slot < paths.size(); slot++) {
+            slotsByPath.put(paths.get(slot), slot);
+        }
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * New alarm state, as the generated JS returns it.
+     *
+     * @param evalMoment - Evaluation moment, the end of the condition window
+     * @param current    - Current alarm state
+     * @param deps       - Upstream data points, in any order
+     */
+    public boolean evaluate(long evalMoment, boolean current, List<PulseDataPoint> deps) {
+        var condition = current ? disengage : engage;
+        long duration = current ? disengageDuration : engageDuration;
+        return heldOverWindow(condition, evalMoment - duration, evalMoment, deps) != current;
+    }
+
+    /**
+     * Whether the condition holds at every timestamp of the paths within [from, to], stopping at the first failure.
+     */
+    private boolean heldOverWindow(Predicate<AlarmConditionCompiler.Sample> condition,
+                                   long from,
+                                   long to,
+                                   List<PulseDataPoint> deps) {
+        int size = paths.size();
+        long[][] ts = new long[size][];
+        Object[][] values = new Object[size][];
+        collect(deps, ts, values);
+
+        long[] timeline = timestamps(ts, from, to);
+        if (timeline.length == 0) {
+            return true;
+        }
+
+        var sample = new AlarmConditionCompiler.Sample(size);
+        int[] nearest = new int[size];
+        for (long t : timeline) {
+            for (int slot = 0; slot < size; slot++) {
+                long[] slotTs = ts[slot];
+                if (slotTs.length == 0) {
+                    setDefault(sample, slot);
+                    continue;
+                }
+                int j = nearest[slot];
+                while (j + 1 < slotTs.length && Math.abs(slotTs[j + 1] - t) < Math.abs(slotTs[j] - t)) {
+                    j++;
+                }
+                nearest[slot] = j;
+                set(sample, slot, values[slot][j]);
+            }
+            if (!condition.test(sample)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorted timestamps and values of each path, the last point winning on equal timestamps.
+     */
+    private void collect(List<PulseDataPoint> deps, long[][] ts, Object[][] values) {
+        List<List<PulseDataPoint>> bySlot = new ArrayList<>(paths.size());
+        for (int slot = 0; slot < paths.size(); slot++) {
+            bySlot.add(new ArrayList<>(1));
+        }
+        for (PulseDataPoint dp : deps) {
+            Integer slot = dp.getTms() != null ? slotsByPath.get(dp.getPath()) : null;
+            if (slot != null) {
+                bySlot.get(slot).add(dp);
+            }
+        }
+        for (int slot = 0; slot < paths.size(); slot++) {
+            var points = bySlot.get(slot);
+            points.sort(Comparator.comparingLong(PulseDataPoint::getTms));
+            long[] slotTs = new long[points.size()];
+            Object[] slotValues = new Object[points.size()];
+            int n = 0;
+            for (PulseDataPoint dp : points) {
+                if (n > 0 && slotTs[n - 1] == dp.getTms()) {
+                    n--;
+                }
+                slotTs[n] = dp.getTms();
+                slotValues[n] = dp.getVal();
+                n++;
+            }
+            ts[slot] = Arrays.copyOf(slotTs, n);
+            values[slot] = Arrays.copyOf(slotValues, n);
+        }
+    }
+
+    /**
+     * Distinct sorted timestamps of all the paths within [from, to].
+     */
+    private static long[] timestamps(long[][] ts, long from, long to) {
+        int total = 0;
+        for (long[] slotTs : ts) {
+            total += slotTs.length;
+        }
+        long[] merged = new long[total];
+        int n = 0;
+        for (long[] slotTs : ts) {
+            for (long t : slotTs) {
+                if (t >= from && t <= to) {
+                    merged[n++] = t;
+                }
+            }
+        }
+        Arrays.sort(merged, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || merged[distinct - 1] != merged[i]) {
+                merged[distinct++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, distinct);
+    }
+
+    private void set(AlarmConditionCompiler.Sample sample, int slot, Object value) {
+        switch (types[slot]) {
+            case BOOLEAN -> sample.booleans[slot] = SafeConvert.toBoolean(value).orElse(false);
+            case STRING -> sample.strings[slot] = SafeConvert.toString(value).orElse("");
+            default -> sample.numbers[slot] = value instanceof Number number
+                    ? number.doubleValue()
+                    : SafeConvert.toDouble(value).orElse(0.0);
+        }
+    }
+
+    private void setDefault(AlarmConditionCompiler.Sample sample, int slot) {
+        switch (types[slot]) {
+            case BOOLEAN -> sample.booleans[slot] = false;
+            case STRING -> sample.strings[slot] = "";
+            default -> sample.numbers[slot] = 0.0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.modules.measures.model.PulseMeasureLatency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram over fixed buckets, from 100µs to 10s.
+ */
+public final class LatencyHistogram {
+
+    private static final long[] BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public PulseMeasureLatency snapshot() {
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        List<Double> bounds = new ArrayList<>(BOUNDS_NANOS.length);
+        for (long bound : BOUNDS_NANOS) {
+            bounds.add(toMs(bound));
+        }
+        List<Long> bucketCounts = new ArrayList<>(snapshot.length);
+        for (long c : snapshot) {
+            bucketCounts.add(c);
+        }
+        return PulseMeasureLatency.builder()
+                .count(count)
+                .timeouts(timeouts.sum())
+                .meanMs(count > 0 ? toMs(totalNanos.sum()) / count : 0)
+                .maxMs(toMs(maxNanos.get()))
+                .p50Ms(percentile(snapshot, count, 0.50))
+                .p95Ms(percentile(snapshot, count, 0.95))
+                .p99Ms(percentile(snapshot, count, 0.99))
+                .bucketBoundsMs(bounds)
+                .bucketCounts(bucketCounts)
+                .build();
+    }
+
+    private double percentile(long[] snapshot, long count, double rank) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * rank);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // Beyond the last bound the max is the only known value
+                return i < BOUNDS_NANOS.length ? toMs(BOUNDS_NANOS[i]) : toMs(maxNanos.get());
+            }
+        }
+        return toMs(maxNanos.get());
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
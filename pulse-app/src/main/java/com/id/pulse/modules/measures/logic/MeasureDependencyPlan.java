@@ -0,0 +1,266 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.modules.measures.model.PulseMeasure;
+import com.id.pulse.modules.measures.model.PulseUpStream;
+import com.id.pulse.modules.measures.model.enums.PulseSourceType;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Dependency graph of a measure set, planned once per configuration and reused by every transformer run.
+ * <p>
+ * Measures are sorted topologically (Kahn) and indexed by their position in that order, so that a measure always
+ * comes after its measure upstreams. A run marks the measures reading its channels, plus the measures forced to run,
+ * in a {@link BitSet} and propagates the marks downstream in a single pass over the order. Measures on a cycle, and
+ * the measures depending on them, are left out of the order and never run.
+ * <p>
+ * Each measure also has a level, one more than the highest level of its measure upstreams: the measures of a level
+ * only depend on lower levels and can run in parallel.
+ */
+public final class MeasureDependencyPlan {
+
+    private static final int[] NO_CHILDREN = new int[0];
+
+    private final List<PulseMeasure> ordered;
+    private final Map<String, int[]> channelChildren;
+    private final int[][] measureChildren;
+    private final int[] levels;
+    private final int levelCount;
+    private final Map<String, Set<String>> measureDeps;
+    private final BitSet forcedRealtime;
+    private final BitSet forcedReprocessing;
+    private final List<String> unordered;
+
+    private MeasureDependencyPlan(List<PulseMeasure> ordered,
+                                  Map<String, int[]> channelChildren,
+                                  int[][] measureChildren,
+                                  int[] levels,
+                                  Map<String, Set<String>> measureDeps,
+                                  BitSet forcedRealtime,
+                                  BitSet forcedReprocessing,
+                                  List<String> unordered) {
+        this.ordered = ordered;
+        this.channelChildren = channelChildren;
+        this.measureChildren = measureChildren;
+        this.levels = levels;
+        this.levelCount = Arrays.stream(levels).max().orElse(-1) + 1;
+        this.measureDeps = measureDeps;
+        this.forcedRealtime = forcedRealtime;
+        this.forcedReprocessing = forcedReprocessing;
+        this.unordered = unordered;
+    }
+
+    /**
+     * Plans a measure set.
+     *
+     * @param measures           - Measures by path
+     * @param forcedRealtime     - Measures that run on every realtime run, whatever their inputs
+     * @param forcedReprocessing - Measures that run on every reprocessing run, whatever their inputs
+     */
+    public static MeasureDependencyPlan of(Map<String, PulseMeasure> measures,
+                                           Predicate<PulseMeasure> forcedRealtime,
+                                           Predicate<PulseMeasure> forcedReprocessing) {
+        // Measure upstreams of each measure, unknown measures ignored
+        Map<String, List<String>> upstreams = new HashMap<>();
+        Map<String, List<String>> children = new HashMap<>();
+        for (PulseMeasure m : measures.values()) {
+            var ups = new ArrayList<String>();
+            for (String up : measureUpstreams(m)) {
+                if (measures.containsKey(up)) {
+                    ups.add(up);
+                    children.computeIfAbsent(up, k -> new ArrayList<>()).add(m.getPath());
+                }
+            }
+            upstreams.put(m.getPath(), ups);
+        }
+
+        // Topological sort (Kahn's algorithm)
+        Map<String, Integer> pending = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        upstreams.forEach((path, ups) -> {
+            pending.put(path, ups.size());
+            if (ups.isEmpty()) {
+                ready.add(path);
+            }
+        });
+        List<PulseMeasure> ordered = new ArrayList<>(measures.size());
+        Map<String, Integer> indexByPath = new HashMap<>();
+        while (!ready.isEmpty()) {
+            String node = ready.poll();
+            indexByPath.put(node, ordered.size());
+            ordered.add(measures.get(node));
+            for (String child : children.getOrDefault(node, List.of())) {
+                if (pending.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        List<String> unordered = measures.keySet().stream()
+                .filter(path -> !indexByPath.containsKey(path))
+                .sorted()
+                .toList();
+
+        // Children and levels by order index, upstreams come first
+        int[][] measureChildren = new int[ordered.size()][];
+        int[] levels = new int[ordered.size()];
+        Map<String, Set<String>> measureDeps = new HashMap<>();
+        BitSet realtime = new BitSet(ordered.size());
+        BitSet reprocessing = new BitSet(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            var m = ordered.get(i);
+            measureChildren[i] = indexesOf(children.getOrDefault(m.getPath(), List.of()), indexByPath);
+            measureDeps.put(m.getPath(), Set.copyOf(upstreams.get(m.getPath())));
+            for (String up : upstreams.get(m.getPath())) {
+                levels[i] = Math.max(levels[i], levels[indexByPath.get(up)] + 1);
+            }
+            if (forcedRealtime.test(m)) {
+                realtime.set(i);
+            }
+            if (forcedReprocessing.test(m)) {
+                reprocessing.set(i);
+            }
+        }
+
+        Map<String, List<String>> byChannel = new HashMap<>();
+        for (PulseMeasure m : ordered) {
+            if (m.getUpstreams() == null) {
+                continue;
+            }
+            for (PulseUpStream u : m.getUpstreams()) {
+                if (u.getSourceType() == PulseSourceType.CHANNEL) {
+                    byChannel.computeIfAbsent(u.getPath(), k -> new ArrayList<>()).add(m.getPath());
+                }
+            }
+        }
+        Map<String, int[]> channelChildren = new HashMap<>();
+        byChannel.forEach((channel, paths) -> channelChildren.put(channel, indexesOf(paths, indexByPath)));
+
+        return new MeasureDependencyPlan(List.copyOf(ordered), channelChildren, measureChildren, levels,
+                Collections.unmodifiableMap(measureDeps), realtime, reprocessing, unordered);
+    }
+
+    /**
+     * Measures to run for changed channels, in topological order: the measures reading the channels, the forced
+     * measures, and all the measures downstream of them.
+     */
+    public List<PulseMeasure> impacted(Collection<String> channelPaths, boolean reprocessing) {
+        var impacted = impactedSet(channelPaths, reprocessing);
+        List<PulseMeasure> result = new ArrayList<>(impacted.cardinality());
+        for (int i = impacted.nextSetBit(0); i >= 0; i = impacted.nextSetBit(i + 1)) {
+            result.add(ordered.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Measures to run for changed channels, as {@link #impacted}, grouped by level; empty levels are skipped.
+     */
+    public List<List<PulseMeasure>> impactedLevels(Collection<String> channelPaths, boolean reprocessing) {
+        var impacted = impactedSet(channelPaths, reprocessing);
+        List<List<PulseMeasure>> byLevel = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            byLevel.add(new ArrayList<>());
+        }
+        for (int i = impacted.nextSetBit(0); i >= 0; i = impacted.nextSetBit(i + 1)) {
+            byLevel.get(levels[i]).add(ordered.get(i));
+        }
+        byLevel.removeIf(List::isEmpty);
+        return byLevel;
+    }
+
+    private BitSet impactedSet(Collection<String> channelPaths, boolean reprocessing) {
+        BitSet impacted = (BitSet) (reprocessing ? forcedReprocessing : forcedRealtime).clone();
+        for (String channel : channelPaths) {
+            for (int child : channelChildren.getOrDefault(channel, NO_CHILDREN)) {
+                impacted.set(child);
+            }
+        }
+        // Children always come later in the order: one pass reaches the whole downstream
+        for (int i = impacted.nextSetBit(0); i >= 0; i = impacted.nextSetBit(i + 1)) {
+            for (int child : measureChildren[i]) {
+                impacted.set(child);
+            }
+        }
+        return impacted;
+    }
+
+    /**
+     * Measure upstreams of each planned measure, by path.
+     */
+    public Map<String, Set<String>> measureDeps() {
+        return measureDeps;
+    }
+
+    /**
+     * Measures left out of the order, being on or downstream of a dependency cycle.
+     */
+    public List<String> unordered() {
+        return unordered;
+    }
+
+    /**
+     * Finds a dependency cycle through a measure, within a measure set.
+     *
+     * @param measures - Measures by path, the measure included
+     * @param path     - Path of the measure
+     * @return The cycle as a list of paths starting and ending with the measure, or empty
+     */
+    public static Optional<List<String>> findCycle(Map<String, PulseMeasure> measures, String path) {
+        // Depth-first search over the upstreams, iterative to stand deep chains
+        Set<String> visited = new HashSet<>();
+        Deque<Iterator<String>> stack = new ArrayDeque<>();
+        Deque<String> trail = new ArrayDeque<>();
+        trail.addLast(path);
+        stack.push(upstreamsOf(measures, path).iterator());
+        while (!stack.isEmpty()) {
+            var it = stack.peek();
+            if (!it.hasNext()) {
+                stack.pop();
+                trail.removeLast();
+                continue;
+            }
+            String next = it.next();
+            if (next.equals(path)) {
+                var cycle = new ArrayList<>(trail);
+                cycle.add(path);
+                // Upstream walk: reverse to read in data flow order
+                Collections.reverse(cycle);
+                return Optional.of(cycle);
+            }
+            if (visited.add(next)) {
+                trail.addLast(next);
+                stack.push(upstreamsOf(measures, next).iterator());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static List<String> upstreamsOf(Map<String, PulseMeasure> measures, String path) {
+        var m = measures.get(path);
+        return m != null ? measureUpstreams(m) : List.of();
+    }
+
+    private static List<String> measureUpstreams(PulseMeasure m) {
+        if (m.getUpstreams() == null) {
+            return List.of();
+        }
+        return m.getUpstreams().stream()
+                .filter(u -> u.getSourceType() != PulseSourceType.CHANNEL)
+                .map(PulseUpStream::getPath)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static int[] indexesOf(List<String> paths, Map<String, Integer> indexByPath) {
+        if (paths.isEmpty()) {
+            return NO_CHILDREN;
+        }
+        return paths.stream()
+                .map(indexByPath::get)
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .toArray();
+    }
+}
@@ -0,0 +1,31 @@
+package com.id.pulse.modules.measures.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transformation latency of a measure since startup. Percentiles are bucket upper bounds; the last bucket counts the
+ * transformations slower than the last bound.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PulseMeasureLatency {
+    private long count;
+    private long timeouts;
+    private double meanMs;
+    private double maxMs;
+    private double p50Ms;
+    private double p95Ms;
+    private double p99Ms;
+    @Builder.Default
+    private List<Double> bucketBoundsMs = new ArrayList<>();
+    @Builder.Default
+    private List<Long> bucketCounts = new ArrayList<>();
+}
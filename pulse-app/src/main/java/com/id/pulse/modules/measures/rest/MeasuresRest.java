@@ -3,6 +3,7 @@ package com.id.pulse.modules.measures.rest;
 import com.id.pulse.model.*;
 import com.id.pulse.modules.measures.model.PulseMeasure;
 import com.id.pulse.modules.measures.model.PulseMeasureEntity;
+import com.id.pulse.modules.measures.model.PulseMeasureLatency;
 import com.id.pulse.modules.measures.model.PulseMeasureRegisterHook;
 import com.id.pulse.modules.measures.service.MeasureHookService;
 import com.id.pulse.modules.measures.service.MeasureTransformerManager;
@@ -93,6 +94,15 @@ public class MeasuresRest extends PxRestCrudBase<PulseMeasure, String> {
         return ResponseEntity.ok(measureTransformerManager.testTransform(req.getMeasurePath(), req.getScript(), req.getCurrentValue(), req.getTestData()));
     }
 
+    /**
+     * Transformation latency of each measure since startup, by measure path.
+     */
+    @GetMapping("latencies")
+    @JwtSecured
+    public ResponseEntity<Map<String, PulseMeasureLatency>> getLatencies() {
+        return ResponseEntity.ok(measureTransformerManager.getLatencies());
+    }
+
     @PostMapping("find-by-path")
     @JwtSecured
     public ResponseEntity<PulseMeasure> findByPath(@RequestBody Map<String, String> path) {
@@ -0,0 +1,122 @@
+package com.id.pulse.modules.measures.service;
+
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.modules.alarms.PulseAlarm;
+import com.id.pulse.modules.channel.model.PulseChannel;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.model.PulseConfigSnapshot;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
+import com.id.pulse.modules.measures.logic.AlarmConditionCompiler;
+import com.id.pulse.modules.measures.logic.CompiledAlarm;
+import com.id.pulse.modules.measures.model.PulseMeasure;
+import com.id.pulse.modules.measures.model.PulseUpStream;
+import com.id.pulse.modules.measures.model.enums.PulseSourceType;
+import com.id.px3.utils.SafeConvert;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates the target measures of alarms with their compiled conditions, see {@link AlarmConditionCompiler}.
+ * <p>
+ * Compiled alarms are cached by alarm id as long as the alarm definition and the types of its upstreams do not
+ * change; they hold no evaluation state, so live and reprocessing runs can share them. Alarms whose script was edited by hand, or whose conditions cannot be compiled, are
+ * left to the JS evaluation.
+ */
+@Service
+@Slf4j
+public class AlarmConditionEvaluator {
+
+    public static final String DETAILS_JS_SCRIPT_AUTOGEN = "js_script_autogen";
+
+    private final ConfigSnapshotService configSnapshotService;
+    private final ConcurrentHashMap<String, Entry> alarms = new ConcurrentHashMap<>();
+    private final AtomicLong prunedVersion = new AtomicLong(-1);
+
+    private record Definition(String engageCondition,
+                              Long engageDuration,
+                              String disengageCondition,
+                              Long disengageDuration,
+                              Map<String, PulseDataType> pathTypes) {
+    }
+
+    private record Entry(Definition definition, Optional<CompiledAlarm> compiled) {
+    }
+
+    public AlarmConditionEvaluator(ConfigSnapshotService configSnapshotService) {
+        this.configSnapshotService = configSnapshotService;
+    }
+
+    /**
+     * New value of an alarm target measure.
+     *
+     * @return The new alarm state, or empty when the measure must be evaluated by its JS script
+     */
+    public Optional<Boolean> evaluate(PulseMeasure measure, long evalMoment, Object currentValue, List<PulseDataPoint> deps) {
+        if (!(currentValue instanceof Boolean current) || measure.getDetails() == null
+                || !SafeConvert.toBoolean(measure.getDetails().get(DETAILS_JS_SCRIPT_AUTOGEN)).orElse(false)) {
+            return Optional.empty();
+        }
+        String alarmId = SafeConvert.toString(measure.getDetails().get(MeasureTransformer.DETAILS_ALARM_ID)).orElse(null);
+        if (alarmId == null) {
+            return Optional.empty();
+        }
+
+        var config = configSnapshotService.get();
+        prune(config);
+        var alarm = config.alarmsById().get(alarmId);
+        if (alarm == null) {
+            return Optional.empty();
+        }
+        var definition = definitionOf(alarm, measure, config);
+        if (definition == null) {
+            return Optional.empty();
+        }
+
+        var entry = alarms.compute(alarmId, (id, existing) ->
+                existing != null && existing.definition().equals(definition) ? existing : compile(alarm, definition));
+        return entry.compiled().map(compiled -> compiled.evaluate(evalMoment, current, deps));
+    }
+
+    private Entry compile(PulseAlarm alarm, Definition definition) {
+        Optional<CompiledAlarm> compiled;
+        try {
+            compiled = AlarmConditionCompiler.compile(definition.engageCondition(), definition.engageDuration(),
+                    definition.disengageCondition(), definition.disengageDuration(), definition.pathTypes());
+        } catch (IllegalArgumentException e) {
+            compiled = Optional.empty();
+        }
+        if (compiled.isEmpty()) {
+            log.debug("Alarm {} conditions cannot be compiled, evaluated in JS", alarm.getPath());
+        }
+        return new Entry(definition, compiled);
+    }
+
+    /**
+     * Definition of the alarm with the data types of its upstreams, null when an upstream is unknown.
+     */
+    private Definition definitionOf(PulseAlarm alarm, PulseMeasure measure, PulseConfigSnapshot config) {
+        Map<String, PulseDataType> pathTypes = new HashMap<>();
+        for (PulseUpStream up : measure.getUpstreams()) {
+            var type = up.getSourceType() == PulseSourceType.CHANNEL
+                    ? config.findChannel(up.getPath()).map(PulseChannel::getDataType)
+                    : config.findMeasure(up.getPath()).map(PulseMeasure::getDataType);
+            if (type.isEmpty()) {
+                return null;
+            }
+            pathTypes.put(up.getPath(), type.get());
+        }
+        return new Definition(alarm.getEngageCondition(), alarm.getEngageDuration(),
+                alarm.getDisengageCondition(), alarm.getDisengageDuration(), pathTypes);
+    }
+
+    private void prune(PulseConfigSnapshot config) {
+        long version = prunedVersion.get();
+        if (version != config.version() && prunedVersion.compareAndSet(version, config.version())) {
+            alarms.keySet().retainAll(config.alarmsById().keySet());
+        }
+    }
+}
@@ -12,11 +12,13 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
@@ -25,6 +27,8 @@ public class MeasureHookService {
     private final HashMap<String, PulseMeasureRegisterHook> hooksMap = new HashMap<>();
     private final JwtService jwtService;
     private final RestTemplate restTemplate;
+    // COMPUTE_MEASURE clients by timeout, there is one per measure timeout or run interval in use
+    private final ConcurrentHashMap<Long, RestTemplate> timedRestTemplates = new ConcurrentHashMap<>();
 
     public MeasureHookService(JwtService jwtService, RestTemplate restTemplate) {
         this.jwtService = jwtService;
@@ -59,11 +63,16 @@ public class MeasureHookService {
                 .toList();
     }
 
-    public Optional<Object> computeMeasure(PulseMeasureRestCompute requestPayload) {
+    /**
+     * Calls the COMPUTE_MEASURE hook, giving up (empty) when connecting or reading takes longer than the timeout.
+     *
+     * @param timeoutMs - Connect and read timeout, 0 for the shared client defaults
+     */
+    public Optional<Object> computeMeasure(PulseMeasureRestCompute requestPayload, long timeoutMs) {
         return hooksMap.values().stream()
                 .filter(hook -> hook.getType() == PulseMeasureRegisterHookType.COMPUTE_MEASURE)
                 .findFirst()
-                .flatMap(hook -> computeMeasure(hook, requestPayload));
+                .flatMap(hook -> computeMeasure(hook, requestPayload, timeoutMs));
     }
 
     private void callHook(PulseMeasureRegisterHook hook,
@@ -106,7 +115,7 @@ public class MeasureHookService {
                     .build();
 
             var request = new HttpEntity<>(payload, headers);
-            var response = restTemplate.exchange(
+            var response = restTemplate(timeoutMs).exchange(
                     hook.getPostEndPoint(),
                     HttpMethod.POST,
                     request,
@@ -119,14 +128,14 @@ public class MeasureHookService {
         }
     }
 
-    private Optional<Object> computeMeasure(PulseMeasureRegisterHook hook, PulseMeasureRestCompute payload) {
+    private Optional<Object> computeMeasure(PulseMeasureRegisterHook hook, PulseMeasureRestCompute payload, long timeoutMs) {
         try {
             String token = jwtService.generateToken("system", Set.of(DefaultRoles.ROOT), Duration.ofMinutes(1));
             var headers = new HttpHeaders();
             headers.setBearerAuth(token);
 
             var request = new HttpEntity<>(payload, headers);
-            var response = restTemplate.exchange(
+            var response = restTemplate(timeoutMs).exchange(
                     hook.getPostEndPoint(),
                     HttpMethod.POST,
                     request,
@@ -139,4 +148,19 @@ public class MeasureHookService {
             return Optional.empty();
         }
     }
+
+    private RestTemplate restTemplate(long timeoutMs) {
+        if (timeoutMs <= 0) {
+            return restTemplate;
+        }
+        return timedRestTemplates.computeIfAbsent(timeoutMs, ms -> {
+            int timeout = (int) Math.min(ms, Integer.MAX_VALUE);
+            var requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(timeout);
+            requestFactory.setReadTimeout(timeout);
+            var timed = new RestTemplate(requestFactory);
+            timed.setMessageConverters(restTemplate.getMessageConverters());
+            return timed;
+        });
+    }
 }
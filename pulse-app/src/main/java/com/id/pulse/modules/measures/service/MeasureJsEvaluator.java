@@ -3,18 +3,106 @@ package com.id.pulse.modules.measures.service;
 import com.id.pulse.modules.measures.logic.ScriptEvaluatorConsole;
 import com.id.pulse.modules.measures.model.ScriptEvaluatorResult;
 import com.id.pulse.modules.parser.PulseDataMatrixParser;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
+import jakarta.annotation.PreDestroy;
 import org.graalvm.polyglot.*;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
+/**
+ * Evaluates measure scripts on pooled contexts.
+ * <p>
+ * Sources are cached by script text, so the shared engine parses each script once. A context serves one evaluation
+ * at a time and goes back to the pool afterward, with the globals the script created removed. The builtins are frozen
+ * when the context is created, so a script cannot change them for the next ones (assignments to them are ignored, or
+ * throw in strict code). Scripts run wrapped in a block: their top-level {@code let}/{@code const} are scoped to the
+ * run and can be declared again by the next one. A run given a timeout is cancelled past it, by closing its context.
+ */
 @Service
 public class MeasureJsEvaluator {
     private static final Engine ENGINE = Engine.create();
 
     public static final String JS = "js";
 
+    // Contexts kept idle for reuse, above the parallelism of the transformer on most hosts; contexts borrowed beyond it
+    // (previews, tests) are closed after their run
+    private static final int MAX_IDLE_CONTEXTS = 32;
+    private static final int MAX_CACHED_SOURCES = 4096;
+
+    // Restrict available classes for Java.type (even stricter)
+    private static final Predicate<String> CLASS_WHITELIST = className ->
+            className.startsWith("com.id.pulse.") || className.startsWith("java.util.");
+
+    // Freezes the builtins reachable from the global scope, plus the iterator and generator intrinsics, and pins the
+    // builtin globals. The global object itself stays extensible: the globals a script creates are dropped by reset()
+    private static final Source LOCKDOWN = Source.create(JS, """
+            (function (skipped) {
+                const frozen = new WeakSet([globalThis]);
+                const freeze = (value) => {
+                    if (value === null || (typeof value !== 'object' && typeof value !== 'function') || frozen.has(value)) {
+                        return;
+                    }
+                    frozen.add(value);
+                    try {
+                        Object.freeze(value);
+                        for (const key of Reflect.ownKeys(value)) {
+                            const desc = Object.getOwnPropertyDescriptor(value, key);
+                            freeze(desc.value);
+                            freeze(desc.get);
+                            freeze(desc.set);
+                        }
+                        freeze(Object.getPrototypeOf(value));
+                    } catch (e) {
+                        // Host objects cannot be frozen
+                    }
+                };
+                for (const key of Reflect.ownKeys(globalThis)) {
+                    if (skipped.includes(key)) {
+                        continue;
+                    }
+                    const desc = Object.getOwnPropertyDescriptor(globalThis, key);
+                    try {
+                        Object.defineProperty(globalThis, key,
+                                'value' in desc ? {writable: false, configurable: false} : {configurable: false});
+                    } catch (e) {
+                        // Already pinned
+                    }
+                    freeze(desc.value);
+                    freeze(desc.get);
+                    freeze(desc.set);
+                }
+                [
+                    Object.getPrototypeOf([][Symbol.iterator]()),
+                    Object.getPrototypeOf(new Map().entries()),
+                    Object.getPrototypeOf(new Set().values()),
+                    Object.getPrototypeOf(''[Symbol.iterator]()),
+                    Object.getPrototypeOf(function* () {}),
+                    Object.getPrototypeOf(async function () {}),
+                    Object.getPrototypeOf(async function* () {}),
+                ].forEach(freeze);
+            })(['console']);
+            """);
+
+    private final ConcurrentHashMap<String, Source> sources = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<PooledContext> idleContexts = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("measure-js-watchdog").factory());
+
+    private record PooledContext(Context context, Value bindings, Set<String> baselineKeys, Value undefined) {
+    }
 
     /**
      * Evaluates the provided JavaScript code with given bindings.
@@ -41,25 +129,78 @@ public class MeasureJsEvaluator {
             throw new ScriptEvaluationException("Matrix parser cannot be null", null);
         }
 
-        // Restrict available classes for Java.type (even stricter)
-        Predicate<String> classWhitelist = className ->
-                className.startsWith("com.id.pulse.") || className.startsWith("java.util.");
+        return run(evalMoment, script, PulseSeriesBindings.from(matrixParser), currentValue, logContext);
+    }
 
-        var logConsole = new ScriptEvaluatorConsole(logContext != null ? logContext : "");
-        try (Context context = Context.newBuilder(JS)
-                .engine(ENGINE)
-                .allowHostAccess(HostAccess.ALL)
-                .allowHostClassLookup(classWhitelist)
-                .build()) {
+    /**
+     * Evaluates the provided JavaScript code over typed series.
+     *
+     * @param script     - The JavaScript code to evaluate
+     * @param series     - The series bound to the script as "_series", its parser bound as "_parser"
+     * @param logContext - Context for logging, used as a prefix in the console object
+     *
+     * @return The result of the script evaluation. If the script returns null, this method will return null.
+     */
+    public ScriptEvaluatorResult evaluate(Long evalMoment,
+                                          String script,
+                                          PulseSeriesBindings series,
+                                          Object currentValue,
+                                          String logContext) {
+        return evaluate(evalMoment, script, series, currentValue, logContext, 0);
+    }
+
+    /**
+     * Evaluates the provided JavaScript code over typed series, cancelling it past the timeout.
+     *
+     * @param timeoutMs - Longest run before the script is cancelled (not ok), 0 for no limit
+     */
+    public ScriptEvaluatorResult evaluate(Long evalMoment,
+                                          String script,
+                                          PulseSeriesBindings series,
+                                          Object currentValue,
+                                          String logContext,
+                                          long timeoutMs) {
+
+        if (evalMoment == null || evalMoment <= 0) {
+            throw new ScriptEvaluationException("Evaluation moment cannot be null or negative or zero", null);
+        }
+        if (script == null || script.isBlank()) {
+            throw new ScriptEvaluationException("Script cannot be null or empty", null);
+        }
+        if (series == null) {
+            throw new ScriptEvaluationException("Series cannot be null", null);
+        }
+
+        return run(evalMoment, script, series, currentValue, logContext, timeoutMs);
+    }
 
-            // Make the parser available as "parser"
-            Value jsBindings = context.getBindings(JS);
+    private ScriptEvaluatorResult run(Long evalMoment,
+                                      String script,
+                                      PulseSeriesBindings series,
+                                      Object currentValue,
+                                      String logContext,
+                                      long timeoutMs) {
+        var logConsole = new ScriptEvaluatorConsole(logContext != null ? logContext : "");
+        var pooled = borrow();
+        boolean reusable = true;
+        // Set by whichever comes first, the end of the run or the watchdog
+        var finished = new AtomicBoolean();
+        ScheduledFuture<?> cancel = timeoutMs > 0
+                ? watchdog.schedule(() -> {
+                    if (finished.compareAndSet(false, true)) {
+                        pooled.context().close(true);
+                    }
+                }, timeoutMs, TimeUnit.MILLISECONDS)
+                : null;
+        try {
+            Value jsBindings = pooled.bindings();
             jsBindings.putMember("_current", currentValue);
             jsBindings.putMember("_t_eval", evalMoment);
-            jsBindings.putMember("_parser", matrixParser);
+            jsBindings.putMember("_series", series);
+            jsBindings.putMember("_parser", series.parser());
             jsBindings.putMember("console", logConsole);
 
-            Value result = context.eval(JS, script);
+            Value result = pooled.context().eval(source(script));
 
             return ScriptEvaluatorResult.builder()
                     .ok(true)
@@ -67,10 +208,29 @@ public class MeasureJsEvaluator {
                     .logOutput(logConsole.getLogBuffer())
                     .build();
         } catch (PolyglotException e) {
+            // A cancelled, exited or broken context cannot run another script
+            reusable = !(e.isCancelled() || e.isExit() || e.isInternalError() || e.isResourceExhausted());
             if (e.getMessage() != null && !e.getMessage().isBlank()) {
                 Arrays.stream(e.getMessage().split("\n")).forEach(logConsole::error);
             }
-            logConsole.error("Error evaluating JS script", e);
+            logConsole.error(e.isCancelled() ? "JS script cancelled after %d ms".formatted(timeoutMs)
+                    : "Error evaluating JS script", e);
+        } catch (RuntimeException e) {
+            reusable = false;
+            if (!finished.get()) {
+                throw e;
+            }
+            // Closed by the watchdog before the script started
+            logConsole.error("JS script cancelled after %d ms".formatted(timeoutMs), e);
+        } finally {
+            if (cancel != null) {
+                cancel.cancel(false);
+            }
+            if (!finished.compareAndSet(false, true)) {
+                // Cancelled, possibly right after the script returned
+                reusable = false;
+            }
+            release(pooled, reusable);
         }
 
         return ScriptEvaluatorResult.builder()
@@ -79,6 +239,91 @@ public class MeasureJsEvaluator {
                 .build();
     }
 
+    @PreDestroy
+    public void close() {
+        watchdog.shutdownNow();
+        PooledContext pooled;
+        while ((pooled = idleContexts.poll()) != null) {
+            idleCount.decrementAndGet();
+            pooled.context().close();
+        }
+    }
+
+    private Source source(String script) {
+        var source = sources.get(script);
+        if (source != null) {
+            return source;
+        }
+        if (sources.size() >= MAX_CACHED_SOURCES) {
+            // Edited scripts leave their old versions behind, start over rather than tracking usage
+            sources.clear();
+        }
+        // The opening brace stays on the first line, so that error positions match the script lines
+        return sources.computeIfAbsent(script, s -> Source.newBuilder(JS, "{" + s + "\n}",
+                        "measure-%08x.js".formatted(s.hashCode()))
+                .cached(true)
+                .buildLiteral());
+    }
+
+    private PooledContext borrow() {
+        var pooled = idleContexts.poll();
+        if (pooled != null) {
+            idleCount.decrementAndGet();
+            return pooled;
+        }
+        Context context = Context.newBuilder(JS)
+                .engine(ENGINE)
+                .allowHostAccess(HostAccess.ALL)
+                .allowHostClassLookup(CLASS_WHITELIST)
+                .build();
+        // Before the baseline is taken: the console is bound again on every run
+        context.eval(LOCKDOWN);
+        Value bindings = context.getBindings(JS);
+        return new PooledContext(context, bindings, Set.copyOf(bindings.getMemberKeys()), context.eval(JS, "undefined"));
+    }
+
+    private void release(PooledContext pooled, boolean reusable) {
+        if (reusable) {
+            reusable = reset(pooled);
+        }
+        if (reusable && idleCount.incrementAndGet() <= MAX_IDLE_CONTEXTS) {
+            idleContexts.push(pooled);
+            return;
+        }
+        if (reusable) {
+            idleCount.decrementAndGet();
+        }
+        pooled.context().close();
+    }
+
+    /**
+     * Drops the globals created since the context was built (bindings and script {@code var}s), so that the next
+     * script starts from a clean global scope. Returns false when the context cannot be cleaned.
+     */
+    private boolean reset(PooledContext pooled) {
+        try {
+            Value bindings = pooled.bindings();
+            for (String key : List.copyOf(bindings.getMemberKeys())) {
+                if (pooled.baselineKeys().contains(key)) {
+                    continue;
+                }
+                boolean removed;
+                try {
+                    removed = bindings.removeMember(key);
+                } catch (UnsupportedOperationException e) {
+                    removed = false;
+                }
+                if (!removed) {
+                    // Script vars are not deletable
+                    bindings.putMember(key, pooled.undefined());
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
     public static class ScriptEvaluationException extends RuntimeException {
         public ScriptEvaluationException(String message, Throwable cause) {
             super(message, cause);
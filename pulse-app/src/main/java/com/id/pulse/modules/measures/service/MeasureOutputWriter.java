@@ -19,7 +19,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -32,8 +31,6 @@ public class MeasureOutputWriter {
     private final DataIngestor dataIngestor;
     private final LatestValuesBucket latestValuesBucket;
 
-    private final ConcurrentHashMap<String, PulseChunkMetadata> metadataCache = new ConcurrentHashMap<>();
-
     public void writeValues(List<MeasureValueWriteRequest> requests) {
         if (CollectionUtils.isEmpty(requests)) {
             return;
@@ -95,15 +92,11 @@ public class MeasureOutputWriter {
 
         latestValuesBucket.writeDataPoint(List.of(virtualGroup), dp);
 
-        String metadataCacheKey = "%s@%d".formatted(measure.getPath(), interval);
-        PulseChunkMetadata metadata = metadataCache.computeIfAbsent(
-                metadataCacheKey,
-                key -> dataIngestor.prepareMetadata(
-                        MeasureTransformer.MEASURES_GROUP,
-                        measure.getPath(),
-                        dataType,
-                        interval
-                )
+        PulseChunkMetadata metadata = dataIngestor.prepareMetadata(
+                MeasureTransformer.MEASURES_GROUP,
+                measure.getPath(),
+                dataType,
+                interval
         );
 
         Map<Long, Object> timeSeries = Map.of(dp.getTms(), coercedValue);
@@ -1,30 +1,29 @@
 package com.id.pulse.modules.measures.service;
 
+import com.id.pulse.config.AppConfig;
 import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.model.PulseTestMeasureTransformRes;
 import com.id.pulse.modules.alarms.PulseAlarm;
-import com.id.pulse.modules.alarms.service.AlarmsCrudService;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
 import com.id.pulse.modules.datapoints.ingestor.service.DataIngestor;
+import com.id.pulse.modules.measures.logic.LatencyHistogram;
+import com.id.pulse.modules.measures.logic.MeasureDependencyPlan;
 import com.id.pulse.modules.measures.model.*;
 import com.id.pulse.modules.measures.model.enums.PulseSourceType;
 import com.id.pulse.modules.measures.model.enums.PulseTransformType;
 import com.id.pulse.modules.measures.model.enums.PulseComputationMode;
 import com.id.pulse.modules.measures.service.MeasureHookService;
-import com.id.pulse.modules.parser.PulseDataMatrixParser;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
 import com.id.pulse.modules.poller.service.LatestValuesBucket;
-import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
-import com.id.pulse.utils.PulseDataMatrixBuilder;
 import com.id.px3.utils.SafeConvert;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -34,59 +33,83 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MeasureTransformer {
 
-    private static final int MAX_THREADS = 32;
     public static final String MEASURES_GROUP = "_MEASURES_";
     public static final String DETAILS_ALARM_ID = "alarm_id";
 
-    private final AlarmsCrudService alarmsCrudService;
-    private final ConcurrentHashMap<String, PulseChunkMetadata> channelMetadata = new ConcurrentHashMap<>();
+    private final ConfigSnapshotService configSnapshotService;
     private final DataIngestor dataIngestor;
     private final MeasuresCrudService measuresCrudService;
     private final MeasureJsEvaluator measureJsEvaluator;
-    private final ExecutorService executor = Executors.newFixedThreadPool(
-            MAX_THREADS,
-            Thread.ofVirtual().factory()
-    );
+    // Measures run level by level on a work-stealing pool; REST measures block on their hook and run on virtual threads
+    private final ForkJoinPool computePool;
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private final LatestValuesBucket latestValuesBucket;
     private final MeasureHookService measureHookService;
+    private final AlarmConditionEvaluator alarmConditionEvaluator;
+    private final AppConfig appConfig;
+    private final AtomicReference<CachedPlan> dependencyPlan = new AtomicReference<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
 
     private static final String BNET_COMPUTATION_MODE_CONTINUOUS = "CONTINUOUS";
     private static final String BNET_COMPUTATION_MODE_REALTIME_KEY = "BNET_COMPUTATION_MODE_REALTIME";
     private static final String BNET_COMPUTATION_MODE_REPROCESSING_KEY = "BNET_COMPUTATION_MODE_REPROCESSING";
 
     @Autowired
-    public MeasureTransformer(AlarmsCrudService alarmsCrudService,
+    public MeasureTransformer(ConfigSnapshotService configSnapshotService,
                               MeasuresCrudService measuresCrudService,
                               DataIngestor dataIngestor,
                               MeasureJsEvaluator measureJsEvaluator,
                               LatestValuesBucket latestValuesBucket,
-                              MeasureHookService measureHookService) {
-        this.alarmsCrudService = alarmsCrudService;
+                              MeasureHookService measureHookService,
+                              AlarmConditionEvaluator alarmConditionEvaluator,
+                              AppConfig appConfig) {
+        this.configSnapshotService = configSnapshotService;
         this.measuresCrudService = measuresCrudService;
         this.dataIngestor = dataIngestor;
         this.measureJsEvaluator = measureJsEvaluator;
         this.latestValuesBucket = latestValuesBucket;
         this.measureHookService = measureHookService;
+        this.alarmConditionEvaluator = alarmConditionEvaluator;
+        this.appConfig = appConfig;
+        int parallelism = appConfig.getTransformerParallelism();
+        this.computePool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        computePool.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * Transformation latency of each measure since startup, by path.
+     */
+    public Map<String, PulseMeasureLatency> getLatencies() {
+        Map<String, PulseMeasureLatency> snapshot = new TreeMap<>();
+        latencies.forEach((path, histogram) -> snapshot.put(path, histogram.snapshot()));
+        return snapshot;
     }
 
     public List<PulseDataPoint> execute(TransformerRun run) {
-        Map<String, PulseMeasure> measuresMap = measuresCrudService.findAll().stream()
-                .collect(Collectors.toMap(PulseMeasure::getPath, Function.identity()));
+        // One configuration snapshot for the whole run
+        var config = configSnapshotService.get();
+        Map<String, PulseMeasure> measuresMap = new HashMap<>(config.measuresByPath());
 
         // Merge externally provided measures (hooks win on conflict)
-        measureHookService.fetchProvideMeasureList().forEach(m -> {
-            if (m != null && m.getPath() != null) {
-                measuresMap.put(m.getPath(), m);
-            }
-        });
+        List<PulseMeasure> hookMeasures = measureHookService.fetchProvideMeasureList().stream()
+                .filter(m -> m != null && m.getPath() != null)
+                .toList();
+        hookMeasures.forEach(m -> measuresMap.put(m.getPath(), m));
 
         //  Get latest values for channels - pay attention, the latest value is referred to the TMS in the 'run'.
         //  This means that when we got here for a reprocessing session, the TMS comes from the reprocessing and can actually be in the past
         Map<String, PulseDataPoint> channelValues = getLatestValues(run.getChannelUpStreams());
 
         // Build ordered list and get dependency map
-        BuildOrderListResult buildOrderListResult = buildOrderedList(measuresMap, channelValues.keySet().stream().toList(), run);
+        BuildOrderListResult buildOrderListResult = buildOrderedList(measuresMap, hookMeasures, config.version(),
+                channelValues.keySet(), run);
         List<PulseMeasure> measures = buildOrderListResult.measures();
+        List<List<PulseMeasure>> levels = buildOrderListResult.levels();
         Map<String, Set<String>> origDependencies = buildOrderListResult.origDeps();
 
         // Load current values for all measures
@@ -99,16 +122,16 @@ public class MeasureTransformer {
         Map<String, PulseDataPoint> currentValuesMap = currentValues.stream()
                 .collect(Collectors.toMap(PulseDataPoint::getPath, Function.identity()));
 
-        // Make a list of measure paths indexed by alarms
-        List<String> alarmTargetMeasurePaths = measures.stream()
+        // Make a set of measure paths indexed by alarms
+        Set<String> alarmTargetMeasurePaths = measures.stream()
                 .filter(m -> m.getDetails() != null && m.getDetails().containsKey(DETAILS_ALARM_ID))
                 .map(PulseMeasure::getPath)
-                .toList();
+                .collect(Collectors.toSet());
 
-        // Apply transformation logic on ordered measures with dependencies
+        // Apply transformation logic level by level
         List<PulseDataPoint> transformed = applyTransformations(
-                measures,
-                currentValues,
+                levels,
+                currentValuesMap,
                 origDependencies,
                 channelValues,
                 run.getTms(),
@@ -119,7 +142,7 @@ public class MeasureTransformer {
                 .collect(Collectors.toMap(PulseDataPoint::getPath, Function.identity()));
 
         // Select alarms-linked measures which have changed
-        HashMap<String, Boolean> changedAlarmsByPath = extractChangedAlarmsMap(measuresMap, transformed, alarmTargetMeasurePaths, currentValuesMap, transformedMap);
+        HashMap<String, Boolean> changedAlarmsByPath = extractChangedAlarmsMap(measuresMap, config.alarmsById(), transformed, alarmTargetMeasurePaths, currentValuesMap, transformedMap);
 
         // Publish changed alarms
         publishChangedAlarms(changedAlarmsByPath, run.getTms());
@@ -136,14 +159,12 @@ public class MeasureTransformer {
     }
 
     private HashMap<String, Boolean> extractChangedAlarmsMap(Map<String, PulseMeasure> measuresMap,
+                                                             Map<String, PulseAlarm> alarmsMapById,
                                                              List<PulseDataPoint> transformed,
-                                                             List<String> alarmTargetMeasurePaths,
+                                                             Set<String> alarmTargetMeasurePaths,
                                                              Map<String, PulseDataPoint> currentValuesMap,
                                                              Map<String, PulseDataPoint> transformedMap) {
 
-        // Load all alarms in a map
-        var alarmsMapById = alarmsCrudService.findAll().stream().collect(Collectors.toMap(PulseAlarm::getId, al -> al));
-
         var changedAlarms = new HashMap<String, Boolean>();
         transformed.stream()
                 .filter(dp -> alarmTargetMeasurePaths.contains(dp.getPath()))
@@ -230,8 +251,7 @@ public class MeasureTransformer {
 
                 // Get metadata for the channel and write
                 var firstDataPoint = dataPoints.getFirst();
-                var metadata = channelMetadata.computeIfAbsent("%s:%s".formatted(MEASURES_GROUP, firstDataPoint.getPath()), k ->
-                        dataIngestor.prepareMetadata(MEASURES_GROUP, firstDataPoint.getPath(), firstDataPoint.getType(), run.getInterval()));
+                var metadata = dataIngestor.prepareMetadata(MEASURES_GROUP, firstDataPoint.getPath(), firstDataPoint.getType(), run.getInterval());
 
                 // Extract the timeseries from the data points
                 Map<Long, Object> timeSeries = new HashMap<>();
@@ -254,11 +274,15 @@ public class MeasureTransformer {
         }
     }
 
+    private record CachedPlan(long configVersion, List<PulseMeasure> hookMeasures, MeasureDependencyPlan plan) {
+    }
+
     /**
      * Holds the ordered measure list plus the original dependency map.
      */
     public record BuildOrderListResult(
             List<PulseMeasure> measures,
+            List<List<PulseMeasure>> levels,
             Map<String, Set<String>> origDeps
     ) {
     }
@@ -333,7 +357,7 @@ public class MeasureTransformer {
         }
 
         AtomicReference<ScriptEvaluatorResult> evaluatorResult = new AtomicReference<>();
-        Object scriptResult = transformJavaScript(tms.get(), measure, currentDataPoint, deps, evaluatorResult);
+        Object scriptResult = transformJavaScript(tms.get(), measure, currentDataPoint, deps, evaluatorResult, 0);
 
         return PulseTestMeasureTransformRes.builder()
                 .result(scriptResult)
@@ -358,132 +382,58 @@ public class MeasureTransformer {
         };
     }
 
-    private BuildOrderListResult buildOrderedList
-            (Map<String, PulseMeasure> measureMap, List<String> channelPaths, TransformerRun run) {
-        // Build inverse graphs
-        Map<String, List<String>> channelChildren = new HashMap<>();
-        Map<String, List<String>> measureChildren = new HashMap<>();
-        for (PulseMeasure m : measureMap.values()) {
-            for (PulseUpStream u : m.getUpstreams()) {
-                String source = u.getPath();
-                if (u.getSourceType() == PulseSourceType.CHANNEL) {
-                    channelChildren.computeIfAbsent(source, k -> new ArrayList<>()).add(m.getPath());
-                } else {
-                    measureChildren.computeIfAbsent(source, k -> new ArrayList<>()).add(m.getPath());
-                }
-            }
-        }
-
-        // Seed impacted set from changed channels
-        Set<String> impacted = new LinkedHashSet<>();
-        Deque<String> queue = new ArrayDeque<>();
-        for (String ch : channelPaths) {
-            for (String m : channelChildren.getOrDefault(ch, Collections.emptyList())) {
-                if (impacted.add(m)) queue.add(m);
-            }
-        }
-
-        String computationModeKey = resolveBnetModeKey(run);
-
-        // Force CONTINUOUS measures every run (and enqueue so downstream deps propagate)
-        selectMeasuresByMode(measureMap, run, PulseComputationMode.CONTINUOUS)
-                .forEach(m -> {
-                    if (impacted.add(m)) queue.add(m);
-                });
-
-        // Force CONTINUOUS BN measures every run (and enqueue so downstream deps propagate)
-        selectBnByMode(measureMap, computationModeKey, BNET_COMPUTATION_MODE_CONTINUOUS)
-                .forEach(m -> {
-                    if (impacted.add(m)) queue.add(m);
-                });
-        // Propagate through measure dependencies
-        while (!queue.isEmpty()) {
-            String cur = queue.poll();
-            for (String child : measureChildren.getOrDefault(cur, Collections.emptyList())) {
-                if (impacted.add(child)) queue.add(child);
-            }
-        }
-        if (impacted.isEmpty()) {
-            return new BuildOrderListResult(Collections.emptyList(), Collections.emptyMap());
+    private BuildOrderListResult buildOrderedList(Map<String, PulseMeasure> measureMap,
+                                                  List<PulseMeasure> hookMeasures,
+                                                  long configVersion,
+                                                  Collection<String> channelPaths,
+                                                  TransformerRun run) {
+        var plan = planFor(measureMap, hookMeasures, configVersion);
+        var levels = plan.impactedLevels(channelPaths, run != null && run.isReprocessing());
+        if (levels.isEmpty()) {
+            return new BuildOrderListResult(Collections.emptyList(), Collections.emptyList(), Collections.emptyMap());
         }
+        var measures = levels.stream().flatMap(List::stream).toList();
+        return new BuildOrderListResult(measures, levels, plan.measureDeps());
+    }
 
-        // Build dependency map for impacted measures
-        Map<String, Set<String>> depsMap = new HashMap<>();
-        for (String m : impacted) {
-            Set<String> deps = measureMap.get(m).getUpstreams().stream()
-                    .filter(u -> u.getSourceType() == PulseSourceType.MEASURE)
-                    .map(PulseUpStream::getPath)
-                    .filter(impacted::contains)
-                    .collect(Collectors.toSet());
-            depsMap.put(m, deps);
-        }
-        // Copy original for later use
-        Map<String, Set<String>> origDeps = new HashMap<>();
-        depsMap.forEach((k, v) -> origDeps.put(k, new HashSet<>(v)));
-
-        // Topological sort (Kahn's algorithm)
-        Deque<String> ready = new ArrayDeque<>();
-        for (var entry : depsMap.entrySet()) {
-            if (entry.getValue().isEmpty()) ready.add(entry.getKey());
-        }
-        List<String> order = new ArrayList<>(impacted.size());
-        while (!ready.isEmpty()) {
-            String node = ready.poll();
-            order.add(node);
-            for (String child : measureChildren.getOrDefault(node, Collections.emptyList())) {
-                if (!depsMap.containsKey(child)) continue;
-                Set<String> d = depsMap.get(child);
-                if (d.remove(node) && d.isEmpty()) ready.add(child);
-            }
+    /**
+     * Dependency plan of the measures, rebuilt only when the configuration or the hook measures change.
+     */
+    private MeasureDependencyPlan planFor(Map<String, PulseMeasure> measureMap,
+                                          List<PulseMeasure> hookMeasures,
+                                          long configVersion) {
+        var cached = dependencyPlan.get();
+        if (cached != null && cached.configVersion() == configVersion && cached.hookMeasures().equals(hookMeasures)) {
+            return cached.plan();
         }
-
-        // Cycle-check post-sort by self-reachability
-        for (String node : order) {
-            if (detectCycle(node, node, origDeps, new HashSet<>())) {
-                log.error("Circular dependency detected involving '{}'; skipping all impacted measures", node);
-                return new BuildOrderListResult(Collections.emptyList(), origDeps);
-            }
+        var plan = MeasureDependencyPlan.of(measureMap,
+                m -> isForcedToRun(m, false),
+                m -> isForcedToRun(m, true));
+        if (!plan.unordered().isEmpty()) {
+            log.error("Circular dependency detected involving {}; skipping them and their downstream measures",
+                    plan.unordered());
         }
-
-        // Map to ordered PulseMeasure list
-        List<PulseMeasure> orderedMeasures = order.stream()
-                .map(measureMap::get)
-                .collect(Collectors.toList());
-        return new BuildOrderListResult(orderedMeasures, origDeps);
+        dependencyPlan.set(new CachedPlan(configVersion, hookMeasures, plan));
+        latencies.keySet().retainAll(measureMap.keySet());
+        return plan;
     }
 
-    private List<String> selectBnByMode(Map<String, PulseMeasure> measureMap, String modeKey, String mode) {
-        if (modeKey == null || mode == null) {
-            return List.of();
+    /**
+     * CONTINUOUS measures and CONTINUOUS BN measures run on every run (downstream deps propagate).
+     */
+    private boolean isForcedToRun(PulseMeasure measure, boolean reprocessing) {
+        if (resolveMeasureMode(measure, reprocessing) == PulseComputationMode.CONTINUOUS) {
+            return true;
         }
-        return measureMap.values().stream()
-                .filter(Objects::nonNull)
-                .filter(m -> m.getDetails() != null)
-                .filter(m -> mode.equals(m.getDetails().get(modeKey)))
-                .map(PulseMeasure::getPath)
-                .filter(Objects::nonNull)
-                .toList();
+        return measure.getDetails() != null
+                && BNET_COMPUTATION_MODE_CONTINUOUS.equals(measure.getDetails().get(resolveBnetModeKey(reprocessing)));
     }
 
-    private List<String> selectMeasuresByMode(Map<String, PulseMeasure> measureMap,
-                                              TransformerRun run,
-                                              PulseComputationMode mode) {
-        if (mode == null) {
-            return List.of();
-        }
-        return measureMap.values().stream()
-                .filter(Objects::nonNull)
-                .filter(m -> resolveMeasureMode(m, run) == mode)
-                .map(PulseMeasure::getPath)
-                .filter(Objects::nonNull)
-                .toList();
-    }
-
-    private PulseComputationMode resolveMeasureMode(PulseMeasure measure, TransformerRun run) {
+    private PulseComputationMode resolveMeasureMode(PulseMeasure measure, boolean reprocessing) {
         if (measure == null) {
             return PulseComputationMode.ON_INPUT_TRIGGER;
         }
-        if (run != null && run.isReprocessing()) {
+        if (reprocessing) {
             PulseComputationMode mode = measure.getReprocessingComputationMode();
             return mode != null ? mode : PulseComputationMode.ON_INPUT_TRIGGER;
         }
@@ -491,154 +441,177 @@ public class MeasureTransformer {
         return mode != null ? mode : PulseComputationMode.ON_INPUT_TRIGGER;
     }
 
-    private String resolveBnetModeKey(TransformerRun run) {
-        if (run != null && run.isReprocessing()) {
+    private String resolveBnetModeKey(boolean reprocessing) {
+        if (reprocessing) {
             return BNET_COMPUTATION_MODE_REPROCESSING_KEY;
         }
         return BNET_COMPUTATION_MODE_REALTIME_KEY;
     }
 
     private List<PulseDataPoint> applyTransformations(
-            List<PulseMeasure> measures,
-            List<PulseDataPoint> currentValues,
+            List<List<PulseMeasure>> levels,
+            Map<String, PulseDataPoint> currentValues,
             Map<String, Set<String>> origDeps,
             Map<String, PulseDataPoint> channelValues,
             long tms,
             long intervalMs) {
 
-        Map<String, CompletableFuture<PulseDataPoint>> futures = new HashMap<>();
-
-
-        for (PulseMeasure m : measures) {
-            // 1) Build futures for measure‐to‐measure deps
-            Set<String> measureDeps = origDeps.getOrDefault(m.getPath(), Set.of());
-            List<CompletableFuture<PulseDataPoint>> measureFuts = measureDeps.stream()
-                    .map(futures::get)
-                    .filter(Objects::nonNull)
-                    .toList();
-
-            // 2) Immediately pull in any channel deps (they're already completed)
-            List<PulseDataPoint> channelDeps = m.getUpstreams().stream()
-                    .filter(u -> u.getSourceType() == PulseSourceType.CHANNEL)
-                    .map(PulseUpStream::getPath)
-                    .map(channelValues::get)
-                    .filter(Objects::nonNull)
-                    .toList();
-
-            // 3) When all measure‐deps complete, merge with channel‐deps and transform
-            CompletableFuture<PulseDataPoint> meFuture = CompletableFuture
-                    .allOf(measureFuts.toArray(new CompletableFuture[0]))
-                    .thenApplyAsync(ignored -> {
-                        // collect measure‐dep results
-                        List<PulseDataPoint> resolvedMeasureDeps = measureFuts.stream()
-                                .map(CompletableFuture::join)
-                                .toList();
-                        // merge channel + measure deps
-                        List<PulseDataPoint> allDeps = new ArrayList<>(channelDeps.size() + resolvedMeasureDeps.size());
-                        allDeps.addAll(channelDeps);
-                        allDeps.addAll(resolvedMeasureDeps);
-
-                        // Get current value for this measure
-                        PulseDataPoint currentDataPoint;
-                        if (currentValues != null) {
-                            currentDataPoint = currentValues.stream()
-                                    .filter(dp -> dp.getPath().equals(m.getPath()))
-                                    .findFirst()
-                                    .orElse(PulseDataPoint.builder()
-                                            .groupCode(MEASURES_GROUP)
-                                            .path(m.getPath())
-                                            .tms(tms)
-                                            .type(m.getDataType())
-                                            .val(getSafeValue(m.getDataType()))
-                                            .build());
-                        } else {
-                            currentDataPoint = PulseDataPoint.builder()
-                                    .groupCode(MEASURES_GROUP)
-                                    .path(m.getPath())
-                                    .tms(tms)
-                                    .type(m.getDataType())
-                                    .val(getSafeValue(m.getDataType()))
-                                    .build();
+        long configuredTimeoutMs = appConfig.getTransformerMeasureTimeoutMs();
+        long timeoutMs = configuredTimeoutMs > 0 ? configuredTimeoutMs : intervalMs;
+
+        Map<String, PulseDataPoint> results = new HashMap<>();
+        List<PulseDataPoint> transformed = new ArrayList<>();
+        for (List<PulseMeasure> level : levels) {
+            // The measures of a level only depend on the results of the previous levels
+            List<CompletableFuture<PulseDataPoint>> futures = new ArrayList<>(level.size());
+            for (PulseMeasure m : level) {
+                // Channel deps first, then measure deps
+                List<PulseDataPoint> allDeps = new ArrayList<>();
+                for (PulseUpStream u : m.getUpstreams()) {
+                    if (u.getSourceType() == PulseSourceType.CHANNEL) {
+                        var dp = channelValues.get(u.getPath());
+                        if (dp != null) {
+                            allDeps.add(dp);
                         }
+                    }
+                }
+                for (String dep : origDeps.getOrDefault(m.getPath(), Set.of())) {
+                    var dp = results.get(dep);
+                    if (dp != null) {
+                        allDeps.add(dp);
+                    }
+                }
 
-                        return transformMeasure(m, currentDataPoint, tms, intervalMs, allDeps);
-                    }, executor);
+                // Get current value for this measure
+                PulseDataPoint currentDataPoint = currentValues != null ? currentValues.get(m.getPath()) : null;
+                if (currentDataPoint == null) {
+                    currentDataPoint = PulseDataPoint.builder()
+                            .groupCode(MEASURES_GROUP)
+                            .path(m.getPath())
+                            .tms(tms)
+                            .type(m.getDataType())
+                            .val(getSafeValue(m.getDataType()))
+                            .build();
+                }
 
-            futures.put(m.getPath(), meFuture);
-        }
+                futures.add(transformWithDeadline(m, currentDataPoint, tms, intervalMs, allDeps, timeoutMs));
+            }
 
-        // join in original order
-        return measures.stream()
-                .map(m -> futures.get(m.getPath()).join())
-                .toList();
+            for (int i = 0; i < level.size(); i++) {
+                var dp = futures.get(i).join();
+                results.put(level.get(i).getPath(), dp);
+                transformed.add(dp);
+            }
+        }
+        return transformed;
+    }
 
+    /**
+     * Transforms a measure on its pool; past the deadline the measure keeps its current (last good) value for this
+     * run, so that a slow hook or script does not hold the next levels. The script or hook call is given the same
+     * deadline and cancelled past it. A failing measure (script error, hook error or no hook answer) also keeps its
+     * last value, the failure is thrown by the transformation and handled here.
+     */
+    private CompletableFuture<PulseDataPoint> transformWithDeadline(PulseMeasure m,
+                                                                    PulseDataPoint currentDataPoint,
+                                                                    long tms,
+                                                                    long intervalMs,
+                                                                    List<PulseDataPoint> deps,
+                                                                    long timeoutMs) {
+        var histogram = latencies.computeIfAbsent(m.getPath(), k -> new LatencyHistogram());
+        var future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return transformMeasure(m, currentDataPoint, tms, intervalMs, deps, timeoutMs);
+            } finally {
+                histogram.record(System.nanoTime() - start);
+            }
+        }, m.getTransformType() == PulseTransformType.REST ? ioExecutor : computePool);
+        if (timeoutMs > 0) {
+            future = future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return future.exceptionally(ex -> {
+            var cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof TimeoutException) {
+                histogram.recordTimeout();
+                log.warn("Measure {} did not complete within {} ms, keeping its last value", m.getPath(), timeoutMs);
+            } else {
+                log.error("Error transforming measure {}: {}", m.getPath(), cause.getMessage());
+            }
+            return lastGood(m, currentDataPoint, tms);
+        });
+    }
 
+    private PulseDataPoint lastGood(PulseMeasure m, PulseDataPoint currentDataPoint, long tms) {
+        return PulseDataPoint.builder()
+                .groupCode(MEASURES_GROUP)
+                .path(m.getPath())
+                .tms(tms)
+                .type(m.getDataType())
+                .val(currentDataPoint.getVal() != null ? currentDataPoint.getVal() : getSafeValue(m.getDataType()))
+                .batchId(currentDataPoint.getBatchId())
+                .build();
     }
 
     /**
-     * Performs the actual measure transformation. Override this stub
-     * to fetch upstream values and apply PulseTransformType logic.
+     * Performs the actual measure transformation. Failures are thrown, so that the caller keeps the last value.
      */
     private PulseDataPoint transformMeasure(PulseMeasure measure, PulseDataPoint currentValue,
-                                            long tms, long intervalMs, List<PulseDataPoint> resolvedDeps) {
-        try {
-            log.trace("Transforming measure: {}", measure.getPath());
-
-            Object safeVal = getSafeValue(measure.getDataType());
-            Object val = safeVal;
-            String batchId = resolveBatchId(measure.getTransformType(), resolvedDeps, currentValue);
-            if (measure.getTransformType() == PulseTransformType.REST) {
-                //  This ensure transformREST is called even if resolvedDeps is empty
-                val = transformRest(tms, intervalMs, measure, resolvedDeps);
-            } else if (!resolvedDeps.isEmpty()) {
-                val = switch (measure.getTransformType()) {
-                    case COPY_LATEST -> resolvedDeps.getFirst().getVal();
-                    case MIN_LATEST -> transformMinLatest(measure.getDataType(), resolvedDeps);
-                    case MAX_LATEST -> transformMaxLatest(measure.getDataType(), resolvedDeps);
-                    case SUM_LATEST -> transformSumLatest(measure.getDataType(), resolvedDeps);
-                    case AVG_LATEST -> transformAvgLatest(measure.getDataType(), resolvedDeps);
-                    case JAVASCRIPT -> transformJavaScript(tms, measure, currentValue, resolvedDeps, null);
-                    default -> throw new IllegalStateException("Unexpected value: " + measure.getTransformType());
-                };
-            } else if (measure.getTransformType() == PulseTransformType.JAVASCRIPT) {
-                // Javascript transformations are always applied
-                val = transformJavaScript(tms, measure, currentValue, resolvedDeps, null);
-            }
+                                            long tms, long intervalMs, List<PulseDataPoint> resolvedDeps,
+                                            long timeoutMs) {
+        log.trace("Transforming measure: {}", measure.getPath());
+
+        Object safeVal = getSafeValue(measure.getDataType());
+        Object val = safeVal;
+        String batchId = resolveBatchId(measure.getTransformType(), resolvedDeps, currentValue);
+        if (measure.getTransformType() == PulseTransformType.REST) {
+            //  This ensure transformREST is called even if resolvedDeps is empty
+            val = transformRest(tms, intervalMs, measure, resolvedDeps, timeoutMs);
+        } else if (!resolvedDeps.isEmpty()) {
+            val = switch (measure.getTransformType()) {
+                case COPY_LATEST -> resolvedDeps.getFirst().getVal();
+                case MIN_LATEST -> transformMinLatest(measure.getDataType(), resolvedDeps);
+                case MAX_LATEST -> transformMaxLatest(measure.getDataType(), resolvedDeps);
+                case SUM_LATEST -> transformSumLatest(measure.getDataType(), resolvedDeps);
+                case AVG_LATEST -> transformAvgLatest(measure.getDataType(), resolvedDeps);
+                case JAVASCRIPT -> transformJavaScript(tms, measure, currentValue, resolvedDeps, null, timeoutMs);
+                default -> throw new IllegalStateException("Unexpected value: " + measure.getTransformType());
+            };
+        } else if (measure.getTransformType() == PulseTransformType.JAVASCRIPT) {
+            // Javascript transformations are always applied
+            val = transformJavaScript(tms, measure, currentValue, resolvedDeps, null, timeoutMs);
+        }
 
-            // Cast to the correct type
-            if (!val.getClass().equals(safeVal.getClass())) {
-                val = castToType(val, safeVal, measure.getDataType());
-            }
+        // No value this run (e.g. a script returning null or undefined), the measure keeps its last one
+        if (val == null) {
+            log.debug("Measure {} produced no value, keeping its last value", measure.getPath());
+            return lastGood(measure, currentValue, tms);
+        }
 
-            // Handle alarm transitions
-            if (isAlarm(measure)) {
-                handleAlarmTransition(measure, tms, currentValue, val);
-            }
+        // Cast to the correct type
+        if (!val.getClass().equals(safeVal.getClass())) {
+            val = castToType(val, safeVal, measure.getDataType());
+        }
 
-            return PulseDataPoint.builder()
-                    .groupCode(MEASURES_GROUP)
-                    .path(measure.getPath())
-                    .tms(tms)
-                    .type(measure.getDataType())
-                    .val(val)
-                    .batchId(batchId)
-                    .build();
-        } catch (Exception e) {
-            log.error("Error transforming measure {}: {}", measure.getPath(), e.getMessage());
-            return PulseDataPoint.builder()
-                    .groupCode(MEASURES_GROUP)
-                    .path(measure.getPath())
-                    .tms(tms)
-                    .type(measure.getDataType())
-                    .val(getSafeValue(measure.getDataType()))
-                    .batchId(currentValue != null ? currentValue.getBatchId() : null)
-                    .build();
+        // Handle alarm transitions
+        if (isAlarm(measure)) {
+            handleAlarmTransition(measure, tms, currentValue, val);
         }
+
+        return PulseDataPoint.builder()
+                .groupCode(MEASURES_GROUP)
+                .path(measure.getPath())
+                .tms(tms)
+                .type(measure.getDataType())
+                .val(val)
+                .batchId(batchId)
+                .build();
     }
 
-    private Object transformRest(long tms, long intervalMs, PulseMeasure measure, List<PulseDataPoint> deps) {
+    private Object transformRest(long tms, long intervalMs, PulseMeasure measure, List<PulseDataPoint> deps,
+                                 long timeoutMs) {
         if (measureHookService == null) {
-            return getSafeValue(measure.getDataType());
+            throw new IllegalStateException("No hook service to compute REST measure " + measure.getPath());
         }
 
         // Build upstream map (latest per path) from resolved deps
@@ -661,8 +634,9 @@ public class MeasureTransformer {
                 .intervalMs(intervalMs)
                 .build();
 
-        return measureHookService.computeMeasure(payload)
-                .orElseGet(() -> getSafeValue(measure.getDataType()));
+        // The hook call gives up with the deadline, rather than holding a thread after the run moved on
+        return measureHookService.computeMeasure(payload, timeoutMs)
+                .orElseThrow(() -> new IllegalStateException("No COMPUTE_MEASURE answer for measure " + measure.getPath()));
     }
 
     private void handleAlarmTransition(PulseMeasure measure, long tms, PulseDataPoint
@@ -794,7 +768,8 @@ public class MeasureTransformer {
                                        PulseMeasure m,
                                        PulseDataPoint currentValue,
                                        List<PulseDataPoint> deps,
-                                       AtomicReference<ScriptEvaluatorResult> rawResult) {
+                                       AtomicReference<ScriptEvaluatorResult> rawResult,
+                                       long timeoutMs) {
 
         // Extract script from measure details
         String script = m.getDetails() != null && m.getDetails().containsKey("js_script")
@@ -802,40 +777,33 @@ public class MeasureTransformer {
                 : null;
 
         if (script == null) {
-            log.error("No JavaScript script found for measure {}", m.getPath());
-            return getSafeValue(m.getDataType());
+            throw new IllegalStateException("No JavaScript script found for measure " + m.getPath());
         }
 
-        try {
-            // Build a matrix from deps
-            var dataMatrix = new PulseDataMatrixBuilder().addSparsePoints(deps).build();
-
-            // Evaluate
-            var jsResult = measureJsEvaluator.evaluate(tsEval,
-                    script,
-                    PulseDataMatrixParser.from(dataMatrix),
-                    currentValue.getVal(),
-                    "Measure '%s'".formatted(m.getPath()));
-            if (rawResult != null) {
-                rawResult.set(jsResult);
+        // Generated alarm scripts run as compiled conditions, unless tested (the caller wants the script output)
+        if (rawResult == null && isAlarm(m)) {
+            var alarmState = alarmConditionEvaluator.evaluate(m, tsEval, currentValue.getVal(), deps);
+            if (alarmState.isPresent()) {
+                return alarmState.get();
             }
-            return jsResult.getResult();
-        } catch (Exception e) {
-            log.error("Error transforming measure {}: {}", m.getPath(), e.getMessage());
         }
 
-        return getSafeValue(m.getDataType());
-    }
-
-    private boolean detectCycle(String start, String current,
-                                Map<String, Set<String>> graph,
-                                Set<String> visited) {
-        if (!visited.add(current)) return false;
-        for (String next : graph.getOrDefault(current, Collections.emptySet())) {
-            if (next.equals(start) || detectCycle(start, next, graph, visited)) {
-                return true;
-            }
+        // Typed series over deps, the matrix behind _parser is only built if the script uses it
+        var jsResult = measureJsEvaluator.evaluate(tsEval,
+                script,
+                PulseSeriesBindings.from(deps),
+                currentValue.getVal(),
+                "Measure '%s'".formatted(m.getPath()),
+                timeoutMs);
+        if (rawResult != null) {
+            // Tested script, the caller reports the outcome with the script output
+            rawResult.set(jsResult);
+            return jsResult.getResult();
+        }
+        if (!jsResult.isOk()) {
+            // The script errors are already logged by its console
+            throw new IllegalStateException("Script of measure %s failed".formatted(m.getPath()));
         }
-        return false;
+        return jsResult.getResult();
     }
 }
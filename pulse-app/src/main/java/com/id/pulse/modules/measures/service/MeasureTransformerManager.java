@@ -3,6 +3,7 @@ package com.id.pulse.modules.measures.service;
 import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.model.PulseTestMeasureTransformRes;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.measures.model.PulseMeasureLatency;
 import com.id.pulse.modules.measures.model.TransformerRun;
 import com.id.pulse.modules.measures.model.enums.PulseTransformType;
 import com.id.pulse.modules.poller.service.LatestValuesBucket;
@@ -85,4 +86,8 @@ public class MeasureTransformerManager {
     public PulseTestMeasureTransformRes testTransform(String measurePath, String script, Object currentValue, Map<String, Object> testData) {
         return appCtx.getBean(MeasureTransformer.class).testScript(PulseTransformType.JAVASCRIPT, measurePath, script, currentValue, testData);
     }
+
+    public Map<String, PulseMeasureLatency> getLatencies() {
+        return appCtx.getBean(MeasureTransformer.class).getLatencies();
+    }
 }
@@ -1,21 +1,29 @@
 package com.id.pulse.modules.measures.service;
 
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
+import com.id.pulse.modules.config.service.ConfigVersionService;
+import com.id.pulse.modules.measures.logic.MeasureDependencyPlan;
 import com.id.pulse.modules.measures.model.PulseMeasure;
 import com.id.pulse.modules.measures.model.PulseMeasureEntity;
 import com.id.px3.crud.logic.PxDefaultCrudServiceMongo;
 import com.id.px3.crud.logic.PxDefaultMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
@@ -25,12 +33,27 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 public class MeasuresCrudService extends PxDefaultCrudServiceMongo<PulseMeasure, PulseMeasureEntity, String> {
 
     private final MongoTemplate mongoTemplate;
+    private final ConfigVersionService configVersionService;
+    // The snapshot is built from this service
+    private final ObjectProvider<ConfigSnapshotService> configSnapshotServiceProvider;
+    // Measures written by this node that the configuration snapshot may not hold yet, by id
+    private final ConcurrentHashMap<String, RecentWrite> recentWrites = new ConcurrentHashMap<>();
 
-    public MeasuresCrudService(MongoTemplate mongoTemplate) {
+    /**
+     * @param measure the measure as written, null when deleted
+     */
+    private record RecentWrite(PulseMeasure measure, long writtenAtNanos) {
+    }
+
+    public MeasuresCrudService(MongoTemplate mongoTemplate,
+                               ConfigVersionService configVersionService,
+                               ObjectProvider<ConfigSnapshotService> configSnapshotServiceProvider) {
         super(mongoTemplate,
                 new PxDefaultMapper<>(PulseMeasure.class, PulseMeasureEntity.class),
                 PxDefaultCrudServiceMongo.DEFAULT_COLLECTION_NAME);
         this.mongoTemplate = mongoTemplate;
+        this.configVersionService = configVersionService;
+        this.configSnapshotServiceProvider = configSnapshotServiceProvider;
     }
 
     @Override
@@ -40,16 +63,22 @@ public class MeasuresCrudService extends PxDefaultCrudServiceMongo<PulseMeasure,
 
     @Override
     public PulseMeasure save(PulseMeasure model) {
+        checkNoCycle(null, model);
         var measure = super.save(model);
+        recordWrite(measure != null ? measure.getId() : null, measure);
         syncAssetLinks(measure, null);
+        notifyChanged(measure, null);
         return measure;
     }
 
     @Override
     public PulseMeasure update(String id, PulseMeasure model) {
+        checkNoCycle(id, model);
         var previousState = findById(id);
         var measure = super.update(id, model);
+        recordWrite(id, measure);
         syncAssetLinks(measure, previousState);
+        notifyChanged(measure, previousState);
         return measure;
     }
 
@@ -57,7 +86,9 @@ public class MeasuresCrudService extends PxDefaultCrudServiceMongo<PulseMeasure,
     public void delete(String id) {
         var measure = findById(id);
         super.delete(id);
+        recordWrite(id, null);
         removeAssetLinks(measure);
+        notifyChanged(measure, null);
     }
 
     /**
@@ -111,6 +142,57 @@ public class MeasuresCrudService extends PxDefaultCrudServiceMongo<PulseMeasure,
                 .toList();
     }
 
+    /**
+     * Rejects a measure that would close a dependency cycle, the transformer could not order it. The graph is the
+     * configuration snapshot, with the writes of this node it does not hold yet, plus the measure to save.
+     *
+     * @param id    Id of the measure being updated, null on creation.
+     * @param model The measure to save.
+     */
+    private void checkNoCycle(String id, PulseMeasure model) {
+        if (model == null || model.getPath() == null) {
+            return;
+        }
+        var configSnapshotService = configSnapshotServiceProvider.getObject();
+        long loadStartNanos = configSnapshotService.getLoadStartNanos();
+        var snapshot = configSnapshotService.get();
+        recentWrites.values().removeIf(write -> write.writtenAtNanos() < loadStartNanos);
+
+        Map<String, PulseMeasure> byId = new HashMap<>();
+        snapshot.measuresByPath().values().forEach(m -> byId.put(m.getId() != null ? m.getId() : m.getPath(), m));
+        recentWrites.forEach((writtenId, write) -> {
+            if (write.measure() != null) {
+                byId.put(writtenId, write.measure());
+            } else {
+                byId.remove(writtenId);
+            }
+        });
+
+        Map<String, PulseMeasure> measures = new HashMap<>();
+        byId.forEach((measureId, m) -> {
+            // The stored version of an updated measure is replaced, even if its path changes
+            if (m.getPath() != null && !measureId.equals(id)) {
+                measures.put(m.getPath(), m);
+            }
+        });
+        measures.put(model.getPath(), model);
+        MeasureDependencyPlan.findCycle(measures, model.getPath()).ifPresent(cycle -> {
+            throw new IllegalArgumentException("Circular dependency between measures: " + String.join(" -> ", cycle));
+        });
+    }
+
+    private void recordWrite(String id, PulseMeasure measure) {
+        if (id != null) {
+            recentWrites.put(id, new RecentWrite(measure, System.nanoTime()));
+        }
+    }
+
+    private void notifyChanged(PulseMeasure current, PulseMeasure previous) {
+        configVersionService.notifyChanged(PulseConfigChangedEvent.forPaths(Arrays.asList(
+                current == null ? null : current.getPath(),
+                previous == null ? null : previous.getPath())));
+    }
+
     private void syncAssetLinks(PulseMeasure current, PulseMeasure previous) {
         if (current == null || current.getId() == null || current.getId().isBlank()) {
             return;
@@ -1,7 +1,7 @@
 package com.id.pulse.modules.orchestrator.logic;
 
 import com.id.pulse.modules.channel.model.enums.PulseChannelGroupStatusCode;
-import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
 import com.id.pulse.modules.orchestrator.service.ChannelGroupsRegistry;
 import com.id.pulse.modules.orchestrator.service.ConnectorsRegistry;
 import lombok.extern.slf4j.Slf4j;
@@ -16,21 +16,21 @@ import java.util.List;
 @Slf4j
 public class GroupEnableChangeDetector {
 
-    private final ChannelGroupsCrudService channelGroupsCrudService;
+    private final ConfigSnapshotService configSnapshotService;
     private final ChannelGroupsRegistry channelGroupsRegistry;
     private final ConnectorsRegistry connectorsRegistry;
 
-    public GroupEnableChangeDetector(ChannelGroupsCrudService channelGroupsCrudService,
+    public GroupEnableChangeDetector(ConfigSnapshotService configSnapshotService,
                                      ChannelGroupsRegistry channelGroupsRegistry,
                                      ConnectorsRegistry connectorsRegistry) {
-        this.channelGroupsCrudService = channelGroupsCrudService;
+        this.configSnapshotService = configSnapshotService;
         this.channelGroupsRegistry = channelGroupsRegistry;
         this.connectorsRegistry = connectorsRegistry;
     }
 
     public void run() {
-        // Load all groups
-        var groups = channelGroupsCrudService.findAll();
+        // All groups, from the configuration snapshot
+        var groups = configSnapshotService.get().groupsByCode().values();
 
         // Enable or disable groups
         groups.forEach(group -> {
@@ -3,6 +3,7 @@ package com.id.pulse.modules.orchestrator.service;
 import com.id.pulse.modules.orchestrator.logic.ConnectionActuator;
 import com.id.pulse.modules.orchestrator.logic.GroupEnableChangeDetector;
 import com.id.pulse.modules.poller.service.ChannelPoller;
+import com.id.pulse.modules.poller.service.GroupPollScheduler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
 import org.springframework.scheduling.annotation.Async;
@@ -18,12 +19,13 @@ public class Orchestrator {
     private final ApplicationContext appCtx;
     private final AtomicBoolean connectionActuatorRunning = new AtomicBoolean(false);
     private final AtomicBoolean groupEnableChangeDetectionRunning = new AtomicBoolean(false);
-    private final AtomicBoolean pollChannelsRunning = new AtomicBoolean(false);
     private final ChannelPoller channelPoller;
+    private final GroupPollScheduler groupPollScheduler;
 
-    public Orchestrator(ApplicationContext appCtx, ChannelPoller channelPoller) {
+    public Orchestrator(ApplicationContext appCtx, ChannelPoller channelPoller, GroupPollScheduler groupPollScheduler) {
         this.appCtx = appCtx;
         this.channelPoller = channelPoller;
+        this.groupPollScheduler = groupPollScheduler;
     }
 
 
@@ -58,16 +60,22 @@ public class Orchestrator {
         }
     }
 
-    @Scheduled(fixedRate = 100)
-    public void pollChannels() {
-        if(pollChannelsRunning.compareAndSet(false, true)) {
-            try {
-                channelPoller.run();
-            } catch (Exception ex) {
-                log.error("Error during poll channels", ex);
-            } finally {
-                pollChannelsRunning.set(false);
-            }
+    @Scheduled(fixedDelayString = "${pulse.aggregation.watermark-check-ms:1000}")
+    public void closeAggregationWindows() {
+        try {
+            channelPoller.closeExpiredWindows();
+        } catch (Exception ex) {
+            log.error("Error closing aggregation windows", ex);
+        }
+    }
+
+    // Each running group polls on its own timer: only keep the timers in line with the running groups
+    @Scheduled(fixedDelay = 1000)
+    public void syncGroupPollers() {
+        try {
+            groupPollScheduler.sync();
+        } catch (Exception ex) {
+            log.error("Error syncing group poll timers", ex);
         }
     }
 }
@@ -6,24 +6,42 @@ import com.id.pulse.modules.channel.model.enums.PulseDataType;
 import com.id.px3.utils.SafeConvert;
 
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class PulseDataMatrixParser {
 
-    private final PulseDataMatrix matrix;
+    private Supplier<PulseDataMatrix> matrixSupplier;
+    private PulseDataMatrix matrix;
 
-    private PulseDataMatrixParser(PulseDataMatrix matrix) {
+    private PulseDataMatrixParser(PulseDataMatrix matrix, Supplier<PulseDataMatrix> matrixSupplier) {
         this.matrix = matrix;
+        this.matrixSupplier = matrixSupplier;
     }
 
     public static PulseDataMatrixParser from(PulseDataMatrix matrix) {
-        return new PulseDataMatrixParser(matrix);
+        return new PulseDataMatrixParser(matrix, null);
+    }
+
+    /**
+     * Parser whose matrix is only built when a script first uses it.
+     */
+    public static PulseDataMatrixParser lazy(Supplier<PulseDataMatrix> matrixSupplier) {
+        return new PulseDataMatrixParser(null, matrixSupplier);
+    }
+
+    PulseDataMatrix matrix() {
+        if (matrix == null) {
+            matrix = matrixSupplier.get();
+            matrixSupplier = null;
+        }
+        return matrix;
     }
 
     public List<PulseDataPoint> filterByPath(String pathFilter) {
         // Collect  entries for pathFilter
         List<PulseDataPoint> result = new ArrayList<>();
-        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix.getData().entrySet()) {
+        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix().getData().entrySet()) {
             Map<String, Map<Long, Object>> byPath = groupEntry.getValue();
             Map<Long, Object> tmsMap = byPath.get(pathFilter);
 
@@ -56,7 +74,7 @@ public class PulseDataMatrixParser {
     public List<Map<Long, Object>> toTimeSeries(String pathFilter) {
         // Collect  entries for pathFilter
         List<Map<Long, Object>> result = new ArrayList<>();
-        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix.getData().entrySet()) {
+        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix().getData().entrySet()) {
             Map<String, Map<Long, Object>> byPath = groupEntry.getValue();
             Map<Long, Object> tmsMap = byPath.get(pathFilter);
 
@@ -84,7 +102,7 @@ public class PulseDataMatrixParser {
     public List<Long> toTimestamps(String path) {
         // Collect entries for pathFilter
         List<Long> result = new ArrayList<>();
-        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix.getData().entrySet()) {
+        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix().getData().entrySet()) {
             Map<String, Map<Long, Object>> byPath = groupEntry.getValue();
             Map<Long, Object> tmsMap = byPath.get(path);
 
@@ -119,7 +137,7 @@ public class PulseDataMatrixParser {
     public List<Object> toValues(String pathFilter) {
         // Collect  entries for pathFilter
         List<Object> result = new ArrayList<>();
-        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix.getData().entrySet()) {
+        for (Map.Entry<String, Map<String, Map<Long, Object>>> groupEntry : matrix().getData().entrySet()) {
             Map<String, Map<Long, Object>> byPath = groupEntry.getValue();
             Map<Long, Object> tmsMap = byPath.get(pathFilter);
 
@@ -0,0 +1,324 @@
+package com.id.pulse.modules.parser;
+
+import com.id.pulse.model.PulseDataMatrix;
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.utils.PulseDataMatrixBuilder;
+import com.id.px3.utils.SafeConvert;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+
+import java.util.*;
+
+/**
+ * Time series of a measure evaluation, bound to scripts as {@code _series}.
+ * <p>
+ * Each path is held as a sorted {@code long[]} of timestamps and the matching values, built once per evaluation.
+ * Scripts get {@link ProxyArray} views over primitive arrays instead of host lists: no boxed list is copied across
+ * the polyglot boundary, the script reads the elements it needs. A timeline merges the timestamps of several paths
+ * and aligns their values to it (nearest point, as {@link PulseDataMatrixParser#toNumbers}); the timeline of all the
+ * paths is computed upfront.
+ * <pre>
+ * const tl = _series.timeline(['A', 'B']);
+ * const ts = tl.timestamps();
+ * const a = tl.numbers('A', 0.0);
+ * </pre>
+ * {@link #parser()} gives the former {@code _parser}, its matrix is only built if a script uses it.
+ */
+public class PulseSeriesBindings {
+
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private record Series(long[] ts, Object[] values) {
+    }
+
+    private final Map<String, Series> series;
+    private final PulseDataMatrixParser parser;
+    private final Timeline allPaths;
+    private final Map<List<String>, Timeline> timelines = new HashMap<>();
+
+    private PulseSeriesBindings(Map<String, Series> series, PulseDataMatrixParser parser) {
+        this.series = series;
+        this.parser = parser;
+        this.allPaths = new Timeline(mergeTimestamps(series.keySet()));
+    }
+
+    /**
+     * Bindings over data points, in any order. On duplicate timestamps of a path the last point wins.
+     */
+    public static PulseSeriesBindings from(List<PulseDataPoint> points) {
+        Map<String, List<PulseDataPoint>> byPath = new LinkedHashMap<>();
+        for (PulseDataPoint dp : points) {
+            if (dp.getPath() != null && dp.getTms() != null) {
+                byPath.computeIfAbsent(dp.getPath(), k -> new ArrayList<>()).add(dp);
+            }
+        }
+        Map<String, Series> series = new LinkedHashMap<>();
+        byPath.forEach((path, pathPoints) -> {
+            // Stable sort: the last of equal timestamps stays last
+            pathPoints.sort(Comparator.comparingLong(PulseDataPoint::getTms));
+            long[] ts = new long[pathPoints.size()];
+            Object[] values = new Object[pathPoints.size()];
+            int n = 0;
+            for (PulseDataPoint dp : pathPoints) {
+                if (n > 0 && ts[n - 1] == dp.getTms()) {
+                    n--;
+                }
+                ts[n] = dp.getTms();
+                values[n] = dp.getVal();
+                n++;
+            }
+            series.put(path, new Series(Arrays.copyOf(ts, n), Arrays.copyOf(values, n)));
+        });
+        return new PulseSeriesBindings(series,
+                PulseDataMatrixParser.lazy(() -> new PulseDataMatrixBuilder().addSparsePoints(points).build()));
+    }
+
+    /**
+     * Bindings over the matrix of a parser, the groups of a path merged.
+     */
+    public static PulseSeriesBindings from(PulseDataMatrixParser parser) {
+        PulseDataMatrix matrix = parser.matrix();
+        Map<String, TreeMap<Long, Object>> byPath = new LinkedHashMap<>();
+        matrix.getData().values().forEach(paths -> paths.forEach((path, tmsMap) ->
+                byPath.computeIfAbsent(path, k -> new TreeMap<>()).putAll(tmsMap)));
+        Map<String, Series> series = new LinkedHashMap<>();
+        byPath.forEach((path, tmsMap) -> series.put(path, new Series(
+                tmsMap.keySet().stream().mapToLong(Long::longValue).toArray(),
+                tmsMap.values().toArray())));
+        return new PulseSeriesBindings(series, parser);
+    }
+
+    /**
+     * The former matrix parser over the same points, built on first use.
+     */
+    public PulseDataMatrixParser parser() {
+        return parser;
+    }
+
+    public ProxyArray timestamps(String path) {
+        return new LongArray(get(path).ts());
+    }
+
+    public ProxyArray values(String path) {
+        return new ObjectArray(get(path).values());
+    }
+
+    public ProxyArray numbers(String path, Double defaultValue) {
+        return new DoubleArray(toDoubles(get(path).values(), defaultValue));
+    }
+
+    public ProxyArray booleans(String path, Boolean defaultValue) {
+        return new ObjectArray(toBooleans(get(path).values(), defaultValue));
+    }
+
+    public ProxyArray strings(String path, String defaultValue) {
+        return new ObjectArray(toStrings(get(path).values(), defaultValue));
+    }
+
+    public Double latestNumber(String path, Double defaultValue) {
+        Object[] values = get(path).values();
+        return values.length == 0 ? defaultValue : SafeConvert.toDouble(values[values.length - 1]).orElse(defaultValue);
+    }
+
+    public Boolean latestBoolean(String path, Boolean defaultValue) {
+        Object[] values = get(path).values();
+        return values.length == 0 ? defaultValue : SafeConvert.toBoolean(values[values.length - 1]).orElse(defaultValue);
+    }
+
+    public String latestString(String path, String defaultValue) {
+        Object[] values = get(path).values();
+        return values.length == 0 ? defaultValue : SafeConvert.toString(values[values.length - 1]).orElse(defaultValue);
+    }
+
+    /**
+     * Timeline of all the paths.
+     */
+    public Timeline timeline() {
+        return allPaths;
+    }
+
+    /**
+     * Timeline of the given paths, computed once per evaluation.
+     */
+    public Timeline timeline(List<String> paths) {
+        var key = List.copyOf(paths);
+        if (series.keySet().equals(new HashSet<>(key))) {
+            return allPaths;
+        }
+        return timelines.computeIfAbsent(key, k -> new Timeline(mergeTimestamps(k)));
+    }
+
+    /**
+     * Sorted distinct timestamps of some paths, with the values of any path aligned to them.
+     */
+    public final class Timeline {
+
+        private final long[] ts;
+        private final Map<String, int[]> nearest = new HashMap<>();
+
+        private Timeline(long[] ts) {
+            this.ts = ts;
+        }
+
+        public int size() {
+            return ts.length;
+        }
+
+        public ProxyArray timestamps() {
+            return new LongArray(ts);
+        }
+
+        public ProxyArray numbers(String path, Double defaultValue) {
+            return new DoubleArray(toDoubles(align(path, get(path).values()), defaultValue));
+        }
+
+        public ProxyArray booleans(String path, Boolean defaultValue) {
+            return new ObjectArray(toBooleans(align(path, get(path).values()), defaultValue));
+        }
+
+        public ProxyArray strings(String path, String defaultValue) {
+            return new ObjectArray(toStrings(align(path, get(path).values()), defaultValue));
+        }
+
+        /**
+         * Values of the path at each timeline timestamp (the nearest point, the earlier one on ties), null when the
+         * path has no point.
+         */
+        private Object[] align(String path, Object[] values) {
+            Object[] aligned = new Object[ts.length];
+            if (values.length == 0) {
+                return aligned;
+            }
+            int[] indexes = nearest.computeIfAbsent(path, k -> nearestIndexes(get(k).ts(), ts));
+            for (int i = 0; i < ts.length; i++) {
+                aligned[i] = values[indexes[i]];
+            }
+            return aligned;
+        }
+    }
+
+    private Series get(String path) {
+        var found = series.get(path);
+        return found != null ? found : new Series(NO_TIMESTAMPS, NO_VALUES);
+    }
+
+    private long[] mergeTimestamps(Collection<String> paths) {
+        int total = 0;
+        for (String path : paths) {
+            total += get(path).ts().length;
+        }
+        long[] merged = new long[total];
+        int n = 0;
+        for (String path : paths) {
+            long[] ts = get(path).ts();
+            System.arraycopy(ts, 0, merged, n, ts.length);
+            n += ts.length;
+        }
+        Arrays.sort(merged);
+        int distinct = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (distinct == 0 || merged[distinct - 1] != merged[i]) {
+                merged[distinct++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, distinct);
+    }
+
+    /**
+     * For each target timestamp, index of the nearest source timestamp; both arrays sorted, source not empty.
+     */
+    static int[] nearestIndexes(long[] source, long[] target) {
+        int[] indexes = new int[target.length];
+        int j = 0;
+        for (int i = 0; i < target.length; i++) {
+            long t = target[i];
+            while (j + 1 < source.length && Math.abs(source[j + 1] - t) < Math.abs(source[j] - t)) {
+                j++;
+            }
+            indexes[i] = j;
+        }
+        return indexes;
+    }
+
+    private static double[] toDoubles(Object[] values, Double defaultValue) {
+        double fallback = defaultValue != null ? defaultValue : Double.NaN;
+        double[] numbers = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            numbers[i] = values[i] instanceof Number number
+                    ? number.doubleValue()
+                    : SafeConvert.toDouble(values[i]).orElse(fallback);
+        }
+        return numbers;
+    }
+
+    private static Object[] toBooleans(Object[] values, Boolean defaultValue) {
+        Object[] booleans = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            booleans[i] = SafeConvert.toBoolean(values[i]).orElse(defaultValue);
+        }
+        return booleans;
+    }
+
+    private static Object[] toStrings(Object[] values, String defaultValue) {
+        Object[] strings = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = SafeConvert.toString(values[i]).orElse(defaultValue);
+        }
+        return strings;
+    }
+
+    private record LongArray(long[] values) implements ProxyArray {
+
+        @Override
+        public Object get(long index) {
+            return values[(int) index];
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("Series are read-only");
+        }
+
+        @Override
+        public long getSize() {
+            return values.length;
+        }
+    }
+
+    private record DoubleArray(double[] values) implements ProxyArray {
+
+        @Override
+        public Object get(long index) {
+            return values[(int) index];
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("Series are read-only");
+        }
+
+        @Override
+        public long getSize() {
+            return values.length;
+        }
+    }
+
+    private record ObjectArray(Object[] values) implements ProxyArray {
+
+        @Override
+        public Object get(long index) {
+            return values[(int) index];
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            throw new UnsupportedOperationException("Series are read-only");
+        }
+
+        @Override
+        public long getSize() {
+            return values.length;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.id.pulse.modules.poller.model;
+
+/**
+ * Timing of the live polls of a group since its timer started. Jitter is the delay between a slot and the actual
+ * start of its poll.
+ */
+public record GroupPollStats(String groupCode,
+                             long intervalMs,
+                             long polls,
+                             long overruns,
+                             long skippedSlots,
+                             long lastJitterMs,
+                             double avgJitterMs,
+                             long maxJitterMs,
+                             long lastDurationMs,
+                             long maxDurationMs) {
+}
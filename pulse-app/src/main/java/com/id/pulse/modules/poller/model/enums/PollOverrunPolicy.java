@@ -0,0 +1,11 @@
+package com.id.pulse.modules.poller.model.enums;
+
+/**
+ * What a group poll timer does with the slots missed while a poll overran its interval.
+ */
+public enum PollOverrunPolicy {
+    // Resume at the next slot in the future
+    SKIP,
+    // Poll the missed slots back to back, up to pulse.poller.max-catch-up of them
+    CATCH_UP
+}
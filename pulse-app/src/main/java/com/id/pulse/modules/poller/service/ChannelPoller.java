@@ -1,20 +1,21 @@
 package com.id.pulse.modules.poller.service;
 
+import com.id.pulse.config.AppConfig;
 import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.channel.model.PulseChannel;
 import com.id.pulse.modules.channel.model.PulseChannelGroup;
 import com.id.pulse.modules.channel.model.enums.PulseAggregationType;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
-import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
-import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
 import com.id.pulse.modules.connector.model.enums.ConnectorCallReason;
 import com.id.pulse.modules.connector.service.ConnectionManager;
+import com.id.pulse.modules.datapoints.ingestor.service.ChunkWriteBuffer;
 import com.id.pulse.modules.datapoints.ingestor.service.DataIngestor;
+import com.id.pulse.modules.datapoints.model.DpAccumulator;
 import com.id.pulse.modules.datapoints.service.DpAccumulatorsManager;
 import com.id.pulse.modules.measures.model.enums.PulseMeasureRegisterHookType;
 import com.id.pulse.modules.measures.service.MeasureHookService;
 import com.id.pulse.modules.measures.service.MeasureTransformerManager;
-import com.id.pulse.modules.orchestrator.service.ChannelGroupsRegistry;
 import com.id.pulse.modules.poller.model.PollOutcome;
 import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
 import lombok.extern.slf4j.Slf4j;
@@ -22,7 +23,11 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,66 +35,121 @@ import java.util.stream.Collectors;
 public class ChannelPoller {
 
     private final DpAccumulatorsManager dpAccumulatorsManager;
-    private final ChannelsCrudService channelsCrudService;
-    private final ChannelGroupsCrudService channelGroupsCrudService;
-    private final ChannelGroupsRegistry channelGroupsRegistry;
-    private final ConcurrentHashMap<String, Long> scheduledPollTimes = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, PulseChunkMetadata> channelMetadata = new ConcurrentHashMap<>();
+    private final ConfigSnapshotService configSnapshotService;
     private final ConnectionManager connectionManager;
     private final DataIngestor dataIngestor;
+    private final ChunkWriteBuffer chunkWriteBuffer;
     private final LatestValuesBucket latestValuesBucket;
     private final MeasureTransformerManager measureTransformerManager;
     private final MeasureHookService measureHookService;
+    private final AppConfig appConfig;
+
+    // Groups being replayed: their windows close on the replayed timestamps instead of the wall clock
+    private final ConcurrentHashMap<String, ReplayWatermark> replayWatermarks = new ConcurrentHashMap<>();
+    // Live connector queries abandoned on timeout, by connector code
+    private final ConcurrentHashMap<String, AtomicLong> connectorTimeouts = new ConcurrentHashMap<>();
+    // Live connector queries not started because the previous one of the same group had not answered yet
+    private final ConcurrentHashMap<String, AtomicLong> connectorSkips = new ConcurrentHashMap<>();
+    // Live connector queries still running, by group and connector: at most one each
+    private final ConcurrentHashMap<ConnectorQueryKey, CompletableFuture<List<PulseDataPoint>>> liveQueries = new ConcurrentHashMap<>();
+
+    private record ConnectorQueryKey(String groupCode, String connectorCode) {
+    }
+
+    // windowsEnd: end of the latest aggregation window the replay pushed points into
+    private record ReplayWatermark(long watermark, long windowsEnd, long lastPollMillis, ConnectorCallReason reason, String sessionId) {
+    }
 
     public ChannelPoller(DpAccumulatorsManager dpAccumulatorsManager,
-                         ChannelsCrudService channelsCrudService,
-                         ChannelGroupsCrudService channelGroupsCrudService,
-                         ChannelGroupsRegistry channelGroupsRegistry,
+                         ConfigSnapshotService configSnapshotService,
                          ConnectionManager connectionManager,
                          DataIngestor dataIngestor,
+                         ChunkWriteBuffer chunkWriteBuffer,
                          LatestValuesBucket latestValuesBucket,
                          MeasureTransformerManager measureTransformerManager,
-                         MeasureHookService measureHookService) {
+                         MeasureHookService measureHookService,
+                         AppConfig appConfig) {
         this.dpAccumulatorsManager = dpAccumulatorsManager;
-        this.channelsCrudService = channelsCrudService;
-        this.channelGroupsCrudService = channelGroupsCrudService;
-        this.channelGroupsRegistry = channelGroupsRegistry;
+        this.configSnapshotService = configSnapshotService;
         this.connectionManager = connectionManager;
         this.dataIngestor = dataIngestor;
+        this.chunkWriteBuffer = chunkWriteBuffer;
         this.latestValuesBucket = latestValuesBucket;
         this.measureTransformerManager = measureTransformerManager;
         this.measureHookService = measureHookService;
+        this.appConfig = appConfig;
     }
 
-    public void run() {
-        // Process all running groups
-        channelGroupsRegistry.getAllRunning().forEach(this::processGroup);
+    /**
+     * Live poll of a group, driven by its {@link GroupPollScheduler} timer.
+     */
+    public CompletableFuture<PollOutcome> pollGroup(PulseChannelGroup group) {
+        return pollGroupThenPublish(group, ConnectorCallReason.LIVE, null);
     }
 
-    private void processGroup(String code) {
-        // Load the group
-        var group = channelGroupsCrudService.findByCode(code).orElseThrow(() -> new IllegalStateException("Group not found: " + code));
-
-        // Calculate the next poll time according to the group interval
-        // Avoid to overwrite the poll time if it is already scheduled
-        scheduledPollTimes.computeIfAbsent(code, k -> {
-            long ts = System.currentTimeMillis();
-            return ts - (ts % group.getInterval());
-        });
+    /**
+     * Closes and publishes the aggregation windows of channels that went silent, once their end plus the allowed
+     * lateness is behind the group watermark: the wall clock for live groups. Replayed groups close on the replayed
+     * timestamps while polled; the windows left open by a replay are flushed once it has been idle for a while, the
+     * later (live) windows of the group are left to the wall clock.
+     */
+    public void closeExpiredWindows() {
+        long now = System.currentTimeMillis();
+        for (String groupCode : dpAccumulatorsManager.getGroupCodes()) {
+            var replay = replayWatermarks.get(groupCode);
+            if (replay != null) {
+                if (now - replay.lastPollMillis() < appConfig.getAggregationReplayIdleMs()) {
+                    continue;
+                }
+                replayWatermarks.remove(groupCode, replay);
+            }
+            long closeBefore = replay != null ? replay.windowsEnd() : now - appConfig.getAggregationAllowedLatenessMs();
+            if (dpAccumulatorsManager.earliestOpenEnd(groupCode) > closeBefore) {
+                continue;
+            }
 
-        // Proceed to actual polling if the time has come
-        if (System.currentTimeMillis() > scheduledPollTimes.get(code)) {
-            scheduledPollTimes.remove(code);
-            pollGroupThenPublish(group, ConnectorCallReason.LIVE, null);
+            var config = configSnapshotService.get();
+            var group = config.findGroup(groupCode).orElse(null);
+            if (group == null) {
+                continue;
+            }
+            var channels = config.channelsOfGroup(groupCode);
+            var closed = closeWindows(groupCode, channels, closeBefore);
+            if (closed.isEmpty()) {
+                continue;
+            }
+            truncateToPrecision(channels.stream().collect(Collectors.toMap(PulseChannel::getPath, ch -> ch)), closed);
+            if (replay != null) {
+                publish(List.of(group), closed, replay.reason(), replay.sessionId());
+            } else {
+                publish(List.of(group), closed, ConnectorCallReason.LIVE, null);
+            }
         }
     }
 
+    /**
+     * Number of live connector queries that timed out since startup, by connector code.
+     */
+    public Map<String, Long> getConnectorTimeouts() {
+        return connectorTimeouts.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()));
+    }
+
+    /**
+     * Number of live connector queries skipped since startup because the previous one was still running, by
+     * connector code.
+     */
+    public Map<String, Long> getConnectorSkips() {
+        return connectorSkips.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()));
+    }
+
     public CompletableFuture<PollOutcome> replayGroup(PulseChannelGroup group) {
         return replayGroup(group, ConnectorCallReason.RE_PROCESSING, null);
     }
 
     public CompletableFuture<PollOutcome> replayGroup(String groupCode) {
-        var group = channelGroupsCrudService.findByCode(groupCode)
+        var group = configSnapshotService.get().findGroup(groupCode)
                 .orElseThrow(() -> new IllegalStateException("Group not found: " + groupCode));
         return replayGroup(group, ConnectorCallReason.RE_PROCESSING, null);
     }
@@ -99,7 +159,7 @@ public class ChannelPoller {
     }
 
     public CompletableFuture<PollOutcome> replayGroup(String groupCode, ConnectorCallReason reason) {
-        var group = channelGroupsCrudService.findByCode(groupCode)
+        var group = configSnapshotService.get().findGroup(groupCode)
                 .orElseThrow(() -> new IllegalStateException("Group not found: " + groupCode));
         return replayGroup(group, reason, null);
     }
@@ -116,8 +176,8 @@ public class ChannelPoller {
         if (reason == ConnectorCallReason.TIME_REALIGN) {
             throw new UnsupportedOperationException("TIME_REALIGN replay is not supported yet");
         }
-        // Load all channels
-        var channels = channelsCrudService.findByChannelGroupCode(group.getCode());
+        // Channels of the group, from the configuration snapshot
+        var channels = configSnapshotService.get().channelsOfGroup(group.getCode());
         if (channels.isEmpty()) {
             return CompletableFuture.completedFuture(PollOutcome.empty());
         }
@@ -136,20 +196,23 @@ public class ChannelPoller {
         // Take a stable snapshot and preserve declared order (also dedupe while keeping first occurrence)
         List<String> connectorsOrdered = new ArrayList<>(new LinkedHashSet<>(connectors));
 
-        // Merge by channel path; later connectors overwrite earlier values according to connectorsOrdered
-        java.util.concurrent.CompletableFuture<java.util.Map<String, PulseDataPoint>> mergedFuture =
-                java.util.concurrent.CompletableFuture.completedFuture(new java.util.LinkedHashMap<>());
-        for (String connectorCode : connectorsOrdered) {
-            mergedFuture = mergedFuture.thenCompose(acc -> connectionManager
-                    .queryConnector(connectorCode, Map.of(group, channels), reason)
-                    .thenApply(result -> {
-                        for (PulseDataPoint dp : result) {
+        // Query the connectors in parallel, then merge by channel path in declared order: later connectors overwrite
+        // earlier values whatever the order they answered in
+        var query = Map.of(group, channels);
+        List<CompletableFuture<List<PulseDataPoint>>> results = connectorsOrdered.stream()
+                .map(connectorCode -> queryConnector(group, connectorCode, query, reason))
+                .toList();
+        CompletableFuture<Map<String, PulseDataPoint>> mergedFuture = CompletableFuture
+                .allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    Map<String, PulseDataPoint> acc = new LinkedHashMap<>();
+                    for (var result : results) {
+                        for (PulseDataPoint dp : result.join()) {
                             acc.put(dp.getPath(), dp);
                         }
-                        return acc;
-                    })
-            );
-        }
+                    }
+                    return acc;
+                });
 
         return mergedFuture
                 .thenApply(acc -> {
@@ -171,6 +234,21 @@ public class ChannelPoller {
 
                     // Aggregate and publish
                     var aggDps = aggregate(channels, result);
+                    if (reason != ConnectorCallReason.LIVE) {
+                        // Replayed data has its own clock: close the windows of silent channels on it
+                        long watermark = result.stream().mapToLong(PulseDataPoint::getTms).max().orElse(Long.MIN_VALUE);
+                        long windowsEnd = result.stream()
+                                .filter(dp -> isAggregated(channelMap.get(dp.getPath())))
+                                .mapToLong(dp -> windowEnd(channelMap.get(dp.getPath()), dp.getTms()))
+                                .max()
+                                .orElse(Long.MIN_VALUE);
+                        var replay = replayWatermarks.merge(group.getCode(),
+                                new ReplayWatermark(watermark, windowsEnd, System.currentTimeMillis(), reason, reprocessingSessionId),
+                                (previous, current) -> new ReplayWatermark(Math.max(previous.watermark(), current.watermark()),
+                                        Math.max(previous.windowsEnd(), current.windowsEnd()),
+                                        current.lastPollMillis(), reason, reprocessingSessionId));
+                        aggDps.addAll(closeWindows(group.getCode(), channels, replay.watermark() - appConfig.getAggregationAllowedLatenessMs()));
+                    }
                     List<PulseDataPoint> toPublish = new ArrayList<>();
 
                     if (!nonAggDps.isEmpty()) {
@@ -212,6 +290,72 @@ public class ChannelPoller {
                 });
     }
 
+    /**
+     * Queries a connector for the group. A live query is skipped, contributing nothing to the poll, while the previous
+     * live query of the group on that connector is still running, so that a slow connector never has more than one
+     * query per group to answer. Replays wait for every connector.
+     */
+    private CompletableFuture<List<PulseDataPoint>> queryConnector(PulseChannelGroup group,
+                                                                   String connectorCode,
+                                                                   Map<PulseChannelGroup, List<PulseChannel>> query,
+                                                                   ConnectorCallReason reason) {
+        if (reason != ConnectorCallReason.LIVE) {
+            return connectionManager.queryConnector(connectorCode, query, reason);
+        }
+        var key = new ConnectorQueryKey(group.getCode(), connectorCode);
+        var running = new CompletableFuture<List<PulseDataPoint>>();
+        if (liveQueries.putIfAbsent(key, running) != null) {
+            long count = connectorSkips.computeIfAbsent(connectorCode, k -> new AtomicLong()).incrementAndGet();
+            log.warn("Connector {} is still answering the previous poll of group {}, polled without it ({} skips so far)",
+                    connectorCode, group.getCode(), count);
+            return CompletableFuture.completedFuture(List.of());
+        }
+        CompletableFuture<List<PulseDataPoint>> result;
+        try {
+            result = connectionManager.queryConnector(connectorCode, query, reason);
+        } catch (RuntimeException ex) {
+            liveQueries.remove(key, running);
+            throw ex;
+        }
+        result.whenComplete((points, ex) -> {
+            liveQueries.remove(key, running);
+            if (ex != null) {
+                running.completeExceptionally(ex);
+            } else {
+                running.complete(points);
+            }
+        });
+        return withTimeout(group, connectorCode, running);
+    }
+
+    /**
+     * Bounds a live query to the connector timeout (the group interval by default, none when 0): a late connector
+     * contributes nothing to this poll, the others are merged as usual.
+     */
+    private CompletableFuture<List<PulseDataPoint>> withTimeout(PulseChannelGroup group,
+                                                                String connectorCode,
+                                                                CompletableFuture<List<PulseDataPoint>> query) {
+        long timeoutMs = appConfig.getPollerConnectorTimeoutMs() < 0
+                ? Objects.requireNonNullElse(group.getInterval(), 0L)
+                : appConfig.getPollerConnectorTimeoutMs();
+        if (timeoutMs <= 0) {
+            return query;
+        }
+        // On a copy: the connector still completes its own future, which keeps later polls off it until then
+        return query.copy()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> {
+                    var cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (!(cause instanceof TimeoutException)) {
+                        throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+                    }
+                    long count = connectorTimeouts.computeIfAbsent(connectorCode, k -> new AtomicLong()).incrementAndGet();
+                    log.warn("Connector {} did not answer within {} ms for group {}, polled without it ({} timeouts so far)",
+                            connectorCode, timeoutMs, group.getCode(), count);
+                    return List.of();
+                });
+    }
+
     /**
      * Truncate DOUBLE dataPoints according to the precision defined in channelMap.
      *
@@ -255,6 +399,8 @@ public class ChannelPoller {
 
     private List<PulseDataPoint> aggregate(List<PulseChannel> channels, List<PulseDataPoint> dataPoints) {
         List<PulseDataPoint> aggregatedPoints = new ArrayList<>();
+        var dataPointsByPath = dataPoints.stream().collect(Collectors.groupingBy(PulseDataPoint::getPath));
+        Map<String, Integer> latePoints = new HashMap<>();
 
         // Cycle through aggregation types
         List.of(PulseAggregationType.AVG, PulseAggregationType.MIN, PulseAggregationType.MAX, PulseAggregationType.SUM)
@@ -267,35 +413,69 @@ public class ChannelPoller {
 
                     aggChannels.forEach(channel -> {
                         // Select datapoints and put them into a treemap ordered by tms
-                        var dataPointsOfChannelByTms = dataPoints.stream()
-                                .filter(dp -> dp.getPath().equals(channel.getPath()))
+                        var dataPointsOfChannelByTms = dataPointsByPath.getOrDefault(channel.getPath(), List.of()).stream()
                                 .collect(Collectors.toMap(PulseDataPoint::getTms, dp -> dp, (a, b) -> a, TreeMap::new));
 
                         // Accumulate
                         dataPointsOfChannelByTms.values().forEach(dp -> {
                             // Find the lower bound of the accumulator, by normalizing the tms to the aggregation timebase
-                            long tmsAccStart = dp.getTms() - (dp.getTms() % channel.getAggregationTimeBase());
-                            long tmsAccEnd = tmsAccStart + channel.getAggregationTimeBase();
+                            long tmsAccEnd = windowEnd(channel, dp.getTms());
+                            long tmsAccStart = tmsAccEnd - channel.getAggregationTimeBase();
 
-                            // Push dp into the accumulator
-                            var acc = dpAccumulatorsManager.getOrCreate(channel.getChannelGroupCode(), channel.getPath(), tmsAccStart, tmsAccEnd);
-                            acc.push(dp);
+                            // Push dp into the accumulator, unless its window was already closed
+                            if (!dpAccumulatorsManager.push(channel.getChannelGroupCode(), channel.getPath(), tmsAccStart, tmsAccEnd, dp)) {
+                                latePoints.merge(channel.getChannelGroupCode(), 1, Integer::sum);
+                            }
                         });
 
                         if (!dataPointsOfChannelByTms.isEmpty()) {
-                            // Close accumulators which have been completed
-                            var accCompleted = dpAccumulatorsManager.findCompleted(channel.getChannelGroupCode(), channel.getPath(), dataPointsOfChannelByTms.lastKey());
+                            // Close and remove accumulators which have been completed
+                            var accCompleted = dpAccumulatorsManager.pollCompleted(channel.getChannelGroupCode(), channel.getPath(), dataPointsOfChannelByTms.lastKey());
 
                             // Produce one datapoint for each completed accumulator, according to the selected aggregation type
                             aggregatedPoints.addAll(accCompleted.stream().map(acc -> acc.aggregate(aggType)).toList());
-
-                            // Remove the completed accumulators
-                            dpAccumulatorsManager.remove(accCompleted);
                         }
                     });
 
                 });
 
+        latePoints.forEach((groupCode, count) ->
+                log.warn("Dropped {} late points of group {}: their aggregation windows were already closed", count, groupCode));
+        return aggregatedPoints;
+    }
+
+    private static boolean isAggregated(PulseChannel channel) {
+        return channel != null
+               && channel.getAggregationType() != null
+               && channel.getAggregationType() != PulseAggregationType.COPY;
+    }
+
+    /**
+     * End of the aggregation window holding {@code tms}, on the channel time base.
+     */
+    private static long windowEnd(PulseChannel channel, long tms) {
+        return tms - (tms % channel.getAggregationTimeBase()) + channel.getAggregationTimeBase();
+    }
+
+    /**
+     * Closes the windows of the aggregated channels ending before {@code closeBefore} and returns their points.
+     */
+    private List<PulseDataPoint> closeWindows(String groupCode, List<PulseChannel> channels, long closeBefore) {
+        List<PulseDataPoint> aggregatedPoints = new ArrayList<>();
+        for (PulseChannel channel : channels) {
+            var aggType = channel.getAggregationType();
+            var completed = dpAccumulatorsManager.pollCompleted(groupCode, channel.getPath(), closeBefore);
+            if (aggType == null || aggType == PulseAggregationType.COPY) {
+                // Left open before the channel stopped being aggregated
+                continue;
+            }
+            for (DpAccumulator acc : completed) {
+                var point = acc.aggregate(aggType);
+                if (point != null) {
+                    aggregatedPoints.add(point);
+                }
+            }
+        }
         return aggregatedPoints;
     }
 
@@ -367,6 +547,22 @@ public class ChannelPoller {
         Map<String, PulseChannelGroup> groupsByCode = groups.stream()
                 .collect(Collectors.toMap(PulseChannelGroup::getCode, group -> group));
 
+        // Without write-behind, write the whole cycle at once: one bulk write per collection
+        if (!chunkWriteBuffer.isEnabled()) {
+            dataPoints.stream()
+                    .collect(Collectors.groupingBy(PulseDataPoint::getGroupCode))
+                    .forEach((groupCode, dataPointsOfGroup) -> {
+                        var group = groupsByCode.get(groupCode);
+                        dataIngestor.writeBatchAsync(dataPointsOfGroup, dataPoint -> resolveMetadata(group, dataPoint), group.getChunkEncoding())
+                                .thenAccept(results -> log.trace("Ingestor perfs for group %s: %s".formatted(groupCode, results)))
+                                .exceptionally(ex -> {
+                                    log.error("Error writing data to ingestor", ex);
+                                    return null;
+                                });
+                    });
+            return;
+        }
+
         // Groups datapoints by path
         Map<String, List<PulseDataPoint>> dataPointsByPath = dataPoints.stream()
                 .collect(Collectors.groupingBy(PulseDataPoint::getPath));
@@ -382,8 +578,7 @@ public class ChannelPoller {
             var group = groupsByCode.get(firstDataPoint.getGroupCode());
 
             // Get metadata for the channel and write
-            var metadata = channelMetadata.computeIfAbsent("%s:%s".formatted(group.getCode(), firstDataPoint.getPath()), k ->
-                    dataIngestor.prepareMetadata(group.getCode(), firstDataPoint.getPath(), firstDataPoint.getType(), group.getInterval()));
+            var metadata = resolveMetadata(group, firstDataPoint);
 
             // Extract the timeseries from the data points
             Map<Long, Object> timeSeries = new HashMap<>();
@@ -393,13 +588,14 @@ public class ChannelPoller {
                 batchIdsByTs.put(dataPoint.getTms(), dataPoint.getBatchId());
             });
 
-            // Write the data points to the ingestor
-            dataIngestor.writeAsync(metadata, timeSeries, batchIdsByTs)
-                    .thenAccept(result -> log.trace("Ingestor perfs: %s".formatted(result)))
-                    .exceptionally(ex -> {
-                        log.error("Error writing data to ingestor", ex);
-                        return null;
-                    });
+            // Hand the data points to the write-behind buffer, using the chunk encoding configured on the group.
+            // This may block when the buffer is full
+            chunkWriteBuffer.offer(metadata, group.getChunkEncoding(), timeSeries, batchIdsByTs);
         });
     }
+
+    private PulseChunkMetadata resolveMetadata(PulseChannelGroup group, PulseDataPoint dataPoint) {
+        // Served by the shared chunk metadata cache
+        return dataIngestor.prepareMetadata(group.getCode(), dataPoint.getPath(), dataPoint.getType(), group.getInterval());
+    }
 }
@@ -0,0 +1,192 @@
+package com.id.pulse.modules.poller.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
+import com.id.pulse.modules.orchestrator.service.ChannelGroupsRegistry;
+import com.id.pulse.modules.poller.model.GroupPollStats;
+import com.id.pulse.modules.poller.model.enums.PollOverrunPolicy;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Gives each RUNNING group its own live poll timer, on a virtual thread.
+ * <p>
+ * Slots are aligned on multiples of the group interval and computed from the previous slot, not from the end of the
+ * poll, so timers do not drift. A poll running past the next slot is an overrun: with SKIP the timer resumes at the
+ * next slot in the future, with CATCH_UP it polls the missed slots back to back (at most
+ * {@code pulse.poller.max-catch-up}, the older ones are skipped).
+ */
+@Service
+@Slf4j
+public class GroupPollScheduler {
+
+    private final ChannelPoller channelPoller;
+    private final ConfigSnapshotService configSnapshotService;
+    private final ChannelGroupsRegistry channelGroupsRegistry;
+    private final AppConfig appConfig;
+
+    private final ConcurrentHashMap<String, GroupTimer> timers = new ConcurrentHashMap<>();
+
+    public GroupPollScheduler(ChannelPoller channelPoller,
+                              ConfigSnapshotService configSnapshotService,
+                              ChannelGroupsRegistry channelGroupsRegistry,
+                              AppConfig appConfig) {
+        this.channelPoller = channelPoller;
+        this.configSnapshotService = configSnapshotService;
+        this.channelGroupsRegistry = channelGroupsRegistry;
+        this.appConfig = appConfig;
+    }
+
+    /**
+     * Starts the timers of the groups that became RUNNING, stops the others, restarts the ones whose interval changed
+     * and hands the latest group definition to the running ones.
+     */
+    public synchronized void sync() {
+        var running = new HashSet<>(channelGroupsRegistry.getAllRunning());
+        Map<String, PulseChannelGroup> groups = running.isEmpty() ? Map.of() : configSnapshotService.get().groupsByCode()
+                .entrySet().stream()
+                .filter(e -> running.contains(e.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        timers.values().removeIf(timer -> {
+            var group = groups.get(timer.groupCode);
+            if (group != null && Objects.equals(group.getInterval(), timer.intervalMs)) {
+                timer.group.set(group);
+                return false;
+            }
+            timer.stop();
+            return true;
+        });
+
+        groups.forEach((code, group) -> {
+            if (timers.containsKey(code)) {
+                return;
+            }
+            if (group.getInterval() == null || group.getInterval() <= 0) {
+                log.warn("Group {} has no valid poll interval ({}), not polled", code, group.getInterval());
+                return;
+            }
+            var timer = new GroupTimer(group);
+            timers.put(code, timer);
+            timer.start();
+        });
+    }
+
+    public List<GroupPollStats> getStats() {
+        return timers.values().stream()
+                .map(GroupTimer::stats)
+                .sorted(Comparator.comparing(GroupPollStats::groupCode))
+                .toList();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        timers.values().forEach(GroupTimer::stop);
+        timers.clear();
+    }
+
+    private final class GroupTimer {
+
+        private final String groupCode;
+        private final long intervalMs;
+        private final AtomicReference<PulseChannelGroup> group;
+        private volatile boolean running = true;
+        private Thread thread;
+
+        // Written by the timer thread only, read under the same lock by stats()
+        private long polls;
+        private long overruns;
+        private long skippedSlots;
+        private long lastJitterMs;
+        private long totalJitterMs;
+        private long maxJitterMs;
+        private long lastDurationMs;
+        private long maxDurationMs;
+
+        private GroupTimer(PulseChannelGroup group) {
+            this.groupCode = group.getCode();
+            this.intervalMs = group.getInterval();
+            this.group = new AtomicReference<>(group);
+        }
+
+        private void start() {
+            thread = Thread.ofVirtual().name("group-poll-" + groupCode).start(this::loop);
+        }
+
+        private void stop() {
+            running = false;
+            thread.interrupt();
+        }
+
+        private void loop() {
+            long slot = (Math.floorDiv(System.currentTimeMillis(), intervalMs) + 1) * intervalMs;
+            while (running) {
+                try {
+                    long wait = slot - System.currentTimeMillis();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                }
+
+                long start = System.currentTimeMillis();
+                try {
+                    channelPoller.pollGroup(group.get()).join();
+                } catch (Exception ex) {
+                    log.error("Error polling group {}", groupCode, ex);
+                }
+                long end = System.currentTimeMillis();
+
+                slot = next(slot, start, end);
+            }
+        }
+
+        /**
+         * Records the poll of {@code slot} and returns the slot of the next poll.
+         */
+        private synchronized long next(long slot, long start, long end) {
+            long jitter = start - slot;
+            long duration = end - start;
+            polls++;
+            lastJitterMs = jitter;
+            totalJitterMs += jitter;
+            maxJitterMs = Math.max(maxJitterMs, jitter);
+            lastDurationMs = duration;
+            maxDurationMs = Math.max(maxDurationMs, duration);
+
+            long next = slot + intervalMs;
+            if (end < next) {
+                return next;
+            }
+
+            // Slots already due when the poll ended, the next one included
+            long missed = (end - next) / intervalMs + 1;
+            overruns++;
+            long skip = appConfig.getPollerOverrunPolicy() == PollOverrunPolicy.CATCH_UP
+                    ? Math.max(0, missed - appConfig.getPollerMaxCatchUp())
+                    : missed;
+            skippedSlots += skip;
+            if (skip > 0) {
+                log.debug("Group {} poll overran its {} ms interval ({} ms), skipping {} slots", groupCode, intervalMs, duration, skip);
+            }
+            return next + skip * intervalMs;
+        }
+
+        private synchronized GroupPollStats stats() {
+            return new GroupPollStats(groupCode, intervalMs, polls, overruns, skippedSlots, lastJitterMs,
+                    polls == 0 ? 0.0 : (double) totalJitterMs / polls, maxJitterMs, lastDurationMs, maxDurationMs);
+        }
+    }
+}
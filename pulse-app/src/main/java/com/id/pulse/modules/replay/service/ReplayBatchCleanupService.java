@@ -1,14 +1,21 @@
 package com.id.pulse.modules.replay.service;
 
 import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.ingestor.service.ChunkWriteBuffer;
 import com.id.pulse.modules.datapoints.model.PulseChunk;
 import com.id.pulse.modules.datapoints.model.PulseChunkMetadataEntity;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.datapoints.util.ChunkRewriter;
+import com.id.pulse.modules.hottier.service.HotTierService;
 import com.id.pulse.modules.replay.model.ReplayBatchCleanupResult;
+import com.id.pulse.modules.rollups.service.RollupService;
 import com.id.px3.model.DefaultRoles;
 import com.id.px3.rest.security.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -20,13 +27,13 @@ import org.springframework.web.client.RestTemplate;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Updates;
 import org.springframework.data.mongodb.core.MongoTemplate;
 
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -41,6 +48,10 @@ public class ReplayBatchCleanupService {
     private final RestTemplate restTemplate;
     private final JwtService jwtService;
     private final AppConfig appConfig;
+    private final RollupService rollupService;
+    private final ChunkReadCache chunkReadCache;
+    private final HotTierService hotTierService;
+    private final ChunkWriteBuffer chunkWriteBuffer;
 
     public boolean batchExists(String batchId) {
         if (!StringUtils.hasText(batchId)) {
@@ -49,7 +60,7 @@ public class ReplayBatchCleanupService {
         for (String collectionName : listCollections()) {
             try {
                 MongoCollection<Document> collection = mongoTemplate.getDb().getCollection(collectionName);
-                long count = collection.countDocuments(Filters.eq(PulseChunk.BATCH_IDS, batchId));
+                long count = collection.countDocuments(batchFilter(batchId));
                 if (count > 0) {
                     return true;
                 }
@@ -64,57 +75,36 @@ public class ReplayBatchCleanupService {
         if (!StringUtils.hasText(batchId)) {
             return new ReplayBatchCleanupResult(0, 0, 0);
         }
+        // Points of the batch still in the write-behind buffer would be written after the cleanup
+        chunkWriteBuffer.drain();
+
         int docsUpdated = 0;
         int docsDeleted = 0;
         int pointsRemoved = 0;
+        Map<String, AffectedRange> affected = new LinkedHashMap<>();
 
         MongoDatabase db = mongoTemplate.getDb();
         for (String collectionName : listCollections()) {
             MongoCollection<Document> collection = db.getCollection(collectionName);
-            try (var cursor = collection.find(Filters.eq(PulseChunk.BATCH_IDS, batchId)).iterator()) {
+            try (var cursor = collection.find(batchFilter(batchId)).iterator()) {
                 while (cursor.hasNext()) {
                     Document doc = cursor.next();
-                    List<Long> ts = doc.getList(PulseChunk.TS, Long.class);
-                    List<Object> v = doc.getList(PulseChunk.V, Object.class);
-                    List<String> batchIds = doc.getList(PulseChunk.BATCH_IDS, String.class);
-                    if (ts == null || v == null || batchIds == null) {
-                        continue;
-                    }
-                    int size = Math.min(ts.size(), Math.min(v.size(), batchIds.size()));
-                    if (size == 0) {
+                    ChunkRewriter.Outcome outcome;
+                    try {
+                        outcome = ChunkRewriter.rewrite(collection, doc, batchId::equals);
+                    } catch (IllegalStateException ex) {
+                        log.warn("Batch cleanup skipped chunk {} on {}: {}", doc.get("_id"), collectionName, ex.getMessage());
                         continue;
                     }
-                    List<Long> nextTs = new ArrayList<>(size);
-                    List<Object> nextV = new ArrayList<>(size);
-                    List<String> nextBatchIds = new ArrayList<>(size);
-                    int removed = 0;
-                    for (int i = 0; i < size; i++) {
-                        String id = batchIds.get(i);
-                        if (batchId.equals(id)) {
-                            removed++;
-                            continue;
-                        }
-                        nextTs.add(ts.get(i));
-                        nextV.add(v.get(i));
-                        nextBatchIds.add(id);
-                    }
-                    if (removed == 0) {
+                    if (outcome.removed() == 0) {
                         continue;
                     }
-                    pointsRemoved += removed;
-                    Object docId = doc.get("_id");
-                    if (nextTs.isEmpty()) {
-                        collection.deleteOne(Filters.eq("_id", docId));
+                    pointsRemoved += outcome.removed();
+                    onChunkModified(affected, collectionName, doc);
+                    refreshHotTier(collection, collectionName, doc);
+                    if (outcome.deleted()) {
                         docsDeleted++;
                     } else {
-                        collection.updateOne(
-                                Filters.eq("_id", docId),
-                                Updates.combine(
-                                        Updates.set(PulseChunk.TS, nextTs),
-                                        Updates.set(PulseChunk.V, nextV),
-                                        Updates.set(PulseChunk.BATCH_IDS, nextBatchIds)
-                                )
-                        );
                         docsUpdated++;
                     }
                 }
@@ -123,10 +113,73 @@ public class ReplayBatchCleanupService {
             }
         }
 
+        rebuildRollups(affected);
         deleteBayesianOutputs(batchId);
         return new ReplayBatchCleanupResult(pointsRemoved, docsUpdated, docsDeleted);
     }
 
+    /**
+     * Chunks holding points of the batch, in either layout.
+     */
+    private static Bson batchFilter(String batchId) {
+        return Filters.or(Filters.eq(PulseChunk.BATCH_IDS, batchId), Filters.eq(PulseChunk.BLOCK_BATCH_IDS, batchId));
+    }
+
+    private record AffectedRange(String collectionName, String path, PulseDataType dataType, long tsStart, long tsEnd) {
+    }
+
+    /**
+     * Drops the chunk from the read cache and records its range for the rollup rebuild.
+     */
+    private void onChunkModified(Map<String, AffectedRange> affected, String collectionName, Document doc) {
+        String path = doc.getString(PulseChunk.PATH);
+        String dataType = doc.getString(PulseChunk.DATA_TYPE);
+        Number tsStart = doc.get(PulseChunk.TS_START, Number.class);
+        Number tsEnd = doc.get(PulseChunk.TS_END, Number.class);
+        if (path == null || tsStart == null) {
+            return;
+        }
+        chunkReadCache.invalidate(collectionName, path, tsStart.longValue());
+        if (dataType == null || tsEnd == null) {
+            return;
+        }
+        var range = new AffectedRange(collectionName, path, PulseDataType.valueOf(dataType), tsStart.longValue(), tsEnd.longValue());
+        affected.merge(collectionName + "|" + path, range, (a, b) -> new AffectedRange(a.collectionName(), a.path(),
+                a.dataType(), Math.min(a.tsStart(), b.tsStart()), Math.max(a.tsEnd(), b.tsEnd())));
+    }
+
+    /**
+     * Replaces the hot tier copy of a rewritten chunk with its new content, or an empty one once deleted.
+     */
+    private void refreshHotTier(MongoCollection<Document> collection, String collectionName, Document doc) {
+        if (!hotTierService.isEnabled()) {
+            return;
+        }
+        String path = doc.getString(PulseChunk.PATH);
+        String dataType = doc.getString(PulseChunk.DATA_TYPE);
+        Number tsStart = doc.get(PulseChunk.TS_START, Number.class);
+        Number tsEnd = doc.get(PulseChunk.TS_END, Number.class);
+        if (path == null || tsStart == null || tsEnd == null) {
+            return;
+        }
+        Document current = collection.find(Filters.eq("_id", doc.get("_id"))).first();
+        hotTierService.onChunkRewritten(collectionName, path, dataType == null ? null : PulseDataType.valueOf(dataType),
+                tsStart.longValue(), tsEnd.longValue(), current);
+    }
+
+    /**
+     * The removed points are still counted in the rollups: rebuild the buckets of the touched chunks.
+     */
+    private void rebuildRollups(Map<String, AffectedRange> affected) {
+        for (AffectedRange range : affected.values()) {
+            try {
+                rollupService.rebuild(range.collectionName(), range.path(), range.dataType(), range.tsStart(), range.tsEnd());
+            } catch (Exception ex) {
+                log.warn("Rollup rebuild failed for {} on {}", range.path(), range.collectionName(), ex);
+            }
+        }
+    }
+
     private void deleteBayesianOutputs(String batchId) {
         String baseUrl = appConfig.getIrisBackendBaseUrl();
         if (!StringUtils.hasText(baseUrl)) {
@@ -0,0 +1,139 @@
+package com.id.pulse.modules.rollups.logic;
+
+import com.id.pulse.modules.rollups.model.PulseRollup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the numeric points of one path into the buckets of one rollup tier. Buckets are aligned on the epoch.
+ * Points may come in any order; on equal timestamps the last added point is the {@code last} one. Buckets of a finer
+ * tier dividing this one can be merged instead of their points.
+ */
+public class RollupAggregator {
+
+    private final String path;
+    private final long tierMs;
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    public RollupAggregator(String path, long tierMs) {
+        if (tierMs <= 0) {
+            throw new IllegalArgumentException("Rollup tier must be positive");
+        }
+        this.path = path;
+        this.tierMs = tierMs;
+    }
+
+    public static long floor(long ts, long tierMs) {
+        return Math.floorDiv(ts, tierMs) * tierMs;
+    }
+
+    public static long ceil(long ts, long tierMs) {
+        return -Math.floorDiv(-ts, tierMs) * tierMs;
+    }
+
+    public long getTierMs() {
+        return tierMs;
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    public void add(long ts, Number value) {
+        if (value == null) {
+            return;
+        }
+        buckets.computeIfAbsent(floor(ts, tierMs), k -> new Bucket()).add(ts, value);
+    }
+
+    /**
+     * Merges a bucket of a finer tier, which must lie within one bucket of this tier.
+     */
+    public void merge(PulseRollup rollup) {
+        if (rollup.count() == 0) {
+            return;
+        }
+        long bucketTs = floor(rollup.ts(), tierMs);
+        if (floor(rollup.lastTs(), tierMs) != bucketTs) {
+            throw new IllegalArgumentException("Rollup at %d does not fit a %d ms bucket".formatted(rollup.ts(), tierMs));
+        }
+        buckets.computeIfAbsent(bucketTs, k -> new Bucket()).merge(rollup);
+    }
+
+    /**
+     * Removes and returns the buckets ending at or before {@code ts}, in time order.
+     */
+    public List<PulseRollup> drainBefore(long ts) {
+        List<PulseRollup> drained = new ArrayList<>();
+        var completed = buckets.headMap(ts - tierMs, true);
+        for (Map.Entry<Long, Bucket> entry : completed.entrySet()) {
+            drained.add(entry.getValue().toRollup(path, entry.getKey()));
+        }
+        completed.clear();
+        return drained;
+    }
+
+    public List<PulseRollup> drainAll() {
+        return drainBefore(Long.MAX_VALUE);
+    }
+
+    private static final class Bucket {
+
+        private long count = 0;
+        private double sum = 0;
+        private long minTs, maxTs, firstTs, lastTs;
+        private Number min, max, first, last;
+
+        private void add(long ts, Number value) {
+            double y = value.doubleValue();
+            if (count == 0 || y < min.doubleValue() || (y == min.doubleValue() && ts < minTs)) {
+                min = value;
+                minTs = ts;
+            }
+            if (count == 0 || y > max.doubleValue() || (y == max.doubleValue() && ts < maxTs)) {
+                max = value;
+                maxTs = ts;
+            }
+            if (count == 0 || ts < firstTs) {
+                first = value;
+                firstTs = ts;
+            }
+            if (count == 0 || ts >= lastTs) {
+                last = value;
+                lastTs = ts;
+            }
+            count++;
+            sum += y;
+        }
+
+        private void merge(PulseRollup rollup) {
+            double min = rollup.min().doubleValue();
+            double max = rollup.max().doubleValue();
+            if (count == 0 || min < this.min.doubleValue() || (min == this.min.doubleValue() && rollup.minTs() < minTs)) {
+                this.min = rollup.min();
+                minTs = rollup.minTs();
+            }
+            if (count == 0 || max > this.max.doubleValue() || (max == this.max.doubleValue() && rollup.maxTs() < maxTs)) {
+                this.max = rollup.max();
+                maxTs = rollup.maxTs();
+            }
+            if (count == 0 || rollup.firstTs() < firstTs) {
+                first = rollup.first();
+                firstTs = rollup.firstTs();
+            }
+            if (count == 0 || rollup.lastTs() >= lastTs) {
+                last = rollup.last();
+                lastTs = rollup.lastTs();
+            }
+            count += rollup.count();
+            sum += rollup.sum();
+        }
+
+        private PulseRollup toRollup(String path, long bucketTs) {
+            return new PulseRollup(path, bucketTs, count, sum, minTs, min, maxTs, max, firstTs, first, lastTs, last);
+        }
+    }
+}
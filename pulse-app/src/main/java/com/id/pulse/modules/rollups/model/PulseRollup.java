@@ -0,0 +1,44 @@
+package com.id.pulse.modules.rollups.model;
+
+/**
+ * Aggregate of the points of one path over one rollup bucket {@code [ts, ts + tier)}.
+ * Extremes and ends keep their own timestamp and the stored type of the series (Double or Long).
+ */
+public record PulseRollup(String path,
+                          long ts,
+                          long count,
+                          double sum,
+                          long minTs,
+                          Number min,
+                          long maxTs,
+                          Number max,
+                          long firstTs,
+                          Number first,
+                          long lastTs,
+                          Number last) {
+
+    public static final String ID = "_id";
+    public static final String PATH = "path";
+    public static final String TS = "ts";
+    public static final String COUNT = "count";
+    public static final String SUM = "sum";
+    public static final String MIN_TS = "minTs";
+    public static final String MIN = "min";
+    public static final String MAX_TS = "maxTs";
+    public static final String MAX = "max";
+    public static final String FIRST_TS = "firstTs";
+    public static final String FIRST = "first";
+    public static final String LAST_TS = "lastTs";
+    public static final String LAST = "last";
+    public static final String REVISION = "rev";
+
+    public static final String COLLECTION_PREFIX = "PulseRollups_";
+
+    public static String documentId(String path, long bucketTs) {
+        return "%s@%d".formatted(path, bucketTs);
+    }
+
+    public double avg() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+}
@@ -0,0 +1,21 @@
+package com.id.pulse.modules.rollups.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PulseRollupRebuildReq {
+
+    private List<String> paths;
+    private Instant start;
+    private Instant end;
+
+}
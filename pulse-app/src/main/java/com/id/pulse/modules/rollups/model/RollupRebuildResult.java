@@ -0,0 +1,4 @@
+package com.id.pulse.modules.rollups.model;
+
+public record RollupRebuildResult(int series, long pointsRead, long bucketsWritten) {
+}
@@ -0,0 +1,33 @@
+package com.id.pulse.modules.rollups.rest;
+
+import com.id.pulse.modules.rollups.model.PulseRollupRebuildReq;
+import com.id.pulse.modules.rollups.model.RollupRebuildResult;
+import com.id.pulse.modules.rollups.service.RollupService;
+import com.id.px3.rest.PxRestControllerBase;
+import com.id.px3.rest.security.JwtSecured;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("pulse-rollups")
+@RequiredArgsConstructor
+public class RollupsRest extends PxRestControllerBase {
+
+    private final RollupService rollupService;
+
+    /**
+     * Rebuilds the rollups of the given paths from their raw chunks, up to now when no end is given.
+     */
+    @PostMapping("rebuild")
+    @JwtSecured
+    public ResponseEntity<RollupRebuildResult> rebuild(@RequestBody PulseRollupRebuildReq req) {
+        Instant end = req.getEnd() == null ? Instant.now() : req.getEnd();
+        return ResponseEntity.ok(rollupService.rebuild(req.getPaths(), req.getStart(), end));
+    }
+}
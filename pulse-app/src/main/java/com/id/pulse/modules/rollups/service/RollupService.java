@@ -0,0 +1,761 @@
+package com.id.pulse.modules.rollups.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCrudService;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.rollups.logic.RollupAggregator;
+import com.id.pulse.modules.rollups.model.PulseRollup;
+import com.id.pulse.modules.rollups.model.RollupRebuildResult;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Maintains the rollup tiers of numeric series ({@code pulse.rollups.tiers-ms}, 1 min, 15 min and 1 h by default).
+ * <p>
+ * Each chunk collection {@code PulseChunks_<group>_<type>_<rate>} has one rollup collection per tier,
+ * {@code PulseRollups_<group>_<type>_<rate>_<tierMs>}, with one document per path and bucket holding
+ * count/sum/min/max/first/last.
+ * <p>
+ * Buckets are never merged with deltas: the ingest only marks the written range of each series dirty, and every
+ * {@code refresh-ms} the dirty buckets are recomputed from the stored data, so points written twice are counted once.
+ * The refresh runs on its own thread, by batches of series of the same collection sharing their queries and writes.
+ * The finest tier is aggregated from the raw chunks, a coarser tier from the buckets of the tier below when it
+ * divides it, from the raw chunks otherwise. Bucket writes are conditional on the revision read before the recompute:
+ * on a concurrent write (another node, a rebuild) the range is marked dirty again. Rebuilding a range goes through
+ * the same recompute, which also repairs the buckets after a replay or a batch cleanup.
+ * <p>
+ * The coverage of each series (the time from which its rollups are complete) is recorded in
+ * {@value #COVERAGE_COLLECTION}: the extractor only reads rollups for ranges starting after it, once the dirty
+ * buckets of the range are refreshed ({@link #refreshBeforeRead}).
+ */
+@Service
+@Slf4j
+public class RollupService {
+
+    static final String COVERAGE_COLLECTION = "PulseRollupCoverage";
+    static final String COVERAGE_FROM = "from";
+
+    private static final String CHUNK_COLLECTION_PREFIX = "PulseChunks_";
+    private static final int WRITE_BATCH_SIZE = 1000;
+    private static final int READ_BATCH_SIZE = 1024;
+    // Series recomputed together by the refresh, one query per tier and source for the whole batch
+    private static final int REFRESH_BATCH_SIZE = 100;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final AppConfig appConfig;
+    private final MongoTemplate mongoTemplate;
+    private final ChunkMetadataCrudService chunkMetadataCrudService;
+
+    // Coverage start by "chunkCollection|path"; only ever moves back in time
+    private final ConcurrentHashMap<String, Long> coverage = new ConcurrentHashMap<>();
+    private final Set<String> indexedCollections = ConcurrentHashMap.newKeySet();
+    // Ranges to recompute by "chunkCollection|path"
+    private final ConcurrentHashMap<String, DirtyRange> dirty = new ConcurrentHashMap<>();
+    // Ranges being recomputed by the refresh, by "chunkCollection|path"
+    private final ConcurrentHashMap<String, DirtyRange> refreshing = new ConcurrentHashMap<>();
+    // Coverage start of the series first written since the last refresh, recorded by the refresh
+    private final ConcurrentHashMap<String, Long> pendingCoverage = new ConcurrentHashMap<>();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("rollup-refresh").factory());
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    private record DirtyRange(String chunkCollection, String path, PulseDataType type, long start, long end) {
+
+        private DirtyRange union(DirtyRange other) {
+            return new DirtyRange(chunkCollection, path, type, Math.min(start, other.start), Math.max(end, other.end));
+        }
+
+        private boolean overlaps(long from, long to) {
+            return start < to && end > from;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RollupBatchConsumer {
+        void accept(List<PulseRollup> rollups) throws IOException;
+    }
+
+    public RollupService(AppConfig appConfig, MongoTemplate mongoTemplate, ChunkMetadataCrudService chunkMetadataCrudService) {
+        this.appConfig = appConfig;
+        this.mongoTemplate = mongoTemplate;
+        this.chunkMetadataCrudService = chunkMetadataCrudService;
+    }
+
+    public boolean isEnabled() {
+        return appConfig.isRollupsEnabled() && !getTiers().isEmpty();
+    }
+
+    public static boolean supports(PulseDataType type) {
+        return type == PulseDataType.DOUBLE || type == PulseDataType.LONG;
+    }
+
+    public static String collectionName(String chunkCollection, long tierMs) {
+        String suffix = chunkCollection.startsWith(CHUNK_COLLECTION_PREFIX)
+                ? chunkCollection.substring(CHUNK_COLLECTION_PREFIX.length())
+                : chunkCollection;
+        return "%s%s_%d".formatted(PulseRollup.COLLECTION_PREFIX, suffix, tierMs);
+    }
+
+    /**
+     * Configured tiers, finest first.
+     */
+    public List<Long> getTiers() {
+        var tiers = appConfig.getRollupsTiersMs();
+        if (tiers == null) {
+            return List.of();
+        }
+        return tiers.stream().filter(Objects::nonNull).filter(tier -> tier > 0).distinct().sorted().toList();
+    }
+
+    /**
+     * Marks the ranges of freshly written chunks dirty, for the next refresh. Called after the raw write succeeded.
+     */
+    public void onChunksWritten(String chunkCollection, Collection<PrimitiveChunkBuilder> chunks) {
+        if (!isEnabled()) {
+            return;
+        }
+        for (PrimitiveChunkBuilder chunk : chunks) {
+            if (chunk.isEmpty() || !supports(chunk.getDataType())) {
+                continue;
+            }
+            long firstTs = Long.MAX_VALUE;
+            long lastTs = Long.MIN_VALUE;
+            for (int i = 0; i < chunk.size(); i++) {
+                firstTs = Math.min(firstTs, chunk.ts(i));
+                lastTs = Math.max(lastTs, chunk.ts(i));
+            }
+            markCovered(chunkCollection, chunk.getPath(), firstTs);
+            markDirty(chunkCollection, chunk.getPath(), chunk.getDataType(), firstTs, lastTs + 1);
+        }
+    }
+
+    /**
+     * Hands the refresh of the dirty ranges to the refresh thread, unless one is already pending there: the scheduler
+     * thread is shared with the poller, the watermarks and the write-behind flush.
+     */
+    @Scheduled(fixedDelayString = "${pulse.rollups.refresh-ms:5000}")
+    public void scheduleRefresh() {
+        if (!isEnabled() || !refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                refreshDirty();
+            } finally {
+                refreshQueued.set(false);
+            }
+        });
+    }
+
+    /**
+     * Records the coverage of the new series, then recomputes the buckets of the dirty ranges in batches of
+     * {@value #REFRESH_BATCH_SIZE} series of the same collection.
+     */
+    public void refreshDirty() {
+        if (!isEnabled()) {
+            return;
+        }
+        persistCoverage();
+        Map<String, List<String>> keysByCollection = new HashMap<>();
+        dirty.forEach((key, range) -> keysByCollection.computeIfAbsent(range.chunkCollection(), k -> new ArrayList<>()).add(key));
+        keysByCollection.forEach((chunkCollection, keys) -> {
+            for (int i = 0; i < keys.size(); i += REFRESH_BATCH_SIZE) {
+                refresh(chunkCollection, keys.subList(i, Math.min(keys.size(), i + REFRESH_BATCH_SIZE)));
+            }
+        });
+    }
+
+    private void refresh(String chunkCollection, List<String> keys) {
+        List<DirtyRange> ranges = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            DirtyRange range = dirty.remove(key);
+            if (range != null) {
+                refreshing.put(key, range);
+                ranges.add(range);
+            }
+        }
+        if (ranges.isEmpty()) {
+            return;
+        }
+        try {
+            recompute(chunkCollection, ranges);
+        } catch (Exception ex) {
+            log.warn("Failed to refresh the rollups of {} series of {}, retrying on the next refresh", ranges.size(), chunkCollection, ex);
+            ranges.forEach(range -> markDirty(range.chunkCollection(), range.path(), range.type(), range.start(), range.end()));
+        } finally {
+            ranges.forEach(range -> refreshing.remove(coverageKey(range.chunkCollection(), range.path()), range));
+        }
+    }
+
+    /**
+     * Brings the buckets overlapping {@code [startMillis, endMillis)} up to date before they are read: a dirty range
+     * of the series overlapping it is refreshed now, and a range being refreshed meanwhile is recomputed again over
+     * the read range, rather than reading the buckets before their refresh completes.
+     */
+    public void refreshBeforeRead(String chunkCollection, String path, long startMillis, long endMillis) {
+        String key = coverageKey(chunkCollection, path);
+        DirtyRange pending = dirty.get(key);
+        if (pending != null && pending.overlaps(startMillis, endMillis)) {
+            refresh(chunkCollection, List.of(key));
+        }
+        DirtyRange running = refreshing.get(key);
+        if (running != null && running.overlaps(startMillis, endMillis)) {
+            recompute(chunkCollection, path, running.type(),
+                    Math.max(running.start(), startMillis), Math.min(running.end(), endMillis));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdown();
+        try {
+            if (!refresher.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Rollup refresh still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        refreshDirty();
+    }
+
+    /**
+     * Returns the coarsest tier usable for buckets of {@code bucketMillis} starting at {@code startMillis}, if the
+     * series has rollups covering that start. A tier is usable when each of its buckets falls in a single
+     * downsampling bucket: the width is a multiple of the tier and the start is aligned on it, as tier buckets are
+     * aligned on the epoch.
+     */
+    public OptionalLong selectTier(String chunkCollection, String path, PulseDataType type, long bucketMillis, long startMillis) {
+        if (!isEnabled() || !supports(type)) {
+            return OptionalLong.empty();
+        }
+        Long from = coveredFrom(chunkCollection, path);
+        if (from == null) {
+            return OptionalLong.empty();
+        }
+        var tiers = getTiers();
+        for (int i = tiers.size() - 1; i >= 0; i--) {
+            long tier = tiers.get(i);
+            if (bucketMillis % tier == 0 && Math.floorMod(startMillis, tier) == 0 && from <= startMillis) {
+                return OptionalLong.of(tier);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Reads the buckets of a tier overlapping {@code [startMillis, endMillis)}, in time order.
+     */
+    public void read(String chunkCollection,
+                     String path,
+                     PulseDataType type,
+                     long tierMs,
+                     long startMillis,
+                     long endMillis,
+                     RollupBatchConsumer consumer) throws IOException {
+        var query = Filters.and(
+                Filters.eq(PulseRollup.PATH, path),
+                Filters.gte(PulseRollup.TS, RollupAggregator.floor(startMillis, tierMs)),
+                Filters.lt(PulseRollup.TS, endMillis)
+        );
+        List<PulseRollup> batch = new ArrayList<>(READ_BATCH_SIZE);
+        try (MongoCursor<Document> cursor = rollupCollection(chunkCollection, tierMs).find(query)
+                .sort(Sorts.ascending(PulseRollup.TS))
+                .batchSize(READ_BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                batch.add(toRollup(cursor.next(), type));
+                if (batch.size() >= READ_BATCH_SIZE) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(READ_BATCH_SIZE);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    /**
+     * Rebuilds the rollups of the given paths from their raw chunks over {@code [start, end)}, widened to whole
+     * buckets of each tier.
+     */
+    public RollupRebuildResult rebuild(List<String> paths, Instant start, Instant end) {
+        if (paths == null || paths.isEmpty()) {
+            throw new IllegalArgumentException("Paths cannot be null or empty");
+        }
+        if (start == null || end == null || !start.isBefore(end)) {
+            throw new IllegalArgumentException("Start must be before End");
+        }
+        if (!isEnabled()) {
+            throw new IllegalStateException("Rollups are disabled");
+        }
+
+        int series = 0;
+        long points = 0;
+        long buckets = 0;
+        for (PulseChunkMetadata metadata : chunkMetadataCrudService.findByPaths(paths)) {
+            if (!supports(metadata.getType()) || metadata.getCollectionName() == null) {
+                continue;
+            }
+            var result = rebuild(metadata.getCollectionName(), metadata.getPath(), metadata.getType(),
+                    start.toEpochMilli(), end.toEpochMilli());
+            series += result.series();
+            points += result.pointsRead();
+            buckets += result.bucketsWritten();
+        }
+        log.info("Rebuilt rollups of {} series from {} to {}: {} points read, {} buckets written", series, start, end, points, buckets);
+        return new RollupRebuildResult(series, points, buckets);
+    }
+
+    public RollupRebuildResult rebuild(String chunkCollection, String path, PulseDataType type, long startMillis, long endMillis) {
+        if (!isEnabled() || !supports(type)) {
+            return new RollupRebuildResult(0, 0, 0);
+        }
+        var result = recompute(chunkCollection, path, type, startMillis, endMillis);
+        var tiers = getTiers();
+        long coarsest = tiers.getLast();
+        extendCoverage(chunkCollection, path, RollupAggregator.floor(startMillis, coarsest), RollupAggregator.ceil(endMillis, coarsest));
+        return result;
+    }
+
+    private RollupRebuildResult recompute(String chunkCollection, String path, PulseDataType type, long startMillis, long endMillis) {
+        return recompute(chunkCollection, List.of(new DirtyRange(chunkCollection, path, type, startMillis, endMillis)));
+    }
+
+    /**
+     * Recomputes the buckets of all tiers overlapping the ranges of a batch of series of one collection, widened to
+     * whole buckets. Revisions, raw chunks and the buckets of the tier below are each read with one query for the
+     * whole batch, and the buckets of a tier written with shared bulk writes.
+     */
+    private RollupRebuildResult recompute(String chunkCollection, List<DirtyRange> ranges) {
+        var tiers = getTiers();
+        Map<String, PulseDataType> types = new HashMap<>();
+        ranges.forEach(range -> types.put(range.path(), range.type()));
+
+        // Revisions are read before any source, so that a write racing with the recompute is detected
+        List<TierBatch> batches = new ArrayList<>(tiers.size());
+        for (int i = 0; i < tiers.size(); i++) {
+            long tier = tiers.get(i);
+            boolean fromRaw = i == 0 || tier % tiers.get(i - 1) != 0;
+            var batch = new TierBatch(rollupCollection(chunkCollection, tier), tier, fromRaw, ranges);
+            batch.readRevisions();
+            batches.add(batch);
+        }
+
+        // Aggregate the raw points. Chunks come by path, then by start: the buckets ending before the start of the
+        // next chunk of their path are complete, whatever the length of the chunks
+        Map<String, List<TierRebuild>> rawRebuilds = new HashMap<>();
+        List<Bson> rawRanges = new ArrayList<>(ranges.size());
+        for (DirtyRange range : ranges) {
+            List<TierRebuild> rebuilds = batches.stream()
+                    .filter(batch -> batch.fromRaw)
+                    .map(batch -> batch.rebuilds.get(range.path()))
+                    .toList();
+            rawRebuilds.put(range.path(), rebuilds);
+            rawRanges.add(Filters.and(
+                    Filters.eq(PulseChunk.PATH, range.path()),
+                    Filters.lt(PulseChunk.TS_START, rebuilds.stream().mapToLong(rebuild -> rebuild.end).max().orElseThrow()),
+                    Filters.gt(PulseChunk.TS_END, rebuilds.stream().mapToLong(rebuild -> rebuild.start).min().orElseThrow())));
+        }
+        long points = 0;
+        try (MongoCursor<Document> cursor = mongoTemplate.getDb().getCollection(chunkCollection).find(Filters.or(rawRanges))
+                .sort(Sorts.ascending(PulseChunk.PATH, PulseChunk.TS_START))
+                .batchSize(appConfig.getExtractorStreamBatchSize())
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                String path = doc.getString(PulseChunk.PATH);
+                List<TierRebuild> rebuilds = rawRebuilds.get(path);
+                if (rebuilds == null) {
+                    continue;
+                }
+                long tsStart = doc.get(PulseChunk.TS_START, Number.class).longValue();
+                for (TierRebuild rebuild : rebuilds) {
+                    rebuild.drainBefore(tsStart);
+                }
+                var columns = ChunkDocumentReader.read(doc, types.get(path)).sorted();
+                for (int i = 0; i < columns.size(); i++) {
+                    if (!(columns.v().get(i) instanceof Number value)) {
+                        continue;
+                    }
+                    long ts = columns.ts().get(i);
+                    for (TierRebuild rebuild : rebuilds) {
+                        rebuild.add(ts, value);
+                    }
+                    points++;
+                }
+            }
+        }
+
+        // Then each tier in turn, coarser tiers merging the buckets just written below them
+        long buckets = 0;
+        boolean conflicts = false;
+        for (int i = 0; i < batches.size(); i++) {
+            var batch = batches.get(i);
+            if (!batch.fromRaw) {
+                forEachBucket(batches.get(i - 1).collection, batch, types, rollup -> {
+                    var rebuild = batch.rebuilds.get(rollup.path());
+                    rebuild.drainBefore(rollup.ts());
+                    rebuild.aggregator.merge(rollup);
+                });
+            }
+            batch.finish();
+            buckets += batch.written;
+            conflicts |= batch.conflicts;
+        }
+
+        if (conflicts) {
+            log.debug("Rollups of {} series of {} changed during their recompute, marking them dirty again", ranges.size(), chunkCollection);
+            ranges.forEach(range -> markDirty(range.chunkCollection(), range.path(), range.type(), range.start(), range.end()));
+        }
+        return new RollupRebuildResult(ranges.size(), points, buckets);
+    }
+
+    private void markDirty(String chunkCollection, String path, PulseDataType type, long start, long end) {
+        dirty.merge(coverageKey(chunkCollection, path), new DirtyRange(chunkCollection, path, type, start, end), DirtyRange::union);
+    }
+
+    /**
+     * Reads the buckets of {@code collection} over the ranges of the rebuilds of {@code batch}, by path then time.
+     */
+    private static void forEachBucket(MongoCollection<Document> collection,
+                                      TierBatch batch,
+                                      Map<String, PulseDataType> types,
+                                      Consumer<PulseRollup> consumer) {
+        try (MongoCursor<Document> cursor = collection.find(batch.bucketsBetween())
+                .sort(Sorts.ascending(PulseRollup.PATH, PulseRollup.TS))
+                .batchSize(READ_BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                consumer.accept(toRollup(doc, types.get(doc.getString(PulseRollup.PATH))));
+            }
+        }
+    }
+
+    private static Bson bucketsBetween(String path, long start, long end) {
+        return Filters.and(
+                Filters.eq(PulseRollup.PATH, path),
+                Filters.gte(PulseRollup.TS, start),
+                Filters.lt(PulseRollup.TS, end));
+    }
+
+    /**
+     * Recompute of the buckets of one tier for a batch of series. Each recomputed bucket replaces the stored one only
+     * if its revision did not change; stored buckets left without points are deleted under the same condition. The
+     * writes of the batch share bulk writes: a conflict marks the whole batch dirty again.
+     */
+    private static final class TierBatch {
+
+        private final MongoCollection<Document> collection;
+        private final boolean fromRaw;
+        private final Map<String, TierRebuild> rebuilds = new LinkedHashMap<>();
+        private final List<WriteModel<Document>> pending = new ArrayList<>();
+        private int expectedMatches = 0;
+        private int expectedDeletes = 0;
+        private long written = 0;
+        private boolean conflicts = false;
+
+        private TierBatch(MongoCollection<Document> collection, long tierMs, boolean fromRaw, List<DirtyRange> ranges) {
+            this.collection = collection;
+            this.fromRaw = fromRaw;
+            for (DirtyRange range : ranges) {
+                rebuilds.put(range.path(), new TierRebuild(this, range.path(), tierMs, range.start(), range.end()));
+            }
+        }
+
+        private Bson bucketsBetween() {
+            return Filters.or(rebuilds.values().stream()
+                    .map(rebuild -> RollupService.bucketsBetween(rebuild.path, rebuild.start, rebuild.end))
+                    .toList());
+        }
+
+        private void readRevisions() {
+            try (MongoCursor<Document> cursor = collection.find(bucketsBetween())
+                    .projection(Projections.include(PulseRollup.ID, PulseRollup.PATH, PulseRollup.REVISION))
+                    .batchSize(READ_BATCH_SIZE)
+                    .iterator()) {
+                while (cursor.hasNext()) {
+                    Document doc = cursor.next();
+                    TierRebuild rebuild = rebuilds.get(doc.getString(PulseRollup.PATH));
+                    if (rebuild == null) {
+                        continue;
+                    }
+                    Number revision = doc.get(PulseRollup.REVISION, Number.class);
+                    rebuild.revisions.put(doc.getString(PulseRollup.ID), revision == null ? TierRebuild.NO_REVISION : revision.longValue());
+                }
+            }
+        }
+
+        private void finish() {
+            rebuilds.values().forEach(TierRebuild::finish);
+            flush();
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            BulkWriteResult result;
+            boolean duplicates = false;
+            try {
+                result = collection.bulkWrite(new ArrayList<>(pending), new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException ex) {
+                // A bucket inserted concurrently
+                if (ex.getWriteErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                    throw ex;
+                }
+                result = ex.getWriteResult();
+                duplicates = true;
+            }
+            conflicts |= duplicates
+                    || result.getMatchedCount() < expectedMatches
+                    || result.getDeletedCount() < expectedDeletes;
+            pending.clear();
+            expectedMatches = 0;
+            expectedDeletes = 0;
+        }
+    }
+
+    /**
+     * Recompute of the buckets of one tier and series over a range, written through its {@link TierBatch}.
+     */
+    private static final class TierRebuild {
+
+        private static final long NO_REVISION = -1;
+
+        private final TierBatch batch;
+        private final String path;
+        private final long start;
+        private final long end;
+        private final RollupAggregator aggregator;
+        // Revision of the stored buckets by id, NO_REVISION for buckets written before revisions existed
+        private final Map<String, Long> revisions = new HashMap<>();
+
+        private TierRebuild(TierBatch batch, String path, long tierMs, long startMillis, long endMillis) {
+            this.batch = batch;
+            this.path = path;
+            this.start = RollupAggregator.floor(startMillis, tierMs);
+            this.end = RollupAggregator.ceil(endMillis, tierMs);
+            this.aggregator = new RollupAggregator(path, tierMs);
+        }
+
+        private void add(long ts, Number value) {
+            if (ts >= start && ts < end) {
+                aggregator.add(ts, value);
+            }
+        }
+
+        private void drainBefore(long ts) {
+            for (PulseRollup rollup : aggregator.drainBefore(ts)) {
+                String id = PulseRollup.documentId(rollup.path(), rollup.ts());
+                Long revision = revisions.remove(id);
+                if (revision == null) {
+                    batch.pending.add(new InsertOneModel<>(toDocument(rollup).append(PulseRollup.REVISION, 0L)));
+                } else {
+                    batch.pending.add(new ReplaceOneModel<>(sameRevision(id, revision),
+                            toDocument(rollup).append(PulseRollup.REVISION, revision + 1)));
+                    batch.expectedMatches++;
+                }
+                batch.written++;
+            }
+            if (batch.pending.size() >= WRITE_BATCH_SIZE) {
+                batch.flush();
+            }
+        }
+
+        private void finish() {
+            drainBefore(Long.MAX_VALUE);
+            revisions.forEach((id, revision) -> {
+                batch.pending.add(new DeleteOneModel<>(sameRevision(id, revision)));
+                batch.expectedDeletes++;
+            });
+            revisions.clear();
+        }
+
+        private static Bson sameRevision(String id, long revision) {
+            return Filters.and(
+                    Filters.eq(PulseRollup.ID, id),
+                    revision == NO_REVISION ? Filters.exists(PulseRollup.REVISION, false) : Filters.eq(PulseRollup.REVISION, revision));
+        }
+    }
+
+    private MongoCollection<Document> rollupCollection(String chunkCollection, long tierMs) {
+        String name = collectionName(chunkCollection, tierMs);
+        MongoCollection<Document> collection = mongoTemplate.getDb().getCollection(name);
+        if (indexedCollections.add(name)) {
+            try {
+                collection.createIndex(Indexes.ascending(PulseRollup.PATH, PulseRollup.TS));
+            } catch (Exception ex) {
+                indexedCollections.remove(name);
+                log.warn("Failed to ensure index on {}", name, ex);
+            }
+        }
+        return collection;
+    }
+
+    private Long coveredFrom(String chunkCollection, String path) {
+        String key = coverageKey(chunkCollection, path);
+        Long cached = coverage.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Document doc = mongoTemplate.getDb().getCollection(COVERAGE_COLLECTION).find(Filters.eq("_id", key)).first();
+        Number from = doc == null ? null : doc.get(COVERAGE_FROM, Number.class);
+        if (from == null) {
+            // Not cached: the series may get rollups later, e.g. from another node
+            return null;
+        }
+        return coverage.merge(key, from.longValue(), Math::min);
+    }
+
+    /**
+     * Records the coverage start of a series on its first write, without blocking the write: the new series are
+     * recorded together by the next refresh.
+     */
+    private void markCovered(String chunkCollection, String path, long from) {
+        String key = coverageKey(chunkCollection, path);
+        if (coverage.containsKey(key)) {
+            return;
+        }
+        pendingCoverage.merge(key, from, Math::min);
+    }
+
+    private void persistCoverage() {
+        Map<String, Long> batch = new HashMap<>();
+        for (String key : List.copyOf(pendingCoverage.keySet())) {
+            Long from = pendingCoverage.remove(key);
+            if (from != null) {
+                batch.put(key, from);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        var coverageCollection = mongoTemplate.getDb().getCollection(COVERAGE_COLLECTION);
+        try {
+            // Only the first write sets the coverage: older raw data, written before rollups existed, is not covered
+            List<WriteModel<Document>> upserts = batch.entrySet().stream()
+                    .<WriteModel<Document>>map(entry -> new UpdateOneModel<>(Filters.eq("_id", entry.getKey()),
+                            Updates.setOnInsert(COVERAGE_FROM, entry.getValue()), UPSERT))
+                    .toList();
+            coverageCollection.bulkWrite(upserts, new BulkWriteOptions().ordered(false));
+            try (MongoCursor<Document> cursor = coverageCollection.find(Filters.in("_id", batch.keySet())).iterator()) {
+                while (cursor.hasNext()) {
+                    Document doc = cursor.next();
+                    Number stored = doc.get(COVERAGE_FROM, Number.class);
+                    if (stored != null) {
+                        coverage.merge(doc.getString("_id"), stored.longValue(), Math::min);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to record the rollup coverage of {} series, retrying on the next refresh", batch.size(), ex);
+            batch.forEach((key, from) -> pendingCoverage.merge(key, from, Math::min));
+        }
+    }
+
+    private void extendCoverage(String chunkCollection, String path, long rebuiltStart, long rebuiltEnd) {
+        String key = coverageKey(chunkCollection, path);
+        var coverageCollection = mongoTemplate.getDb().getCollection(COVERAGE_COLLECTION);
+        Document doc = coverageCollection.find(Filters.eq("_id", key)).first();
+        Number from = doc == null ? null : doc.get(COVERAGE_FROM, Number.class);
+        // A rebuilt range extends the coverage only when it reaches the covered one
+        if (from != null && rebuiltEnd < from.longValue()) {
+            return;
+        }
+        coverageCollection.updateOne(Filters.eq("_id", key), Updates.min(COVERAGE_FROM, rebuiltStart), UPSERT);
+        coverage.merge(key, rebuiltStart, Math::min);
+    }
+
+    private static String coverageKey(String chunkCollection, String path) {
+        return "%s|%s".formatted(chunkCollection, path);
+    }
+
+    private static Document toDocument(PulseRollup rollup) {
+        return new Document(PulseRollup.ID, PulseRollup.documentId(rollup.path(), rollup.ts()))
+                .append(PulseRollup.PATH, rollup.path())
+                .append(PulseRollup.TS, rollup.ts())
+                .append(PulseRollup.COUNT, rollup.count())
+                .append(PulseRollup.SUM, rollup.sum())
+                .append(PulseRollup.MIN_TS, rollup.minTs())
+                .append(PulseRollup.MIN, rollup.min())
+                .append(PulseRollup.MAX_TS, rollup.maxTs())
+                .append(PulseRollup.MAX, rollup.max())
+                .append(PulseRollup.FIRST_TS, rollup.firstTs())
+                .append(PulseRollup.FIRST, rollup.first())
+                .append(PulseRollup.LAST_TS, rollup.lastTs())
+                .append(PulseRollup.LAST, rollup.last());
+    }
+
+    private static PulseRollup toRollup(Document doc, PulseDataType type) {
+        return new PulseRollup(
+                doc.getString(PulseRollup.PATH),
+                longOf(doc, PulseRollup.TS),
+                longOf(doc, PulseRollup.COUNT),
+                doc.get(PulseRollup.SUM, Number.class).doubleValue(),
+                longOf(doc, PulseRollup.MIN_TS),
+                coerce(type, doc.get(PulseRollup.MIN, Number.class)),
+                longOf(doc, PulseRollup.MAX_TS),
+                coerce(type, doc.get(PulseRollup.MAX, Number.class)),
+                longOf(doc, PulseRollup.FIRST_TS),
+                coerce(type, doc.get(PulseRollup.FIRST, Number.class)),
+                longOf(doc, PulseRollup.LAST_TS),
+                coerce(type, doc.get(PulseRollup.LAST, Number.class)));
+    }
+
+    private static long longOf(Document doc, String field) {
+        Number value = doc.get(field, Number.class);
+        return value == null ? 0 : value.longValue();
+    }
+
+    private static Number coerce(PulseDataType type, Number value) {
+        if (value == null) {
+            return null;
+        }
+        return type == PulseDataType.LONG ? (Number) value.longValue() : (Number) value.doubleValue();
+    }
+}
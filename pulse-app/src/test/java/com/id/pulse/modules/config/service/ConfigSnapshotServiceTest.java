@@ -0,0 +1,84 @@
+package com.id.pulse.modules.config.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.alarms.service.AlarmsCrudService;
+import com.id.pulse.modules.channel.service.ChannelGroupsCrudService;
+import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.measures.service.MeasuresCrudService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConfigSnapshotServiceTest {
+
+    @Mock
+    private ChannelGroupsCrudService channelGroupsCrudService;
+    @Mock
+    private ChannelsCrudService channelsCrudService;
+    @Mock
+    private MeasuresCrudService measuresCrudService;
+    @Mock
+    private AlarmsCrudService alarmsCrudService;
+    @Mock
+    private AppConfig appConfig;
+
+    private ConfigSnapshotService service;
+
+    @BeforeEach
+    void setUp() {
+        when(channelGroupsCrudService.findAll()).thenReturn(List.of());
+        when(channelsCrudService.findAll()).thenReturn(List.of());
+        when(measuresCrudService.findAll()).thenReturn(List.of());
+        when(alarmsCrudService.findAll()).thenReturn(List.of());
+        service = new ConfigSnapshotService(channelGroupsCrudService, channelsCrudService, measuresCrudService,
+                alarmsCrudService, appConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void burstOfChangesIsRebuiltOnce() {
+        when(appConfig.getConfigSnapshotDebounceMs()).thenReturn(100L);
+        assertEquals(1, service.get().version());
+
+        for (int i = 0; i < 20; i++) {
+            service.onConfigChanged(PulseConfigChangedEvent.forPaths(Set.of("plant.m" + i)));
+        }
+        // Still the previous snapshot, nothing loaded on the writers' thread
+        assertEquals(1, service.get().version());
+
+        verify(channelGroupsCrudService, after(1000).times(2)).findAll();
+        assertEquals(2, service.get().version());
+    }
+
+    @Test
+    void failedRebuildIsRescheduled() {
+        when(appConfig.getConfigSnapshotDebounceMs()).thenReturn(10L);
+        service.get();
+        when(measuresCrudService.findAll())
+                .thenThrow(new IllegalStateException("down"))
+                .thenReturn(List.of());
+
+        service.onConfigChanged(PulseConfigChangedEvent.all());
+
+        verify(measuresCrudService, after(1000).times(3)).findAll();
+        assertEquals(3, service.get().version());
+    }
+}
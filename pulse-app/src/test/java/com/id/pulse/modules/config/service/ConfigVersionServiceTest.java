@@ -0,0 +1,128 @@
+package com.id.pulse.modules.config.service;
+
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConfigVersionServiceTest {
+
+    private static final PulseConfigChangedEvent LOCAL_CHANGE = PulseConfigChangedEvent.forPaths(Set.of("plant.temp"));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private FindIterable<Document> findIterable;
+
+    private ConfigVersionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection(ConfigVersionService.COLLECTION_NAME)).thenReturn(collection);
+        service = new ConfigVersionService(mongoTemplate, eventPublisher);
+    }
+
+    private void givenStoredVersion(long version) {
+        when(collection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.first()).thenReturn(new Document(ConfigVersionService.VERSION, version));
+    }
+
+    private void givenBumpedVersion(long version) {
+        when(collection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(new Document(ConfigVersionService.VERSION, version));
+    }
+
+    @Test
+    void firstPollOnlyRecordsTheVersion() {
+        givenStoredVersion(3);
+
+        service.pollVersion();
+
+        assertEquals(3, service.getKnownVersion());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void pollInvalidatesAllWhenAnotherNodeChangedTheConfiguration() {
+        givenStoredVersion(3);
+        service.pollVersion();
+
+        when(findIterable.first()).thenReturn(new Document(ConfigVersionService.VERSION, 5L));
+        service.pollVersion();
+
+        assertEquals(5, service.getKnownVersion());
+        verify(eventPublisher).publishEvent(PulseConfigChangedEvent.all());
+    }
+
+    @Test
+    void localChangePublishesItsOwnEventOnly() {
+        givenStoredVersion(3);
+        service.pollVersion();
+        givenBumpedVersion(4);
+
+        service.notifyChanged(LOCAL_CHANGE);
+
+        assertEquals(4, service.getKnownVersion());
+        verify(eventPublisher).publishEvent(LOCAL_CHANGE);
+        verify(eventPublisher, never()).publishEvent(PulseConfigChangedEvent.all());
+    }
+
+    @Test
+    void localChangeAfterRemoteChangesAlsoInvalidatesAll() {
+        givenStoredVersion(3);
+        service.pollVersion();
+        givenBumpedVersion(6);
+
+        service.notifyChanged(LOCAL_CHANGE);
+
+        verify(eventPublisher).publishEvent(LOCAL_CHANGE);
+        verify(eventPublisher).publishEvent(PulseConfigChangedEvent.all());
+    }
+
+    @Test
+    void stalePollAfterLocalChangeIsIgnored() {
+        givenStoredVersion(3);
+        service.pollVersion();
+        givenBumpedVersion(4);
+        service.notifyChanged(LOCAL_CHANGE);
+
+        // Read started before the bump
+        service.pollVersion();
+
+        assertEquals(4, service.getKnownVersion());
+        verify(eventPublisher, never()).publishEvent(PulseConfigChangedEvent.all());
+    }
+
+    @Test
+    void failedBumpStillNotifiesLocalListeners() {
+        when(collection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenThrow(new IllegalStateException("down"));
+
+        service.notifyChanged(LOCAL_CHANGE);
+
+        assertEquals(-1, service.getKnownVersion());
+        verify(eventPublisher).publishEvent(LOCAL_CHANGE);
+    }
+}
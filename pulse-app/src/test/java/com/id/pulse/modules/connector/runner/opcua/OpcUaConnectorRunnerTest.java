@@ -0,0 +1,248 @@
+package com.id.pulse.modules.connector.runner.opcua;
+
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.modules.channel.model.PulseChannel;
+import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.connector.model.PulseConnector;
+import com.id.pulse.modules.connector.model.enums.OpcUaAcquisitionMode;
+import com.id.pulse.modules.connector.model.enums.PulseConnectorStatus;
+import com.id.pulse.modules.connector.model.enums.PulseConnectorType;
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.EndpointConfig;
+import org.eclipse.milo.opcua.sdk.server.ManagedNamespaceWithLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServerConfig;
+import org.eclipse.milo.opcua.sdk.server.items.DataItem;
+import org.eclipse.milo.opcua.sdk.server.items.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.NodeIds;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.transport.TransportProfile;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.transport.server.tcp.OpcTcpServerTransport;
+import org.eclipse.milo.opcua.stack.transport.server.tcp.OpcTcpServerTransportConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the connector against an embedded Milo server exposing /Objects/Device/{Temperature,Pressure,Counter}.
+ */
+class OpcUaConnectorRunnerTest {
+
+    private static final String NAMESPACE_URI = "urn:pulse:test";
+    private static final PulseChannelGroup GROUP = PulseChannelGroup.builder().code("G1").build();
+
+    private static OpcUaServer server;
+    private static TestNamespace namespace;
+    private static String endpointUrl;
+
+    private OpcUaConnectorRunner runner;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var endpoint = EndpointConfig.newBuilder()
+                .setBindAddress("localhost")
+                .setHostname("localhost")
+                .setBindPort(port)
+                .setPath("/pulse")
+                .setSecurityPolicy(SecurityPolicy.None)
+                .setSecurityMode(MessageSecurityMode.None)
+                .setTransportProfile(TransportProfile.TCP_UASC_UABINARY)
+                .addTokenPolicy(OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS)
+                .build();
+        var config = OpcUaServerConfig.builder()
+                .setApplicationUri(NAMESPACE_URI)
+                .setApplicationName(LocalizedText.english("Pulse test server"))
+                .setProductUri(NAMESPACE_URI)
+                .setEndpoints(Set.of(endpoint))
+                .build();
+        server = new OpcUaServer(config,
+                transportProfile -> new OpcTcpServerTransport(OpcTcpServerTransportConfig.newBuilder().build()));
+        namespace = new TestNamespace(server);
+        namespace.startup();
+        server.startup().get();
+        endpointUrl = "opc.tcp://localhost:%d/pulse".formatted(port);
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        namespace.shutdown();
+        server.shutdown().get();
+    }
+
+    @AfterEach
+    void closeRunner() {
+        if (runner != null) {
+            runner.close();
+        }
+    }
+
+    private void open(OpcUaAcquisitionMode mode) {
+        runner = new OpcUaConnectorRunner();
+        var connector = PulseConnector.builder()
+                .code("opcua")
+                .type(PulseConnectorType.OPCUA)
+                .params(Map.of(
+                        "endpointUrl", endpointUrl,
+                        "acquisitionMode", mode.name(),
+                        "readBatchSize", 2,
+                        "publishingIntervalMs", 50))
+                .build();
+        assertEquals(PulseConnectorStatus.CONNECTED, runner.open(connector));
+    }
+
+    private static PulseChannel channel(String path, String sourcePath, PulseDataType dataType) {
+        return PulseChannel.builder()
+                .path(path)
+                .channelGroupCode(GROUP.getCode())
+                .sourcePath(sourcePath)
+                .dataType(dataType)
+                .build();
+    }
+
+    // One channel per way of addressing a node, plus one the server does not have
+    private static Map<PulseChannelGroup, List<PulseChannel>> channels() {
+        return Map.of(GROUP, List.of(
+                channel("plant.temp", "ns=%d;s=Device/Temperature".formatted(namespace.index()), PulseDataType.DOUBLE),
+                channel("plant.pressure", "/0:Objects/%d:Device/%d:Pressure".formatted(namespace.index(), namespace.index()), PulseDataType.DOUBLE),
+                channel("plant.counter", "/Objects/Device/Counter", PulseDataType.LONG),
+                channel("plant.missing", "/0:Objects/%d:Device/%d:Missing".formatted(namespace.index(), namespace.index()), PulseDataType.DOUBLE)));
+    }
+
+    private static Map<String, Object> valuesByPath(List<PulseDataPoint> points) {
+        return points.stream().collect(Collectors.toMap(PulseDataPoint::getPath, PulseDataPoint::getVal));
+    }
+
+    private void assertServerValues(List<PulseDataPoint> points) {
+        var values = valuesByPath(points);
+        assertEquals(3, values.size());
+        assertEquals(21.5, (double) values.get("plant.temp"), 1e-9);
+        assertEquals(1.2, (double) values.get("plant.pressure"), 1e-9);
+        assertEquals(42L, values.get("plant.counter"));
+        assertFalse(values.containsKey("plant.missing"));
+        points.forEach(point -> assertEquals(GROUP.getCode(), point.getGroupCode()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OpcUaAcquisitionMode.class, names = {"POLL_SINGLE", "POLL_BATCH"})
+    void pollReadsEveryResolvedNode(OpcUaAcquisitionMode mode) {
+        open(mode);
+
+        assertServerValues(runner.query(channels()).join());
+        // Second poll from the resolved node ids, the missing path is not looked up again
+        assertServerValues(runner.query(channels()).join());
+    }
+
+    @Test
+    void subscriptionServesTheValuesPushedByTheServer() throws InterruptedException {
+        open(OpcUaAcquisitionMode.SUBSCRIPTION);
+
+        // The first query creates the monitored items, values arrive with the next publications
+        List<PulseDataPoint> points = runner.query(channels()).join();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (points.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            points = runner.query(channels()).join();
+        }
+        assertServerValues(points);
+
+        namespace.setValue("Temperature", 22.0);
+        deadline = System.currentTimeMillis() + 10_000;
+        while ((double) valuesByPath(points).get("plant.temp") != 22.0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            points = runner.query(channels()).join();
+        }
+        assertEquals(22.0, (double) valuesByPath(points).get("plant.temp"), 1e-9);
+    }
+
+    private static final class TestNamespace extends ManagedNamespaceWithLifecycle {
+
+        private final SubscriptionModel subscriptionModel;
+        private final Map<String, UaVariableNode> variables = new ConcurrentHashMap<>();
+
+        private TestNamespace(OpcUaServer server) {
+            super(server, NAMESPACE_URI);
+            subscriptionModel = new SubscriptionModel(server, this);
+            getLifecycleManager().addLifecycle(subscriptionModel);
+            getLifecycleManager().addStartupTask(this::addNodes);
+        }
+
+        private int index() {
+            return getNamespaceIndex().intValue();
+        }
+
+        private void addNodes() {
+            var folder = new UaFolderNode(getNodeContext(), newNodeId("Device"), newQualifiedName("Device"),
+                    LocalizedText.english("Device"));
+            getNodeManager().addNode(folder);
+            folder.addReference(new Reference(folder.getNodeId(), NodeIds.Organizes, NodeIds.ObjectsFolder.expanded(), false));
+
+            Map<String, Object> initial = Map.of("Temperature", 21.5, "Pressure", 1.2, "Counter", 42L);
+            Map<String, NodeId> dataTypes = Map.of("Temperature", NodeIds.Double, "Pressure", NodeIds.Double, "Counter", NodeIds.Int64);
+            initial.forEach((name, value) -> {
+                var node = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
+                        .setNodeId(newNodeId("Device/" + name))
+                        .setAccessLevel(AccessLevel.READ_WRITE)
+                        .setBrowseName(newQualifiedName(name))
+                        .setDisplayName(LocalizedText.english(name))
+                        .setDataType(dataTypes.get(name))
+                        .setTypeDefinition(NodeIds.BaseDataVariableType)
+                        .build();
+                node.setValue(new DataValue(new Variant(value)));
+                getNodeManager().addNode(node);
+                folder.addOrganizes(node);
+                variables.put(name, node);
+            });
+        }
+
+        private void setValue(String name, Object value) {
+            variables.get(name).setValue(new DataValue(new Variant(value)));
+        }
+
+        @Override
+        public void onDataItemsCreated(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsCreated(dataItems);
+        }
+
+        @Override
+        public void onDataItemsModified(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsModified(dataItems);
+        }
+
+        @Override
+        public void onDataItemsDeleted(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsDeleted(dataItems);
+        }
+
+        @Override
+        public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+            subscriptionModel.onMonitoringModeChanged(monitoredItems);
+        }
+    }
+}
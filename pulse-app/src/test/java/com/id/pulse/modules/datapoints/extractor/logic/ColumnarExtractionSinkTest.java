@@ -0,0 +1,62 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import com.id.pulse.utils.PulseColumnarFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarExtractionSinkTest {
+
+    @Test
+    void roundTripThroughTheColumnarReader() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var sink = new ColumnarExtractionSink(out);
+        sink.write("G1", "plant.temp", PulseDataType.DOUBLE,
+                new ChunkColumns(List.of(1L, 2L, 3L), Arrays.asList(20.5, null, 21.0), Arrays.asList(null, null, null)));
+        sink.write("G1", "plant.state", PulseDataType.STRING,
+                new ChunkColumns(List.of(4L), List.of("RUN"), Arrays.asList("b1")));
+        sink.complete();
+
+        var reader = PulseColumnarFormat.reader(new ByteArrayInputStream(out.toByteArray()));
+
+        var temp = reader.next();
+        assertEquals("G1", temp.groupCode());
+        assertEquals("plant.temp", temp.path());
+        assertEquals(PulseDataType.DOUBLE, temp.type());
+        assertArrayEquals(new long[]{1L, 2L, 3L}, temp.ts());
+        assertEquals(20.5, temp.doubles()[0]);
+        assertTrue(temp.isNull(1));
+        assertFalse(temp.isNull(2));
+        assertEquals(21.0, temp.doubles()[2]);
+
+        var state = reader.next();
+        assertEquals(PulseDataType.STRING, state.type());
+        assertArrayEquals(new String[]{"RUN"}, state.strings());
+
+        assertNull(reader.next());
+        assertTrue(reader.isEnded());
+        assertEquals(2, reader.getFrames());
+        assertEquals(4, reader.getPoints());
+    }
+
+    @Test
+    void truncatedStreamIsDetected() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var sink = new ColumnarExtractionSink(out);
+        sink.write("G1", "plant.count", PulseDataType.LONG,
+                new ChunkColumns(List.of(1L), List.of(7L), Arrays.asList((String) null)));
+
+        var reader = PulseColumnarFormat.reader(new ByteArrayInputStream(out.toByteArray()));
+
+        assertArrayEquals(new long[]{7L}, reader.next().longs());
+        assertThrows(EOFException.class, reader::next);
+    }
+}
@@ -1,8 +1,11 @@
 package com.id.pulse.modules.datapoints.extractor.logic;
 
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
 import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -27,4 +30,35 @@ class DataExtractorProcessorTest {
         assertTrue(result.containsKey("Measures/BayesTop12"));
         assertEquals(1_000L, result.get("Measures/BayesTop12").getSamplingRate());
     }
+
+    private static ChunkReadCache.Hit hit(long tsStart, long tsEnd) {
+        return new ChunkReadCache.Hit("c" + tsStart, tsStart, tsEnd, new ChunkColumns(List.of(), List.of(), List.of()));
+    }
+
+    @Test
+    void cachedRunsGroupAdjacentChunks() {
+        var runs = DataExtractorProcessor.cachedRuns(List.of(hit(0, 1000), hit(1000, 2000), hit(3000, 4000)));
+
+        assertEquals(List.of(2, 1), runs.stream().map(List::size).toList());
+    }
+
+    @Test
+    void cachedRunsKeepTheLargestRunsInTimeOrder() {
+        List<ChunkReadCache.Hit> hits = new ArrayList<>();
+        // One run of three chunks, then isolated chunks separated by gaps
+        hits.add(hit(0, 1000));
+        hits.add(hit(1000, 2000));
+        hits.add(hit(2000, 3000));
+        for (int i = 0; i < DataExtractorProcessor.MAX_EXCLUDED_RUNS + 2; i++) {
+            long tsStart = 10_000L + i * 2000L;
+            hits.add(hit(tsStart, tsStart + 1000));
+        }
+
+        var runs = DataExtractorProcessor.cachedRuns(hits);
+
+        assertEquals(DataExtractorProcessor.MAX_EXCLUDED_RUNS, runs.size());
+        assertEquals(3, runs.getFirst().size());
+        var starts = runs.stream().map(run -> run.getFirst().tsStart()).toList();
+        assertEquals(starts.stream().sorted().toList(), starts);
+    }
 }
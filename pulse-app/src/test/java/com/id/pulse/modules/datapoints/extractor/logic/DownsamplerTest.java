@@ -0,0 +1,95 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.model.PulseExtractorReq;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.timeseries.model.enums.PulseDownsamplingMode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownsamplerTest {
+
+    private record Point(long ts, Object value) {
+    }
+
+    private static List<Point> run(DownsamplingSpec spec, PulseDataType type, long[] ts, Object[] values) throws Exception {
+        List<Point> out = new ArrayList<>();
+        var downsampler = new Downsampler(spec, type, (t, v) -> out.add(new Point(t, v)));
+        for (int i = 0; i < ts.length; i++) {
+            downsampler.add(ts[i], values[i]);
+        }
+        downsampler.finish();
+        return out;
+    }
+
+    @Test
+    void minMaxKeepsExtremesInTimeOrder() throws Exception {
+        var spec = new DownsamplingSpec(PulseDownsamplingMode.MIN_MAX, 10, 0, 100);
+
+        var out = run(spec, PulseDataType.DOUBLE,
+                new long[]{0, 3, 6, 10, 12, 15},
+                new Object[]{5.0, 9.0, 1.0, 2.0, 2.0, 2.0});
+
+        assertEquals(List.of(new Point(3, 9.0), new Point(6, 1.0), new Point(10, 2.0)), out);
+    }
+
+    @Test
+    void avgIsStampedAtBucketStartAndDropsPointsOutsideRange() throws Exception {
+        var spec = new DownsamplingSpec(PulseDownsamplingMode.AVG, 10, 100, 120);
+
+        var out = run(spec, PulseDataType.LONG,
+                new long[]{95, 100, 105, 110, 119, 120},
+                new Object[]{100L, 1L, 3L, 10L, 20L, 100L});
+
+        assertEquals(List.of(new Point(100, 2.0), new Point(110, 15.0)), out);
+        assertEquals(PulseDataType.DOUBLE, Downsampler.outputType(PulseDownsamplingMode.AVG, PulseDataType.LONG));
+    }
+
+    @Test
+    void nonNumericSeriesKeepLastPointOfEachBucket() throws Exception {
+        var spec = new DownsamplingSpec(PulseDownsamplingMode.LTTB, 10, 0, 100);
+
+        var out = run(spec, PulseDataType.STRING,
+                new long[]{1, 5, 12},
+                new Object[]{"a", "b", "c"});
+
+        assertEquals(List.of(new Point(5, "b"), new Point(12, "c")), out);
+    }
+
+    @Test
+    void lttbKeepsEndsAndPeaks() throws Exception {
+        var spec = new DownsamplingSpec(PulseDownsamplingMode.LTTB, 10, 0, 40);
+        long[] ts = new long[40];
+        Object[] values = new Object[40];
+        for (int i = 0; i < 40; i++) {
+            ts[i] = i;
+            values[i] = i == 15 ? 100.0 : 0.0;
+        }
+
+        var out = run(spec, PulseDataType.DOUBLE, ts, values);
+
+        assertEquals(new Point(0, 0.0), out.getFirst());
+        assertEquals(new Point(39, 0.0), out.getLast());
+        assertTrue(out.contains(new Point(15, 100.0)));
+        assertTrue(out.size() <= 5);
+    }
+
+    @Test
+    void targetPointsSetsTheBucketWidth() {
+        var req = PulseExtractorReq.builder()
+                .start(Instant.ofEpochMilli(0))
+                .end(Instant.ofEpochMilli(3_000_000))
+                .targetPoints(1500)
+                .build();
+
+        var spec = DownsamplingSpec.of(req);
+
+        assertEquals(PulseDownsamplingMode.MIN_MAX, spec.mode());
+        assertEquals(4_000, spec.bucketMillis());
+        assertNull(DownsamplingSpec.of(PulseExtractorReq.builder().start(Instant.EPOCH).end(Instant.now()).build()));
+    }
+}
@@ -0,0 +1,106 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.id.pulse.config.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExtractionSchedulerTest {
+
+    private AppConfig appConfig;
+    private ExtractionScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        appConfig = mock(AppConfig.class);
+        when(appConfig.getExtractorReadThreads()).thenReturn(2);
+        when(appConfig.getExtractorMaxCursors()).thenReturn(8);
+        when(appConfig.getExtractorMaxCursorsPerRequest()).thenReturn(8);
+        scheduler = new ExtractionScheduler(appConfig);
+    }
+
+    private static List<ExtractionScheduler.CursorTask<Integer>> trackedTasks(int count, AtomicInteger running, AtomicInteger maxRunning) {
+        List<ExtractionScheduler.CursorTask<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return index;
+            });
+        }
+        return tasks;
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void invokeAllBoundsReadsInFlightAndKeepsTaskOrder() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        var tasks = trackedTasks(10, running, maxRunning);
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), scheduler.invokeAll(tasks));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    void invokeAllRethrowsReadFailures() {
+        List<ExtractionScheduler.CursorTask<Integer>> tasks = List.of(
+                () -> 1,
+                () -> {
+                    throw new IOException("cursor closed");
+                });
+
+        var ex = assertThrows(UncheckedIOException.class, () -> scheduler.invokeAll(tasks));
+        assertEquals("cursor closed", ex.getCause().getMessage());
+    }
+
+    @Test
+    void invokeAllCapsTheCursorsOfOneRequest() {
+        when(appConfig.getExtractorReadThreads()).thenReturn(16);
+        when(appConfig.getExtractorMaxCursorsPerRequest()).thenReturn(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        assertEquals(20, scheduler.invokeAll(trackedTasks(20, running, maxRunning)).size());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    void invokeAllStopsSubmittingAfterAFailure() {
+        when(appConfig.getExtractorReadThreads()).thenReturn(1);
+        AtomicInteger started = new AtomicInteger();
+        List<ExtractionScheduler.CursorTask<Integer>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            started.incrementAndGet();
+            throw new IllegalStateException("bad query");
+        });
+        for (int i = 0; i < 5; i++) {
+            tasks.add(started::incrementAndGet);
+        }
+
+        assertThrows(IllegalStateException.class, () -> scheduler.invokeAll(tasks));
+        assertEquals(1, started.get());
+    }
+}
@@ -0,0 +1,32 @@
+package com.id.pulse.modules.datapoints.extractor.logic;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NdjsonExtractionSinkTest {
+
+    @Test
+    void writesOneLinePerChunkAndAnEndLine() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var sink = new NdjsonExtractionSink(new JsonFactory(), out);
+
+        sink.write("G1", "plant.temp", PulseDataType.DOUBLE, new ChunkColumns(List.of(1L, 2L), List.of(20.5, 21.0), Arrays.asList(null, null)));
+        sink.write("G1", "plant.on", PulseDataType.BOOLEAN, new ChunkColumns(List.of(3L), List.of(true), Arrays.asList("b1")));
+        sink.complete();
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"groupCode\":\"G1\",\"path\":\"plant.temp\",\"ts\":[1,2],\"v\":[20.5,21.0]}", lines[0]);
+        assertEquals("{\"groupCode\":\"G1\",\"path\":\"plant.on\",\"ts\":[3],\"v\":[true]}", lines[1]);
+        assertEquals("{\"end\":true,\"chunks\":2,\"points\":3}", lines[2]);
+    }
+}
@@ -0,0 +1,131 @@
+package com.id.pulse.modules.datapoints.ingestor.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.id.pulse.modules.timeseries.model.PulseIngestorWriteResult;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkWriteBufferTest {
+
+    private static final PulseChunkMetadata METADATA = PulseChunkMetadata.builder()
+            .path("p")
+            .collectionName("col")
+            .type(PulseDataType.LONG)
+            .samplingRate(1L)
+            .build();
+
+    @Mock
+    private AppConfig appConfig;
+    @Mock
+    private DataIngestor dataIngestor;
+    @Captor
+    private ArgumentCaptor<Collection<PrimitiveChunkBuilder>> chunksCaptor;
+
+    @Test
+    void failedFlushIsRetriedInFrontOfNewerPoints() {
+        var buffer = givenBuffer(100);
+        when(appConfig.getIngestorWriteBehindFlushPoints()).thenReturn(100);
+        when(appConfig.getIngestorWriteBehindOfferTimeoutMs()).thenReturn(10L);
+        when(appConfig.getIngestorWriteBehindMaxFlushAttempts()).thenReturn(5);
+        givenOffers(List.of(chunk(1L)), List.of(chunk(2L)));
+        doThrow(new IllegalStateException("down"))
+                .doReturn(PulseIngestorWriteResult.builder().build())
+                .when(dataIngestor).writeChunks(eq("col"), any(), anyCollection());
+
+        offer(buffer);
+        buffer.drain();
+        offer(buffer);
+        buffer.drain();
+
+        verify(dataIngestor, times(2)).writeChunks(eq("col"), any(), chunksCaptor.capture());
+        var retried = new ArrayList<>(chunksCaptor.getAllValues().get(1)).getFirst();
+        assertEquals(2, retried.size());
+        assertEquals(1L, retried.ts(0));
+        assertEquals(2L, retried.ts(1));
+        assertEquals(0, buffer.getBufferedPoints());
+    }
+
+    @Test
+    void pointsAreDroppedAfterMaxFlushAttempts() {
+        var buffer = givenBuffer(100);
+        when(appConfig.getIngestorWriteBehindFlushPoints()).thenReturn(100);
+        when(appConfig.getIngestorWriteBehindOfferTimeoutMs()).thenReturn(10L);
+        when(appConfig.getIngestorWriteBehindMaxFlushAttempts()).thenReturn(2);
+        givenOffers(List.of(chunk(1L)));
+        doThrow(new IllegalStateException("down")).when(dataIngestor).writeChunks(eq("col"), any(), anyCollection());
+
+        offer(buffer);
+        buffer.drain();
+        assertEquals(1, buffer.getBufferedPoints());
+        buffer.drain();
+        buffer.drain();
+
+        verify(dataIngestor, times(2)).writeChunks(eq("col"), any(), anyCollection());
+        assertEquals(0, buffer.getBufferedPoints());
+    }
+
+    @Test
+    void fullBufferWritesSynchronouslyAfterBufferedPointsOfSameChunk() {
+        var buffer = givenBuffer(2);
+        when(appConfig.getIngestorWriteBehindFlushPoints()).thenReturn(100);
+        when(appConfig.getIngestorWriteBehindOfferTimeoutMs()).thenReturn(10L);
+        givenOffers(List.of(chunk(1L, 2L)), List.of(chunk(3L, 4L, 5L)));
+        when(dataIngestor.writeChunks(eq("col"), any(), anyCollection())).thenReturn(PulseIngestorWriteResult.builder().build());
+
+        offer(buffer);
+        // Too many points for the buffer: written on the caller's thread, after the buffered ones
+        offer(buffer);
+
+        verify(dataIngestor, times(2)).writeChunks(eq("col"), any(), chunksCaptor.capture());
+        assertEquals(1L, new ArrayList<>(chunksCaptor.getAllValues().get(0)).getFirst().ts(0));
+        assertEquals(3L, new ArrayList<>(chunksCaptor.getAllValues().get(1)).getFirst().ts(0));
+        assertEquals(0, buffer.getBufferedPoints());
+    }
+
+    private ChunkWriteBuffer givenBuffer(int maxBufferedPoints) {
+        when(appConfig.getIngestorWriteBehindMaxBufferedPoints()).thenReturn(maxBufferedPoints);
+        when(appConfig.isIngestorWriteBehindEnabled()).thenReturn(true);
+        return new ChunkWriteBuffer(appConfig, dataIngestor);
+    }
+
+    @SafeVarargs
+    private void givenOffers(List<PrimitiveChunkBuilder> first, List<PrimitiveChunkBuilder>... next) {
+        when(dataIngestor.splitIntoChunks(eq(METADATA), anyMap(), anyMap())).thenReturn(first, next);
+    }
+
+    private static void offer(ChunkWriteBuffer buffer) {
+        buffer.offer(METADATA, PulseChunkEncoding.ARRAY, Map.of(), Map.of());
+    }
+
+    private static PrimitiveChunkBuilder chunk(long... ts) {
+        var chunk = PrimitiveChunkBuilder.create(PulseDataType.LONG, "c1", "p", 0L, 1024L);
+        for (long t : ts) {
+            chunk.append(t, t, null);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,180 @@
+package com.id.pulse.modules.datapoints.ingestor.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCache;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.datapoints.util.GorillaChunkCodec;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.hottier.service.HotTierService;
+import com.id.pulse.modules.rollups.service.RollupService;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DataIngestorTest {
+
+    @Mock
+    private AppConfig appConfig;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoDatabase mongoDatabase;
+    @Mock
+    private MongoCollection<Document> mongoCollection;
+    @Mock
+    private FindIterable<Document> findIterable;
+    @Mock
+    private ChunkMetadataCache chunkMetadataCache;
+    @Mock
+    private RollupService rollupService;
+    @Mock
+    private ChunkReadCache chunkReadCache;
+    @Mock
+    private HotTierService hotTierService;
+
+    private DataIngestor dataIngestor;
+
+    @BeforeEach
+    void setUp() {
+        when(appConfig.getIngestorWriteThreads()).thenReturn(1);
+        when(appConfig.getIngestorQueueSize()).thenReturn(4);
+        when(appConfig.getIngestorGorillaCompactThreads()).thenReturn(1);
+        dataIngestor = new DataIngestor(appConfig, mongoTemplate, chunkMetadataCache, rollupService, chunkReadCache, hotTierService);
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection("col")).thenReturn(mongoCollection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataIngestor.close();
+    }
+
+    @Test
+    void gorillaChunkIsCompactedWhenItsSeriesMovesToTheNextChunk() {
+        when(appConfig.getIngestorGorillaCompactBlocks()).thenReturn(0);
+        givenStoredChunk("c1");
+
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 1L)));
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 2L)));
+        verify(mongoCollection, never()).updateOne(any(Bson.class), any(Bson.class));
+
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c2", 1024L, 1024L)));
+        verify(mongoCollection, timeout(1000).times(1)).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void gorillaChunkIsCompactedOnceItCollectedMaxBlocks() {
+        when(appConfig.getIngestorGorillaCompactBlocks()).thenReturn(3);
+        givenStoredChunk("c1");
+
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 1L)));
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 2L)));
+        verify(mongoCollection, never()).updateOne(any(Bson.class), any(Bson.class));
+
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 3L)));
+        verify(mongoCollection, timeout(1000).times(1)).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void idleGorillaChunkIsCompactedAndForgotten() {
+        when(appConfig.getIngestorGorillaCompactBlocks()).thenReturn(0);
+        when(appConfig.getIngestorGorillaCompactIdleMs()).thenReturn(0L);
+        givenStoredChunk("c1");
+
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 1L)));
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 2L)));
+        dataIngestor.sweepIdleBlockChunks();
+        verify(mongoCollection, timeout(1000).times(1)).updateOne(any(Bson.class), any(Bson.class));
+
+        // No longer tracked: the next write starts a new entry, the next sweep has nothing to compact
+        dataIngestor.sweepIdleBlockChunks();
+        dataIngestor.writeChunks("col", PulseChunkEncoding.GORILLA, List.of(chunk("c1", 0L, 3L)));
+        dataIngestor.sweepIdleBlockChunks();
+        verify(mongoCollection, after(200).times(1)).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void writeBatchReportsThePathsOfAFailedCollection() {
+        when(appConfig.getIngestorChunkSize()).thenReturn(1024);
+        MongoCollection<Document> failingCollection = mock();
+        when(mongoDatabase.getCollection("col2")).thenReturn(failingCollection);
+        when(failingCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenThrow(new MongoException("down"));
+
+        var results = dataIngestor.writeBatch(
+                List.of(point("a", 1000L), point("a", 2000L), point("b", 1000L)),
+                dataPoint -> metadata(dataPoint.getPath(), dataPoint.getPath().equals("a") ? "col" : "col2"),
+                PulseChunkEncoding.ARRAY);
+
+        assertEquals(2, results.get("a").getPoints());
+        assertNull(results.get("a").getError());
+        assertEquals(1, results.get("b").getPoints());
+        assertEquals("down", results.get("b").getError());
+    }
+
+    private static PulseDataPoint point(String path, long tms) {
+        return PulseDataPoint.builder().path(path).tms(tms).type(PulseDataType.LONG).val(tms).build();
+    }
+
+    private static PulseChunkMetadata metadata(String path, String collectionName) {
+        return PulseChunkMetadata.builder()
+                .path(path)
+                .safePath(path)
+                .type(PulseDataType.LONG)
+                .samplingRate(1000L)
+                .collectionName(collectionName)
+                .build();
+    }
+
+    private void givenStoredChunk(String id) {
+        Document stored = new Document("_id", id)
+                .append(PulseChunk.DATA_TYPE, PulseDataType.LONG.name())
+                .append(PulseChunk.BLOCKS, List.of(block(1L), block(2L)))
+                .append(PulseChunk.BLOCK_OFFSETS, List.of(0, 0));
+        when(mongoCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.first()).thenReturn(stored);
+        when(mongoCollection.updateOne(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    private static Binary block(long ts) {
+        return new Binary(GorillaChunkCodec.encoder(PulseDataType.LONG).appendLong(ts, ts, null).toByteArray());
+    }
+
+    private static PrimitiveChunkBuilder chunk(String id, long tsStart, long ts) {
+        var chunk = PrimitiveChunkBuilder.create(PulseDataType.LONG, id, "p", tsStart, tsStart + 1024L);
+        chunk.append(ts, ts, null);
+        return chunk;
+    }
+}
@@ -91,6 +91,18 @@ class DpAccumulatorTest {
         assertEquals(2.0, avg.getVal());
     }
 
+    @Test
+    void testMinMaxDoubleKeepBatchIdOfLatestPoint() {
+        accumulator.push(PulseDataPoint.builder().groupCode(GROUP).path(PATH).tms(20L).type(PulseDataType.DOUBLE).val(3.5).batchId("b").build());
+        accumulator.push(PulseDataPoint.builder().groupCode(GROUP).path(PATH).tms(10L).type(PulseDataType.DOUBLE).val(-1.5).batchId("a").build());
+        PulseDataPoint min = accumulator.aggregate(PulseAggregationType.MIN);
+        PulseDataPoint max = accumulator.aggregate(PulseAggregationType.MAX);
+        assertEquals(-1.5, min.getVal());
+        assertEquals(3.5, max.getVal());
+        assertEquals(END, min.getTms());
+        assertEquals("b", min.getBatchId());
+    }
+
     @Test
     void testUnsupportedSumForString() {
         DpAccumulator acc = new DpAccumulator(GROUP, PATH, START, END);
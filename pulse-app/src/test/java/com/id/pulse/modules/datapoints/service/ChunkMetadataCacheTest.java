@@ -0,0 +1,188 @@
+package com.id.pulse.modules.datapoints.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.model.PulseConfigChangedEvent;
+import com.id.pulse.modules.datapoints.model.PulseChunkMetadataEntity;
+import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkMetadataCacheTest {
+
+    private static final String COLLECTION = "PulseChunks_G1_DOUBLE_1000";
+
+    @Mock
+    private AppConfig appConfig;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ChunkMetadataCrudService chunkMetadataCrudService;
+    @Mock
+    private IndexOperations indexOperations;
+
+    private ChunkMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ChunkMetadataCache(appConfig, mongoTemplate, chunkMetadataCrudService);
+    }
+
+    private void givenStoredMetadata(String path) {
+        var entity = PulseChunkMetadataEntity.builder()
+                .id("G1_" + ChunkMetadataCache.toSafePath(path))
+                .groupCode("G1")
+                .path(path)
+                .safePath(ChunkMetadataCache.toSafePath(path))
+                .type(PulseDataType.DOUBLE)
+                .samplingRate(1000L)
+                .collectionName(COLLECTION)
+                .build();
+        when(mongoTemplate.findOne(any(Query.class), eq(PulseChunkMetadataEntity.class))).thenReturn(entity);
+        when(mongoTemplate.indexOps(COLLECTION)).thenReturn(indexOperations);
+    }
+
+    @Test
+    void safePathDropsWhitespaceAndReplacesUnsafeChars() {
+        assertEquals("plant.line1__temp__C", ChunkMetadataCache.toSafePath("plant. line1/temp °C"));
+        assertEquals("a_b-c.d", ChunkMetadataCache.toSafePath("a_b-c.d"));
+    }
+
+    @Test
+    void metadataIsLoadedOnceAndIndexesEnsuredOncePerCollection() {
+        when(appConfig.getIngestorMetadataCacheTtlMs()).thenReturn(60_000L);
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        givenStoredMetadata("plant.temp");
+
+        var first = cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L);
+        var second = cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L);
+
+        assertSame(first, second);
+        assertEquals(COLLECTION, first.getCollectionName());
+        verify(mongoTemplate, times(1)).findOne(any(Query.class), eq(PulseChunkMetadataEntity.class));
+        verify(mongoTemplate, times(1)).indexOps(COLLECTION);
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() {
+        when(appConfig.getIngestorMetadataCacheTtlMs()).thenReturn(0L);
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        givenStoredMetadata("plant.temp");
+
+        cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L);
+        cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L);
+
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(PulseChunkMetadataEntity.class));
+        // The collection is already indexed
+        verify(mongoTemplate, times(1)).indexOps(COLLECTION);
+    }
+
+    @Test
+    void configChangesInvalidateTheAffectedPathsOnly() {
+        when(chunkMetadataCrudService.findAll()).thenReturn(List.of(
+                metadata("plant.temp"),
+                metadata("plant.pressure")));
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        when(mongoTemplate.indexOps(COLLECTION)).thenReturn(indexOperations);
+        cache.warmUp();
+        assertEquals(2, cache.size());
+
+        cache.onConfigChanged(PulseConfigChangedEvent.forPaths(Set.of("plant.temp")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void fullConfigChangesReloadTheEntriesInBulk() {
+        when(chunkMetadataCrudService.findAll())
+                .thenReturn(List.of(metadata("plant.temp"), metadata("plant.pressure")))
+                .thenReturn(List.of(metadata("plant.pressure"), metadata("plant.flow")));
+        when(appConfig.getIngestorMetadataCacheTtlMs()).thenReturn(60_000L);
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        when(mongoTemplate.indexOps(COLLECTION)).thenReturn(indexOperations);
+        cache.warmUp();
+        var pressure = cache.get("G1", "plant.pressure", PulseDataType.DOUBLE, 1000L);
+
+        cache.onConfigChanged(PulseConfigChangedEvent.all());
+
+        // The deleted series is dropped, the others are served without loading
+        assertEquals(2, cache.size());
+        assertSame(pressure, cache.get("G1", "plant.pressure", PulseDataType.DOUBLE, 1000L));
+        cache.get("G1", "plant.flow", PulseDataType.DOUBLE, 1000L);
+        verify(mongoTemplate, never()).findOne(any(Query.class), eq(PulseChunkMetadataEntity.class));
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        when(appConfig.getIngestorMetadataCacheTtlMs()).thenReturn(60_000L);
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L));
+        assertEquals(0, cache.size());
+
+        givenStoredMetadata("plant.temp");
+        assertEquals(COLLECTION, cache.get("G1", "plant.temp", PulseDataType.DOUBLE, 1000L).getCollectionName());
+    }
+
+    @Test
+    void pathLookupsAreServedFromTheIndexUntilTheirPathChanges() {
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        when(chunkMetadataCrudService.findByPaths(List.of("plant.temp", "plant.unknown")))
+                .thenReturn(List.of(metadata("plant.temp")));
+        when(chunkMetadataCrudService.findByPaths(List.of("plant.unknown"))).thenReturn(List.of());
+
+        assertEquals(1, cache.findByPaths(List.of("plant.temp", "plant.unknown")).size());
+        // Paths without metadata are read again, they may have been written since
+        assertEquals(1, cache.findByPaths(List.of("plant.temp", "plant.unknown")).size());
+        verify(chunkMetadataCrudService, times(1)).findByPaths(List.of("plant.temp", "plant.unknown"));
+
+        when(chunkMetadataCrudService.findByPaths(List.of("plant.temp"))).thenReturn(List.of(metadata("plant.temp")));
+        cache.onConfigChanged(PulseConfigChangedEvent.forPaths(Set.of("plant.temp")));
+        cache.findByPaths(List.of("plant.temp"));
+        verify(chunkMetadataCrudService, times(1)).findByPaths(List.of("plant.temp"));
+    }
+
+    @Test
+    void warmedUpEntriesAreServedWithoutLoading() {
+        when(chunkMetadataCrudService.findAll()).thenReturn(List.of(metadata("plant temp")));
+        when(appConfig.getIngestorMetadataCacheTtlMs()).thenReturn(60_000L);
+        when(appConfig.getIngestorMetadataCacheMaxSize()).thenReturn(100);
+        when(mongoTemplate.indexOps(COLLECTION)).thenReturn(indexOperations);
+        cache.warmUp();
+
+        var metadata = cache.get("G1", "plant temp", PulseDataType.DOUBLE, 1000L);
+
+        assertEquals("planttemp", metadata.getSafePath());
+        verify(mongoTemplate, never()).findOne(any(Query.class), eq(PulseChunkMetadataEntity.class));
+    }
+
+    private static PulseChunkMetadata metadata(String path) {
+        return PulseChunkMetadata.builder()
+                .groupCode("G1")
+                .path(path)
+                .safePath(ChunkMetadataCache.toSafePath(path))
+                .type(PulseDataType.DOUBLE)
+                .samplingRate(1000L)
+                .collectionName(COLLECTION)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.id.pulse.modules.datapoints.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkReadCacheTest {
+
+    private static final String COLLECTION = "PulseChunks_G1_DOUBLE_1000";
+
+    private AppConfig appConfig;
+    private ChunkReadCache cache;
+
+    @BeforeEach
+    void setUp() {
+        appConfig = mock(AppConfig.class);
+        when(appConfig.isExtractorCacheEnabled()).thenReturn(true);
+        when(appConfig.getExtractorCacheMaxBytes()).thenReturn(1L << 20);
+        when(appConfig.getExtractorCacheTtlMs()).thenReturn(60_000L);
+        cache = new ChunkReadCache(appConfig);
+    }
+
+    private static Document chunk(String id, long tsStart, long tsEnd) {
+        return new Document("_id", id).append(PulseChunk.TS_START, tsStart).append(PulseChunk.TS_END, tsEnd);
+    }
+
+    private static ChunkColumns columns(long... ts) {
+        Object[] values = Arrays.stream(ts).mapToObj(t -> (Object) (t * 1.5)).toArray();
+        return new ChunkColumns(Arrays.stream(ts).boxed().toList(), Arrays.asList(values), Arrays.asList(new String[ts.length]));
+    }
+
+    private static ChunkColumns flat(long tsStart) {
+        return new ChunkColumns(List.of(tsStart, tsStart + 1, tsStart + 2), List.of(1.0, 1.0, 1.0), Arrays.asList(new String[3]));
+    }
+
+    @Test
+    void closedChunksAreServedFromMemory() {
+        long generation = cache.generation(COLLECTION, "a.b");
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), columns(1000, 1500), generation);
+
+        var hits = cache.get(COLLECTION, "a.b", 1200, 3000);
+
+        assertEquals(1, hits.size());
+        assertEquals("c1", hits.getFirst().id());
+        assertEquals(List.of(1000L, 1500L), hits.getFirst().columns().ts());
+        assertEquals(List.of(1500.0, 2250.0), hits.getFirst().columns().v());
+        assertTrue(cache.get(COLLECTION, "a.b", 2000, 3000).isEmpty());
+        assertEquals(1, cache.getStats().hits());
+    }
+
+    @Test
+    void openChunksAreNotCached() {
+        long now = System.currentTimeMillis();
+        long generation = cache.generation(COLLECTION, "a.b");
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", now - 1000, now + 1000), columns(now - 500), generation);
+
+        assertTrue(cache.get(COLLECTION, "a.b", 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(1, cache.getStats().misses());
+    }
+
+    @Test
+    void writesInvalidateChunksAndReadsInProgress() {
+        long generation = cache.generation(COLLECTION, "a.b");
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), columns(1000), generation);
+        cache.invalidate(COLLECTION, "a.b", 1000);
+        assertTrue(cache.get(COLLECTION, "a.b", 0, 5000).isEmpty());
+
+        // Read started before the write: its chunk is stale
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c2", 2000, 3000), columns(2000), generation);
+        assertTrue(cache.get(COLLECTION, "a.b", 0, 5000).isEmpty());
+        assertEquals(0, cache.getStats().bytes());
+    }
+
+    @Test
+    void chunksNotReadAgainAreEvictedAboveBudget() {
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), columns(1000, 1001, 1002), 0);
+        long chunkBytes = cache.getStats().bytes();
+        when(appConfig.getExtractorCacheMaxBytes()).thenReturn(chunkBytes * 2);
+
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c2", 2000, 3000), columns(2000, 2001, 2002), 0);
+        cache.get(COLLECTION, "a.b", 1000, 2000);
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c3", 3000, 4000), columns(3000, 3001, 3002), 0);
+
+        var cached = cache.get(COLLECTION, "a.b", 0, 5000).stream().map(hit -> hit.id()).toList();
+        assertFalse(cached.contains("c2"));
+        assertTrue(cache.getStats().evictions() > 0);
+        assertTrue(cache.getStats().bytes() <= chunkBytes * 2);
+    }
+
+    @Test
+    void hitsDecodeTheirOwnPoints() {
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), columns(1000, 1500), 0);
+        long blockBytes = cache.getStats().bytes();
+
+        var first = cache.get(COLLECTION, "a.b", 0, 5000).getFirst();
+        var second = cache.get(COLLECTION, "a.b", 0, 5000).getFirst();
+
+        // Only the encoded block is held, and accounted for
+        assertNotSame(first.columns(), second.columns());
+        assertEquals(first.columns(), second.columns());
+        assertEquals(2000, second.tsEnd());
+        assertEquals(blockBytes, cache.getStats().bytes());
+    }
+
+    @Test
+    void evictionResumesWhereTheHandStopped() {
+        // Same values and spacing: every block has the same size
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), flat(1000), 0);
+        long chunkBytes = cache.getStats().bytes();
+        when(appConfig.getExtractorCacheMaxBytes()).thenReturn(chunkBytes * 10);
+        for (long tsStart = 2000; tsStart <= 11_000; tsStart += 1000) {
+            cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c" + tsStart / 1000, tsStart, tsStart + 1000), flat(tsStart), 0);
+        }
+        assertEquals(2, cache.getStats().evictions());
+
+        // Behind the hand, which evicts the chunks after c2 first
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c0", 0, 1000), flat(0), 0);
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c12", 12_000, 13_000), flat(12_000), 0);
+
+        var cached = cache.get(COLLECTION, "a.b", 0, 20_000).stream().map(ChunkReadCache.Hit::id).toList();
+        assertEquals(List.of("c0", "c5", "c6", "c7", "c8", "c9", "c10", "c11", "c12"), cached);
+        assertEquals(4, cache.getStats().evictions());
+    }
+
+    @Test
+    void readsStartFromTheChunkHoldingTheRangeStart() {
+        for (long tsStart = 1000; tsStart < 10_000; tsStart += 1000) {
+            cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c" + tsStart, tsStart, tsStart + 1000), columns(tsStart), 0);
+        }
+
+        var hits = cache.get(COLLECTION, "a.b", 5500, 7000).stream().map(ChunkReadCache.Hit::tsStart).toList();
+
+        assertEquals(List.of(5000L, 6000L), hits);
+    }
+
+    @Test
+    void disabledCacheKeepsNoSeriesNorCounters() {
+        when(appConfig.isExtractorCacheEnabled()).thenReturn(false);
+
+        long generation = cache.generation(COLLECTION, "a.b");
+        cache.put(COLLECTION, "a.b", PulseDataType.DOUBLE, chunk("c1", 1000, 2000), columns(1000), generation);
+
+        assertEquals(0, cache.getStats().misses());
+        assertEquals(0, cache.getStats().entries());
+    }
+}
@@ -46,6 +46,17 @@ class DpAccumulatorsManagerTest {
         assertTrue(result.stream().allMatch(acc -> acc.getPath().equals("path/1")));
     }
 
+    @Test
+    void shouldPollCompletedAccumulatorsInWindowOrder() {
+        DpAccumulator later = manager.getOrCreate(GROUP, "path/1", 2000, 3000);
+        DpAccumulator earlier = manager.getOrCreate(GROUP, "path/1", 1000, 2000);
+        DpAccumulator open = manager.getOrCreate(GROUP, "path/1", 3000, 4000);
+
+        assertEquals(List.of(earlier, later), manager.pollCompleted(GROUP, "path/1", 3000));
+        assertTrue(manager.pollCompleted(GROUP, "path/1", 3000).isEmpty());
+        assertEquals(List.of(open), manager.findCompleted(GROUP, "path/1", 4000));
+    }
+
     @Test
     void shouldThrowOnNullPathInFindCompleted() {
         assertThrows(IllegalArgumentException.class, () -> manager.findCompleted(GROUP, null, 1000));
@@ -0,0 +1,46 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.datapoints.util.ChunkDocumentReader.ChunkColumns;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkDocumentReaderTest {
+
+    @Test
+    void sortedKeepsLastWriteOnDuplicateTimestamps() {
+        var columns = new ChunkColumns(List.of(3L, 1L, 3L, 2L), List.of("a", "b", "c", "d"), Arrays.asList(null, null, "b2", null));
+
+        var sorted = columns.sorted();
+
+        assertEquals(List.of(1L, 2L, 3L), sorted.ts());
+        assertEquals(List.of("b", "d", "c"), sorted.v());
+        assertEquals("b2", sorted.batchIds().get(2));
+    }
+
+    @Test
+    void sortedReturnsOrderedColumnsAsIs() {
+        var columns = new ChunkColumns(List.of(1L, 2L), List.of(1.0, 2.0), Arrays.asList(null, null));
+
+        assertSame(columns, columns.sorted());
+    }
+
+    @Test
+    void sliceKeepsPointsOfHalfOpenRange() {
+        var columns = new ChunkColumns(List.of(10L, 20L, 30L, 40L), List.of(1, 2, 3, 4), Arrays.asList("a", "b", "c", "d"));
+
+        var slice = columns.slice(15, 40);
+
+        assertEquals(List.of(20L, 30L), slice.ts());
+        assertEquals(List.of(2, 3), slice.v());
+        assertEquals(List.of("b", "c"), slice.batchIds());
+        assertSame(columns, columns.slice(10, 41));
+        assertTrue(columns.slice(41, 50).isEmpty());
+        assertTrue(columns.slice(0, 10).isEmpty());
+    }
+}
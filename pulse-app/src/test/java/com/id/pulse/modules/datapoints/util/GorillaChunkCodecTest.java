@@ -0,0 +1,140 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaChunkCodecTest {
+
+    private static final long BASE_TS = 1_700_000_000_000L;
+
+    @Test
+    void doubleRoundTripWithIrregularTimestamps() {
+        Random random = new Random(42);
+        List<Long> ts = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        long t = BASE_TS;
+        double v = 20.0;
+        for (int i = 0; i < 1024; i++) {
+            // Mostly regular, with gaps, jitter and an out-of-order point
+            t += switch (i % 50) {
+                case 10 -> 3_600_000L;
+                case 20 -> -500L;
+                case 30 -> 1000L + random.nextInt(300);
+                default -> 1000L;
+            };
+            v += random.nextGaussian();
+            ts.add(t);
+            values.add(i % 7 == 0 ? values.isEmpty() ? v : values.getLast() : v);
+        }
+        values.set(5, Double.NaN);
+        values.set(6, Double.NEGATIVE_INFINITY);
+        values.set(7, -0.0);
+
+        var encoder = GorillaChunkCodec.encoder(PulseDataType.DOUBLE);
+        for (int i = 0; i < ts.size(); i++) {
+            encoder.appendDouble(ts.get(i), values.get(i), null);
+        }
+        byte[] block = encoder.toByteArray();
+
+        var decoder = GorillaChunkCodec.decoder(block);
+        assertEquals(PulseDataType.DOUBLE, decoder.getDataType());
+        assertEquals(ts.size(), decoder.size());
+        for (int i = 0; i < ts.size(); i++) {
+            decoder.next();
+            assertEquals(ts.get(i), decoder.ts());
+            assertEquals(Double.doubleToRawLongBits(values.get(i)), Double.doubleToRawLongBits(decoder.doubleValue()));
+            assertNull(decoder.batchId());
+        }
+        assertFalse(decoder.hasNext());
+    }
+
+    @Test
+    void regularSeriesCompressesWellBelowArrayLayout() {
+        var encoder = GorillaChunkCodec.encoder(PulseDataType.DOUBLE);
+        for (int i = 0; i < 1024; i++) {
+            encoder.appendDouble(BASE_TS + i * 1000L, 50.0 + (i % 10) * 0.5, null);
+        }
+        // 1024 points as raw longs + doubles would be 16KB
+        assertTrue(encoder.toByteArray().length < 16 * 1024 / 4);
+    }
+
+    @Test
+    void longRoundTripIncludesExtremes() {
+        long[] values = {0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 42L, 42L, 43L, 1L << 40};
+        var encoder = GorillaChunkCodec.encoder(PulseDataType.LONG);
+        for (int i = 0; i < values.length; i++) {
+            encoder.appendLong(BASE_TS + i * 10L, values[i], "b" + (i / 3));
+        }
+
+        var decoder = GorillaChunkCodec.decoder(encoder.toByteArray());
+        for (int i = 0; i < values.length; i++) {
+            decoder.next();
+            assertEquals(BASE_TS + i * 10L, decoder.ts());
+            assertEquals(values[i], decoder.longValue());
+            assertEquals("b" + (i / 3), decoder.batchId());
+        }
+    }
+
+    @Test
+    void booleanAndStringRoundTrip() {
+        var boolEncoder = GorillaChunkCodec.encoder(PulseDataType.BOOLEAN);
+        var strEncoder = GorillaChunkCodec.encoder(PulseDataType.STRING);
+        List<String> strings = List.of("OPEN", "OPEN", "", "CLOSED", "àèìòù €", "OPEN");
+        for (int i = 0; i < strings.size(); i++) {
+            boolEncoder.appendBoolean(BASE_TS + i, i % 2 == 0, i == 3 ? null : "batch");
+            strEncoder.appendString(BASE_TS + i, strings.get(i), null);
+        }
+
+        var boolDecoder = GorillaChunkCodec.decoder(boolEncoder.toByteArray());
+        var strDecoder = GorillaChunkCodec.decoder(strEncoder.toByteArray());
+        for (int i = 0; i < strings.size(); i++) {
+            boolDecoder.next();
+            strDecoder.next();
+            assertEquals(i % 2 == 0, boolDecoder.value());
+            assertEquals(i == 3 ? null : "batch", boolDecoder.batchId());
+            assertEquals(strings.get(i), strDecoder.value());
+        }
+    }
+
+    @Test
+    void encoderRejectsMismatchedType() {
+        var encoder = GorillaChunkCodec.encoder(PulseDataType.LONG);
+        assertThrows(IllegalStateException.class, () -> encoder.appendDouble(BASE_TS, 1.0, null));
+    }
+
+    @Test
+    void readerInterleavesArrayPointsAndBlocksInWriteOrder() {
+        byte[] block = GorillaChunkCodec.encoder(PulseDataType.DOUBLE)
+                .appendDouble(BASE_TS + 1000, 3.0, "b3")
+                .appendDouble(BASE_TS + 3000, 4.0, null)
+                .toByteArray();
+        // One array point, then the block, then a second array point rewriting BASE_TS + 1000
+        Document doc = new Document("_id", "chunk")
+                .append(PulseChunk.TS, List.of(BASE_TS, BASE_TS + 1000))
+                .append(PulseChunk.V, List.of(1, 2.0))
+                .append(PulseChunk.BATCH_IDS, List.of("b1", "b2"))
+                .append(PulseChunk.BLOCKS, List.of(new Binary(block)))
+                .append(PulseChunk.BLOCK_OFFSETS, List.of(1))
+                .append(PulseChunk.BLOCK_BATCH_IDS, List.of("b3"));
+
+        var columns = ChunkDocumentReader.read(doc, PulseDataType.DOUBLE);
+
+        assertEquals(List.of(BASE_TS, BASE_TS + 1000, BASE_TS + 3000, BASE_TS + 1000), columns.ts());
+        assertEquals(List.of(1.0, 3.0, 4.0, 2.0), columns.v());
+        assertEquals(Arrays.asList("b1", "b3", null, "b2"), columns.batchIds());
+
+        var sorted = columns.sorted();
+        assertEquals(List.of(1.0, 2.0, 4.0), sorted.v());
+        assertEquals(Arrays.asList("b1", "b2", null), sorted.batchIds());
+    }
+}
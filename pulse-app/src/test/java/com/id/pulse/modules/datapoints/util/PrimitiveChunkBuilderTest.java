@@ -0,0 +1,115 @@
+package com.id.pulse.modules.datapoints.util;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveChunkBuilderTest {
+
+    @Test
+    void appendSkipsValuesOfAnotherType() {
+        var chunk = PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "c1", "p", 0L, 1024L);
+
+        assertTrue(chunk.append(1L, 1.5, null));
+        assertFalse(chunk.append(2L, 2L, null));
+        assertFalse(chunk.append(3L, "x", null));
+
+        assertEquals(1, chunk.size());
+        assertEquals(1.5, chunk.value(0));
+    }
+
+    @Test
+    void arrayUpdateIsWrittenAsRawBson() {
+        var chunk = PrimitiveChunkBuilder.create(PulseDataType.BOOLEAN, "c1", "plant.valve", 1000L, 2000L);
+        chunk.append(1000L, true, "b1");
+        chunk.append(1010L, false, null);
+
+        BsonDocument update = chunk.toUpdate();
+
+        BsonDocument setOnInsert = update.getDocument("$setOnInsert");
+        assertEquals(new BsonString("plant.valve"), setOnInsert.get(PulseChunk.PATH));
+        assertEquals(new BsonInt64(1000L), setOnInsert.get(PulseChunk.TS_START));
+        assertEquals(new BsonString("BOOLEAN"), setOnInsert.get(PulseChunk.DATA_TYPE));
+
+        BsonDocument push = update.getDocument("$push");
+        assertEquals(new BsonArray(List.of(new BsonInt64(1000L), new BsonInt64(1010L))),
+                push.getDocument(PulseChunk.TS).getArray("$each"));
+        assertEquals(new BsonArray(List.of(BsonBoolean.TRUE, BsonBoolean.FALSE)),
+                push.getDocument(PulseChunk.V).getArray("$each"));
+        assertEquals(new BsonArray(List.of(new BsonString("b1"), BsonNull.VALUE)),
+                push.getDocument(PulseChunk.BATCH_IDS).getArray("$each"));
+    }
+
+    @Test
+    void blockUpdateAppendsOneBlockWithItsOffsetAndDistinctBatchIds() {
+        var chunk = PrimitiveChunkBuilder.create(PulseDataType.LONG, "c1", "p", 0L, 1024L);
+        chunk.append(1L, 10L, "b1");
+        chunk.append(2L, 11L, "b1");
+        chunk.append(3L, 12L, null);
+
+        List<RawBsonDocument> pipeline = chunk.toBlockUpdate();
+
+        assertEquals(1, pipeline.size());
+        BsonDocument set = pipeline.getFirst().getDocument("$set");
+        BsonArray blocks = set.getDocument(PulseChunk.BLOCKS).getArray("$concatArrays");
+        assertEquals(new BsonString("$" + PulseChunk.BLOCKS), blocks.get(0).asDocument().getArray("$ifNull").get(0));
+        var decoder = GorillaChunkCodec.decoder(blocks.get(1).asArray().get(0).asDocument().getBinary("$literal").getData());
+        assertEquals(3, decoder.size());
+        decoder.next();
+        assertEquals(1L, decoder.ts());
+        assertEquals(10L, decoder.longValue());
+
+        // The offset is the number of array points already in the document
+        BsonDocument offset = set.getDocument(PulseChunk.BLOCK_OFFSETS).getArray("$concatArrays").get(1).asArray().get(0).asDocument();
+        assertEquals(new BsonString("$" + PulseChunk.TS), offset.getDocument("$size").getArray("$ifNull").get(0));
+        assertEquals(new BsonArray(List.of(new BsonString("b1"))),
+                set.getDocument(PulseChunk.BLOCK_BATCH_IDS).getArray("$setUnion").get(1).asDocument().getArray("$literal"));
+        assertFalse(set.containsKey(PulseChunk.BATCH_IDS));
+    }
+
+    @Test
+    void mergeAndRemoveDuplicatesKeepsLastPoint() {
+        var first = PrimitiveChunkBuilder.create(PulseDataType.STRING, "c1", "p", 0L, 1024L);
+        first.append(1L, "a", null);
+        first.append(2L, "b", null);
+        var second = first.emptyCopy();
+        second.append(2L, "c", "b2");
+        second.append(3L, "d", null);
+
+        first.appendAll(second);
+        first.removeDuplicates();
+
+        assertEquals(3, first.size());
+        assertEquals(List.of(1L, 2L, 3L), List.of(first.ts(0), first.ts(1), first.ts(2)));
+        assertEquals(List.of("a", "c", "d"), List.of(first.value(0), first.value(1), first.value(2)));
+        assertEquals("b2", first.batchId(1));
+    }
+
+    @Test
+    void removeDuplicatesSortsOutOfOrderPointsKeepingTheLastAppended() {
+        var chunk = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "c1", "p", 0L, 1024L);
+        chunk.appendDouble(5L, 5.0, null);
+        chunk.appendDouble(3L, 3.0, null);
+        chunk.appendDouble(5L, 5.5, "b2");
+        chunk.appendDouble(1L, 1.0, null);
+        chunk.appendDouble(3L, 3.5, null);
+
+        chunk.removeDuplicates();
+
+        assertEquals(3, chunk.size());
+        assertEquals(List.of(1L, 3L, 5L), List.of(chunk.ts(0), chunk.ts(1), chunk.ts(2)));
+        assertEquals(List.of(1.0, 3.5, 5.5), List.of(chunk.value(0), chunk.value(1), chunk.value(2)));
+        assertEquals("b2", chunk.batchId(2));
+    }
+}
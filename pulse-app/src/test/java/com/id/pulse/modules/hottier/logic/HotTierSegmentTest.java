@@ -0,0 +1,35 @@
+package com.id.pulse.modules.hottier.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class HotTierSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsRecordsUntilFull() throws Exception {
+        var segment = HotTierSegment.create(dir.resolve("col/0-0.seg"), 16);
+
+        int first = segment.append(new byte[]{1, 2, 3});
+        int second = segment.append(new byte[]{4, 5});
+
+        assertEquals(0, first);
+        assertEquals(7, second);
+        assertEquals(-1, segment.append(new byte[]{6, 7, 8}));
+        assertArrayEquals(new byte[]{1, 2, 3}, segment.read(first));
+        assertArrayEquals(new byte[]{4, 5}, segment.read(second));
+        assertEquals(13, segment.size());
+
+        segment.delete();
+        assertFalse(Files.exists(segment.getFile()));
+    }
+}
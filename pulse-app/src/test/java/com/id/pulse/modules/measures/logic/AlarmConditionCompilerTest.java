@@ -0,0 +1,133 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.model.PulseDataPoint;
+import com.id.pulse.modules.channel.model.PulseChannel;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.channel.service.ChannelsCrudService;
+import com.id.pulse.modules.measures.model.PulseUpStream;
+import com.id.pulse.modules.measures.model.enums.PulseSourceType;
+import com.id.pulse.modules.measures.service.MeasureJsEvaluator;
+import com.id.pulse.modules.measures.service.MeasuresCrudService;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlarmConditionCompilerTest {
+
+    private static final Map<String, PulseDataType> TYPES = Map.of(
+            "TEMP", PulseDataType.DOUBLE,
+            "VALVE", PulseDataType.BOOLEAN,
+            "CODE", PulseDataType.STRING);
+
+    @Test
+    void compilesSupportedConditions() {
+        for (String condition : List.of(
+                "{{TEMP}} > 50",
+                "{{ TEMP }} >= 2.5e1 && !{{VALVE}}",
+                "({{TEMP}} + 1) * 2 % 3 != 0 || {{CODE}} === 'E1'",
+                "{{CODE}}")) {
+            assertTrue(AlarmConditionCompiler.compile(condition, 1000L, null, null, TYPES).isPresent(), condition);
+        }
+    }
+
+    @Test
+    void leavesUnsupportedConditionsToJs() {
+        for (String condition : List.of(
+                "Math.abs({{TEMP}}) > 50",
+                "{{TEMP}} > {{CODE}}",
+                "{{TEMP}} && {{VALVE}}",
+                "{{TEMP}} > 50 ? true : false",
+                "{{TEMP}} >")) {
+            assertTrue(AlarmConditionCompiler.compile(condition, 1000L, null, null, TYPES).isEmpty(), condition);
+        }
+    }
+
+    @Test
+    void engagesWhenConditionHoldsOverTheWindow() {
+        var alarm = AlarmConditionCompiler.compile("{{TEMP}} > 50", 1000L, null, null, TYPES).orElseThrow();
+
+        assertTrue(alarm.evaluate(1000L, false, List.of(temp(1000L, 60.0))));
+        assertFalse(alarm.evaluate(1500L, false, List.of(temp(1500L, 40.0))));
+        // No point within [1500, 2500]: nothing violates the condition
+        assertTrue(alarm.evaluate(2500L, false, List.of(temp(1400L, 40.0))));
+    }
+
+    @Test
+    void disengagesWithNegatedEngageByDefault() {
+        var alarm = AlarmConditionCompiler.compile("{{TEMP}} > 50", 1000L, null, null, TYPES).orElseThrow();
+
+        assertFalse(alarm.evaluate(2000L, true, List.of(temp(2000L, 40.0))));
+        // A violation within the window keeps the alarm engaged
+        assertTrue(alarm.evaluate(3000L, true, List.of(temp(2500L, 55.0), temp(3000L, 45.0))));
+        assertFalse(alarm.evaluate(4000L, true, List.of(temp(2500L, 55.0), temp(3000L, 45.0))));
+    }
+
+    @Test
+    void resultOnlyDependsOnTheArguments() {
+        var alarm = AlarmConditionCompiler.compile("{{VALVE}}", 1000L, null, null, TYPES).orElseThrow();
+
+        assertTrue(alarm.evaluate(2000L, false, List.of(valve(1000L, true))));
+        // Earlier moment, e.g. a reprocessing session running next to the live runs
+        assertFalse(alarm.evaluate(1500L, false, List.of(valve(1500L, false))));
+        assertTrue(alarm.evaluate(2100L, false, List.of(valve(2100L, true))));
+        // Point older than the previous evaluation
+        assertFalse(alarm.evaluate(2200L, false, List.of(valve(1900L, false), valve(2100L, true))));
+    }
+
+    @Test
+    void evaluatesAsTheGeneratedScript() {
+        String engage = "{{TEMP}} > 50 && !{{VALVE}}";
+        String disengage = "{{TEMP}} < 40";
+        var alarm = AlarmConditionCompiler.compile(engage, 1000L, disengage, 500L, TYPES).orElseThrow();
+        String script = generateScript(engage, 1000L, disengage, 500L);
+        var evaluator = new MeasureJsEvaluator();
+
+        record Case(long evalMoment, boolean current, List<PulseDataPoint> deps) {
+        }
+        var cases = List.of(
+                new Case(1000L, false, List.of(temp(1000L, 60.0))),
+                new Case(1500L, false, List.of(temp(1500L, 70.0), valve(200L, false))),
+                new Case(2000L, false, List.of(temp(500L, 70.0))),
+                new Case(2000L, false, List.of(temp(1200L, 70.0), valve(1900L, true))),
+                new Case(2000L, false, List.of(temp(1200L, 70.0), valve(2100L, true))),
+                new Case(3000L, false, List.of(temp(2100L, 60.0), valve(2000L, true), valve(2900L, false))),
+                new Case(3000L, false, List.of(temp(2500L, 60.0), temp(3500L, 40.0))),
+                new Case(2000L, true, List.of(temp(1800L, 35.0))),
+                new Case(2000L, true, List.of(temp(1400L, 45.0), temp(1800L, 35.0))),
+                new Case(2000L, true, List.of(temp(1600L, 45.0), temp(1900L, 35.0))),
+                new Case(2000L, true, List.of()));
+
+        for (var c : cases) {
+            var js = evaluator.evaluate(c.evalMoment(), script, PulseSeriesBindings.from(c.deps()), c.current(), "test");
+            assertTrue(js.isOk(), c.toString());
+            assertEquals(js.getResult(), alarm.evaluate(c.evalMoment(), c.current(), c.deps()), c.toString());
+        }
+    }
+
+    private static String generateScript(String engage, Long engageDuration, String disengage, Long disengageDuration) {
+        var channelsCrudService = Mockito.mock(ChannelsCrudService.class);
+        var measuresCrudService = Mockito.mock(MeasuresCrudService.class);
+        Mockito.when(channelsCrudService.findByPaths(List.of("TEMP", "VALVE"))).thenReturn(List.of(
+                PulseChannel.builder().path("TEMP").dataType(PulseDataType.DOUBLE).build(),
+                PulseChannel.builder().path("VALVE").dataType(PulseDataType.BOOLEAN).build()));
+        Mockito.when(measuresCrudService.findByPaths(List.of())).thenReturn(List.of());
+        var upstreams = List.of(
+                PulseUpStream.builder().path("TEMP").sourceType(PulseSourceType.CHANNEL).build(),
+                PulseUpStream.builder().path("VALVE").sourceType(PulseSourceType.CHANNEL).build());
+        return new AlarmJsCodeGenerator(channelsCrudService, measuresCrudService)
+                .generate(engage, engageDuration, disengage, disengageDuration, upstreams);
+    }
+
+    private static PulseDataPoint temp(long tms, double val) {
+        return PulseDataPoint.builder().path("TEMP").tms(tms).val(val).build();
+    }
+
+    private static PulseDataPoint valve(long tms, boolean val) {
+        return PulseDataPoint.builder().path("VALVE").tms(tms).val(val).build();
+    }
+}
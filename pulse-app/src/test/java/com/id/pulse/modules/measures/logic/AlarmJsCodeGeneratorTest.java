@@ -49,8 +49,8 @@ class AlarmJsCodeGeneratorTest {
 
         String engageCondition = "{{TEMP_1}} > 50 && {{VALVE}}";
         String js = generator.generate(engageCondition, 1000000L, null, 1000000L, List.of(upTemp, upValve));
-        assertTrue(js.contains("const _v_TEMP_1 = _parser.toNumbers('TEMP_1', 0.0, _timestamps);"));
-        assertTrue(js.contains("const _v_VALVE = _parser.toBooleans('VALVE', false, _timestamps);"));
+        assertTrue(js.contains("const _v_TEMP_1 = _timeline.numbers('TEMP_1', 0.0);"));
+        assertTrue(js.contains("const _v_VALVE = _timeline.booleans('VALVE', false);"));
         assertTrue(js.contains("if(_current === false && evaluateEngage())"));
     }
 
@@ -64,7 +64,7 @@ class AlarmJsCodeGeneratorTest {
 
         String engageCondition = "{{CODE}} === 'A'";
         String js = generator.generate(engageCondition, 1000000L, null, 1000000L, List.of(upCode));
-        assertTrue(js.contains("const _v_CODE = _parser.toStrings('CODE', '', _timestamps);"));
+        assertTrue(js.contains("const _v_CODE = _timeline.strings('CODE', '');"));
         assertTrue(js.contains("evaluateEngage()"));
     }
 
@@ -115,7 +115,7 @@ class AlarmJsCodeGeneratorTest {
 
         String engageCondition = "{{Channels/TEMP_1}} > 10";
         String js = generator.generate(engageCondition, 1000000L, null, 1000000L, List.of(upCh));
-        assertTrue(js.contains("const _v_Channels_TEMP_1 = _parser.toNumbers('Channels/TEMP_1', 0.0, _timestamps);"));
+        assertTrue(js.contains("const _v_Channels_TEMP_1 = _timeline.numbers('Channels/TEMP_1', 0.0);"));
         assertTrue(js.contains("_v_Channels_TEMP_1[idx] > 10"));
     }
 
@@ -128,7 +128,7 @@ class AlarmJsCodeGeneratorTest {
 
         String engageCondition = "{{Measures/Valves/OPEN_PERCENTAGE}} >= 80";
         String js = generator.generate(engageCondition, 1000000L, null, 1000000L, List.of(upMeas));
-        assertTrue(js.contains("const _v_Measures_Valves_OPEN_PERCENTAGE = _parser.toNumbers('Measures/Valves/OPEN_PERCENTAGE', 0.0, _timestamps);"));
+        assertTrue(js.contains("const _v_Measures_Valves_OPEN_PERCENTAGE = _timeline.numbers('Measures/Valves/OPEN_PERCENTAGE', 0.0);"));
         assertTrue(js.contains("_v_Measures_Valves_OPEN_PERCENTAGE[idx] >= 80"));
     }
 
@@ -144,8 +144,8 @@ class AlarmJsCodeGeneratorTest {
 
         String engageCondition = "{{Channels/HUMIDITY}} < 40 && {{Measures/Valves/OPEN_PERCENTAGE}} >= 80";
         String js = generator.generate(engageCondition, 1000000L, null, 1000000L, List.of(upCh, upMeas));
-        assertTrue(js.contains("const _v_Channels_HUMIDITY = _parser.toNumbers('Channels/HUMIDITY', 0.0, _timestamps);"));
-        assertTrue(js.contains("const _v_Measures_Valves_OPEN_PERCENTAGE = _parser.toNumbers('Measures/Valves/OPEN_PERCENTAGE', 0.0, _timestamps);"));
+        assertTrue(js.contains("const _v_Channels_HUMIDITY = _timeline.numbers('Channels/HUMIDITY', 0.0);"));
+        assertTrue(js.contains("const _v_Measures_Valves_OPEN_PERCENTAGE = _timeline.numbers('Measures/Valves/OPEN_PERCENTAGE', 0.0);"));
         assertTrue(js.contains("_v_Channels_HUMIDITY[idx] < 40 && _v_Measures_Valves_OPEN_PERCENTAGE[idx] >= 80"));
     }
 
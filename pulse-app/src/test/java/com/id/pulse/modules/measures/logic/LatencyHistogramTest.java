@@ -0,0 +1,38 @@
+package com.id.pulse.modules.measures.logic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void snapshotReportsCountsAndPercentiles() {
+        var histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(800_000L);
+        }
+        histogram.record(20_000_000L);
+        histogram.record(30_000_000_000L);
+        histogram.recordTimeout();
+
+        var latency = histogram.snapshot();
+        assertEquals(100, latency.getCount());
+        assertEquals(1, latency.getTimeouts());
+        assertEquals(1.0, latency.getP50Ms());
+        assertEquals(1.0, latency.getP95Ms());
+        assertEquals(25.0, latency.getP99Ms());
+        assertEquals(30_000.0, latency.getMaxMs());
+        assertEquals(latency.getBucketBoundsMs().size() + 1, latency.getBucketCounts().size());
+        // Beyond the last bound
+        assertEquals(1L, latency.getBucketCounts().getLast());
+    }
+
+    @Test
+    void emptySnapshotIsZero() {
+        var latency = new LatencyHistogram().snapshot();
+        assertEquals(0, latency.getCount());
+        assertEquals(0.0, latency.getMeanMs());
+        assertEquals(0.0, latency.getP99Ms());
+    }
+}
@@ -0,0 +1,110 @@
+package com.id.pulse.modules.measures.logic;
+
+import com.id.pulse.modules.measures.model.PulseMeasure;
+import com.id.pulse.modules.measures.model.PulseUpStream;
+import com.id.pulse.modules.measures.model.enums.PulseSourceType;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeasureDependencyPlanTest {
+
+    @Test
+    void impactedFollowsChannelsAndDownstreamInTopologicalOrder() {
+        var measures = measures(
+                measure("F", measureUp("E")),
+                measure("E", measureUp("C"), measureUp("D")),
+                measure("C", measureUp("A"), channelUp("c2")),
+                measure("D", measureUp("B"), channelUp("c1")),
+                measure("A", channelUp("c1")),
+                measure("B", channelUp("c2")),
+                measure("K"));
+        var plan = MeasureDependencyPlan.of(measures, m -> m.getPath().equals("K"), m -> false);
+
+        var realtime = paths(plan.impacted(List.of("c1"), false));
+        assertEquals(Set.of("A", "C", "D", "E", "F", "K"), new HashSet<>(realtime));
+        assertBefore(realtime, "A", "C");
+        assertBefore(realtime, "C", "E");
+        assertBefore(realtime, "D", "E");
+        assertBefore(realtime, "E", "F");
+
+        // K is only forced on realtime runs
+        assertEquals(Set.of("B", "C", "D", "E", "F"), new HashSet<>(paths(plan.impacted(List.of("c2"), true))));
+        assertTrue(plan.impacted(List.of("unknown"), true).isEmpty());
+    }
+
+    @Test
+    void impactedLevelsGroupMeasuresByDepth() {
+        var measures = measures(
+                measure("E", measureUp("C"), measureUp("D")),
+                measure("C", measureUp("A"), channelUp("c2")),
+                measure("D", measureUp("B"), channelUp("c1")),
+                measure("A", channelUp("c1")),
+                measure("B", channelUp("c2")));
+        var plan = MeasureDependencyPlan.of(measures, m -> false, m -> false);
+
+        assertEquals(List.of(Set.of("A"), Set.of("C", "D"), Set.of("E")), levelPaths(plan.impactedLevels(List.of("c1"), false)));
+        // A is not impacted, C keeps its level
+        assertEquals(List.of(Set.of("B"), Set.of("C", "D"), Set.of("E")), levelPaths(plan.impactedLevels(List.of("c2"), false)));
+        assertTrue(plan.impactedLevels(List.of("unknown"), false).isEmpty());
+    }
+
+    @Test
+    void cyclicMeasuresAndTheirDownstreamAreLeftOut() {
+        var measures = measures(
+                measure("X", measureUp("Y")),
+                measure("Y", measureUp("X"), channelUp("c1")),
+                measure("Z", measureUp("X")),
+                measure("A", channelUp("c1")));
+        var plan = MeasureDependencyPlan.of(measures, m -> false, m -> false);
+
+        assertEquals(List.of("X", "Y", "Z"), plan.unordered());
+        assertEquals(List.of("A"), paths(plan.impacted(List.of("c1"), false)));
+    }
+
+    @Test
+    void findCycleReturnsThePathThroughTheMeasure() {
+        var measures = measures(
+                measure("A", measureUp("C")),
+                measure("B", measureUp("A")),
+                measure("C", measureUp("B")),
+                measure("D", measureUp("C")));
+
+        assertEquals(Optional.of(List.of("A", "B", "C", "A")), MeasureDependencyPlan.findCycle(measures, "A"));
+        assertTrue(MeasureDependencyPlan.findCycle(measures, "D").isEmpty());
+    }
+
+    private static Map<String, PulseMeasure> measures(PulseMeasure... measures) {
+        Map<String, PulseMeasure> map = new LinkedHashMap<>();
+        for (PulseMeasure m : measures) {
+            map.put(m.getPath(), m);
+        }
+        return map;
+    }
+
+    private static PulseMeasure measure(String path, PulseUpStream... upstreams) {
+        return PulseMeasure.builder().path(path).upstreams(List.of(upstreams)).build();
+    }
+
+    private static PulseUpStream channelUp(String path) {
+        return PulseUpStream.builder().path(path).sourceType(PulseSourceType.CHANNEL).build();
+    }
+
+    private static PulseUpStream measureUp(String path) {
+        return PulseUpStream.builder().path(path).sourceType(PulseSourceType.MEASURE).build();
+    }
+
+    private static List<String> paths(List<PulseMeasure> measures) {
+        return measures.stream().map(PulseMeasure::getPath).toList();
+    }
+
+    private static List<Set<String>> levelPaths(List<List<PulseMeasure>> levels) {
+        return levels.stream().map(level -> Set.copyOf(paths(level))).toList();
+    }
+
+    private static void assertBefore(List<String> order, String first, String second) {
+        assertTrue(order.indexOf(first) < order.indexOf(second), first + " should run before " + second);
+    }
+}
@@ -1,8 +1,10 @@
 package com.id.pulse.modules.measures.logic;
 
+import com.id.pulse.config.AppConfig;
 import com.id.pulse.model.PulseDataPoint;
-import com.id.pulse.modules.alarms.service.AlarmsCrudService;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.model.PulseConfigSnapshot;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
 import com.id.pulse.modules.datapoints.ingestor.service.DataIngestor;
 import com.id.pulse.modules.measures.model.PulseMeasure;
 import com.id.pulse.modules.measures.model.PulseUpStream;
@@ -10,11 +12,13 @@ import com.id.pulse.modules.measures.model.ScriptEvaluatorResult;
 import com.id.pulse.modules.measures.model.enums.PulseSourceType;
 import com.id.pulse.modules.measures.model.enums.PulseComputationMode;
 import com.id.pulse.modules.measures.model.enums.PulseTransformType;
+import com.id.pulse.modules.measures.service.AlarmConditionEvaluator;
 import com.id.pulse.modules.measures.service.MeasureHookService;
 import com.id.pulse.modules.measures.service.MeasureJsEvaluator;
 import com.id.pulse.modules.measures.service.MeasuresCrudService;
 import com.id.pulse.modules.measures.model.TransformerRun;
 import com.id.pulse.modules.measures.service.MeasureTransformer;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
 import com.id.pulse.modules.poller.service.LatestValuesBucket;
 import com.id.pulse.modules.timeseries.model.PulseChunkMetadata;
 import com.id.pulse.modules.timeseries.model.PulseIngestorWriteResult;
@@ -39,7 +43,7 @@ class MeasureTransformerTest {
     @Mock
     private MeasuresCrudService measuresCrudService;
     @Mock
-    private AlarmsCrudService alarmsCrudService;
+    private ConfigSnapshotService configSnapshotService;
     @Mock
     private DataIngestor dataIngestor;
     @Mock
@@ -48,6 +52,10 @@ class MeasureTransformerTest {
     private MeasureJsEvaluator measureJsEvaluator;
     @Mock
     private MeasureHookService measureHookService;
+    @Mock
+    private AlarmConditionEvaluator alarmConditionEvaluator;
+    @Mock
+    private AppConfig appConfig;
     @InjectMocks
     private MeasureTransformer measureTransformer;
 
@@ -57,7 +65,10 @@ class MeasureTransformerTest {
     @BeforeEach
     void setupDefaults() {
         when(measureHookService.fetchProvideMeasureList()).thenReturn(List.of());
-        when(alarmsCrudService.findAll()).thenReturn(List.of());
+    }
+
+    private void givenMeasures(PulseMeasure... measures) {
+        when(configSnapshotService.get()).thenReturn(PulseConfigSnapshot.of(1, List.of(), List.of(), List.of(measures), List.of()));
     }
 
     @Test
@@ -71,7 +82,7 @@ class MeasureTransformerTest {
                         PulseUpStream.builder().path("c1").sourceType(PulseSourceType.CHANNEL).build()
                 ))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
+        givenMeasures(m);
 
         // Channel data point
         PulseDataPoint dp = PulseDataPoint.builder()
@@ -114,7 +125,7 @@ class MeasureTransformerTest {
                         PulseUpStream.builder().path("c2").sourceType(PulseSourceType.CHANNEL).build()
                 ))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(n));
+        givenMeasures(n);
 
         PulseDataPoint dp = PulseDataPoint.builder()
                 .path("c2").tms(555L).type(PulseDataType.DOUBLE).val(3.5).build();
@@ -152,7 +163,7 @@ class MeasureTransformerTest {
                         PulseUpStream.builder().path("c2").sourceType(PulseSourceType.CHANNEL).build()
                 ))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
+        givenMeasures(m);
 
         PulseDataPoint dp1 = PulseDataPoint.builder().path("c1").tms(100L).type(PulseDataType.DOUBLE).val(2.0).build();
         PulseDataPoint dp2 = PulseDataPoint.builder().path("c2").tms(100L).type(PulseDataType.DOUBLE).val(4.0).build();
@@ -211,7 +222,7 @@ class MeasureTransformerTest {
                 .path("F").dataType(PulseDataType.DOUBLE).transformType(PulseTransformType.AVG_LATEST)
                 .upstreams(List.of(PulseUpStream.builder().path("E").sourceType(PulseSourceType.MEASURE).build()))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(a, b, c, d, e, f));
+        givenMeasures(a, b, c, d, e, f);
 
         // Channel inputs
         PulseDataPoint dp1 = PulseDataPoint.builder().path("c1").tms(1000L).type(PulseDataType.DOUBLE).val(2.0).build();
@@ -250,7 +261,7 @@ class MeasureTransformerTest {
                 .realtimeComputationMode(PulseComputationMode.CONTINUOUS)
                 .details(Map.of("js_script", "1 + 1"))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
+        givenMeasures(m);
 
         PulseChunkMetadata meta = mock(PulseChunkMetadata.class);
         when(dataIngestor.prepareMetadata(MeasureTransformer.MEASURES_GROUP, "JS_CONT", PulseDataType.DOUBLE, 100L))
@@ -258,7 +269,7 @@ class MeasureTransformerTest {
         when(dataIngestor.writeAsync(eq(meta), anyMap()))
                 .thenReturn(CompletableFuture.completedFuture(mock(PulseIngestorWriteResult.class)));
 
-        when(measureJsEvaluator.evaluate(eq(1000L), anyString(), any(), any(), anyString()))
+        when(measureJsEvaluator.evaluate(eq(1000L), anyString(), any(PulseSeriesBindings.class), any(), anyString(), anyLong()))
                 .thenReturn(ScriptEvaluatorResult.builder().ok(true).result(2.0).build());
 
         TransformerRun run = new TransformerRun(List.of(), 1000L, 100L);
@@ -267,7 +278,7 @@ class MeasureTransformerTest {
         assertEquals(1, results.size());
         assertEquals("JS_CONT", results.get(0).getPath());
         assertEquals(2.0, results.get(0).getVal());
-        verify(measureJsEvaluator).evaluate(eq(1000L), anyString(), any(), any(), anyString());
+        verify(measureJsEvaluator).evaluate(eq(1000L), anyString(), any(PulseSeriesBindings.class), any(), anyString(), anyLong());
     }
 
     @Test
@@ -279,7 +290,7 @@ class MeasureTransformerTest {
                 .realtimeComputationMode(PulseComputationMode.ON_INPUT_TRIGGER)
                 .details(Map.of("js_script", "1 + 1"))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
+        givenMeasures(m);
 
         TransformerRun run = new TransformerRun(List.of(), 1000L, 100L);
         List<PulseDataPoint> results = measureTransformer.execute(run);
@@ -300,8 +311,8 @@ class MeasureTransformerTest {
                         "BNET_COMPUTATION_MODE_REPROCESSING", "CONTINUOUS"
                 ))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
-        when(measureHookService.computeMeasure(any()))
+        givenMeasures(m);
+        when(measureHookService.computeMeasure(any(), anyLong()))
                 .thenReturn(Optional.of(0.7));
 
         PulseChunkMetadata meta = mock(PulseChunkMetadata.class);
@@ -316,7 +327,7 @@ class MeasureTransformerTest {
         assertEquals(1, results.size());
         assertEquals("BN_OUT", results.get(0).getPath());
         assertEquals(0.7, results.get(0).getVal());
-        verify(measureHookService).computeMeasure(any());
+        verify(measureHookService).computeMeasure(any(), anyLong());
     }
 
     @Test
@@ -330,13 +341,130 @@ class MeasureTransformerTest {
                         "BNET_COMPUTATION_MODE_REPROCESSING", "ON_INPUT_TRIGGER"
                 ))
                 .build();
-        when(measuresCrudService.findAll()).thenReturn(List.of(m));
+        givenMeasures(m);
 
         TransformerRun run = new TransformerRun(List.of(), 1000L, 100L);
         List<PulseDataPoint> results = measureTransformer.execute(run);
 
         assertTrue(results.isEmpty());
-        verify(measureHookService, never()).computeMeasure(any());
+        verify(measureHookService, never()).computeMeasure(any(), anyLong());
         verifyNoInteractions(dataIngestor);
     }
+
+    @Test
+    void restMeasurePastItsDeadlineKeepsItsLastValue() {
+        PulseMeasure m = PulseMeasure.builder()
+                .path("BN_SLOW")
+                .dataType(PulseDataType.DOUBLE)
+                .transformType(PulseTransformType.REST)
+                .details(Map.of(
+                        "BNET_COMPUTATION_MODE_REALTIME", "CONTINUOUS",
+                        "BNET_COMPUTATION_MODE_REPROCESSING", "CONTINUOUS"
+                ))
+                .build();
+        givenMeasures(m);
+        when(appConfig.getTransformerMeasureTimeoutMs()).thenReturn(50L);
+        when(latestValuesBucket.readAsDataPoint("BN_SLOW")).thenReturn(PulseDataPoint.builder()
+                .path("BN_SLOW").tms(900L).type(PulseDataType.DOUBLE).val(0.4).build());
+        // The hook is given the deadline, but answers well past it
+        when(measureHookService.computeMeasure(any(), eq(50L))).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return Optional.of(0.7);
+        });
+
+        PulseChunkMetadata meta = mock(PulseChunkMetadata.class);
+        when(dataIngestor.prepareMetadata(MeasureTransformer.MEASURES_GROUP, "BN_SLOW", PulseDataType.DOUBLE, 100L))
+                .thenReturn(meta);
+        when(dataIngestor.writeAsync(eq(meta), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(mock(PulseIngestorWriteResult.class)));
+
+        long start = System.nanoTime();
+        List<PulseDataPoint> results = measureTransformer.execute(new TransformerRun(List.of(), 1000L, 100L));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(1, results.size());
+        assertEquals(0.4, results.get(0).getVal());
+        assertEquals(1000L, results.get(0).getTms());
+        assertTrue(elapsedMs < 1500, "Run should not wait for the late hook, took " + elapsedMs + " ms");
+        assertEquals(1, measureTransformer.getLatencies().get("BN_SLOW").getTimeouts());
+    }
+
+    private void givenLastValue(String path, double val) {
+        when(latestValuesBucket.readAsDataPoint(path)).thenReturn(PulseDataPoint.builder()
+                .path(path).tms(900L).type(PulseDataType.DOUBLE).val(val).build());
+    }
+
+    private void givenIngestor(String path) {
+        PulseChunkMetadata meta = mock(PulseChunkMetadata.class);
+        when(dataIngestor.prepareMetadata(MeasureTransformer.MEASURES_GROUP, path, PulseDataType.DOUBLE, 100L))
+                .thenReturn(meta);
+        when(dataIngestor.writeAsync(eq(meta), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(mock(PulseIngestorWriteResult.class)));
+    }
+
+    @Test
+    void failingScriptKeepsTheLastValue() {
+        PulseMeasure m = PulseMeasure.builder()
+                .path("JS_FAIL")
+                .dataType(PulseDataType.DOUBLE)
+                .transformType(PulseTransformType.JAVASCRIPT)
+                .realtimeComputationMode(PulseComputationMode.CONTINUOUS)
+                .details(Map.of("js_script", "undefinedFn()"))
+                .build();
+        givenMeasures(m);
+        givenLastValue("JS_FAIL", 0.4);
+        givenIngestor("JS_FAIL");
+        when(measureJsEvaluator.evaluate(eq(1000L), anyString(), any(PulseSeriesBindings.class), any(), anyString(), anyLong()))
+                .thenReturn(ScriptEvaluatorResult.builder().ok(false).build());
+
+        List<PulseDataPoint> results = measureTransformer.execute(new TransformerRun(List.of(), 1000L, 100L));
+
+        assertEquals(1, results.size());
+        assertEquals(0.4, results.get(0).getVal());
+        assertEquals(1000L, results.get(0).getTms());
+    }
+
+    @Test
+    void scriptWithoutResultKeepsTheLastValue() {
+        PulseMeasure m = PulseMeasure.builder()
+                .path("JS_NULL")
+                .dataType(PulseDataType.DOUBLE)
+                .transformType(PulseTransformType.JAVASCRIPT)
+                .realtimeComputationMode(PulseComputationMode.CONTINUOUS)
+                .details(Map.of("js_script", "undefined"))
+                .build();
+        givenMeasures(m);
+        givenLastValue("JS_NULL", 0.4);
+        givenIngestor("JS_NULL");
+        when(measureJsEvaluator.evaluate(eq(1000L), anyString(), any(PulseSeriesBindings.class), any(), anyString(), anyLong()))
+                .thenReturn(ScriptEvaluatorResult.builder().ok(true).build());
+
+        List<PulseDataPoint> results = measureTransformer.execute(new TransformerRun(List.of(), 1000L, 100L));
+
+        assertEquals(0.4, results.get(0).getVal());
+    }
+
+    @Test
+    void failedHookCallKeepsTheLastValue() {
+        PulseMeasure m = PulseMeasure.builder()
+                .path("BN_ERR")
+                .dataType(PulseDataType.DOUBLE)
+                .transformType(PulseTransformType.REST)
+                .details(Map.of(
+                        "BNET_COMPUTATION_MODE_REALTIME", "CONTINUOUS",
+                        "BNET_COMPUTATION_MODE_REPROCESSING", "CONTINUOUS"
+                ))
+                .build();
+        givenMeasures(m);
+        givenLastValue("BN_ERR", 0.4);
+        givenIngestor("BN_ERR");
+        // What the hook service answers on an HTTP error, e.g. a 500
+        when(measureHookService.computeMeasure(any(), anyLong())).thenReturn(Optional.empty());
+
+        List<PulseDataPoint> results = measureTransformer.execute(new TransformerRun(List.of(), 1000L, 100L));
+
+        assertEquals(1, results.size());
+        assertEquals(0.4, results.get(0).getVal());
+        assertEquals(0, measureTransformer.getLatencies().get("BN_ERR").getTimeouts());
+    }
 }
@@ -0,0 +1,93 @@
+package com.id.pulse.modules.measures.service;
+
+import com.id.pulse.modules.measures.model.PulseMeasureRegisterHook;
+import com.id.pulse.modules.measures.model.PulseMeasureRestCompute;
+import com.id.pulse.modules.measures.model.enums.PulseMeasureRegisterHookType;
+import com.id.px3.rest.security.JwtService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MeasureHookServiceTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    private HttpServer server;
+    private MeasureHookService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/compute-ok", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"value\":0.7}".getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/compute-error", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        when(jwtService.generateToken(anyString(), anySet(), any(Duration.class))).thenReturn("token");
+        service = new MeasureHookService(jwtService, new RestTemplate());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void givenComputeHook(String path) {
+        service.registerHook(PulseMeasureRegisterHook.builder()
+                .type(PulseMeasureRegisterHookType.COMPUTE_MEASURE)
+                .audienceId("bnet")
+                .postEndPoint("http://localhost:%d%s".formatted(server.getAddress().getPort(), path))
+                .build());
+    }
+
+    private static PulseMeasureRestCompute payload() {
+        return PulseMeasureRestCompute.builder()
+                .measurePath("BN_OUT")
+                .upstreamValues(Map.of())
+                .tms(1000L)
+                .intervalMs(100L)
+                .build();
+    }
+
+    @Test
+    void answerIsReturnedWithinTheTimeout() {
+        givenComputeHook("/compute-ok");
+
+        assertEquals(0.7, service.computeMeasure(payload(), 1000).orElseThrow());
+    }
+
+    @Test
+    void serverErrorGivesNoValue() {
+        givenComputeHook("/compute-error");
+
+        assertTrue(service.computeMeasure(payload(), 1000).isEmpty());
+    }
+}
@@ -2,6 +2,7 @@ package com.id.pulse.modules.measures.service;
 
 import com.id.pulse.model.PulseDataMatrix;
 import com.id.pulse.modules.parser.PulseDataMatrixParser;
+import com.id.pulse.modules.parser.PulseSeriesBindings;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
@@ -95,6 +96,87 @@ class MeasureJsEvaluatorTest {
         assertTrue(hasError, "Error message should mention syntax or parse error");
     }
 
+    @Test
+    void evaluate_reusedContextStartsFromCleanGlobals() {
+        MeasureJsEvaluator evaluator = new MeasureJsEvaluator();
+
+        PulseDataMatrix matrix = PulseDataMatrix.builder()
+                .add("group", "sensor", 1000L, 40.0)
+                .build();
+        PulseDataMatrixParser parser = PulseDataMatrixParser.from(matrix);
+
+        // Sequential runs share a pooled context: lexical declarations and globals must not survive a run
+        String script = """
+                    const first = _parser.toValues("sensor")[0];
+                    var runs = (typeof runs === 'undefined') ? 1 : runs + 1;
+                    leaked = (typeof leaked === 'undefined') ? 1 : leaked + 1;
+                    first + runs + leaked;
+                """;
+
+        for (int i = 0; i < 3; i++) {
+            var value = evaluator.evaluate(1000L, script, parser, 0d, "reuse_test");
+            assertTrue(value.isOk(), "Run " + i + " should succeed");
+            assertEquals(42.0, ((Number) value.getResult()).doubleValue());
+        }
+        evaluator.close();
+    }
+
+    @Test
+    void evaluate_builtinChangesDoNotLeakToTheNextScript() {
+        MeasureJsEvaluator evaluator = new MeasureJsEvaluator();
+
+        PulseDataMatrix matrix = PulseDataMatrix.builder()
+                .add("group", "sensor", 1000L, 40.0)
+                .build();
+        PulseDataMatrixParser parser = PulseDataMatrixParser.from(matrix);
+
+        // Runs share a pooled context: changes to the builtins are ignored
+        String tampering = """
+                    Array.prototype.leaked = 1;
+                    Math.round = () => 0;
+                    Math.leaked = 1;
+                    JSON = null;
+                    _parser.toValues("sensor")[0];
+                """;
+        String checking = """
+                    const clean = typeof [].leaked === 'undefined'
+                            && Math.round(1.6) === 2
+                            && typeof Math.leaked === 'undefined'
+                            && JSON.stringify([1]) === '[1]';
+                    clean ? _parser.toValues("sensor")[0] : -1;
+                """;
+
+        var tampered = evaluator.evaluate(1000L, tampering, parser, 0d, "lockdown_test");
+        assertTrue(tampered.isOk(), "Ignored assignments should not fail the script");
+        var value = evaluator.evaluate(1000L, checking, parser, 0d, "lockdown_test");
+        assertTrue(value.isOk(), "Checking script should succeed");
+        assertEquals(40.0, ((Number) value.getResult()).doubleValue());
+        evaluator.close();
+    }
+
+    @Test
+    void evaluate_scriptPastItsTimeoutIsCancelled() {
+        MeasureJsEvaluator evaluator = new MeasureJsEvaluator();
+
+        PulseDataMatrix matrix = PulseDataMatrix.builder()
+                .add("group", "sensor", 1000L, 40.0)
+                .build();
+        var series = PulseSeriesBindings.from(PulseDataMatrixParser.from(matrix));
+
+        long start = System.nanoTime();
+        var cancelled = evaluator.evaluate(1000L, "while (true) {}", series, 0d, "timeout_test", 100);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertFalse(cancelled.isOk(), "Cancelled script should not be ok");
+        assertTrue(elapsedMs < 5000, "Script should be cancelled shortly after its timeout, took " + elapsedMs + " ms");
+
+        // The cancelled context is dropped, the next run gets a working one
+        var value = evaluator.evaluate(1000L, "_parser.toValues(\"sensor\")[0]", series, 0d, "timeout_test", 1000);
+        assertTrue(value.isOk(), "Run after a cancelled one should succeed");
+        assertEquals(40.0, ((Number) value.getResult()).doubleValue());
+        evaluator.close();
+    }
+
     @Test
     void evaluate_isThreadSafe() throws InterruptedException, ExecutionException {
         int threadCount = 10;
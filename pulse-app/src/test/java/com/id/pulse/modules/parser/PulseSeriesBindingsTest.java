@@ -0,0 +1,81 @@
+package com.id.pulse.modules.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.id.pulse.model.PulseDataMatrix;
+import com.id.pulse.model.PulseDataPoint;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class PulseSeriesBindingsTest {
+
+    private PulseDataMatrixParser parser;
+    private PulseSeriesBindings series;
+
+    @BeforeEach
+    void setup() {
+        PulseDataMatrix matrix = PulseDataMatrix.builder()
+                .add("main", "TEMP_1", 1000L, 10.0)
+                .add("main", "TEMP_1", 2000L, 20.0)
+                .add("main", "TEMP_1", 3000L, 30.0)
+                .add("main", "TEMP_2", 2500L, 12.5)
+                .add("main", "TEMP_2", 4500L, 22.5)
+                .add("main", "VALVE", 1000L, true)
+                .add("main", "VALVE", 3500L, false)
+                .build();
+        parser = PulseDataMatrixParser.from(matrix);
+        series = PulseSeriesBindings.from(parser);
+    }
+
+    @Test
+    void timelineMatchesParserAlignment() {
+        List<String> paths = List.of("TEMP_1", "TEMP_2", "VALVE");
+        List<Long> merged = parser.toMergedTimestamps(paths);
+        var timeline = series.timeline(paths);
+
+        assertIterableEquals(merged, toList(timeline.timestamps()));
+        assertIterableEquals(parser.toNumbers("TEMP_1", 0.0, merged), toList(timeline.numbers("TEMP_1", 0.0)));
+        assertIterableEquals(parser.toNumbers("TEMP_2", 0.0, merged), toList(timeline.numbers("TEMP_2", 0.0)));
+        assertIterableEquals(parser.toBooleans("VALVE", false, merged), toList(timeline.booleans("VALVE", false)));
+    }
+
+    @Test
+    void missingPathYieldsDefaults() {
+        var timeline = series.timeline(List.of("TEMP_1", "MISSING"));
+
+        assertEquals(3, timeline.size());
+        assertIterableEquals(List.of(-1.0, -1.0, -1.0), toList(timeline.numbers("MISSING", -1.0)));
+        assertEquals(0, series.timestamps("MISSING").getSize());
+        assertEquals(-1.0, series.latestNumber("MISSING", -1.0));
+    }
+
+    @Test
+    void fromPointsSortsAndKeepsLastDuplicate() {
+        var fromPoints = PulseSeriesBindings.from(List.of(
+                PulseDataPoint.builder().path("A").tms(2000L).val(2.0).build(),
+                PulseDataPoint.builder().path("A").tms(1000L).val(1.0).build(),
+                PulseDataPoint.builder().path("A").tms(2000L).val(3.0).build()));
+
+        assertIterableEquals(List.of(1000L, 2000L), toList(fromPoints.timestamps("A")));
+        assertIterableEquals(List.of(1.0, 3.0), toList(fromPoints.numbers("A", 0.0)));
+        assertEquals(3.0, fromPoints.latestNumber("A", 0.0));
+        assertSame(fromPoints.timeline(), fromPoints.timeline(List.of("A")));
+    }
+
+    @Test
+    void seriesAreReadOnly() {
+        assertThrows(UnsupportedOperationException.class, () -> series.timestamps("TEMP_1").set(0, null));
+    }
+
+    private static List<Object> toList(ProxyArray array) {
+        List<Object> list = new ArrayList<>();
+        for (long i = 0; i < array.getSize(); i++) {
+            list.add(array.get(i));
+        }
+        return list;
+    }
+}
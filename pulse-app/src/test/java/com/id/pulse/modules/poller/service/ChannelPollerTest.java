@@ -1,9 +1,15 @@
 package com.id.pulse.modules.poller.service;
 
+import com.id.pulse.config.AppConfig;
 import com.id.pulse.model.PulseDataPoint;
 import com.id.pulse.modules.channel.model.PulseChannel;
+import com.id.pulse.modules.channel.model.PulseChannelGroup;
 import com.id.pulse.modules.channel.model.enums.PulseAggregationType;
 import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.config.model.PulseConfigSnapshot;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
+import com.id.pulse.modules.connector.model.enums.ConnectorCallReason;
+import com.id.pulse.modules.connector.service.ConnectionManager;
 import com.id.pulse.modules.datapoints.model.DpAccumulator;
 import com.id.pulse.modules.datapoints.service.DpAccumulatorsManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +17,16 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class ChannelPollerAggregateTest {
 
@@ -29,11 +43,36 @@ class ChannelPollerAggregateTest {
         // Other dependencies not used in aggregate()
         poller = new ChannelPoller(
                 dpManager,
-                null, null, null,
-                null, null, null, null, null
+                null,
+                null, null, null, null, null, null,
+                null
         );
     }
 
+    @Test
+    void testAggregateDropsLatePoints() throws Exception {
+        PulseChannel channel = new PulseChannel();
+        channel.setChannelGroupCode(GROUP);
+        channel.setPath(PATH);
+        channel.setAggregationType(PulseAggregationType.SUM);
+        channel.setAggregationTimeBase(BASE);
+
+        Method aggregateMethod = ChannelPoller.class.getDeclaredMethod("aggregate", List.class, List.class);
+        aggregateMethod.setAccessible(true);
+
+        // The window [0,100) closes on the point at 150; a point of it arriving afterward is late
+        aggregateMethod.invoke(poller, List.of(channel), List.of(
+                new PulseDataPoint(GROUP, PATH, 10L, PulseDataType.DOUBLE, 1.0, null),
+                new PulseDataPoint(GROUP, PATH, 150L, PulseDataType.DOUBLE, 2.0, null)));
+        @SuppressWarnings("unchecked")
+        List<PulseDataPoint> results = (List<PulseDataPoint>) aggregateMethod.invoke(poller, List.of(channel), List.of(
+                new PulseDataPoint(GROUP, PATH, 20L, PulseDataType.DOUBLE, 5.0, null)));
+
+        assertTrue(results.isEmpty());
+        assertEquals(1L, dpManager.getLateDroppedPoints().get(GROUP));
+        assertEquals(2.0, (double) dpManager.pollCompleted(GROUP, PATH, 200L).getFirst().aggregate(PulseAggregationType.SUM).getVal(), 1e-6);
+    }
+
     @Test
     void testAggregateRemovesCompletedAccumulators() throws Exception {
         // Create a channel with SUM aggregation
@@ -73,4 +112,69 @@ class ChannelPollerAggregateTest {
         assertEquals(100L, remaining.getTmsAccStart());
         assertEquals(200L, remaining.getTmsAccEnd());
     }
+
+    @Test
+    void idleReplayFlushesItsOwnWindowsOnly() {
+        PulseChannel channel = new PulseChannel();
+        channel.setChannelGroupCode(GROUP);
+        channel.setPath(PATH);
+        channel.setAggregationType(PulseAggregationType.SUM);
+        channel.setAggregationTimeBase(BASE);
+        PulseChannelGroup group = PulseChannelGroup.builder().code(GROUP).connectors(List.of("c1")).build();
+
+        var configSnapshotService = mock(ConfigSnapshotService.class);
+        when(configSnapshotService.get()).thenReturn(PulseConfigSnapshot.of(1, List.of(group), List.of(channel), List.of(), List.of()));
+        var connectionManager = mock(ConnectionManager.class);
+        when(connectionManager.queryConnector(eq("c1"), anyMap(), any(ConnectorCallReason.class)))
+                .thenReturn(CompletableFuture.completedFuture(List.of(
+                        new PulseDataPoint(GROUP, PATH, 10L, PulseDataType.DOUBLE, 1.0, null))));
+        var appConfig = mock(AppConfig.class);
+        when(appConfig.getAggregationAllowedLatenessMs()).thenReturn(60_000L);
+        poller = new ChannelPoller(dpManager, configSnapshotService, connectionManager, null, null, null, null, null, appConfig);
+
+        // Replay leaves [0,100) open, live polling meanwhile opened a window at the wall clock
+        poller.replayGroup(group).join();
+        long live = System.currentTimeMillis() / BASE * BASE;
+        dpManager.push(GROUP, PATH, live, live + BASE, new PulseDataPoint(GROUP, PATH, live, PulseDataType.DOUBLE, 2.0, null));
+
+        poller.closeExpiredWindows();
+
+        var open = dpManager.findCompleted(GROUP, PATH, Long.MAX_VALUE);
+        assertEquals(1, open.size());
+        assertEquals(live, open.getFirst().getTmsAccStart());
+    }
+
+    @Test
+    void liveConnectorTimingOutIsLeftOutUntilItAnswers() {
+        PulseChannel channel = new PulseChannel();
+        channel.setChannelGroupCode(GROUP);
+        channel.setPath(PATH);
+        PulseChannelGroup group = PulseChannelGroup.builder().code(GROUP).connectors(List.of("slow", "fast")).build();
+
+        var configSnapshotService = mock(ConfigSnapshotService.class);
+        when(configSnapshotService.get()).thenReturn(PulseConfigSnapshot.of(1, List.of(group), List.of(channel), List.of(), List.of()));
+        var slow = new CompletableFuture<List<PulseDataPoint>>();
+        var connectionManager = mock(ConnectionManager.class);
+        when(connectionManager.queryConnector(eq("slow"), anyMap(), eq(ConnectorCallReason.LIVE))).thenReturn(slow);
+        when(connectionManager.queryConnector(eq("fast"), anyMap(), eq(ConnectorCallReason.LIVE)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(List.of(
+                        new PulseDataPoint(GROUP, PATH, 10L, PulseDataType.DOUBLE, 1.0, null))));
+        var appConfig = mock(AppConfig.class);
+        when(appConfig.getPollerConnectorTimeoutMs()).thenReturn(50L);
+        poller = new ChannelPoller(dpManager, configSnapshotService, connectionManager, null, null, null, null, null, appConfig);
+
+        // The slow connector times out, the fast one is polled as usual
+        assertEquals(1, poller.pollGroup(group).join().dataPointCount());
+        assertEquals(1L, poller.getConnectorTimeouts().get("slow"));
+
+        // Still running: not queried again
+        assertEquals(1, poller.pollGroup(group).join().dataPointCount());
+        assertEquals(1L, poller.getConnectorSkips().get("slow"));
+        verify(connectionManager, times(1)).queryConnector(eq("slow"), anyMap(), eq(ConnectorCallReason.LIVE));
+
+        // Once it answered, the next poll queries it again
+        slow.complete(List.of());
+        poller.pollGroup(group).join();
+        verify(connectionManager, times(2)).queryConnector(eq("slow"), anyMap(), eq(ConnectorCallReason.LIVE));
+    }
 }
@@ -0,0 +1,68 @@
+package com.id.pulse.modules.poller.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.PulseChannelGroup;
+import com.id.pulse.modules.config.model.PulseConfigSnapshot;
+import com.id.pulse.modules.config.service.ConfigSnapshotService;
+import com.id.pulse.modules.orchestrator.service.ChannelGroupsRegistry;
+import com.id.pulse.modules.poller.model.PollOutcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GroupPollSchedulerTest {
+
+    @Mock
+    private ChannelPoller channelPoller;
+    @Mock
+    private ConfigSnapshotService configSnapshotService;
+    @Mock
+    private ChannelGroupsRegistry channelGroupsRegistry;
+    @Mock
+    private AppConfig appConfig;
+
+    private GroupPollScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void syncStartsAndStopsGroupTimers() {
+        scheduler = new GroupPollScheduler(channelPoller, configSnapshotService, channelGroupsRegistry, appConfig);
+        PulseChannelGroup group = new PulseChannelGroup();
+        group.setCode("g1");
+        group.setInterval(20L);
+        when(channelGroupsRegistry.getAllRunning()).thenReturn(List.of("g1"));
+        when(configSnapshotService.get()).thenReturn(PulseConfigSnapshot.of(1, List.of(group), List.of(), List.of(), List.of()));
+        when(channelPoller.pollGroup(any())).thenReturn(CompletableFuture.completedFuture(PollOutcome.empty()));
+
+        scheduler.sync();
+
+        verify(channelPoller, timeout(2000).atLeast(3)).pollGroup(group);
+        var stats = scheduler.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("g1", stats.getFirst().groupCode());
+        assertTrue(stats.getFirst().polls() >= 3);
+
+        when(channelGroupsRegistry.getAllRunning()).thenReturn(List.of());
+        scheduler.sync();
+
+        assertTrue(scheduler.getStats().isEmpty());
+    }
+}
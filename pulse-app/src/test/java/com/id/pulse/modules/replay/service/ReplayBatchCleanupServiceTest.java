@@ -1,13 +1,19 @@
 package com.id.pulse.modules.replay.service;
 
 import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.datapoints.ingestor.service.ChunkWriteBuffer;
 import com.id.pulse.modules.datapoints.model.PulseChunk;
 import com.id.pulse.modules.datapoints.model.PulseChunkMetadataEntity;
+import com.id.pulse.modules.datapoints.service.ChunkReadCache;
+import com.id.pulse.modules.hottier.service.HotTierService;
 import com.id.pulse.modules.replay.model.ReplayBatchCleanupResult;
+import com.id.pulse.modules.rollups.service.RollupService;
 import com.id.px3.rest.security.JwtService;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.junit.jupiter.api.Test;
@@ -23,6 +29,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,6 +50,14 @@ class ReplayBatchCleanupServiceTest {
     private AppConfig appConfig;
     @Mock
     private FindIterable<Document> findIterable;
+    @Mock
+    private RollupService rollupService;
+    @Mock
+    private ChunkReadCache chunkReadCache;
+    @Mock
+    private HotTierService hotTierService;
+    @Mock
+    private ChunkWriteBuffer chunkWriteBuffer;
 
     @Test
     void batchExistsReturnsFalseForBlankBatchId() {
@@ -49,7 +65,11 @@ class ReplayBatchCleanupServiceTest {
                 mongoTemplate,
                 restTemplate,
                 jwtService,
-                appConfig
+                appConfig,
+                rollupService,
+                chunkReadCache,
+                hotTierService,
+                chunkWriteBuffer
         );
         assertFalse(service.batchExists(" "));
     }
@@ -60,7 +80,11 @@ class ReplayBatchCleanupServiceTest {
                 mongoTemplate,
                 restTemplate,
                 jwtService,
-                appConfig
+                appConfig,
+                rollupService,
+                chunkReadCache,
+                hotTierService,
+                chunkWriteBuffer
         );
         PulseChunkMetadataEntity metadata = new PulseChunkMetadataEntity();
         metadata.setCollectionName("col1");
@@ -78,7 +102,11 @@ class ReplayBatchCleanupServiceTest {
                 mongoTemplate,
                 restTemplate,
                 jwtService,
-                appConfig
+                appConfig,
+                rollupService,
+                chunkReadCache,
+                hotTierService,
+                chunkWriteBuffer
         );
         when(appConfig.getIrisBackendBaseUrl()).thenReturn("");
 
@@ -102,11 +130,60 @@ class ReplayBatchCleanupServiceTest {
         when(cursor.next()).thenReturn(docUpdate, docDelete);
         when(findIterable.iterator()).thenReturn(cursor);
         when(mongoCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(mongoCollection.updateOne(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoCollection.deleteOne(any(Bson.class))).thenReturn(DeleteResult.acknowledged(1));
 
         ReplayBatchCleanupResult result = service.deleteBatch("batch-1");
 
         assertEquals(4, result.pointsRemoved());
         assertEquals(1, result.docsUpdated());
         assertEquals(1, result.docsDeleted());
+        verify(chunkWriteBuffer).drain();
+    }
+
+    @Test
+    void deleteBatchRereadsChunkChangedConcurrently() {
+        ReplayBatchCleanupService service = new ReplayBatchCleanupService(
+                mongoTemplate,
+                restTemplate,
+                jwtService,
+                appConfig,
+                rollupService,
+                chunkReadCache,
+                hotTierService,
+                chunkWriteBuffer
+        );
+        when(appConfig.getIrisBackendBaseUrl()).thenReturn("");
+
+        PulseChunkMetadataEntity metadata = new PulseChunkMetadataEntity();
+        metadata.setCollectionName("col1");
+        when(mongoTemplate.findAll(PulseChunkMetadataEntity.class)).thenReturn(List.of(metadata));
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection("col1")).thenReturn(mongoCollection);
+
+        Document read = new Document("_id", "doc1")
+                .append(PulseChunk.TS, List.of(1L, 2L))
+                .append(PulseChunk.V, List.of(10, 20))
+                .append(PulseChunk.BATCH_IDS, List.of("batch-1", "keep"));
+        // A point was pushed between the read and the rewrite
+        Document reread = new Document("_id", "doc1")
+                .append(PulseChunk.TS, List.of(1L, 2L, 3L))
+                .append(PulseChunk.V, List.of(10, 20, 30))
+                .append(PulseChunk.BATCH_IDS, List.of("batch-1", "keep", "batch-1"));
+
+        var cursor = org.mockito.Mockito.mock(com.mongodb.client.MongoCursor.class);
+        when(cursor.hasNext()).thenReturn(true, false);
+        when(cursor.next()).thenReturn(read);
+        when(findIterable.iterator()).thenReturn(cursor);
+        when(findIterable.first()).thenReturn(reread);
+        when(mongoCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(mongoCollection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+
+        ReplayBatchCleanupResult result = service.deleteBatch("batch-1");
+
+        assertEquals(2, result.pointsRemoved());
+        assertEquals(1, result.docsUpdated());
+        verify(mongoCollection, times(2)).updateOne(any(Bson.class), any(Bson.class));
     }
 }
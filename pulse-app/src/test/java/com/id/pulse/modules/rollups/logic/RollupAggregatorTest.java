@@ -0,0 +1,82 @@
+package com.id.pulse.modules.rollups.logic;
+
+import com.id.pulse.modules.rollups.model.PulseRollup;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupAggregatorTest {
+
+    @Test
+    void bucketsAreEpochAlignedAndKeepExtremesAndEnds() {
+        var aggregator = new RollupAggregator("a.b", 60_000);
+        aggregator.add(60_500, 3.0);
+        aggregator.add(60_000, 5.0);
+        aggregator.add(119_999, 1.0);
+        aggregator.add(120_000, 7.0);
+
+        List<PulseRollup> rollups = aggregator.drainAll();
+
+        assertEquals(2, rollups.size());
+        var first = rollups.getFirst();
+        assertEquals(60_000, first.ts());
+        assertEquals(3, first.count());
+        assertEquals(9.0, first.sum());
+        assertEquals(119_999, first.minTs());
+        assertEquals(1.0, first.min());
+        assertEquals(60_000, first.maxTs());
+        assertEquals(5.0, first.max());
+        assertEquals(60_000, first.firstTs());
+        assertEquals(5.0, first.first());
+        assertEquals(119_999, first.lastTs());
+        assertEquals(1.0, first.last());
+        assertEquals(120_000, rollups.get(1).ts());
+        assertTrue(aggregator.isEmpty());
+    }
+
+    @Test
+    void drainBeforeOnlyReturnsCompletedBuckets() {
+        var aggregator = new RollupAggregator("a.b", 1000);
+        aggregator.add(500, 1L);
+        aggregator.add(1500, 2L);
+
+        assertTrue(aggregator.drainBefore(999).isEmpty());
+        assertEquals(List.of(0L), aggregator.drainBefore(1000).stream().map(PulseRollup::ts).toList());
+        assertEquals(List.of(1000L), aggregator.drainAll().stream().map(PulseRollup::ts).toList());
+    }
+
+    @Test
+    void floorAndCeilHandleNegativeTimestamps() {
+        assertEquals(-1000, RollupAggregator.floor(-1, 1000));
+        assertEquals(0, RollupAggregator.ceil(-1, 1000));
+        assertEquals(2000, RollupAggregator.ceil(2000, 1000));
+        assertEquals(3000, RollupAggregator.ceil(2001, 1000));
+    }
+
+    @Test
+    void mergingFinerBucketsMatchesAggregatingThePoints() {
+        long[] ts = {100, 900, 1500, 1500, 2100, 3999};
+        double[] values = {4.0, 1.0, 6.0, 1.0, 6.0, 2.0};
+        var fine = new RollupAggregator("a.b", 1000);
+        var direct = new RollupAggregator("a.b", 4000);
+        for (int i = 0; i < ts.length; i++) {
+            fine.add(ts[i], values[i]);
+            direct.add(ts[i], values[i]);
+        }
+
+        var merged = new RollupAggregator("a.b", 4000);
+        fine.drainAll().forEach(merged::merge);
+
+        assertEquals(direct.drainAll(), merged.drainAll());
+    }
+
+    @Test
+    void mergeRejectsBucketsWiderThanTheTier() {
+        var coarse = new RollupAggregator("a.b", 1000);
+        var wide = new PulseRollup("a.b", 0, 2, 3.0, 500, 1.0, 1500, 2.0, 500, 1.0, 1500, 2.0);
+
+        assertThrows(IllegalArgumentException.class, () -> coarse.merge(wide));
+    }
+}
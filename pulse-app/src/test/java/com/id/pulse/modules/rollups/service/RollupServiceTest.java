@@ -0,0 +1,250 @@
+package com.id.pulse.modules.rollups.service;
+
+import com.id.pulse.config.AppConfig;
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+import com.id.pulse.modules.datapoints.model.PulseChunk;
+import com.id.pulse.modules.datapoints.service.ChunkMetadataCrudService;
+import com.id.pulse.modules.datapoints.util.PrimitiveChunkBuilder;
+import com.id.pulse.modules.rollups.model.PulseRollup;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceTest {
+
+    private static final String CHUNKS = "PulseChunks_G1_DOUBLE_1000";
+    private static final String PATH = "plant.temp";
+
+    @Mock
+    private AppConfig appConfig;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoDatabase mongoDatabase;
+    @Mock
+    private ChunkMetadataCrudService chunkMetadataCrudService;
+    @Mock
+    private MongoCollection<Document> chunkCollection;
+    @Mock
+    private MongoCollection<Document> rollupCollection;
+    @Mock
+    private MongoCollection<Document> coverageCollection;
+    @Mock
+    private BulkWriteResult bulkWriteResult;
+
+    private RollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        when(appConfig.isRollupsEnabled()).thenReturn(true);
+        when(appConfig.getRollupsTiersMs()).thenReturn(List.of(2000L));
+        when(appConfig.getExtractorStreamBatchSize()).thenReturn(100);
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoDatabase.getCollection(CHUNKS)).thenReturn(chunkCollection);
+        when(mongoDatabase.getCollection(RollupService.collectionName(CHUNKS, 2000L))).thenReturn(rollupCollection);
+        rollupService = new RollupService(appConfig, mongoTemplate, chunkMetadataCrudService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FindIterable<Document> found(Document... docs) {
+        FindIterable<Document> iterable = mock(FindIterable.class, RETURNS_SELF);
+        lenient().when(iterable.iterator()).thenAnswer(invocation -> cursor(List.of(docs).iterator()));
+        lenient().when(iterable.first()).thenReturn(docs.length > 0 ? docs[0] : null);
+        return iterable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCursor<Document> cursor(Iterator<Document> docs) {
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        lenient().when(cursor.hasNext()).thenAnswer(invocation -> docs.hasNext());
+        lenient().when(cursor.next()).thenAnswer(invocation -> docs.next());
+        return cursor;
+    }
+
+    private static Document chunk(long tsStart, long tsEnd, List<Long> ts, List<Object> values) {
+        return chunk(PATH, tsStart, tsEnd, ts, values);
+    }
+
+    private static Document chunk(String path, long tsStart, long tsEnd, List<Long> ts, List<Object> values) {
+        return new Document(PulseChunk.PATH, path)
+                .append(PulseChunk.TS_START, tsStart)
+                .append(PulseChunk.TS_END, tsEnd)
+                .append(PulseChunk.TS, ts)
+                .append(PulseChunk.V, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WriteModel<Document>> writtenBuckets() {
+        ArgumentCaptor<List<WriteModel<Document>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(rollupCollection, atLeastOnce()).bulkWrite(captor.capture(), any(BulkWriteOptions.class));
+        List<WriteModel<Document>> models = new ArrayList<>();
+        captor.getAllValues().forEach(models::addAll);
+        return models;
+    }
+
+    @Test
+    void rewrittenPointsAreCountedOnceByTheRefresh() {
+        when(mongoDatabase.getCollection("PulseRollupCoverage")).thenReturn(coverageCollection);
+        when(coverageCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(rollupCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(chunkCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                chunk(0, 2000, List.of(100L, 200L), List.of(1.0, 2.0))));
+        when(rollupCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(bulkWriteResult);
+
+        var written = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "c1", PATH, 0L, 2000L);
+        written.appendDouble(100L, 1.0, null);
+        written.appendDouble(200L, 2.0, null);
+        rollupService.onChunksWritten(CHUNKS, List.of(written));
+        // Same points written again, e.g. by a retried flush
+        rollupService.onChunksWritten(CHUNKS, List.of(written));
+
+        rollupService.refreshDirty();
+
+        var models = writtenBuckets();
+        assertEquals(1, models.size());
+        Document bucket = ((InsertOneModel<Document>) models.getFirst()).getDocument();
+        assertEquals(2L, bucket.get(PulseRollup.COUNT));
+        assertEquals(3.0, bucket.get(PulseRollup.SUM));
+        assertEquals(0L, bucket.get(PulseRollup.REVISION));
+        verify(chunkCollection, times(1)).find(any(Bson.class));
+    }
+
+    @Test
+    void rebuildKeepsBucketsOpenUntilNoLaterChunkCanReachThem() {
+        when(rollupCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        // A long chunk first, then a shorter one starting inside the same bucket
+        when(chunkCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                chunk(0, 4000, List.of(500L), List.of(1.0)),
+                chunk(1000, 2000, List.of(1500L), List.of(3.0))));
+        when(rollupCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(bulkWriteResult);
+        when(mongoDatabase.getCollection("PulseRollupCoverage")).thenReturn(coverageCollection);
+        when(coverageCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+
+        var result = rollupService.rebuild(CHUNKS, PATH, PulseDataType.DOUBLE, 0, 2000);
+
+        assertEquals(2, result.pointsRead());
+        var models = writtenBuckets();
+        assertEquals(1, models.size());
+        Document bucket = ((InsertOneModel<Document>) models.getFirst()).getDocument();
+        assertEquals(0L, bucket.get(PulseRollup.TS));
+        assertEquals(2L, bucket.get(PulseRollup.COUNT));
+    }
+
+    @Test
+    void bucketChangedDuringTheRecomputeIsRefreshedAgain() {
+        when(mongoDatabase.getCollection("PulseRollupCoverage")).thenReturn(coverageCollection);
+        when(coverageCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(rollupCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                new Document(PulseRollup.ID, PulseRollup.documentId(PATH, 0))
+                        .append(PulseRollup.PATH, PATH)
+                        .append(PulseRollup.REVISION, 3L)));
+        when(chunkCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                chunk(0, 2000, List.of(100L), List.of(1.0))));
+        // The guarded replace does not match: another writer bumped the revision
+        when(rollupCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(bulkWriteResult);
+        when(bulkWriteResult.getMatchedCount()).thenReturn(0);
+
+        rollupService.rebuild(CHUNKS, PATH, PulseDataType.DOUBLE, 0, 2000);
+        var models = writtenBuckets();
+        assertEquals(4L, ((ReplaceOneModel<Document>) models.getFirst()).getReplacement().get(PulseRollup.REVISION));
+
+        rollupService.refreshDirty();
+
+        verify(chunkCollection, times(2)).find(any(Bson.class));
+    }
+
+    @Test
+    void dirtyBucketsAreRefreshedBeforeTheyAreRead() {
+        when(mongoDatabase.getCollection("PulseRollupCoverage")).thenReturn(coverageCollection);
+        // Coverage recorded earlier, e.g. by another node
+        when(coverageCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                new Document("_id", CHUNKS + "|" + PATH).append("from", 0L)));
+        when(rollupCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(chunkCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                chunk(0, 2000, List.of(0L, 100L), List.of(1.0, 2.0))));
+        when(rollupCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(bulkWriteResult);
+
+        var written = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "c1", PATH, 0L, 2000L);
+        written.appendDouble(0L, 1.0, null);
+        written.appendDouble(100L, 2.0, null);
+        rollupService.onChunksWritten(CHUNKS, List.of(written));
+
+        assertEquals(OptionalLong.of(2000L), rollupService.selectTier(CHUNKS, PATH, PulseDataType.DOUBLE, 4000, 0));
+        // Tier buckets would straddle two downsampling buckets
+        assertTrue(rollupService.selectTier(CHUNKS, PATH, PulseDataType.DOUBLE, 3000, 0).isEmpty());
+        assertTrue(rollupService.selectTier(CHUNKS, PATH, PulseDataType.DOUBLE, 4000, 1000).isEmpty());
+
+        rollupService.refreshBeforeRead(CHUNKS, PATH, 0, 2000);
+        assertEquals(1, writtenBuckets().size());
+
+        // Already up to date: neither the next read nor the scheduled refresh recompute it
+        rollupService.refreshBeforeRead(CHUNKS, PATH, 0, 2000);
+        rollupService.refreshDirty();
+        verify(chunkCollection, times(1)).find(any(Bson.class));
+    }
+
+    @Test
+    void dirtySeriesOfACollectionAreRefreshedTogether() {
+        when(mongoDatabase.getCollection("PulseRollupCoverage")).thenReturn(coverageCollection);
+        when(coverageCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(rollupCollection.find(any(Bson.class))).thenAnswer(invocation -> found());
+        when(chunkCollection.find(any(Bson.class))).thenAnswer(invocation -> found(
+                chunk("plant.pressure", 0, 2000, List.of(100L), List.of(1.0)),
+                chunk(PATH, 0, 2000, List.of(100L, 200L), List.of(2.0, 4.0))));
+        when(rollupCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(bulkWriteResult);
+
+        for (String path : List.of(PATH, "plant.pressure")) {
+            var written = (PrimitiveChunkBuilder.DoubleChunkBuilder) PrimitiveChunkBuilder.create(PulseDataType.DOUBLE, "c1", path, 0L, 2000L);
+            written.appendDouble(100L, 1.0, null);
+            rollupService.onChunksWritten(CHUNKS, List.of(written));
+        }
+
+        rollupService.refreshDirty();
+
+        // One query and one bulk write for both series, the coverage of both recorded at once
+        verify(chunkCollection, times(1)).find(any(Bson.class));
+        verify(rollupCollection, times(1)).bulkWrite(anyList(), any(BulkWriteOptions.class));
+        verify(coverageCollection, times(1)).bulkWrite(anyList(), any(BulkWriteOptions.class));
+        Map<String, Long> counts = new HashMap<>();
+        writtenBuckets().forEach(model -> {
+            Document bucket = ((InsertOneModel<Document>) model).getDocument();
+            counts.put(bucket.getString(PulseRollup.PATH), (Long) bucket.get(PulseRollup.COUNT));
+        });
+        assertEquals(Map.of(PATH, 2L, "plant.pressure", 1L), counts);
+    }
+}
@@ -1,5 +1,6 @@
 package com.id.pulse.model;
 
+import com.id.pulse.modules.timeseries.model.enums.PulseDownsamplingMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,4 +19,10 @@ public class PulseExtractorReq {
     private Instant start;
     private Instant end;
 
+    // Optional downsampling: bucketMillis wins over targetPoints; aggregation defaults to MIN_MAX.
+    // Non numeric series always keep the LAST point of each bucket.
+    private Integer targetPoints;
+    private Long bucketMillis;
+    private PulseDownsamplingMode aggregation;
+
 }
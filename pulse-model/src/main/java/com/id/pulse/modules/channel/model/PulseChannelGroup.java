@@ -1,5 +1,6 @@
 package com.id.pulse.modules.channel.model;
 
+import com.id.pulse.modules.timeseries.model.enums.PulseChunkEncoding;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -24,4 +25,6 @@ public class PulseChannelGroup {
 
     private Boolean persistEnabled;
     private String persistedLifeTime;
+
+    private PulseChunkEncoding chunkEncoding;
 }
@@ -16,5 +16,7 @@ public class PulseIngestorWriteResult {
     private long points = 0;
     @Builder.Default
     private Duration duration = Duration.ZERO;
+    // Set when the write failed: chunks and points are then the ones that were not written
+    private String error;
 
 }
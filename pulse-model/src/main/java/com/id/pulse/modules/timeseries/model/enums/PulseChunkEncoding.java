@@ -0,0 +1,15 @@
+package com.id.pulse.modules.timeseries.model.enums;
+
+public enum PulseChunkEncoding {
+
+    /**
+     * Parallel BSON arrays (ts, v, batchIds), one element per point.
+     */
+    ARRAY,
+
+    /**
+     * Binary blocks: delta-of-delta timestamps and XOR-compressed values (Gorilla style).
+     */
+    GORILLA
+
+}
@@ -0,0 +1,25 @@
+package com.id.pulse.modules.timeseries.model.enums;
+
+public enum PulseDownsamplingMode {
+
+    /**
+     * Lowest and highest point of each bucket, at their own timestamps (up to two points per bucket).
+     */
+    MIN_MAX,
+
+    /**
+     * Mean of each bucket, at the bucket start. Values are returned as doubles.
+     */
+    AVG,
+
+    /**
+     * Last point of each bucket, at its own timestamp.
+     */
+    LAST,
+
+    /**
+     * Largest-Triangle-Three-Buckets: the most visually significant point of each bucket, at its own timestamp.
+     */
+    LTTB
+
+}
@@ -0,0 +1,294 @@
+package com.id.pulse.utils;
+
+import com.id.pulse.modules.channel.model.enums.PulseDataType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Binary columnar layout of extractor responses ({@value #MEDIA_TYPE}), with its writer and reader.
+ * <p>
+ * All numbers are big-endian. Strings are an {@code int32} byte length ({@code -1} for null) followed by UTF-8 bytes.
+ * <pre>
+ * stream   := header frame* end
+ * header   := magic:int32 ("PLSC") version:int8
+ * frame    := 1:int8 groupCode:string path:string type:int8 count:int32 ts:int64[count] nulls values
+ * nulls    := 0:int8                                     no null value
+ *           | 1:int8 bitmap:int8[(count + 7) / 8]        bit i (LSB first) set when value i is null
+ * values   := float64[count] | int64[count]               DOUBLE | LONG (null slots hold 0)
+ *           | int8[count]                                 BOOLEAN (0 or 1)
+ *           | string[count]                               STRING
+ * end      := 0:int8 frames:int64 points:int64
+ * </pre>
+ * {@code type} is the ordinal of {@link PulseDataType}. The frames of a path are consecutive and in time order,
+ * a path may span several frames (one per stored chunk). A stream without the end frame was truncated.
+ */
+public final class PulseColumnarFormat {
+
+    public static final String MEDIA_TYPE = "application/vnd.pulse.columnar";
+
+    public static final int MAGIC = 0x504C5343;
+    public static final byte VERSION = 1;
+
+    static final byte FRAME_END = 0;
+    static final byte FRAME_SERIES = 1;
+    static final byte NULLS_NONE = 0;
+    static final byte NULLS_BITMAP = 1;
+
+    private PulseColumnarFormat() {
+    }
+
+    public static Writer writer(OutputStream out) throws IOException {
+        return new Writer(out);
+    }
+
+    public static Reader reader(InputStream in) throws IOException {
+        return new Reader(in);
+    }
+
+    /**
+     * One frame: a run of points of a path. {@code values} is a {@code double[]}, {@code long[]}, {@code boolean[]}
+     * or {@code String[]} according to {@code type}.
+     */
+    public record Series(String groupCode, String path, PulseDataType type, long[] ts, Object values, BitSet nulls) {
+
+        public int size() {
+            return ts.length;
+        }
+
+        public boolean isNull(int i) {
+            return nulls.get(i);
+        }
+
+        public double[] doubles() {
+            return (double[]) values;
+        }
+
+        public long[] longs() {
+            return (long[]) values;
+        }
+
+        public boolean[] booleans() {
+            return (boolean[]) values;
+        }
+
+        public String[] strings() {
+            return (String[]) values;
+        }
+    }
+
+    public static final class Writer {
+
+        private final DataOutputStream out;
+
+        private long frames = 0;
+        private long points = 0;
+
+        private Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        /**
+         * Writes one frame and flushes it. Values not matching {@code type} are written as nulls.
+         */
+        public void writeSeries(String groupCode, String path, PulseDataType type, List<Long> ts, List<?> values) throws IOException {
+            if (type == null) {
+                throw new IllegalArgumentException("Type cannot be null");
+            }
+            if (ts.size() != values.size()) {
+                throw new IllegalArgumentException("Timestamps and values must have the same size");
+            }
+            int count = ts.size();
+
+            out.writeByte(FRAME_SERIES);
+            writeString(groupCode);
+            writeString(path);
+            out.writeByte(type.ordinal());
+            out.writeInt(count);
+            for (Long t : ts) {
+                out.writeLong(t);
+            }
+
+            // Null bitmap, only when needed
+            BitSet nulls = new BitSet(count);
+            for (int i = 0; i < count; i++) {
+                if (!matches(type, values.get(i))) {
+                    nulls.set(i);
+                }
+            }
+            if (nulls.isEmpty()) {
+                out.writeByte(NULLS_NONE);
+            } else {
+                out.writeByte(NULLS_BITMAP);
+                byte[] bitmap = new byte[(count + 7) / 8];
+                byte[] set = nulls.toByteArray();
+                System.arraycopy(set, 0, bitmap, 0, set.length);
+                out.write(bitmap);
+            }
+
+            for (int i = 0; i < count; i++) {
+                Object value = nulls.get(i) ? null : values.get(i);
+                switch (type) {
+                    case DOUBLE -> out.writeDouble(value == null ? 0 : (Double) value);
+                    case LONG -> out.writeLong(value == null ? 0 : (Long) value);
+                    case BOOLEAN -> out.writeByte(Boolean.TRUE.equals(value) ? 1 : 0);
+                    case STRING -> writeString((String) value);
+                }
+            }
+            out.flush();
+
+            frames++;
+            points += count;
+        }
+
+        /**
+         * Writes the end frame. The underlying stream is flushed, not closed.
+         */
+        public void end() throws IOException {
+            out.writeByte(FRAME_END);
+            out.writeLong(frames);
+            out.writeLong(points);
+            out.flush();
+        }
+
+        private static boolean matches(PulseDataType type, Object value) {
+            return switch (type) {
+                case DOUBLE -> value instanceof Double;
+                case LONG -> value instanceof Long;
+                case BOOLEAN -> value instanceof Boolean;
+                case STRING -> value instanceof String;
+            };
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static final class Reader {
+
+        private final DataInputStream in;
+
+        private boolean ended = false;
+        private long frames = -1;
+        private long points = -1;
+
+        private Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            if (this.in.readInt() != MAGIC) {
+                throw new IllegalStateException("Not a pulse columnar stream");
+            }
+            byte version = this.in.readByte();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported pulse columnar version: %d".formatted(version));
+            }
+        }
+
+        /**
+         * Returns the next frame, or null after the end frame.
+         *
+         * @throws java.io.EOFException when the stream was truncated
+         */
+        public Series next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            byte frameType = in.readByte();
+            if (frameType == FRAME_END) {
+                ended = true;
+                frames = in.readLong();
+                points = in.readLong();
+                return null;
+            }
+            if (frameType != FRAME_SERIES) {
+                throw new IllegalStateException("Unexpected frame type: %d".formatted(frameType));
+            }
+
+            String groupCode = readString();
+            String path = readString();
+            PulseDataType type = PulseDataType.values()[in.readByte()];
+            int count = in.readInt();
+            long[] ts = new long[count];
+            for (int i = 0; i < count; i++) {
+                ts[i] = in.readLong();
+            }
+
+            BitSet nulls = new BitSet(count);
+            if (in.readByte() == NULLS_BITMAP) {
+                byte[] bitmap = new byte[(count + 7) / 8];
+                in.readFully(bitmap);
+                nulls = BitSet.valueOf(bitmap);
+            }
+
+            Object values = switch (type) {
+                case DOUBLE -> {
+                    double[] v = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        v[i] = in.readDouble();
+                    }
+                    yield v;
+                }
+                case LONG -> {
+                    long[] v = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        v[i] = in.readLong();
+                    }
+                    yield v;
+                }
+                case BOOLEAN -> {
+                    boolean[] v = new boolean[count];
+                    for (int i = 0; i < count; i++) {
+                        v[i] = in.readByte() != 0;
+                    }
+                    yield v;
+                }
+                case STRING -> {
+                    String[] v = new String[count];
+                    for (int i = 0; i < count; i++) {
+                        v[i] = readString();
+                    }
+                    yield v;
+                }
+            };
+            return new Series(groupCode, path, type, ts, values, nulls);
+        }
+
+        public boolean isEnded() {
+            return ended;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        private String readString() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}